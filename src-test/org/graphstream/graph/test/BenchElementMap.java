@@ -0,0 +1,134 @@
+/*
+ * Copyright 2006 - 2013
+ *     Stefan Balev     <stefan.balev@graphstream-project.org>
+ *     Julien Baudry    <julien.baudry@graphstream-project.org>
+ *     Antoine Dutot    <antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné      <yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin   <guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.graph.test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.graphstream.graph.ElementMap;
+import org.graphstream.graph.test.TestElementMap.Item;
+import org.junit.Ignore;
+
+/**
+ * Measures the insertion of elements in random order in an {@link ElementMap},
+ * followed by lookups by id and by index and the removal of all the elements.
+ * A {@link TreeMap} is given for reference.
+ * 
+ * Usage: {@code BenchElementMap [elements]}
+ */
+@Ignore
+public class BenchElementMap {
+	final ArrayList<Item> items;
+
+	public BenchElementMap(int size) {
+		items = new ArrayList<Item>(size);
+		for (int i = 0; i < size; i++)
+			items.add(new Item("n" + i));
+		Collections.shuffle(items, new Random(size));
+	}
+
+	long[] elementMap() {
+		long[] times = new long[3];
+		ElementMap<Item> map = new ElementMap<Item>();
+		long t0 = System.nanoTime();
+		for (Item item : items)
+			map.add(item);
+		times[0] = System.nanoTime() - t0;
+
+		t0 = System.nanoTime();
+		int found = 0;
+		for (Item item : items)
+			if (map.get(item.getId()) != null)
+				found++;
+		for (int i = 0; i < map.size(); i++)
+			if (map.get(i) != null)
+				found++;
+		times[1] = System.nanoTime() - t0;
+
+		t0 = System.nanoTime();
+		for (Item item : items)
+			map.remove(item);
+		times[2] = System.nanoTime() - t0;
+		check(found == 2 * items.size() && map.size() == 0);
+		return times;
+	}
+
+	long[] treeMap() {
+		long[] times = new long[3];
+		TreeMap<String, Item> map = new TreeMap<String, Item>();
+		long t0 = System.nanoTime();
+		for (Item item : items)
+			map.put(item.getId(), item);
+		times[0] = System.nanoTime() - t0;
+
+		t0 = System.nanoTime();
+		int found = 0;
+		for (Item item : items)
+			if (map.get(item.getId()) != null)
+				found++;
+		times[1] = System.nanoTime() - t0;
+
+		t0 = System.nanoTime();
+		for (Item item : items)
+			map.remove(item.getId());
+		times[2] = System.nanoTime() - t0;
+		check(found == items.size() && map.isEmpty());
+		return times;
+	}
+
+	static void check(boolean condition) {
+		if (!condition)
+			throw new IllegalStateException("wrong result");
+	}
+
+	void bench(int runs) {
+		System.out.printf("%d elements in random order%n", items.size());
+		System.out.printf("%-12s%12s%12s%12s%n", "", "insert ms", "get ms",
+				"remove ms");
+		for (int run = 0; run < runs; run++) {
+			print("ElementMap", elementMap());
+			print("TreeMap", treeMap());
+		}
+	}
+
+	static void print(String name, long[] times) {
+		System.out.printf("%-12s%12d%12d%12d%n", name, times[0] / 1000000,
+				times[1] / 1000000, times[2] / 1000000);
+	}
+
+	public static void main(String[] args) {
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		new BenchElementMap(size).bench(3);
+	}
+}
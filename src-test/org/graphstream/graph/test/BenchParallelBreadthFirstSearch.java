@@ -0,0 +1,127 @@
+/*
+ * Copyright 2006 - 2013
+ *     Stefan Balev     <stefan.balev@graphstream-project.org>
+ *     Julien Baudry    <julien.baudry@graphstream-project.org>
+ *     Antoine Dutot    <antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné      <yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin   <guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.graph.test;
+
+import java.io.PrintStream;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.graphstream.graph.BreadthFirstIterator;
+import org.graphstream.graph.Graph;
+import org.graphstream.graph.Node;
+import org.graphstream.graph.ParallelBreadthFirstSearch;
+import org.graphstream.graph.implementations.AdjacencyListGraph;
+import org.junit.Ignore;
+
+/**
+ * Measures how {@link ParallelBreadthFirstSearch} scales with the number of
+ * threads on random graphs with an average degree of 16, compared to a
+ * {@link BreadthFirstIterator}. The search is run top-down only and
+ * direction-optimizing. Graphs of 10 million edges need a few gigabytes of
+ * heap.
+ * 
+ * Usage: {@code BenchParallelBreadthFirstSearch [edges...]}
+ */
+@Ignore
+public class BenchParallelBreadthFirstSearch {
+	static final int[] THREADS = { 1, 2, 4, 8 };
+	static final int SEARCHES = 5;
+
+	final Graph graph;
+
+	public BenchParallelBreadthFirstSearch(int edges) {
+		int nodes = edges / 8;
+		Random random = new Random(42);
+		graph = new AdjacencyListGraph("bench", false, true, nodes, edges);
+		for (int i = 0; i < nodes; i++)
+			graph.addNode(Integer.toString(i));
+		for (int i = 0; i < edges; i++)
+			graph.addEdge(Integer.toString(i), random.nextInt(nodes),
+					random.nextInt(nodes), true);
+	}
+
+	long sequential() {
+		long t0 = System.nanoTime();
+		for (int s = 0; s < SEARCHES; s++) {
+			BreadthFirstIterator<Node> bfs = new BreadthFirstIterator<Node>(
+					graph.getNode(s), true);
+			while (bfs.hasNext())
+				bfs.next();
+		}
+		return (System.nanoTime() - t0) / 1000000 / SEARCHES;
+	}
+
+	long parallel(ForkJoinPool pool, boolean optimizing) {
+		ParallelBreadthFirstSearch bfs = new ParallelBreadthFirstSearch(graph,
+				true, pool);
+		bfs.setDirectionOptimizing(optimizing);
+		long t0 = System.nanoTime();
+		for (int s = 0; s < SEARCHES; s++)
+			bfs.compute(graph.getNode(s));
+		return (System.nanoTime() - t0) / 1000000 / SEARCHES;
+	}
+
+	void bench(PrintStream ps) {
+		// warm up
+		sequential();
+		ForkJoinPool warm = new ForkJoinPool(THREADS[THREADS.length - 1]);
+		parallel(warm, false);
+		parallel(warm, true);
+		warm.shutdown();
+
+		ps.printf("%d nodes, %d edges, ms per search%n",
+				graph.getNodeCount(), graph.getEdgeCount());
+		ps.printf("%-12s%10d%n", "sequential", sequential());
+		ps.printf("%-12s", "threads");
+		for (int n : THREADS)
+			ps.printf("%10d", n);
+		ps.println();
+		String[] names = { "top-down", "optimizing" };
+		for (int k = 0; k < names.length; k++) {
+			ps.printf("%-12s", names[k]);
+			for (int n : THREADS) {
+				ForkJoinPool pool = new ForkJoinPool(n);
+				ps.printf("%10d", parallel(pool, k == 1));
+				pool.shutdown();
+			}
+			ps.println();
+		}
+	}
+
+	public static void main(String[] args) {
+		if (args.length == 0)
+			args = new String[] { "1000000" };
+		for (String edges : args)
+			new BenchParallelBreadthFirstSearch(Integer.parseInt(edges))
+					.bench(System.out);
+	}
+}
@@ -38,26 +38,33 @@ import java.util.EnumMap;
 import java.util.Iterator;
 import java.util.List;
 
+import org.graphstream.graph.BreadthFirstIterator;
 import org.graphstream.graph.Edge;
 import org.graphstream.graph.Graph;
 import org.graphstream.graph.Node;
+import org.graphstream.graph.TraversalContext;
 import org.graphstream.graph.implementations.AdjacencyListGraph;
+import org.graphstream.graph.implementations.CompactGraph;
+import org.graphstream.graph.implementations.Graphs;
+import org.graphstream.graph.implementations.MultiGraph;
 import org.graphstream.graph.implementations.SingleGraph;
 import org.junit.Ignore;
 
 @Ignore
 public class BenchPerformance {
 	Graph g;
+	String name;
 	Runtime r;
 	List<String> nodeIds;
 	List<String> edgeIds;
 	long start, end;
 
 	static enum Measures {
-		MEMORY, NODE_BY_ID, EDGE_BY_ID, GRAPH_NODE_IT, GRAPH_EDGE_IT, 
+		MEMORY, ATTRIBUTE_MEMORY, NODE_BY_ID, EDGE_BY_ID, GRAPH_NODE_IT, GRAPH_EDGE_IT, 
 		NODE_EDGE_IT, NODE_ENTERING_EDGE_IT, NODE_LEAVING_EDGE_IT, NODE_NEIGHBOR_IT, NODE_GET_EDGE, 
-		BFS_IT, DFS_IT, EDGE_BETWEEN, EDGE_FROM, EDGE_TOWARD, TRIANGLE, 
-		ADD_NODE, ADD_EDGE, REMOVE_NODE, REMOVE_EDGE
+		NODE_NEIGHBOR_INDEX, BFS_IT, DFS_IT, BFS_CONTEXT, EDGE_BETWEEN, EDGE_FROM, EDGE_TOWARD, TRIANGLE, 
+		ADD_NODE, ADD_EDGE, REMOVE_NODE, REMOVE_EDGE, HUB_ADD_EDGE, 
+		PARALLEL_MEMORY, PARALLEL_ADD_EDGE, PARALLEL_EDGE_TOWARD, COMPACT
 	}
 
 	EnumMap<Measures, Long> measureValues;
@@ -79,6 +86,7 @@ public class BenchPerformance {
 		forceGC();
 		long used1 = r.totalMemory() - r.freeMemory();
 		g = graph;
+		name = graph.getId();
 		try {
 			g.read(fileName);
 		} catch (Exception e) {
@@ -87,6 +95,8 @@ public class BenchPerformance {
 		}
 		System.out.println("Graph read: " + g.getNodeCount() + " nodes and "
 				+ g.getEdgeCount() + " edges");
+		forceGC();
+		long usedWithAttributes = r.totalMemory() - r.freeMemory();
 
 		for (Node n : g)
 			n.clearAttributes();
@@ -96,6 +106,7 @@ public class BenchPerformance {
 		long used2 = r.totalMemory() - r.freeMemory();
 		measureValues = new EnumMap<Measures, Long>(Measures.class);
 		measureValues.put(Measures.MEMORY, used2 - used1);
+		measureValues.put(Measures.ATTRIBUTE_MEMORY, usedWithAttributes - used2);
 
 		nodeIds = new ArrayList<String>(g.getNodeCount());
 		for (Node n : g)
@@ -109,6 +120,28 @@ public class BenchPerformance {
 		Collections.sort(edgeIds);
 	}
 
+	/**
+	 * Benchmarks a compact snapshot of an already loaded graph.
+	 */
+	public BenchPerformance(BenchPerformance source) {
+		r = Runtime.getRuntime();
+		forceGC();
+		long used1 = r.totalMemory() - r.freeMemory();
+		start = System.currentTimeMillis();
+		g = Graphs.compact(source.g);
+		end = System.currentTimeMillis();
+		name = "Compact";
+		forceGC();
+		long used2 = r.totalMemory() - r.freeMemory();
+		measureValues = new EnumMap<Measures, Long>(Measures.class);
+		measureValues.put(Measures.MEMORY, used2 - used1);
+		measureValues.put(Measures.ATTRIBUTE_MEMORY, 0L);
+		measureValues.put(Measures.COMPACT, end - start);
+
+		nodeIds = new ArrayList<String>(source.nodeIds);
+		edgeIds = new ArrayList<String>(source.edgeIds);
+	}
+
 	public int testAccessById() {
 		int foo = 0;
 
@@ -242,6 +275,37 @@ public class BenchPerformance {
 		return foo;
 	}
 
+	public int testNeighborIndex() {
+		int foo = 0;
+
+		// For each node n, summing the indices of the neighbors of n
+		start = System.currentTimeMillis();
+		if (g instanceof CompactGraph) {
+			CompactGraph cg = (CompactGraph) g;
+			int n = cg.getNodeCount();
+			for (int k = 0; k < n; k++) {
+				int d = cg.getDegree(k);
+				for (int i = 0; i < d; i++)
+					foo += cg.getNeighborIndex(k, i);
+			}
+		} else {
+			int[] buf = new int[16];
+			for (Node n : g) {
+				int d = n.neighborIndices(buf);
+				if (d > buf.length) {
+					buf = new int[2 * d];
+					n.neighborIndices(buf);
+				}
+				for (int i = 0; i < d; i++)
+					foo += buf[i];
+			}
+		}
+		end = System.currentTimeMillis();
+		measureValues.put(Measures.NODE_NEIGHBOR_INDEX, end - start);
+
+		return foo;
+	}
+
 	public int testBfsDfs() {
 		int foo = 0;
 
@@ -276,6 +340,23 @@ public class BenchPerformance {
 		end = System.currentTimeMillis();
 		measureValues.put(Measures.DFS_IT, end - start);
 
+		// depth 2 BFS from 100000 nodes, reusing a traversal context
+		start = System.currentTimeMillis();
+		TraversalContext context = new TraversalContext(g.getNodeCount());
+		context.setMaxDepth(2);
+		BreadthFirstIterator<Node> bfs = new BreadthFirstIterator<Node>(
+				context, g.getNode(0), true);
+		for (int i = 0; i < 100000; i++) {
+			bfs.reset(g.getNode(nodeIds.get(i % nodeIds.size())));
+			while (bfs.hasNext()) {
+				Node node = bfs.next();
+				if (node.hasAttribute("foo"))
+					foo++;
+			}
+		}
+		end = System.currentTimeMillis();
+		measureValues.put(Measures.BFS_CONTEXT, end - start);
+
 		return foo;
 	}
 
@@ -406,6 +487,65 @@ public class BenchPerformance {
 	}
 
 
+	/**
+	 * Links a new node to 100000 new nodes. The growth policy of the arrays can
+	 * be changed with the {@value AdjacencyListGraph#GROW_FACTOR_PROPERTY}
+	 * property, 1.1 being the former policy.
+	 */
+	public void testHub() {
+		int n = 100000;
+		g.addNode("__hub__");
+		for (int i = 0; i < n; i++)
+			g.addNode("__leaf__" + i);
+
+		start = System.currentTimeMillis();
+		for (int i = 0; i < n; i++)
+			g.addEdge("__hubedge__" + i, "__hub__", "__leaf__" + i);
+		end = System.currentTimeMillis();
+		measureValues.put(Measures.HUB_ADD_EDGE, end - start);
+
+		g.removeNode("__hub__");
+		for (int i = 0; i < n; i++)
+			g.removeNode("__leaf__" + i);
+	}
+
+	/**
+	 * Adds 10 parallel edges between 100000 pairs of nodes, for graphs
+	 * accepting multiple edges.
+	 */
+	public void testParallelEdges() {
+		int pairs = Math.min(100000, nodeIds.size() / 2);
+		int k = 10;
+		forceGC();
+		long used1 = r.totalMemory() - r.freeMemory();
+
+		start = System.currentTimeMillis();
+		int edgeId = 0;
+		for (int j = 0; j < k; j++)
+			for (int i = 0; i < pairs; i++)
+				g.addEdge("__paredge__" + edgeId++, nodeIds.get(2 * i),
+						nodeIds.get(2 * i + 1), true);
+		end = System.currentTimeMillis();
+		measureValues.put(Measures.PARALLEL_ADD_EDGE, end - start);
+
+		forceGC();
+		long used2 = r.totalMemory() - r.freeMemory();
+		measureValues.put(Measures.PARALLEL_MEMORY, used2 - used1);
+
+		start = System.currentTimeMillis();
+		int foo = 0;
+		for (int i = 0; i < pairs; i++) {
+			Node n = g.getNode(nodeIds.get(2 * i));
+			if (n.getEdgeToward(nodeIds.get(2 * i + 1)) != null)
+				foo++;
+		}
+		end = System.currentTimeMillis();
+		measureValues.put(Measures.PARALLEL_EDGE_TOWARD, end - start);
+
+		for (int i = 0; i < edgeId; i++)
+			g.removeEdge("__paredge__" + i);
+	}
+
 	public static void latexOutput(BenchPerformance[] tests, PrintStream ps) {
 		String header = "\\begin{tabular}{|l|";
 		for (int i = 0; i < tests.length; i++)
@@ -416,18 +556,26 @@ public class BenchPerformance {
 
 		ps.printf("%35s ", "measure");
 		for (BenchPerformance t : tests)
-			ps.printf("& %10s ", t.g.getId());
+			ps.printf("& %10s ", t.name);
 		ps.println("\\\\");
 		ps.println("\\hline");
 
 		for (Measures m : Measures.values()) {
 			// skip if not measured
-			if (!tests[0].measureValues.containsKey(m))
+			boolean measured = false;
+			for (BenchPerformance t : tests)
+				measured |= t.measureValues.containsKey(m);
+			if (!measured)
 				continue;
 			ps.printf("%35s ", "\\lstinline~" + m.name() + "~");
 			for (BenchPerformance t : tests) {
+				if (!t.measureValues.containsKey(m)) {
+					ps.printf("& %10s ", "-");
+					continue;
+				}
 				double val = t.measureValues.get(m);
-				if (m == Measures.MEMORY)
+				if (m == Measures.MEMORY || m == Measures.ATTRIBUTE_MEMORY
+						|| m == Measures.PARALLEL_MEMORY)
 					val /= 1 << 20;
 				else
 					val /= 1000;
@@ -443,27 +591,51 @@ public class BenchPerformance {
 		String fileName = args[0];
 //		String fileName = "/home/stefan/tmp/imdb/imdb-full.dgs";
 //		String fileName = "/home/stefan/tmp/yoann/test_cleaned.dgs";
-		int gCount = 2;
+		int gCount = 5;
 		Graph[] graphs = new Graph[gCount];
 		graphs[0] = new SingleGraph("Single");
-		graphs[2] = new AdjacencyListGraph("Adj");
+		graphs[1] = new MultiGraph("Multi");
+		// compare the sorted map and the hash index for access by id
+		graphs[2] = new AdjacencyListGraph("AdjTree", true, false,
+				AdjacencyListGraph.DEFAULT_NODE_CAPACITY,
+				AdjacencyListGraph.DEFAULT_EDGE_CAPACITY,
+				AdjacencyListGraph.IdIndexType.TREE);
+		graphs[3] = new AdjacencyListGraph("AdjHash");
+		// graphs[4] is a compact snapshot of graphs[3], see below
 
 		BenchPerformance[] tests = new BenchPerformance[gCount];
 		for (int i = 0; i < gCount; i++) {
-			System.out.println("Loading graph " + graphs[i].getId());
-			tests[i] = new BenchPerformance(fileName, graphs[i]);
+			if (tests[i] == null) {
+				System.out.println("Loading graph " + graphs[i].getId());
+				tests[i] = new BenchPerformance(fileName, graphs[i]);
+			}
+			if (i + 1 < gCount && graphs[i + 1] == null) {
+				// compact the graph before it is modified
+				System.out.println("Compacting graph " + graphs[i].getId());
+				tests[i + 1] = new BenchPerformance(tests[i]);
+			}
 			System.out.println("  Testing access by id");
 			tests[i].testAccessById();
 			System.out.println("  Testing graph iterators");
 			tests[i].testGraphIterators();
 			System.out.println("  Testing node iterators");
 			tests[i].testNodeIterators();
+			System.out.println("  Testing neighbor indices");
+			tests[i].testNeighborIndex();
 			System.out.println("  Testing BFS and DFS iterators");
 			tests[i].testBfsDfs();
 			System.out.println("  Testing finding edges");
 			tests[i].testFindEdge();
 			System.out.println("  Testing triangles");
 			tests[i].testTriangleCount();
+			if (tests[i].g instanceof CompactGraph)
+				continue;
+			if (!(tests[i].g instanceof SingleGraph)) {
+				System.out.println("  Testing parallel edges");
+				tests[i].testParallelEdges();
+			}
+			System.out.println("  Testing hub");
+			tests[i].testHub();
 			System.out.println("  Testing add / remove");
 			tests[i].testAddRemove();
 			tests[i].g.clear();
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2006 - 2013
+ *     Stefan Balev     <stefan.balev@graphstream-project.org>
+ *     Julien Baudry    <julien.baudry@graphstream-project.org>
+ *     Antoine Dutot    <antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné      <yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin   <guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.graph.test;
+
+import java.io.PrintStream;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import org.graphstream.graph.Graph;
+import org.graphstream.graph.implementations.ConcurrentGraph;
+import org.graphstream.graph.implementations.ShardedGraph;
+import org.junit.Ignore;
+
+/**
+ * Measures how a {@link ShardedGraph} scales when each thread changes its own
+ * shard. Each thread adds nodes with an attribute and connects them to random
+ * nodes of the same community, the same workload is run on a
+ * {@link ConcurrentGraph} shared by all the threads. The events of the
+ * sharded graph are queued and pumped once at the end.
+ * 
+ * Usage: {@code BenchShardedGraph [nodes [edges per node]]}
+ */
+@Ignore
+public class BenchShardedGraph {
+	static final int[] THREADS = { 1, 2, 4, 8, 16 };
+
+	final int nodes;
+	final int edgesPerNode;
+
+	public BenchShardedGraph(int nodes, int edgesPerNode) {
+		this.nodes = nodes;
+		this.edgesPerNode = edgesPerNode;
+	}
+
+	/**
+	 * Runs the workload with a given number of threads, on the shards of a
+	 * sharded graph if {@code sharded} is not {@code null}, on {@code shared}
+	 * otherwise.
+	 * 
+	 * @return The elapsed time in milliseconds.
+	 */
+	long run(final ShardedGraph sharded, final Graph shared, final int threads)
+			throws InterruptedException {
+		final CountDownLatch ready = new CountDownLatch(threads);
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(threads);
+		final int perThread = nodes / threads;
+
+		for (int t = 0; t < threads; t++) {
+			final int thread = t;
+			new Thread() {
+				@Override
+				public void run() {
+					Graph g = sharded == null ? shared : sharded
+							.getShard(thread);
+					Random random = new Random(thread);
+					ready.countDown();
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					for (int i = 0; i < perThread; i++) {
+						String id = thread + "_" + i;
+						g.addNode(id).addAttribute("w", i);
+						for (int j = 0; j < edgesPerNode && i > 0; j++) {
+							String oid = thread + "_" + random.nextInt(i);
+							g.addEdge(id + "_" + j, id, oid);
+						}
+					}
+					done.countDown();
+				}
+			}.start();
+		}
+
+		ready.await();
+		long t0 = System.nanoTime();
+		start.countDown();
+		done.await();
+		return (System.nanoTime() - t0) / 1000000;
+	}
+
+	void bench(PrintStream ps) throws InterruptedException {
+		String[] names = { "Striped", "Sharded", "Pumped" };
+		long[][] times = new long[names.length][THREADS.length];
+
+		// warm up
+		run(null, new ConcurrentGraph("Striped"), 4);
+		run(new ShardedGraph("Sharded", 4), null, 4);
+		for (int i = 0; i < THREADS.length; i++) {
+			System.gc();
+			ConcurrentGraph g = new ConcurrentGraph("Striped");
+			times[0][i] = run(null, g, THREADS[i]);
+
+			System.gc();
+			ShardedGraph s = new ShardedGraph("Sharded", THREADS[i]);
+			times[1][i] = run(s, null, THREADS[i]);
+			long t0 = System.nanoTime();
+			s.pump();
+			times[2][i] = (System.nanoTime() - t0) / 1000000;
+			System.out.printf(
+					"%d threads: striped %d ms, sharded %d ms + %d ms pump, %d edges%n",
+					THREADS[i], times[0][i], times[1][i], times[2][i],
+					s.getEdgeCount());
+		}
+
+		ps.printf("%-10s", "threads");
+		for (int n : THREADS)
+			ps.printf("%10d", n);
+		ps.println();
+		for (int k = 0; k < names.length; k++) {
+			ps.printf("%-10s", names[k]);
+			for (long t : times[k])
+				ps.printf("%10d", t);
+			ps.println();
+		}
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		int nodes = args.length > 0 ? Integer.parseInt(args[0]) : 400000;
+		int edgesPerNode = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+		new BenchShardedGraph(nodes, edgesPerNode).bench(System.out);
+	}
+}
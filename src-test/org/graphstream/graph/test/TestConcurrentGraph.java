@@ -0,0 +1,323 @@
+/*
+ * Copyright 2006 - 2013
+ *     Stefan Balev     <stefan.balev@graphstream-project.org>
+ *     Julien Baudry    <julien.baudry@graphstream-project.org>
+ *     Antoine Dutot    <antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné      <yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin   <guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.graph.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import org.graphstream.graph.Edge;
+import org.graphstream.graph.Graph;
+import org.graphstream.graph.Node;
+import org.graphstream.graph.implementations.AdjacencyListGraph;
+import org.graphstream.graph.implementations.ConcurrentGraph;
+import org.graphstream.stream.SinkAdapter;
+import org.junit.Test;
+
+public class TestConcurrentGraph {
+	static final int THREADS = 8;
+
+	/**
+	 * Runs a task in several threads started at the same time and rethrows
+	 * the first failure.
+	 */
+	static void runConcurrently(int threads, final Task task)
+			throws Throwable {
+		final CountDownLatch start = new CountDownLatch(1);
+		final Throwable[] failure = new Throwable[1];
+		List<Thread> list = new ArrayList<Thread>();
+
+		for (int t = 0; t < threads; t++) {
+			final int thread = t;
+			Thread th = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						task.run(thread);
+					} catch (Throwable e) {
+						synchronized (failure) {
+							if (failure[0] == null)
+								failure[0] = e;
+						}
+					}
+				}
+			};
+			th.start();
+			list.add(th);
+		}
+
+		start.countDown();
+		for (Thread th : list)
+			th.join();
+		if (failure[0] != null)
+			throw failure[0];
+	}
+
+	interface Task {
+		void run(int thread) throws Exception;
+	}
+
+	/**
+	 * Checks that the indices, the maps and the adjacency of the nodes agree.
+	 */
+	static void checkConsistency(Graph graph) {
+		int degrees = 0;
+		for (int i = 0; i < graph.getNodeCount(); i++) {
+			Node n = graph.getNode(i);
+			assertEquals(i, n.getIndex());
+			assertSame(n, graph.getNode(n.getId()));
+			for (Edge e : n.getEachEdge()) {
+				assertSame(e, graph.getEdge(e.getId()));
+				assertSame(n, e.getOpposite(e.getOpposite(n)));
+				degrees += e.isLoop() ? 2 : 1;
+			}
+		}
+		for (int i = 0; i < graph.getEdgeCount(); i++) {
+			Edge e = graph.getEdge(i);
+			assertEquals(i, e.getIndex());
+			assertSame(e.getNode0(), graph.getNode(e.getNode0().getId()));
+			assertSame(e.getNode1(), graph.getNode(e.getNode1().getId()));
+		}
+		assertEquals(2 * graph.getEdgeCount(), degrees);
+	}
+
+	@Test
+	public void testConcurrentAdditions() throws Throwable {
+		final Graph graph = new ConcurrentGraph("cg");
+		final int n = 500;
+
+		for (int i = 0; i < 4; i++)
+			graph.addNode("hub" + i);
+
+		runConcurrently(THREADS, new Task() {
+			public void run(int thread) {
+				Random random = new Random(thread);
+				for (int i = 0; i < n; i++) {
+					String id = thread + "_" + i;
+					Node node = graph.addNode(id);
+					node.addAttribute("thread", thread);
+					// all threads compete for the hubs
+					graph.addEdge(id + "_hub", id, "hub" + random.nextInt(4));
+					if (i > 0)
+						graph.addEdge(id + "_prev", id, thread + "_" + (i - 1),
+								true);
+				}
+			}
+		});
+
+		assertEquals(4 + THREADS * n, graph.getNodeCount());
+		assertEquals(THREADS * (2 * n - 1), graph.getEdgeCount());
+		int hubDegree = 0;
+		for (int i = 0; i < 4; i++)
+			hubDegree += graph.getNode("hub" + i).getDegree();
+		assertEquals(THREADS * n, hubDegree);
+		for (int t = 0; t < THREADS; t++) {
+			Node node = graph.getNode(t + "_" + (n - 1));
+			assertEquals(t, node.getAttribute("thread"));
+			assertNotNull(node.getEdgeToward(t + "_" + (n - 2)));
+		}
+		checkConsistency(graph);
+	}
+
+	@Test
+	public void testConcurrentRemovals() throws Throwable {
+		final Graph graph = new ConcurrentGraph("cg", false, false);
+		final int n = 200;
+
+		for (int i = 0; i < n; i++)
+			graph.addNode(String.valueOf(i));
+		for (int i = 0; i < n; i++)
+			for (int j = 1; j <= 3; j++)
+				graph.addEdge(i + "-" + j, String.valueOf(i),
+						String.valueOf((i + j) % n));
+
+		// half of the threads remove the odd nodes while the others try to
+		// connect random nodes
+		runConcurrently(THREADS, new Task() {
+			public void run(int thread) {
+				if (thread % 2 == 0) {
+					for (int i = 1 + thread; i < n; i += THREADS)
+						graph.removeNode(String.valueOf(i));
+				} else {
+					Random random = new Random(thread);
+					for (int i = 0; i < 2 * n; i++)
+						graph.addEdge(thread + ":" + i,
+								String.valueOf(random.nextInt(n)),
+								String.valueOf(random.nextInt(n)));
+				}
+			}
+		});
+
+		for (int i = 1; i < n; i += 2)
+			assertNull(graph.getNode(String.valueOf(i)));
+		assertEquals(n / 2, graph.getNodeCount());
+		for (Edge e : graph.getEachEdge()) {
+			assertTrue(Integer.valueOf(e.getNode0().getId()) % 2 == 0);
+			assertTrue(Integer.valueOf(e.getNode1().getId()) % 2 == 0);
+		}
+		checkConsistency(graph);
+	}
+
+	@Test
+	public void testConcurrentEvents() throws Throwable {
+		final Graph graph = new ConcurrentGraph("cg");
+		// the mirror is strict, so events sent in the wrong order make it
+		// throw
+		Graph mirror = new AdjacencyListGraph("mirror");
+		graph.addSink(mirror);
+		final int n = 300;
+
+		for (int i = 0; i < n; i++)
+			graph.addNode("shared" + i);
+
+		runConcurrently(THREADS, new Task() {
+			public void run(int thread) {
+				Random random = new Random(thread);
+				for (int i = 0; i < n; i++) {
+					String id = thread + "_" + i;
+					graph.addNode(id);
+					graph.addEdge(id, id, "shared" + random.nextInt(n));
+					graph.getNode("shared" + random.nextInt(n)).addAttribute(
+							"last", thread, i);
+					graph.getEdge(id).addAttribute("weight", i);
+					if (i % 3 == 0)
+						graph.removeNode(id);
+				}
+			}
+		});
+
+		assertEquals(graph.getNodeCount(), mirror.getNodeCount());
+		assertEquals(graph.getEdgeCount(), mirror.getEdgeCount());
+		for (Node node : graph) {
+			Node copy = mirror.getNode(node.getId());
+			assertNotNull(copy);
+			assertEquals(node.getDegree(), copy.getDegree());
+			if (node.hasAttribute("last"))
+				assertTrue(Arrays.equals(
+						(Object[]) node.getAttribute("last"),
+						(Object[]) copy.getAttribute("last")));
+		}
+		for (Edge edge : graph.getEachEdge())
+			assertEquals(edge.getAttribute("weight"),
+					mirror.getEdge(edge.getId()).getAttribute("weight"));
+	}
+
+	@Test(timeout = 60000)
+	public void testSinkChangingTheGraph() throws Throwable {
+		final Graph graph = new ConcurrentGraph("cg");
+		final int n = 20000;
+
+		graph.addNode("0");
+		graph.addNode("1");
+
+		// each change of "x" is written back as "y" on the node of the other
+		// thread, whose stripe that thread is likely to hold
+		graph.addSink(new SinkAdapter() {
+			@Override
+			public void nodeAttributeAdded(String sourceId, long timeId,
+					String nodeId, String attribute, Object value) {
+				if (attribute.equals("x"))
+					graph.getNode(nodeId.equals("0") ? "1" : "0")
+							.addAttribute("y", value);
+			}
+
+			@Override
+			public void nodeAttributeChanged(String sourceId, long timeId,
+					String nodeId, String attribute, Object oldValue,
+					Object newValue) {
+				nodeAttributeAdded(sourceId, timeId, nodeId, attribute,
+						newValue);
+			}
+		});
+
+		runConcurrently(2, new Task() {
+			public void run(int thread) {
+				Node node = graph.getNode(String.valueOf(thread));
+				for (int i = 0; i < n; i++)
+					node.addAttribute("x", thread * n + i);
+			}
+		});
+
+		assertEquals(2 * n - 1, graph.getNode("0").getAttribute("y"));
+		assertEquals(n - 1, graph.getNode("1").getAttribute("y"));
+	}
+
+	@Test
+	public void testConcurrentVersions() throws Throwable {
+		final ConcurrentGraph graph = new ConcurrentGraph("cg");
+		final int n = 100;
+
+		for (int t = 0; t < THREADS; t++)
+			for (int i = 0; i < n; i++)
+				graph.addNode(t + "_" + i);
+		Graph before = graph.snapshot();
+		assertSame(before, graph.snapshot());
+
+		// every change must be seen by the next snapshot, whatever the
+		// stripes the threads hold
+		runConcurrently(THREADS, new Task() {
+			public void run(int thread) {
+				for (int i = 0; i < n; i++) {
+					graph.getNode(thread + "_" + i).addAttribute("i", i);
+					if (i > 0)
+						graph.addEdge(thread + "_" + i, thread + "_" + (i - 1),
+								thread + "_" + i);
+					if (i % 10 == 9)
+						graph.removeNode(thread + "_" + (i - 5));
+				}
+			}
+		});
+
+		Graph after = graph.snapshot();
+		assertNotSame(before, after);
+		assertSame(after, graph.snapshot());
+		assertEquals(graph.getNodeCount(), after.getNodeCount());
+		assertEquals(graph.getEdgeCount(), after.getEdgeCount());
+		for (Node node : graph)
+			assertEquals(node.getAttribute("i"),
+					after.getNode(node.getId()).getAttribute("i"));
+		checkConsistency(graph);
+
+		graph.getNode("0_0").addAttribute("i", -1);
+		assertEquals(-1, graph.snapshot().getNode("0_0").getAttribute("i"));
+	}
+}
@@ -35,7 +35,10 @@ import org.graphstream.graph.CompoundAttribute;
 import org.graphstream.graph.Graph;
 import org.graphstream.graph.Node;
 import org.graphstream.graph.NullAttributeException;
+import org.graphstream.graph.implementations.AttributeColumn;
 import org.graphstream.graph.implementations.MultiGraph;
+import org.graphstream.graph.implementations.SingleGraph;
+import org.graphstream.stream.SinkAdapter;
 import org.junit.Test;
 
 import java.util.ArrayList;
@@ -48,6 +51,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class TestElement {
 	@Test(expected=NullAttributeException.class)
@@ -355,6 +359,185 @@ public class TestElement {
 		assertTrue(keys.contains("C"));
 	}
 
+	@Test
+	public void testElementManyAttributes() {
+		Graph graph = new MultiGraph("g1");
+
+		Node A = graph.addNode("A");
+		Node B = graph.addNode("B");
+
+		// Go past the number of attributes stored inline and back.
+
+		for (int i = 0; i < 20; i++)
+			A.addAttribute("key" + i, i);
+
+		assertEquals(20, A.getAttributeCount());
+
+		for (int i = 0; i < 20; i++) {
+			assertTrue(A.hasAttribute("key" + i));
+			assertEquals(i, A.getAttribute("key" + i));
+		}
+
+		for (int i = 0; i < 20; i += 2)
+			assertTrue(A.removeAttribute("key" + i));
+
+		assertEquals(10, A.getAttributeCount());
+		assertFalse(A.hasAttribute("key0"));
+		assertEquals(19, A.getAttribute("key19"));
+
+		// Keys are shared between the elements of a graph.
+
+		B.addAttribute(new String("key1"), 1);
+
+		String keyA = null, keyB = null;
+		for (String key : A.getAttributeKeySet())
+			if (key.equals("key1"))
+				keyA = key;
+		for (String key : B.getAttributeKeySet())
+			keyB = key;
+
+		assertTrue(keyA == keyB);
+
+		// Clearing releases the storage but the element stays usable.
+
+		A.clearAttributes();
+
+		assertEquals(0, A.getAttributeCount());
+		assertFalse(A.hasAttribute("key1"));
+		assertFalse(A.getAttributeKeyIterator().hasNext());
+
+		A.addAttribute("foo", "bar");
+		assertEquals("bar", A.getAttribute("foo"));
+	}
+
+	@Test
+	public void testElementAttributeOrder() {
+		Graph graph = new MultiGraph("g1");
+		Node A = graph.addNode("A");
+
+		// Keys are iterated in their natural order, inline and past the
+		// inline storage.
+
+		String[] keys = { "d", "b", "f", "a", "c", "e" };
+		for (String key : keys)
+			A.addAttribute(key, key);
+		assertEquals("[a, b, c, d, e, f]", A.getAttributeKeySet().toString());
+
+		A.removeAttribute("c");
+		A.addAttribute("c0", 1);
+		assertEquals("[a, b, c0, d, e, f]", A.getAttributeKeySet().toString());
+
+		for (int i = 30; i >= 10; i--)
+			A.addAttribute("k" + i, i);
+		String previous = "";
+		int count = 0;
+		for (String key : A.getAttributeKeySet()) {
+			assertTrue(previous.compareTo(key) < 0);
+			previous = key;
+			count++;
+		}
+		assertEquals(27, count);
+		assertFalse(A.hasAttribute(null));
+	}
+
+	@Test
+	public void testElementColumnAttributes() {
+		SingleGraph graph = new SingleGraph("g1");
+		Node A = graph.addNode("A");
+		Node B = graph.addNode("B");
+		Node C = graph.addNode("C");
+
+		A.addAttribute("weight", 1.5);
+		A.addAttribute("label", "a");
+
+		// Existing values are moved into the column.
+
+		AttributeColumn weight = graph.declareNodeColumn("weight",
+				AttributeColumn.Type.DOUBLE);
+
+		assertTrue(weight == graph.getNodeColumn("weight"));
+		assertTrue(weight == graph.declareNodeColumn("weight",
+				AttributeColumn.Type.DOUBLE));
+		assertEquals(1.5, weight.getDouble(A), 0);
+		assertEquals(1.5, A.getDouble("weight"), 0);
+		assertEquals(1.5, A.getAttribute("weight"));
+		assertEquals(2, A.getAttributeCount());
+		assertTrue(A.getAttributeKeySet().contains("weight"));
+		assertTrue(A.getAttributeKeySet().contains("label"));
+		assertFalse(B.hasAttribute("weight"));
+
+		// Changes go through the column and are still sent to sinks.
+
+		final int[] events = new int[2];
+		graph.addSink(new SinkAdapter() {
+			public void nodeAttributeAdded(String sourceId, long timeId,
+					String nodeId, String attribute, Object value) {
+				events[0]++;
+			}
+
+			public void nodeAttributeChanged(String sourceId, long timeId,
+					String nodeId, String attribute, Object oldValue,
+					Object newValue) {
+				events[1]++;
+			}
+		});
+
+		B.addAttribute("weight", 2);
+		weight.set(C, 3.0);
+		weight.set(C, 3.0);
+		weight.set(A, 4.0);
+
+		assertEquals(2, events[0]);
+		assertEquals(1, events[1]);
+		assertEquals(2.0, B.getAttribute("weight"));
+		assertEquals(3.0, C.getDouble("weight"), 0);
+
+		// Removing an element moves the last value into its slot.
+
+		graph.removeNode(A);
+
+		assertEquals(3.0, weight.getDouble(C), 0);
+		assertEquals(2.0, weight.getDouble(B), 0);
+		assertFalse(A.hasAttribute("weight"));
+
+		C.removeAttribute("weight");
+		assertFalse(C.hasAttribute("weight"));
+		assertEquals(0, C.getAttributeCount());
+
+		// Only numbers can be stored.
+
+		try {
+			B.addAttribute("weight", "heavy");
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertEquals(2.0, B.getDouble("weight"), 0);
+		}
+
+		// Only the live elements of the graph can be changed through the
+		// column.
+
+		SingleGraph other = new SingleGraph("g2");
+		other.declareNodeColumn("weight", AttributeColumn.Type.DOUBLE);
+		Node stranger = other.addNode("X");
+		assertEquals(C.getIndex(), stranger.getIndex());
+		Node copy = graph.snapshot().getNode("B");
+
+		for (Node n : new Node[] { A, stranger, copy }) {
+			try {
+				weight.set(n, 10.0);
+				fail();
+			} catch (IllegalArgumentException e) {
+			}
+			try {
+				weight.set(n, 10L);
+				fail();
+			} catch (IllegalArgumentException e) {
+			}
+		}
+		assertEquals(2.0, B.getDouble("weight"), 0);
+		assertFalse(stranger.hasAttribute("weight"));
+	}
+
 	@Test
 	public void testNullAttributes() {
 		Graph graph = new MultiGraph("g1");
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2006 - 2013
+ *     Stefan Balev     <stefan.balev@graphstream-project.org>
+ *     Julien Baudry    <julien.baudry@graphstream-project.org>
+ *     Antoine Dutot    <antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné      <yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin   <guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.graph.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.graphstream.graph.ElementMap;
+import org.graphstream.graph.implementations.AbstractElement;
+import org.junit.Test;
+
+public class TestElementMap {
+	/**
+	 * An element without graph, as stored in the map.
+	 */
+	static class Item extends AbstractElement {
+		Item(String id) {
+			super(id);
+		}
+
+		@Override
+		protected boolean nullAttributesAreErrors() {
+			return false;
+		}
+
+		@Override
+		protected void attributeChanged(AttributeChangeEvent event,
+				String attribute, Object oldValue, Object newValue) {
+		}
+	}
+
+	@Test
+	public void testBasic() {
+		ElementMap<Item> map = new ElementMap<Item>();
+		assertEquals(0, map.size());
+		assertNull(map.get("A"));
+		assertFalse(map.iterator().hasNext());
+
+		Item b = new Item("B");
+		assertTrue(map.add(b));
+		assertTrue(map.add(new Item("C")));
+		assertTrue(map.add(new Item("A")));
+		assertFalse(map.add(new Item("B")));
+		assertFalse(map.add(null));
+		assertEquals(3, map.size());
+		assertSame(b, map.get("B"));
+		assertSame(b, map.get(1));
+		assertEquals("A", map.get(0).getId());
+		assertEquals("C", map.get(2).getId());
+
+		try {
+			map.get(3);
+			fail();
+		} catch (IndexOutOfBoundsException e) {
+			// expected
+		}
+
+		assertTrue(map.remove(b));
+		assertFalse(map.remove("B"));
+		assertTrue(map.remove(0));
+		assertEquals(1, map.size());
+		assertEquals("C", map.get(0).getId());
+
+		map.clear();
+		assertEquals(0, map.size());
+		assertNull(map.get("C"));
+	}
+
+	/**
+	 * Random insertions and removals checked against a tree map, with enough
+	 * elements to build several levels of nodes.
+	 */
+	@Test
+	public void testRandom() {
+		ElementMap<Item> map = new ElementMap<Item>();
+		TreeMap<String, Item> reference = new TreeMap<String, Item>();
+		Random random = new Random(11);
+
+		for (int round = 0; round < 4; round++) {
+			// grow, then shrink most of the map
+			for (int i = 0; i < 40000; i++) {
+				String id = Integer.toString(random.nextInt(60000));
+				Item item = new Item(id);
+				assertEquals(!reference.containsKey(id), map.add(item));
+				if (!reference.containsKey(id))
+					reference.put(id, item);
+			}
+			check(map, reference);
+
+			for (int i = 0; i < 50000; i++) {
+				String id = Integer.toString(random.nextInt(60000));
+				assertEquals(reference.remove(id) != null,
+						random.nextBoolean() ? map.remove(id) : map
+								.remove(new Item(id)));
+			}
+			check(map, reference);
+
+			for (int i = 0; i < 1000 && map.size() > 0; i++) {
+				int index = random.nextInt(map.size());
+				String id = map.get(index).getId();
+				assertTrue(map.remove(index));
+				reference.remove(id);
+			}
+			check(map, reference);
+		}
+
+		// remove everything through the iterator
+		Iterator<Item> it = map.iterator();
+		while (it.hasNext()) {
+			Item item = it.next();
+			if (random.nextBoolean()) {
+				it.remove();
+				reference.remove(item.getId());
+			}
+		}
+		check(map, reference);
+		it = map.iterator();
+		while (it.hasNext()) {
+			it.next();
+			it.remove();
+		}
+		assertEquals(0, map.size());
+		assertFalse(map.iterator().hasNext());
+	}
+
+	@Test
+	public void testConcurrentModification() {
+		ElementMap<Item> map = new ElementMap<Item>();
+		for (int i = 0; i < 100; i++)
+			map.add(new Item("n" + i));
+		try {
+			for (Item item : map)
+				map.remove(item);
+			fail();
+		} catch (ConcurrentModificationException e) {
+			// expected
+		}
+	}
+
+	protected void check(ElementMap<Item> map, TreeMap<String, Item> reference) {
+		assertEquals(reference.size(), map.size());
+
+		ArrayList<String> ids = new ArrayList<String>(reference.keySet());
+		int i = 0;
+		for (Item item : map) {
+			assertEquals(ids.get(i), item.getId());
+			assertSame(reference.get(item.getId()), item);
+			i++;
+		}
+		assertEquals(ids.size(), i);
+
+		Random random = new Random(i);
+		for (int k = 0; k < 200 && !ids.isEmpty(); k++) {
+			int index = random.nextInt(ids.size());
+			assertEquals(ids.get(index), map.get(index).getId());
+			assertSame(reference.get(ids.get(index)), map.get(ids.get(index)));
+		}
+		for (int k = 0; k < 200; k++) {
+			String id = Integer.toString(random.nextInt(60000));
+			assertSame(reference.get(id), map.get(id));
+		}
+	}
+}
@@ -34,22 +34,57 @@ package org.graphstream.graph.test;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
+import org.graphstream.graph.BreadthFirstIterator;
+import org.graphstream.graph.DepthFirstIterator;
 import org.graphstream.graph.Edge;
+import org.graphstream.graph.EdgeRejectedException;
 import org.graphstream.graph.Element;
+import org.graphstream.graph.ElementNotFoundException;
 import org.graphstream.graph.Graph;
+import org.graphstream.graph.IdAlreadyInUseException;
+import org.graphstream.graph.IndexConsumer;
 import org.graphstream.graph.Node;
+import org.graphstream.graph.ParallelBreadthFirstSearch;
+import org.graphstream.graph.TraversalContext;
+import org.graphstream.graph.implementations.AbstractEdge;
 import org.graphstream.graph.implementations.AbstractGraph;
+import org.graphstream.graph.implementations.AbstractNode;
 import org.graphstream.graph.implementations.AdjacencyListGraph;
+import org.graphstream.graph.implementations.AdjacencyListGraph.IdIndexType;
+import org.graphstream.graph.implementations.AttributeColumn;
+import org.graphstream.graph.implementations.CompactGraph;
+import org.graphstream.graph.implementations.ConcurrentGraph;
+import org.graphstream.graph.implementations.FilteredGraph;
+import org.graphstream.graph.implementations.Graphs;
+import org.graphstream.graph.implementations.MappedGraph;
 import org.graphstream.graph.implementations.MultiGraph;
 import org.graphstream.graph.implementations.MultiNode;
 import org.graphstream.graph.implementations.SingleGraph;
+import org.graphstream.stream.BatchSink;
+import org.graphstream.stream.EventBatch;
 import org.graphstream.stream.Replayable;
+import org.graphstream.stream.SinkAdapter;
+import org.graphstream.util.Filter;
+import org.graphstream.util.Filters;
 import org.junit.Test;
 
 public class TestGraph {
@@ -59,6 +94,7 @@ public class TestGraph {
 		testBasic(new MultiGraph("mg"));
 		testBasic(new AdjacencyListGraph("alg"));
 		testBasic(new AdjacencyListGraph("AL")); // XXX
+		testBasic(new ConcurrentGraph("CG"));
 		testBasic(new SingleGraph("S")); // XXX
 		testBasic(new MultiGraph("M")); // XXX
 	}
@@ -254,6 +290,7 @@ public class TestGraph {
 		testDirected(new MultiGraph("mg"));
 		// testDirected( new AdjacencyListGraph( "alg" ) );
 		testDirected(new AdjacencyListGraph("AL")); // XXX
+		testDirected(new ConcurrentGraph("CG"));
 		testDirected(new SingleGraph("S")); // XXX
 		testDirected(new MultiGraph("M")); // XXX
 	}
@@ -389,6 +426,57 @@ public class TestGraph {
 		assertEquals(4, A.getDegree());
 	}
 
+	@Test
+	public void testMultiParallelEdges() {
+		MultiGraph graph = new MultiGraph("g");
+		MultiNode A = graph.addNode("A");
+		graph.addNode("X");
+		MultiNode B = graph.addNode("B");
+		MultiNode C = graph.addNode("C");
+
+		graph.addEdge("AB1", "A", "B", true);
+		graph.addEdge("BA1", "B", "A", true);
+		graph.addEdge("AB2", "A", "B", true);
+		graph.addEdge("AB3", "A", "B", false);
+		graph.addEdge("AC1", "A", "C", true);
+		graph.addEdge("AA1", "A", "A", true);
+
+		Collection<Edge> between = A.getEdgeSetBetween(B);
+		assertEquals(4, between.size());
+		Iterator<Edge> it = between.iterator();
+		assertEquals("AB1", it.next().getId());
+		assertEquals("BA1", it.next().getId());
+		assertEquals(between, B.getEdgeSetBetween(A));
+		assertEquals(1, A.getEdgeSetBetween("A").size());
+		assertEquals("BA1", A.getEdgeFrom(B).getId());
+		assertEquals("AB1", A.getEdgeToward(B).getId());
+		assertNull(C.getEdgeToward(A));
+
+		HashSet<Node> neighbors = new HashSet<Node>();
+		Iterator<Node> nit = A.getNeighborNodeIterator();
+		while (nit.hasNext())
+			neighbors.add(nit.next());
+		assertEquals(3, neighbors.size());
+		assertTrue(neighbors.contains(B) && neighbors.contains(C));
+
+		// the order of the remaining edges is kept
+		graph.removeEdge("AB1");
+		graph.removeEdge("BA1");
+		assertEquals("AB2", A.getEdgeSetBetween(B).iterator().next().getId());
+		assertEquals("AB3", A.getEdgeFrom(B).getId());
+
+		// removing X moves C to its index
+		graph.removeNode("X");
+		assertEquals("AC1", A.getEdgeToward(C).getId());
+		assertEquals(1, A.getEdgeSetBetween(C).size());
+		assertEquals(2, A.getEdgeSetBetween(B).size());
+		assertTrue(A.getEdgeSetBetween(new MultiGraph("h").addNode("B")).isEmpty());
+
+		graph.removeNode("B");
+		assertTrue(A.getEdgeSetBetween("C").size() == 1);
+		assertEquals(2, A.getDegree());
+	}
+
 	@Test
 	public void testSingle() {
 		SingleGraph graph = new SingleGraph("g");
@@ -414,6 +502,7 @@ public class TestGraph {
 		testIterables(new MultiGraph("mg"));
 		// testIterables( new AdjacencyListGraph( "alg" ) );
 		testIterables(new AdjacencyListGraph("AL")); // XXX
+		testIterables(new ConcurrentGraph("CG"));
 		testIterables(new SingleGraph("S")); // XXX
 		testIterables(new MultiGraph("M")); // XXX
 	}
@@ -557,6 +646,7 @@ public class TestGraph {
 		testRemoval(new MultiGraph("mg"));
 		// testRemoval( new AdjacencyListGraph( "alg" ) );
 		testRemoval(new AdjacencyListGraph("AL")); // XXX
+		testRemoval(new ConcurrentGraph("CG"));
 		testRemoval(new SingleGraph("S")); // XXX
 		testRemoval(new MultiGraph("M")); // XXX
 	}
@@ -659,12 +749,1380 @@ public class TestGraph {
 		assertEquals(0, graph.getEdgeCount());
 	}
 
+	@Test
+	public void testHubRemoval() {
+		testHubRemoval(new SingleGraph("sg1"), new SingleGraph("sg2"),
+				new SingleGraph("sg3"));
+		testHubRemoval(new MultiGraph("mg1"), new MultiGraph("mg2"),
+				new MultiGraph("mg3"));
+		testHubRemoval(new AdjacencyListGraph("al1"), new AdjacencyListGraph(
+				"al2"), new AdjacencyListGraph("al3"));
+	}
+
+	/**
+	 * Removes hubs from a graph, and the same hubs from a copy after removing
+	 * their edges one by one, checking that the sinks receive the same events
+	 * and that both graphs end the same. A third graph, without sink, must
+	 * end the same too.
+	 */
+	public void testHubRemoval(final Graph graph, Graph reference, Graph quiet) {
+		boolean multi = graph instanceof MultiGraph;
+		for (Graph g : new Graph[] { graph, reference, quiet }) {
+			Random random = new Random(42);
+			int n = 300;
+			for (int i = 0; i < n; i++)
+				g.addNode("n" + i);
+			for (int i = 0; i < 6 * n; i++) {
+				int from = random.nextInt(n), to = random.nextInt(n);
+				// the first nodes are hubs, having parallel edges in
+				// multigraphs
+				if (random.nextBoolean())
+					from = random.nextInt(multi ? 3 : 10);
+				if (random.nextInt(4) == 0)
+					to = random.nextInt(multi ? 3 : 10);
+				try {
+					g.addEdge("e" + i, from, to, random.nextBoolean());
+				} catch (IdAlreadyInUseException e) {
+				} catch (EdgeRejectedException e) {
+				}
+			}
+		}
+
+		final ArrayList<String> events = new ArrayList<String>();
+		final ArrayList<String> batched = new ArrayList<String>();
+		final ArrayList<String> expected = new ArrayList<String>();
+		final int[] batches = new int[1];
+		graph.addSink(new SinkAdapter() {
+			@Override
+			public void edgeRemoved(String sourceId, long timeId, String edgeId) {
+				// the edges are removed after all of them were announced
+				assertNotNull(graph.getEdge(edgeId));
+				events.add(edgeId);
+			}
+
+			@Override
+			public void nodeRemoved(String sourceId, long timeId, String nodeId) {
+				events.add(nodeId);
+			}
+		});
+		class BatchRecorder extends SinkAdapter implements BatchSink {
+			@Override
+			public void eventBatch(EventBatch batch) {
+				batches[0]++;
+				batch.replay(this);
+			}
+
+			@Override
+			public void edgeRemoved(String sourceId, long timeId, String edgeId) {
+				batched.add(edgeId);
+			}
+
+			@Override
+			public void nodeRemoved(String sourceId, long timeId, String nodeId) {
+				batched.add(nodeId);
+			}
+		}
+		graph.addSink(new BatchRecorder());
+		reference.addSink(new SinkAdapter() {
+			@Override
+			public void edgeRemoved(String sourceId, long timeId, String edgeId) {
+				expected.add(edgeId);
+			}
+
+			@Override
+			public void nodeRemoved(String sourceId, long timeId, String nodeId) {
+				expected.add(nodeId);
+			}
+		});
+
+		for (int h = 0; h < 5; h++) {
+			graph.removeNode("n" + h);
+			Iterator<Edge> it = reference.getNode("n" + h).getEdgeIterator();
+			while (it.hasNext()) {
+				it.next();
+				it.remove();
+			}
+			reference.removeNode("n" + h);
+			quiet.removeNode("n" + h);
+		}
+		assertEquals(expected, events);
+		assertEquals(expected, batched);
+		// one batch for the edges of each hub
+		assertEquals(5, batches[0]);
+
+		for (Graph g : new Graph[] { graph, quiet })
+			assertSameStructure(reference, g);
+
+		// the remaining nodes can be linked again
+		graph.addNode("new");
+		graph.addEdge("new", "n5", "new");
+		assertNotNull(graph.getNode("n5").getEdgeBetween("new"));
+	}
+
+	protected void assertSameStructure(Graph reference, Graph graph) {
+		assertEquals(reference.getEdgeCount(), graph.getEdgeCount());
+		for (Edge e : reference.getEachEdge())
+			assertEquals(e.getIndex(), graph.getEdge(e.getId()).getIndex());
+		for (Node n : reference) {
+			Node m = graph.getNode(n.getId());
+			assertEquals(n.getIndex(), m.getIndex());
+			assertEquals(n.getInDegree(), m.getInDegree());
+			assertEquals(n.getOutDegree(), m.getOutDegree());
+			HashSet<String> ids = new HashSet<String>();
+			for (Edge e : n.getEachEdge())
+				ids.add(e.getId());
+			for (Edge e : m.getEachEdge())
+				assertTrue(ids.remove(e.getId()));
+			for (Node o : reference)
+				assertEquals(n.getEdgeToward(o.getId()) != null,
+						m.getEdgeToward(o.getId()) != null);
+		}
+	}
+
+	@Test
+	public void testRemovalOverride() {
+		// a subclass overriding the removal of edges sees the edges of the
+		// removed nodes
+		final ArrayList<String> removed = new ArrayList<String>();
+		SingleGraph graph = new SingleGraph("sg") {
+			@Override
+			protected void removeEdge(AbstractEdge edge,
+					boolean graphCallback, boolean sourceCallback,
+					boolean targetCallback) {
+				removed.add(edge.getId());
+				super.removeEdge(edge, graphCallback, sourceCallback,
+						targetCallback);
+			}
+		};
+		graph.addNode("A");
+		graph.addNode("B");
+		graph.addNode("C");
+		graph.addEdge("AB", "A", "B");
+		graph.addEdge("AC", "A", "C");
+		graph.addEdge("BC", "B", "C");
+		graph.removeNode("A");
+		assertEquals(2, removed.size());
+		assertTrue(removed.containsAll(Arrays.asList("AB", "AC")));
+		assertEquals(1, graph.getEdgeCount());
+		assertEquals(1, graph.getNode("B").getDegree());
+	}
+
+	@Test
+	public void testIdIndex() {
+		testIdIndex(new AdjacencyListGraph("alg"));
+		testIdIndex(new SingleGraph("sg"));
+		testIdIndex(new MultiGraph("mg"));
+		for (IdIndexType type : IdIndexType.values())
+			testIdIndex(new MapGraph(type));
+	}
+
+	/**
+	 * Checks that the protected maps of elements are usable by subclasses
+	 * whatever the index.
+	 */
+	static class MapGraph extends AdjacencyListGraph {
+		MapGraph(IdIndexType type) {
+			super("map-" + type, true, false, 0, 0, type);
+		}
+
+		@Override
+		protected void clearCallback() {
+			super.clearCallback();
+			assertTrue(nodeMap.isEmpty());
+			assertTrue(edgeMap.isEmpty());
+		}
+
+		void check() {
+			assertEquals(getNodeCount(), nodeMap.size());
+			assertEquals(getEdgeCount(), edgeMap.size());
+			for (Node node : getEachNode())
+				assertSame(node, nodeMap.get(node.getId()));
+			for (Edge edge : getEachEdge())
+				assertSame(edge, edgeMap.get(edge.getId()));
+			int count = 0;
+			for (Map.Entry<String, AbstractNode> entry : nodeMap.entrySet()) {
+				assertSame(getNode(entry.getKey()), entry.getValue());
+				count++;
+			}
+			assertEquals(getNodeCount(), count);
+			assertFalse(nodeMap.containsKey("unknown"));
+			assertNull(edgeMap.get("unknown"));
+		}
+	}
+
+	protected void testIdIndex(Graph graph) {
+		// Enough elements to force the index to grow, then remove some of them
+		// so that the last elements are moved in the freed slots.
+		int n = 1000;
+		for (int i = 0; i < n; i++)
+			graph.addNode("n" + i);
+		for (int i = 0; i < n; i++)
+			graph.addEdge("e" + i, "n" + i, "n" + ((i + 1) % n));
+
+		for (int i = 0; i < n; i += 3)
+			graph.removeNode("n" + i);
+		for (int i = 1; i < n; i += 7)
+			if (graph.getEdge("e" + i) != null)
+				graph.removeEdge("e" + i);
+
+		for (int i = 0; i < n; i++) {
+			Node node = graph.getNode("n" + i);
+			if (i % 3 == 0) {
+				assertNull(node);
+			} else {
+				assertNotNull(node);
+				assertEquals("n" + i, node.getId());
+				assertEquals(node, graph.getNode(node.getIndex()));
+			}
+		}
+
+		for (Edge e : graph.getEachEdge())
+			assertEquals(e, graph.getEdge(e.getId()));
+		for (int i = 1; i < n; i += 7)
+			assertNull(graph.getEdge("e" + i));
+		if (graph instanceof MapGraph)
+			((MapGraph) graph).check();
+
+		graph.clear();
+		assertNull(graph.getNode("n1"));
+		graph.addNode("n1");
+		assertNotNull(graph.getNode("n1"));
+	}
+
+	@Test
+	public void testCompact() {
+		Graph graph = new MultiGraph("mg");
+		graph.addNode("A");
+		graph.addNode("B");
+		graph.addNode("C");
+		graph.addNode("D");
+		graph.addEdge("AB", "A", "B", true);
+		graph.addEdge("CB", "C", "B", true);
+		graph.addEdge("BC", "B", "C", false);
+		graph.addEdge("BB", "B", "B", true);
+		graph.addEdge("BD", "B", "D", true);
+		graph.addEdge("BD2", "B", "D", true);
+		graph.getNode("B").addAttribute("label", "b");
+
+		CompactGraph compact = Graphs.compact(graph);
+
+		assertEquals(4, compact.getNodeCount());
+		assertEquals(6, compact.getEdgeCount());
+		assertEquals("b", compact.getNode("B").getAttribute("label"));
+
+		// same degrees, edges and partitions as the original graph
+		for (Node n : graph) {
+			Node c = compact.getNode(n.getId());
+			assertEquals(n.getIndex(), c.getIndex());
+			assertEquals(n.getDegree(), c.getDegree());
+			assertEquals(n.getInDegree(), c.getInDegree());
+			assertEquals(n.getOutDegree(), c.getOutDegree());
+
+			HashSet<String> edges = new HashSet<String>();
+			for (Edge e : n.getEachEdge())
+				edges.add(e.getId());
+			for (Edge e : c.getEachEdge())
+				assertTrue(edges.remove(e.getId()));
+			assertTrue(edges.isEmpty());
+
+			int k = c.getIndex();
+			for (int i = 0; i < c.getDegree(); i++) {
+				Edge e = c.getEdge(i);
+				assertEquals(e.getIndex(), compact.getEdgeIndex(k, i));
+				assertEquals(e.getOpposite(c).getIndex(),
+						compact.getNeighborIndex(k, i));
+			}
+			for (int i = 0; i < c.getInDegree(); i++)
+				assertEquals(c.getEnteringEdge(i).getOpposite(c).getIndex(),
+						compact.getEnteringNeighborIndex(k, i));
+			for (int i = 0; i < c.getOutDegree(); i++)
+				assertEquals(c.getLeavingEdge(i).getOpposite(c).getIndex(),
+						compact.getLeavingNeighborIndex(k, i));
+		}
+
+		Node b = compact.getNode("B");
+		assertEquals(6, b.getDegree());
+		assertEquals(4, b.getInDegree());
+		assertEquals(4, b.getOutDegree());
+		assertNotNull(b.getEdgeToward("D"));
+		assertNotNull(b.getEdgeFrom("A"));
+		assertNull(b.getEdgeToward("A"));
+		assertNotNull(b.getEdgeBetween("C"));
+		assertNull(compact.getNode("A").getEdgeBetween(graph.getNode("B")));
+
+		// the snapshot does not follow the original graph
+		graph.removeNode("B");
+		assertEquals(6, compact.getEdgeCount());
+
+		try {
+			compact.addNode("E");
+			fail();
+		} catch (UnsupportedOperationException e) {
+		}
+		try {
+			compact.removeEdge("AB");
+			fail();
+		} catch (UnsupportedOperationException e) {
+		}
+		assertEquals(4, compact.getNodeCount());
+		assertEquals(6, compact.getEdgeCount());
+	}
+
+	@Test
+	public void testMapped() throws IOException {
+		Graph graph = new MultiGraph("mg");
+		Random random = new Random(11);
+		for (int i = 0; i < 300; i++)
+			graph.addNode("n" + i).addAttribute("rank", i);
+		graph.getNode(0).addAttribute("label", "not stored");
+		graph.getNode(1).addAttribute("x", 0.5);
+		graph.getNode(2).addAttribute("x", 2);
+		for (int j = 0; j < 1500; j++) {
+			Edge e = graph.addEdge("e" + j, random.nextInt(300),
+					random.nextInt(300), random.nextBoolean());
+			if (j % 3 == 0)
+				e.addAttribute("weight", j / 3.0);
+		}
+		graph.addEdge("été", "n0", "n0");
+
+		File file = File.createTempFile("graph", ".gsm");
+		file.deleteOnExit();
+		MappedGraph.write(graph, file);
+		MappedGraph mapped = new MappedGraph(file);
+		CompactGraph compact = Graphs.compact(graph);
+
+		assertEquals("mg", mapped.getId());
+		assertEquals(300, mapped.getNodeCount());
+		assertEquals(1501, mapped.getEdgeCount());
+		assertNull(mapped.getNode("n300"));
+		assertNull(mapped.getEdge("e1501"));
+
+		// the same layout as a compact graph
+		for (Node n : compact) {
+			Node m = mapped.getNode(n.getId());
+			int k = n.getIndex();
+			assertEquals(k, m.getIndex());
+			assertEquals(m, mapped.getNode(k));
+			assertEquals(n.getDegree(), m.getDegree());
+			assertEquals(n.getInDegree(), m.getInDegree());
+			assertEquals(n.getOutDegree(), m.getOutDegree());
+			for (int i = 0; i < n.getDegree(); i++) {
+				Edge e = m.getEdge(i);
+				assertEquals(compact.getEdgeIndex(k, i), e.getIndex());
+				assertEquals(compact.getEdgeIndex(k, i),
+						mapped.getEdgeIndex(k, i));
+				assertEquals(compact.getNeighborIndex(k, i), e.getOpposite(m)
+						.getIndex());
+				assertEquals(compact.getNeighborIndex(k, i),
+						mapped.getNeighborIndex(k, i));
+			}
+			for (int i = 0; i < n.getInDegree(); i++)
+				assertEquals(n.getEnteringEdge(i).getId(), m
+						.getEnteringEdge(i).getId());
+			for (int i = 0; i < n.getOutDegree(); i++)
+				assertEquals(n.getLeavingEdge(i).getId(), m
+						.getLeavingEdge(i).getId());
+			assertEquals(Long.valueOf(k), m.getAttribute("rank"));
+		}
+		for (Edge e : graph.getEachEdge()) {
+			Edge m = mapped.getEdge(e.getId());
+			assertEquals(e.getIndex(), m.getIndex());
+			assertEquals(e.isDirected(), m.isDirected());
+			assertEquals(e.getSourceNode().getId(), m.getSourceNode().getId());
+			assertEquals(e.getTargetNode().getId(), m.getTargetNode().getId());
+			assertEquals(e.hasAttribute("weight"), m.hasAttribute("weight"));
+			if (e.hasAttribute("weight"))
+				assertEquals(e.getDouble("weight"), m.getDouble("weight"), 0);
+			assertEquals(m.getSourceNode(), m.getOpposite(m.getTargetNode()));
+		}
+
+		checkNeighborIndices(mapped);
+
+		Node n0 = mapped.getNode("n0");
+		Edge loop = mapped.getEdge("été");
+		assertTrue(loop.isLoop());
+		assertEquals(loop, n0.getEdgeBetween(n0));
+		assertFalse(n0.hasAttribute("label"));
+		assertEquals(1, n0.getAttributeCount());
+		assertEquals(0.5, mapped.getNode(1).getAttribute("x"));
+		assertEquals(2.0, mapped.getNode(2).getAttribute("x"));
+		assertEquals(Double.NaN, mapped.getNode(3).getDouble("x"), 0);
+		assertEquals(2, mapped.getNode(2).getAttributeKeySet().size());
+
+		// traversals see the same graph
+		BreadthFirstIterator<Node> b1 = new BreadthFirstIterator<Node>(
+				compact.getNode(5), true);
+		BreadthFirstIterator<Node> b2 = new BreadthFirstIterator<Node>(
+				mapped.getNode(5), true);
+		while (b1.hasNext())
+			assertEquals(b1.next().getId(), b2.next().getId());
+		assertFalse(b2.hasNext());
+
+		// nothing can be changed
+		try {
+			mapped.addNode("Z");
+			fail();
+		} catch (UnsupportedOperationException e) {
+		}
+		try {
+			mapped.removeNode("n1");
+			fail();
+		} catch (UnsupportedOperationException e) {
+		}
+		try {
+			n0.addAttribute("rank", 2);
+			fail();
+		} catch (UnsupportedOperationException e) {
+		}
+		mapped.addAttribute("title", "in memory");
+		assertEquals("in memory", mapped.getAttribute("title"));
+
+		// an empty graph and a file of another kind
+		MappedGraph.write(new AdjacencyListGraph("empty"), file);
+		assertEquals(0, new MappedGraph(file).getNodeCount());
+		new FileOutputStream(file).close();
+		try {
+			new MappedGraph(file);
+			fail();
+		} catch (IOException e) {
+		}
+	}
+
+	@Test
+	public void testMappedSource() throws IOException {
+		final Graph graph = new MultiGraph("streamed");
+		Random random = new Random(12);
+		for (int i = 0; i < 200; i++)
+			graph.addNode("n" + i);
+		for (int j = 0; j < 1000; j++)
+			graph.addEdge("e" + j, random.nextInt(200), random.nextInt(200),
+					random.nextBoolean());
+
+		// the edges read twice from arrays give the same file as the graph
+		final int[] sources = new int[1000], targets = new int[1000];
+		for (int j = 0; j < 1000; j++) {
+			sources[j] = graph.getEdge(j).getSourceNode().getIndex();
+			targets[j] = graph.getEdge(j).getTargetNode().getIndex();
+		}
+		class ArraySource implements MappedGraph.EdgeSource {
+			int j = -1, rewinds = 0;
+
+			@Override
+			public String getId() {
+				return "streamed";
+			}
+
+			@Override
+			public int getNodeCount() {
+				return 200;
+			}
+
+			@Override
+			public String getNodeId(int index) {
+				return "n" + index;
+			}
+
+			@Override
+			public void rewind() {
+				j = -1;
+				rewinds++;
+			}
+
+			@Override
+			public boolean nextEdge() {
+				return ++j < sources.length;
+			}
+
+			@Override
+			public String getEdgeId() {
+				return "e" + j;
+			}
+
+			@Override
+			public int getSourceIndex() {
+				return sources[j];
+			}
+
+			@Override
+			public int getTargetIndex() {
+				return targets[j];
+			}
+
+			@Override
+			public boolean isDirected() {
+				return graph.getEdge(j).isDirected();
+			}
+		}
+
+		File file = File.createTempFile("graph", ".gsm");
+		file.deleteOnExit();
+		File streamed = File.createTempFile("graph", ".gsm");
+		streamed.deleteOnExit();
+		MappedGraph.write(graph, file);
+		ArraySource source = new ArraySource();
+		MappedGraph.write(source, streamed);
+		assertEquals(2, source.rewinds);
+		assertTrue(Arrays.equals(Files.readAllBytes(file.toPath()),
+				Files.readAllBytes(streamed.toPath())));
+
+		MappedGraph mapped = new MappedGraph(streamed);
+		assertEquals(1000, mapped.getEdgeCount());
+		assertEquals(graph.getEdge("e42").getTargetNode().getIndex(), mapped
+				.getEdge("e42").getTargetNode().getIndex());
+		checkNeighborIndices(mapped);
+
+		// edges toward unknown nodes are rejected
+		targets[500] = 200;
+		try {
+			MappedGraph.write(new ArraySource(), streamed);
+			fail();
+		} catch (IOException e) {
+		}
+	}
+
+	@Test
+	public void testSnapshot() {
+		testSnapshot(new AdjacencyListGraph("alg"));
+		testSnapshot(new ConcurrentGraph("cg"));
+		testSnapshot(new MultiGraph("mg"));
+	}
+
+	protected void testSnapshot(AbstractGraph graph) {
+		graph.addAttribute("title", "live");
+		graph.addNode("A").addAttribute("label", "a");
+		graph.addNode("B");
+		graph.addNode("C");
+		graph.addEdge("AB", "A", "B", true).addAttribute("weight", 1);
+		graph.addEdge("BC", "B", "C");
+		if (graph instanceof AdjacencyListGraph)
+			((AdjacencyListGraph) graph).declareNodeColumn("x",
+					AttributeColumn.Type.DOUBLE);
+		graph.getNode("C").addAttribute("x", 3.5);
+
+		CompactGraph s1 = graph.snapshot();
+		assertSame(s1, graph.snapshot());
+		assertSame(s1, s1.snapshot());
+		assertEquals(3, s1.getNodeCount());
+		assertEquals(2, s1.getEdgeCount());
+		assertEquals("live", s1.getAttribute("title"));
+		assertEquals("a", s1.getNode("A").getAttribute("label"));
+		assertEquals(3.5, s1.getNode("C").getDouble("x"), 0);
+		assertEquals(1, s1.getEdge("AB").getAttribute("weight"));
+		assertNotNull(s1.getNode("A").getEdgeToward("B"));
+
+		// attribute changes are copied on write
+		graph.getNode("A").addAttribute("label", "a2");
+		graph.getNode("C").addAttribute("x", 4.5);
+		graph.getEdge("AB").clearAttributes();
+		graph.removeAttribute("title");
+		assertEquals("a", s1.getNode("A").getAttribute("label"));
+		assertEquals(3.5, s1.getNode("C").getDouble("x"), 0);
+		assertEquals(1, s1.getEdge("AB").getAttribute("weight"));
+		assertEquals("live", s1.getAttribute("title"));
+
+		CompactGraph s2 = graph.snapshot();
+		assertNotSame(s1, s2);
+		assertEquals("a2", s2.getNode("A").getAttribute("label"));
+		assertEquals(4.5, s2.getNode("C").getDouble("x"), 0);
+		assertFalse(s2.getEdge("AB").hasAttribute("weight"));
+		assertEquals(2, s2.getNode("B").getInDegree());
+		assertEquals("a2", graph.getNode("A").getAttribute("label"));
+
+		// structure changes
+		graph.removeNode("A");
+		graph.addEdge("CA", "C", graph.addNode("D").getId());
+		CompactGraph s3 = graph.snapshot();
+		assertEquals(3, s1.getNodeCount());
+		assertNotNull(s2.getNode("A"));
+		assertNull(s3.getNode("A"));
+		assertEquals(3, s3.getNodeCount());
+		assertEquals(2, s3.getEdgeCount());
+		assertEquals(2, s3.getNode("C").getDegree());
+
+		graph.clear();
+		assertEquals(3, s3.getNodeCount());
+		assertEquals(4.5, s3.getNode("C").getDouble("x"), 0);
+
+		// snapshots cannot be changed
+		try {
+			s2.getNode("A").addAttribute("label", "b");
+			fail();
+		} catch (UnsupportedOperationException e) {
+		}
+		try {
+			s2.getEdge("AB").clearAttributes();
+			fail();
+		} catch (UnsupportedOperationException e) {
+		}
+		try {
+			s2.addNode("Z");
+			fail();
+		} catch (UnsupportedOperationException e) {
+		}
+		assertEquals("a2", s2.getNode("A").getAttribute("label"));
+	}
+
+	@Test
+	public void testChunkedSnapshot() {
+		// several chunks of nodes and edges, changed a little between
+		// snapshots
+		MultiGraph graph = new MultiGraph("mg");
+		AttributeColumn x = graph.declareNodeColumn("x",
+				AttributeColumn.Type.DOUBLE);
+		Random random = new Random(5);
+		for (int i = 0; i < 20000; i++)
+			graph.addNode("n" + i).addAttribute("rank", i);
+		for (int j = 0; j < 30000; j++)
+			graph.addEdge("e" + j, random.nextInt(20000),
+					random.nextInt(20000), random.nextBoolean());
+
+		CompactGraph previous = null;
+		Graph previousCopy = null;
+		int next = 30000;
+
+		for (int round = 0; round < 20; round++) {
+			CompactGraph snapshot = graph.snapshot();
+			assertSameSnapshot(graph, snapshot);
+			if (previous != null)
+				assertSameSnapshot(previousCopy, previous);
+			previous = snapshot;
+			previousCopy = new CompactGraph(graph);
+
+			for (int i = 0; i < 3; i++) {
+				int n = graph.getNodeCount();
+				switch (random.nextInt(6)) {
+				case 0:
+					graph.removeNode(random.nextInt(n));
+					break;
+				case 1:
+					// identifiers of removed nodes are used again
+					String id = "n" + random.nextInt(20000);
+					if (graph.getNode(id) == null)
+						graph.addNode(id).addAttribute("rank", -round);
+					break;
+				case 2:
+					graph.addEdge("e" + next++, random.nextInt(n),
+							random.nextInt(n), random.nextBoolean());
+					break;
+				case 3:
+					graph.removeEdge(random.nextInt(graph.getEdgeCount()));
+					break;
+				case 4:
+					graph.getEdge(random.nextInt(graph.getEdgeCount()))
+							.setAttribute("weight", round);
+					break;
+				default:
+					Node node = graph.getNode(random.nextInt(n));
+					node.setAttribute("rank", round);
+					x.set(node, round);
+				}
+			}
+			assertSameSnapshot(previousCopy, previous);
+		}
+
+		graph.clear();
+		assertSameSnapshot(previousCopy, previous);
+		graph.addNode("A");
+		assertEquals(1, graph.snapshot().getNodeCount());
+		assertNull(graph.snapshot().getNode("n0"));
+	}
+
+	protected void assertSameSnapshot(Graph reference, CompactGraph snapshot) {
+		assertEquals(reference.getNodeCount(), snapshot.getNodeCount());
+		assertEquals(reference.getEdgeCount(), snapshot.getEdgeCount());
+		for (Edge e : reference.getEachEdge()) {
+			Edge f = snapshot.getEdge(e.getId());
+			assertEquals(e.getIndex(), f.getIndex());
+			assertSame(f, snapshot.getEdge(e.getIndex()));
+			assertEquals(e.getSourceNode().getId(), f.getSourceNode().getId());
+			assertEquals(e.getTargetNode().getId(), f.getTargetNode().getId());
+			assertEquals(e.isDirected(), f.isDirected());
+			assertEquals(e.getAttribute("weight"), f.getAttribute("weight"));
+		}
+		for (Node n : reference) {
+			Node m = snapshot.getNode(n.getId());
+			int k = n.getIndex();
+			assertEquals(k, m.getIndex());
+			assertSame(m, snapshot.getNode(k));
+			assertEquals(n.getAttribute("rank"), m.getAttribute("rank"));
+			assertEquals(n.getDouble("x"), m.getDouble("x"), 0);
+			assertEquals(n.getInDegree(), m.getInDegree());
+			assertEquals(n.getOutDegree(), m.getOutDegree());
+			HashSet<String> ids = new HashSet<String>();
+			for (Edge e : n.getEachEdge())
+				ids.add(e.getId());
+			for (int i = 0; i < m.getDegree(); i++) {
+				Edge e = m.getEdge(i);
+				assertTrue(ids.remove(e.getId()));
+				assertEquals(e.getIndex(), snapshot.getEdgeIndex(k, i));
+				assertEquals(e.getOpposite(m).getIndex(),
+						snapshot.getNeighborIndex(k, i));
+			}
+			assertTrue(ids.isEmpty());
+		}
+	}
+
+	@Test
+	public void testBulkLoad() {
+		testBulkLoad(new AdjacencyListGraph("alg"));
+		testBulkLoad(new ConcurrentGraph("cg"));
+		testBulkLoad(new SingleGraph("sg"));
+		testBulkLoad(new MultiGraph("mg"));
+	}
+
+	protected void testBulkLoad(AbstractGraph graph) {
+		Graph mirror = new MultiGraph("mirror");
+		graph.addSink(mirror);
+		graph.addNode("A");
+
+		int n = 1000;
+		String[] nodeIds = new String[n];
+		String[] edgeIds = new String[n];
+		String[] sources = new String[n];
+		String[] targets = new String[n];
+		boolean[] directed = new boolean[n];
+		for (int i = 0; i < n; i++) {
+			nodeIds[i] = "n" + i;
+			edgeIds[i] = "e" + i;
+			sources[i] = i == 0 ? "A" : "n" + i;
+			targets[i] = "n" + ((i + 1) % n);
+			directed[i] = i % 2 == 0;
+		}
+
+		graph.bulkLoad(nodeIds, edgeIds, sources, targets, directed);
+
+		assertEquals(n + 1, graph.getNodeCount());
+		assertEquals(n, graph.getEdgeCount());
+		assertEquals(2, graph.getNode("n1").getDegree());
+		assertTrue(graph.getEdge("e0").isDirected());
+		assertFalse(graph.getEdge("e1").isDirected());
+		assertEquals("A", graph.getEdge("e0").getSourceNode().getId());
+		assertNotNull(graph.getNode("n1").getEdgeFrom("A"));
+
+		// the sinks see the same graph
+		assertEquals(n + 1, mirror.getNodeCount());
+		assertEquals(n, mirror.getEdgeCount());
+		assertTrue(mirror.getEdge("e0").isDirected());
+
+		// strict checking and auto-creation are the same as for addEdge
+		try {
+			graph.bulkLoad(null, new String[] { "x" }, new String[] { "A" },
+					new String[] { "B" }, null);
+			fail();
+		} catch (ElementNotFoundException e) {
+		}
+		try {
+			graph.bulkLoad(new String[] { "A" }, null, null, null, null);
+			fail();
+		} catch (IdAlreadyInUseException e) {
+		}
+
+		graph.setStrict(false);
+		graph.setAutoCreate(true);
+		graph.bulkLoad(new String[] { "A" }, new String[] { "x", "e0" },
+				new String[] { "A", "n0" }, new String[] { "B", "n3" }, null);
+
+		assertEquals(n + 2, graph.getNodeCount());
+		assertEquals(n + 1, graph.getEdgeCount());
+		assertEquals("n1", graph.getEdge("e0").getTargetNode().getId());
+		assertEquals(n + 2, mirror.getNodeCount());
+		assertNotNull(mirror.getEdge("x"));
+	}
+
+	@Test
+	public void testCapacity() {
+		AdjacencyListGraph graph = new AdjacencyListGraph("alg");
+		graph.ensureCapacity(10000, 10000);
+		AbstractNode hub = graph.addNode("hub");
+		hub.ensureCapacity(5000);
+		for (int i = 0; i < 5000; i++) {
+			graph.addNode("n" + i);
+			graph.addEdge("e" + i, "hub", "n" + i);
+		}
+
+		graph.removeNode("n0");
+		graph.trimToSize();
+		assertEquals(5000, graph.getNodeCount());
+		assertEquals(4999, graph.getEdgeCount());
+		assertEquals(4999, graph.getNode("hub").getDegree());
+
+		// the graph grows again after trimming
+		graph.addNode("n0");
+		graph.addEdge("e0", "hub", "n0");
+		assertEquals(5000, graph.getNode("hub").getDegree());
+		assertNotNull(graph.getNode("hub").getEdgeBetween("n0"));
+
+		graph.clear();
+		graph.trimToSize();
+		graph.addNode("A");
+		assertEquals(1, graph.getNodeCount());
+	}
+
+	@Test
+	public void testNumericIds() {
+		testNumericIds(new AdjacencyListGraph("alg"));
+		testNumericIds(new SingleGraph("sg"));
+		testNumericIds(new MultiGraph("mg"));
+		testNumericIds(new ConcurrentGraph("cg"));
+	}
+
+	protected void testNumericIds(AbstractGraph graph) {
+		long[] ids = { 0, 7, -1, 42, 1000000007L, Long.MAX_VALUE,
+				Long.MIN_VALUE };
+		for (long id : ids)
+			graph.addNode(id);
+		assertEquals(ids.length, graph.getNodeCount());
+
+		for (long id : ids) {
+			Node node = graph.getNode(id);
+			assertNotNull(node);
+			assertSame(node, graph.getNode(Long.toString(id)));
+			assertEquals(Long.toString(id), node.getId());
+		}
+
+		// string and numeric identifiers designate the same nodes
+		graph.addNode("12");
+		assertSame(graph.getNode("12"), graph.getNode(12L));
+		graph.addNode(13L);
+		assertSame(graph.getNode(13L), graph.getNode("13"));
+		assertNull(graph.getNode(-12L));
+		assertNull(graph.getNode("013"));
+		assertNull(graph.getNode("-0"));
+		assertNull(graph.getNode(1L));
+
+		try {
+			graph.addNode(12L);
+			fail();
+		} catch (IdAlreadyInUseException e) {
+			// expected
+		}
+		try {
+			graph.addNode("13");
+			fail();
+		} catch (IdAlreadyInUseException e) {
+			// expected
+		}
+		graph.setStrict(false);
+		assertSame(graph.getNode(13L), graph.addNode(13L));
+		graph.setStrict(true);
+
+		// edges, events and removal
+		final ArrayList<String> added = new ArrayList<String>();
+		graph.addElementSink(new SinkAdapter() {
+			@Override
+			public void nodeAdded(String sourceId, long timeId, String nodeId) {
+				added.add(nodeId);
+			}
+		});
+		graph.addNode(-5L);
+		assertEquals(1, added.size());
+		assertEquals("-5", added.get(0));
+
+		graph.addEdge("e", "0", "-5");
+		assertTrue(graph.getNode(0L).hasEdgeBetween("-5"));
+		graph.removeNode(graph.getNode(0L));
+		graph.removeNode("7");
+		assertNull(graph.getNode(0L));
+		assertNull(graph.getNode(7L));
+		assertNull(graph.getEdge("e"));
+		for (long id : new long[] { -1, 42, 12, 13, -5, Long.MAX_VALUE,
+				Long.MIN_VALUE })
+			assertEquals(Long.toString(id), graph.getNode(id).getId());
+
+		Random random = new Random(7);
+		for (int i = 0; i < 1000; i++) {
+			long id = random.nextLong() >> random.nextInt(64);
+			if (graph.getNode(id) == null)
+				graph.addNode(id);
+			assertEquals(Long.toString(id), graph.getNode(Long.toString(id))
+					.getId());
+		}
+	}
+
+	@Test
+	public void testNumericIdsOverride() {
+		// a subclass overriding addNode(String) sees every node added
+		final ArrayList<String> added = new ArrayList<String>();
+		SingleGraph graph = new SingleGraph("sg") {
+			@Override
+			public <T extends Node> T addNode(String id) {
+				added.add(id);
+				return super.addNode(id);
+			}
+		};
+		graph.addNode(3L);
+		graph.addNode("4");
+		assertEquals(Arrays.asList("3", "4"), added);
+		assertSame(graph.getNode("3"), graph.getNode(3L));
+
+		// attribute events of numeric nodes carry their identifier
+		SingleGraph plain = new SingleGraph("plain");
+		Graph mirror = new MultiGraph("mirror");
+		Node node = plain.addNode(5L);
+		plain.addSink(mirror);
+		mirror.addNode("5");
+		node.addAttribute("label", "five");
+		assertEquals("five", mirror.getNode("5").getAttribute("label"));
+	}
+
+	@Test
+	public void testNeighborIndex() {
+		// hubs are above the neighbor index threshold of AdjacencyListNode
+		AdjacencyListGraph graph = new AdjacencyListGraph("alg");
+		Random random = new Random(42);
+		int n = 300;
+		for (int i = 0; i < n; i++)
+			graph.addNode("n" + i);
+		int e = 0;
+		for (int h = 0; h < 3; h++)
+			for (int i = 0; i < n; i++) {
+				boolean directed = random.nextBoolean();
+				if (random.nextBoolean())
+					graph.addEdge("e" + e++, "n" + h, "n" + i, directed);
+				else
+					graph.addEdge("e" + e++, "n" + i, "n" + h, directed);
+			}
+
+		checkEdgeLookup(graph);
+
+		// removing nodes moves other nodes and changes their indices
+		for (int i = 0; i < 100; i++) {
+			int k = 3 + random.nextInt(graph.getNodeCount() - 3);
+			graph.removeNode(k);
+		}
+		for (int i = 0; i < 200; i++)
+			graph.removeEdge(random.nextInt(graph.getEdgeCount()));
+
+		checkEdgeLookup(graph);
+
+		// down to a low degree the index is dropped
+		while (graph.getNode("n0").getDegree() > 5)
+			graph.removeEdge(graph.getNode("n0").getEdge(0));
+
+		checkEdgeLookup(graph);
+	}
+
+	@Test
+	public void testNeighborIndices() {
+		Graph[] graphs = { new AdjacencyListGraph("alg"),
+				new SingleGraph("sg"), new MultiGraph("mg"),
+				new ConcurrentGraph("cg") };
+		for (Graph graph : graphs) {
+			Random random = new Random(42);
+			int n = 50;
+			for (int i = 0; i < n; i++)
+				graph.addNode("n" + i);
+			for (int i = 0; i < 4 * n; i++)
+				try {
+					graph.addEdge("e" + i, random.nextInt(n),
+							random.nextInt(n), random.nextBoolean());
+				} catch (EdgeRejectedException e) {
+				}
+			checkNeighborIndices(graph);
+			checkNeighborIndices(Graphs.synchronizedGraph(graph));
+			checkNeighborIndices(new CompactGraph(graph));
+		}
+	}
+
+	protected void checkNeighborIndices(Graph graph) {
+		final ArrayList<Integer> given = new ArrayList<Integer>();
+		IndexConsumer collect = new IndexConsumer() {
+			public void accept(int index) {
+				given.add(index);
+			}
+		};
+		int[] buf = new int[2];
+		for (Node node : graph) {
+			ArrayList<Integer> all = new ArrayList<Integer>();
+			for (int i = 0; i < node.getDegree(); i++)
+				all.add(node.getEdge(i).getOpposite(node).getIndex());
+			ArrayList<Integer> entering = new ArrayList<Integer>();
+			for (int i = 0; i < node.getInDegree(); i++)
+				entering.add(node.getEnteringEdge(i).getOpposite(node)
+						.getIndex());
+			ArrayList<Integer> leaving = new ArrayList<Integer>();
+			for (int i = 0; i < node.getOutDegree(); i++)
+				leaving.add(node.getLeavingEdge(i).getOpposite(node)
+						.getIndex());
+
+			given.clear();
+			node.forEachNeighborIndex(collect);
+			assertEquals(all, given);
+			given.clear();
+			node.forEachEnteringNeighborIndex(collect);
+			assertEquals(entering, given);
+			given.clear();
+			node.forEachLeavingNeighborIndex(collect);
+			assertEquals(leaving, given);
+
+			// the buffer grows when too short
+			int count = node.neighborIndices(buf);
+			assertEquals(all.size(), count);
+			if (count > buf.length) {
+				buf = new int[count];
+				assertEquals(count, node.neighborIndices(buf));
+			}
+			for (int i = 0; i < count; i++)
+				assertEquals((int) all.get(i), buf[i]);
+
+			int[] exact = new int[node.getDegree()];
+			assertEquals(entering.size(), node.enteringNeighborIndices(exact));
+			for (int i = 0; i < entering.size(); i++)
+				assertEquals((int) entering.get(i), exact[i]);
+			assertEquals(leaving.size(), node.leavingNeighborIndices(exact));
+			for (int i = 0; i < leaving.size(); i++)
+				assertEquals((int) leaving.get(i), exact[i]);
+		}
+	}
+
+	protected void checkEdgeLookup(Graph graph) {
+		for (int h = 0; h < 3; h++) {
+			Node hub = graph.getNode("n" + h);
+			for (Node n : graph) {
+				boolean between = false, from = false, toward = false;
+				for (Edge edge : hub.getEachEdge()) {
+					if (edge.getOpposite(hub) != n)
+						continue;
+					between = true;
+					if (!edge.isDirected() || edge.getTargetNode() == hub)
+						from = true;
+					if (!edge.isDirected() || edge.getSourceNode() == hub)
+						toward = true;
+				}
+				assertEquals(between, hub.getEdgeBetween(n) != null);
+				assertEquals(from, hub.getEdgeFrom(n) != null);
+				assertEquals(toward, hub.getEdgeToward(n) != null);
+				if (toward)
+					assertEquals(n, hub.getEdgeToward(n).getOpposite(hub));
+			}
+		}
+	}
+
+	@Test
+	public void testTraversalContext() {
+		Graph graph = new AdjacencyListGraph("alg");
+		Random random = new Random(42);
+		int n = 200;
+		for (int i = 0; i < n; i++)
+			graph.addNode("n" + i);
+		for (int i = 0; i < 3 * n; i++)
+			graph.addEdge("e" + i, random.nextInt(n), random.nextInt(n),
+					random.nextBoolean());
+
+		// reused iterators see the same nodes at the same depths
+		TraversalContext context = new TraversalContext();
+		BreadthFirstIterator<Node> bfs = new BreadthFirstIterator<Node>(
+				context, graph.getNode(0), true);
+		DepthFirstIterator<Node> dfs = new DepthFirstIterator<Node>(context,
+				graph.getNode(0), false);
+		for (int i = 0; i < 20; i++) {
+			Node start = graph.getNode(random.nextInt(n));
+			BreadthFirstIterator<Node> freshBfs = new BreadthFirstIterator<Node>(
+					start, true);
+			bfs.reset(start);
+			while (freshBfs.hasNext()) {
+				Node node = freshBfs.next();
+				assertSame(node, bfs.next());
+				assertEquals(freshBfs.getDepthOf(node), bfs.getDepthOf(node));
+			}
+			assertFalse(bfs.hasNext());
+			assertEquals(freshBfs.getDepthMax(), bfs.getDepthMax());
+
+			DepthFirstIterator<Node> freshDfs = new DepthFirstIterator<Node>(
+					start, false);
+			dfs.reset(start);
+			while (freshDfs.hasNext()) {
+				Node node = freshDfs.next();
+				assertSame(node, dfs.next());
+				assertEquals(freshDfs.getDepthOf(node), dfs.getDepthOf(node));
+			}
+			assertFalse(dfs.hasNext());
+			assertEquals(freshDfs.getDepthMax(), dfs.getDepthMax());
+		}
+
+		// bounded traversals stop at the maximum depth
+		context.setMaxDepth(1);
+		Node start = graph.getNode(0);
+		HashSet<Node> expected = new HashSet<Node>();
+		expected.add(start);
+		for (Edge e : start.getEachLeavingEdge())
+			expected.add(e.getOpposite(start));
+		bfs.reset(start);
+		HashSet<Node> visited = new HashSet<Node>();
+		while (bfs.hasNext())
+			visited.add(bfs.next());
+		assertEquals(expected, visited);
+		for (Node node : graph)
+			assertEquals(!expected.contains(node), bfs.getDepthOf(node) == -1);
+
+		context.setMaxDepth(0);
+		dfs.reset(start);
+		assertSame(start, dfs.next());
+		assertFalse(dfs.hasNext());
+	}
+
+	@Test
+	public void testParallelBreadthFirstSearch() {
+		ForkJoinPool pool = new ForkJoinPool(4);
+		Random random = new Random(42);
+		for (int degree : new int[] { 2, 16 }) {
+			Graph graph = new AdjacencyListGraph("alg");
+			int n = 5000;
+			for (int i = 0; i < n; i++)
+				graph.addNode("n" + i);
+			for (int i = 0; i < degree * n; i++)
+				graph.addEdge("e" + i, random.nextInt(n), random.nextInt(n),
+						random.nextBoolean());
+
+			for (boolean directed : new boolean[] { true, false }) {
+				ParallelBreadthFirstSearch parallel = new ParallelBreadthFirstSearch(
+						graph, directed, pool);
+				for (boolean optimizing : new boolean[] { false, true }) {
+					parallel.setDirectionOptimizing(optimizing);
+					Node start = graph.getNode(random.nextInt(n));
+					parallel.compute(start);
+
+					BreadthFirstIterator<Node> bfs = new BreadthFirstIterator<Node>(
+							start, directed);
+					int visited = 0;
+					while (bfs.hasNext()) {
+						bfs.next();
+						visited++;
+					}
+					for (Node node : graph)
+						assertEquals(bfs.getDepthOf(node),
+								parallel.getDepthOf(node));
+					assertEquals(visited, parallel.getVisitedCount());
+					assertEquals(bfs.getDepthMax(), parallel.getDepthMax());
+					if (!optimizing)
+						assertEquals(0, parallel.getBottomUpSteps());
+				}
+				// dense graphs have levels worth exploring bottom-up
+				if (degree == 16)
+					assertTrue(parallel.getBottomUpSteps() > 0);
+			}
+		}
+		pool.shutdown();
+	}
+
+	@Test
+	public void testFilteredGraph() {
+		testFilteredGraph(new AdjacencyListGraph("alg"));
+		testFilteredGraph(new MultiGraph("mg"));
+		testFilteredGraph(new SingleGraph("sg"));
+	}
+
+	protected void testFilteredGraph(AbstractGraph graph) {
+		graph.addAttribute("title", "source");
+		for (String id : new String[] { "A", "B", "C", "D" })
+			graph.addNode(id).addAttribute("ui.class", "on");
+		graph.getNode("D").addAttribute("ui.class", "off");
+		graph.addEdge("AB", "A", "B", true).addAttribute("weight", 1);
+		graph.addEdge("BC", "B", "C").addAttribute("weight", 5);
+		graph.addEdge("CD", "C", "D");
+		graph.addEdge("DA", "D", "A");
+
+		Filter<Node> on = Filters.byAttributeFilter("ui.class", "on");
+		Filter<Edge> light = new Filter<Edge>() {
+			public boolean isAvailable(Edge e) {
+				return !e.hasNumber("weight") || e.getDouble("weight") < 3;
+			}
+		};
+		FilteredGraph view = new FilteredGraph(graph, on, light);
+		assertSame(graph, view.getSource());
+		checkFilteredGraph(graph, view, on, light);
+		assertEquals(3, view.getNodeCount());
+		assertEquals(1, view.getEdgeCount());
+		assertEquals("source", view.getAttribute("title"));
+		assertEquals(1, view.getEdge("AB").getAttribute("weight"));
+		assertTrue(view.getEdge("AB").isDirected());
+		assertEquals(1, view.getNode("A").getOutDegree());
+
+		// incremental updates and the events of the view
+		final ArrayList<String> events = new ArrayList<String>();
+		view.addSink(new SinkAdapter() {
+			@Override
+			public void nodeAdded(String sourceId, long timeId, String nodeId) {
+				events.add("+" + nodeId);
+			}
+
+			@Override
+			public void nodeRemoved(String sourceId, long timeId, String nodeId) {
+				events.add("-" + nodeId);
+			}
+
+			@Override
+			public void edgeAdded(String sourceId, long timeId, String edgeId,
+					String fromNodeId, String toNodeId, boolean directed) {
+				events.add("+" + edgeId);
+			}
+
+			@Override
+			public void edgeRemoved(String sourceId, long timeId, String edgeId) {
+				events.add("-" + edgeId);
+			}
+
+			@Override
+			public void nodeAttributeAdded(String sourceId, long timeId,
+					String nodeId, String attribute, Object value) {
+				events.add(nodeId + "." + attribute + "=" + value);
+			}
+
+			@Override
+			public void nodeAttributeChanged(String sourceId, long timeId,
+					String nodeId, String attribute, Object oldValue,
+					Object newValue) {
+				events.add(nodeId + "." + attribute + "=" + newValue);
+			}
+		});
+		graph.getNode("D").addAttribute("ui.class", "on");
+		assertEquals("[+D, D.ui.class=on, +CD, +DA]", events.toString());
+		events.clear();
+		graph.getEdge("BC").addAttribute("weight", 2);
+		graph.getNode("A").addAttribute("label", "a");
+		graph.getNode("B").addAttribute("ui.class", "off");
+		assertEquals("[+BC, A.label=a, -AB, -BC, -B]", events.toString());
+		assertEquals("a", view.getNode("A").getLabel("label"));
+		checkFilteredGraph(graph, view, on, light);
+
+		graph.addNode("E");
+		graph.addEdge("AE", "A", "E");
+		assertNull(view.getNode("E"));
+		graph.getNode("E").addAttribute("ui.class", "on");
+		assertNotNull(view.getEdge("AE"));
+		graph.removeNode("A");
+		assertNull(view.getNode("A"));
+		assertNull(view.getEdge("AE"));
+		checkFilteredGraph(graph, view, on, light);
+
+		// random changes
+		Random random = new Random(7);
+		for (int i = 0; i < 500; i++) {
+			int n = graph.getNodeCount();
+			switch (random.nextInt(5)) {
+			case 0:
+				graph.addNode("n" + i).addAttribute("ui.class",
+						random.nextBoolean() ? "on" : "off");
+				break;
+			case 1:
+				if (n > 0)
+					graph.getNode(random.nextInt(n)).addAttribute("ui.class",
+							random.nextBoolean() ? "on" : "off");
+				break;
+			case 2:
+				if (n > 0) {
+					Node a = graph.getNode(random.nextInt(n));
+					Node b = graph.getNode(random.nextInt(n));
+					if (graph instanceof SingleGraph
+							&& (a == b || a.hasEdgeBetween(b)))
+						break;
+					graph.addEdge("e" + i, a.getIndex(), b.getIndex(),
+							random.nextBoolean()).addAttribute("weight",
+							random.nextInt(5));
+				}
+				break;
+			case 3:
+				if (graph.getEdgeCount() > 0)
+					graph.getEdge(random.nextInt(graph.getEdgeCount()))
+							.addAttribute("weight", random.nextInt(5));
+				break;
+			default:
+				if (random.nextInt(3) == 0 && n > 0)
+					graph.removeNode(random.nextInt(n));
+				else if (graph.getEdgeCount() > 0)
+					graph.removeEdge(random.nextInt(graph.getEdgeCount()));
+			}
+		}
+		checkFilteredGraph(graph, view, on, light);
+		view.refresh();
+		checkFilteredGraph(graph, view, on, light);
+
+		// the view cannot be changed directly
+		try {
+			view.addNode("Z");
+			fail();
+		} catch (UnsupportedOperationException e) {
+		}
+		try {
+			view.removeNode(0);
+			fail();
+		} catch (UnsupportedOperationException e) {
+		}
+		try {
+			view.clear();
+			fail();
+		} catch (UnsupportedOperationException e) {
+		}
+		try {
+			view.getNode(0).addAttribute("ui.class", "off");
+			fail();
+		} catch (UnsupportedOperationException e) {
+		}
+		checkFilteredGraph(graph, view, on, light);
+
+		// snapshots of the view copy the attributes of the source
+		CompactGraph snapshot = view.snapshot();
+		Node node = view.getNode(0);
+		assertEquals("on",
+				snapshot.getNode(node.getId()).getAttribute("ui.class"));
+
+		graph.clear();
+		assertEquals(0, view.getNodeCount());
+		assertEquals(0, view.getEdgeCount());
+
+		view.detach();
+		graph.addNode("F").addAttribute("ui.class", "on");
+		graph.addNode("G").addAttribute("ui.class", "on");
+		graph.addEdge("FG", "F", "G");
+		assertEquals(0, view.getNodeCount());
+
+		// elements missing from the source leave the view without being
+		// given to the filters
+		view.refresh();
+		assertNotNull(view.getEdge("FG"));
+		graph.removeNode("F");
+		view.refresh();
+		assertNull(view.getNode("F"));
+		assertNull(view.getEdge("FG"));
+		assertNotNull(view.getNode("G"));
+	}
+
+	protected void checkFilteredGraph(Graph graph, Graph view,
+			Filter<Node> nodeFilter, Filter<Edge> edgeFilter) {
+		int nodes = 0, edges = 0;
+		for (Node node : graph)
+			if (nodeFilter.isAvailable(node)) {
+				nodes++;
+				Node copy = view.getNode(node.getId());
+				assertNotNull(copy);
+				assertEquals(node.getAttributeCount(), copy.getAttributeCount());
+			} else {
+				assertNull(view.getNode(node.getId()));
+			}
+		for (Edge edge : graph.getEachEdge())
+			if (edgeFilter.isAvailable(edge)
+					&& view.getNode(edge.getSourceNode().getId()) != null
+					&& view.getNode(edge.getTargetNode().getId()) != null) {
+				edges++;
+				Edge copy = view.getEdge(edge.getId());
+				assertNotNull(copy);
+				assertEquals(edge.getSourceNode().getId(), copy.getSourceNode()
+						.getId());
+				assertEquals(edge.isDirected(), copy.isDirected());
+			} else {
+				assertNull(view.getEdge(edge.getId()));
+			}
+		assertEquals(nodes, view.getNodeCount());
+		assertEquals(edges, view.getEdgeCount());
+	}
+
 	@Test
 	public void testGraphListener() {
 		testGraphListener(new SingleGraph("sg"));
 		testGraphListener(new MultiGraph("mg"));
 		// testGraphListener( new AdjacencyListGraph( "alg" ) );
 		testGraphListener(new AdjacencyListGraph("AL")); // XXX
+		testGraphListener(new ConcurrentGraph("CG"));
 		testGraphListener(new SingleGraph("S")); // XXX
 		testGraphListener(new MultiGraph("M")); // XXX
 	}
@@ -38,6 +38,7 @@ import static org.junit.Assert.assertNull;
 
 import org.graphstream.graph.Graph;
 import org.graphstream.graph.implementations.AdjacencyListGraph;
+import org.graphstream.graph.implementations.ConcurrentGraph;
 import org.graphstream.graph.implementations.MultiGraph;
 import org.graphstream.graph.implementations.SingleGraph;
 import org.junit.Test;
@@ -60,6 +61,7 @@ public class TestGraphSynchronisation {
 		testGraphSyncBase(new AdjacencyListGraph("g1"), new AdjacencyListGraph(
 				"g2"));
 		testGraphSyncBase(new MultiGraph("g1"), new AdjacencyListGraph("g2"));
+		testGraphSyncBase(new ConcurrentGraph("g1"), new ConcurrentGraph("g2"));
 		
 	}
 
@@ -181,6 +183,8 @@ public class TestGraphSynchronisation {
 				new SingleGraph("g3"));
 		testGraphSyncCycleSimple(new AdjacencyListGraph("g1"),
 				new AdjacencyListGraph("g2"), new AdjacencyListGraph("g3"));
+		testGraphSyncCycleSimple(new ConcurrentGraph("g1"),
+				new ConcurrentGraph("g2"), new ConcurrentGraph("g3"));
 		testGraphSyncCycleSimple(new MultiGraph("g1"), new SingleGraph("g2"),
 				new AdjacencyListGraph("g3"));
 	}
@@ -0,0 +1,272 @@
+/*
+ * Copyright 2006 - 2013
+ *     Stefan Balev     <stefan.balev@graphstream-project.org>
+ *     Julien Baudry    <julien.baudry@graphstream-project.org>
+ *     Antoine Dutot    <antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné      <yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin   <guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.graph.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.graphstream.graph.Edge;
+import org.graphstream.graph.ElementNotFoundException;
+import org.graphstream.graph.Graph;
+import org.graphstream.graph.IdAlreadyInUseException;
+import org.graphstream.graph.Node;
+import org.graphstream.graph.implementations.MultiGraph;
+import org.graphstream.graph.implementations.ShardedGraph;
+import org.graphstream.graph.implementations.ShardedGraph.BoundaryEdge;
+import org.graphstream.graph.implementations.ShardedGraph.Shard;
+import org.junit.Test;
+
+public class TestShardedGraph {
+	@Test
+	public void testBasic() {
+		ShardedGraph graph = new ShardedGraph("sharded", 3);
+		Graph replica = new MultiGraph("replica");
+		graph.addSink(replica);
+
+		Node a = graph.addNode("A");
+		assertSame(graph.getShard(graph.getShardIndex("A")), a.getGraph());
+		graph.addNode("B", 0);
+		graph.addNode("C", 0);
+		graph.addNode("D", 1);
+		assertEquals(4, graph.getNodeCount());
+		assertEquals(0, graph.getShardOf("B").getShardIndex());
+		assertSame(graph.getShard(1).getNode("D"), graph.getNode("D"));
+		assertNull(graph.getNode("Z"));
+		try {
+			graph.addNode("B", 1);
+			fail();
+		} catch (IdAlreadyInUseException e) {
+		}
+
+		graph.addEdge("BC", "B", "C", true);
+		graph.addEdge("BD", "B", "D", false);
+		assertEquals(1, graph.getShard(0).getEdgeCount());
+		assertEquals(1, graph.getBoundaryEdgeCount());
+		assertEquals(2, graph.getEdgeCount());
+		BoundaryEdge bd = graph.getBoundaryEdge("BD");
+		assertEquals(0, bd.getSourceShard());
+		assertEquals(1, bd.getTargetShard());
+		assertEquals(1, graph.getBoundaryEdges("D").size());
+		try {
+			graph.addEdge("BZ", "B", "Z", false);
+			fail();
+		} catch (ElementNotFoundException e) {
+		}
+
+		graph.getShard(1).getNode("D").addAttribute("w", 2);
+		assertTrue(graph.hasPostRemaining());
+		graph.pump();
+		assertFalse(graph.hasPostRemaining());
+		assertEquals(4, replica.getNodeCount());
+		assertEquals(2, replica.getEdgeCount());
+		assertTrue(replica.getEdge("BC").isDirected());
+		assertEquals(2, replica.getNode("D").getAttribute("w"));
+
+		// removing a node removes its boundary edges
+		graph.getShard(1).removeNode("D");
+		assertEquals(0, graph.getBoundaryEdgeCount());
+		assertNull(graph.getShardOf("D"));
+		graph.addNode("D", 2);
+		graph.addEdge("BD", "B", "D", true);
+		assertTrue(graph.removeBoundaryEdge("BD"));
+		assertFalse(graph.removeBoundaryEdge("BD"));
+		graph.getShard(0).clear();
+		graph.pump();
+		assertEquals(2, replica.getNodeCount());
+		assertEquals(0, replica.getEdgeCount());
+		assertNotNull(replica.getNode("D"));
+	}
+
+	@Test
+	public void testConcurrentShards() throws Throwable {
+		final int threads = TestConcurrentGraph.THREADS;
+		final ShardedGraph graph = new ShardedGraph("sharded", threads);
+		final Graph replica = new MultiGraph("replica");
+		graph.addSink(replica);
+
+		// the replica is strict: events out of order would make it fail
+		final AtomicBoolean working = new AtomicBoolean(true);
+		final Throwable[] failure = new Throwable[1];
+		Thread pumper = new Thread() {
+			@Override
+			public void run() {
+				try {
+					while (working.get())
+						graph.pump();
+				} catch (Throwable e) {
+					failure[0] = e;
+				}
+			}
+		};
+		pumper.start();
+
+		TestConcurrentGraph.runConcurrently(threads,
+				new TestConcurrentGraph.Task() {
+					public void run(int thread) {
+						Shard shard = graph.getShard(thread);
+						Random random = new Random(thread);
+						for (int i = 0; i < 2000; i++) {
+							String id = thread + "_" + i;
+							shard.addNode(id).addAttribute("w", i);
+							if (i == 0)
+								continue;
+							String other = thread + "_" + random.nextInt(i);
+							if (shard.getNode(other) != null)
+								shard.addEdge(id + "_in", id, other)
+										.addAttribute("w", i);
+							int t = random.nextInt(threads);
+							other = t + "_" + random.nextInt(i);
+							if (t != thread && graph.getShardOf(other) != null)
+								try {
+									graph.addEdge(id + "_out", id, other,
+											random.nextBoolean());
+								} catch (ElementNotFoundException e) {
+									// removed meanwhile by its shard
+								}
+							if (random.nextInt(10) == 0)
+								shard.removeNode(shard.getNode(random
+										.nextInt(shard.getNodeCount())));
+						}
+					}
+				});
+
+		working.set(false);
+		pumper.join();
+		if (failure[0] != null)
+			throw failure[0];
+		graph.pump();
+		assertFalse(graph.hasPostRemaining());
+
+		int nodes = 0;
+		for (int t = 0; t < threads; t++) {
+			Shard shard = graph.getShard(t);
+			nodes += shard.getNodeCount();
+			for (Node node : shard) {
+				assertNotNull(replica.getNode(node.getId()));
+				assertEquals(node.getAttribute("w"), replica.getNode(node.getId())
+						.getAttribute("w"));
+			}
+			for (Edge edge : shard.getEachEdge())
+				assertNotNull(replica.getEdge(edge.getId()));
+		}
+		assertEquals(nodes, graph.getNodeCount());
+		assertEquals(nodes, replica.getNodeCount());
+		for (BoundaryEdge edge : graph.getBoundaryEdges()) {
+			Edge copy = replica.getEdge(edge.getId());
+			assertEquals(edge.getSourceId(), copy.getSourceNode().getId());
+			assertNotSame(graph.getShardOf(edge.getSourceId()),
+					graph.getShardOf(edge.getTargetId()));
+		}
+		assertEquals(graph.getEdgeCount(), replica.getEdgeCount());
+	}
+
+	@Test
+	public void testUniqueIds() throws Throwable {
+		final int threads = TestConcurrentGraph.THREADS;
+		final ShardedGraph graph = new ShardedGraph("sharded", threads);
+		final int n = 1000;
+		final AtomicInteger added = new AtomicInteger();
+
+		// all the shards race to add the same nodes and edges
+		TestConcurrentGraph.runConcurrently(threads,
+				new TestConcurrentGraph.Task() {
+					public void run(int thread) {
+						Shard shard = graph.getShard(thread);
+						for (int i = 0; i < n; i++) {
+							try {
+								shard.addNode("n" + i);
+								added.incrementAndGet();
+							} catch (IdAlreadyInUseException e) {
+							}
+							if (shard.getNode("n" + i) != null
+									&& shard.getNode("n" + (i / 2)) != null)
+								try {
+									shard.addEdge("e" + i, "n" + i, "n"
+											+ (i / 2));
+								} catch (IdAlreadyInUseException e) {
+								}
+						}
+					}
+				});
+
+		assertEquals(n, added.get());
+		assertEquals(n, graph.getNodeCount());
+		int nodes = 0;
+		for (int t = 0; t < threads; t++)
+			nodes += graph.getShard(t).getNodeCount();
+		assertEquals(n, nodes);
+		for (int i = 0; i < n; i++) {
+			int owners = 0;
+			for (int t = 0; t < threads; t++)
+				if (graph.getShard(t).getEdge("e" + i) != null)
+					owners++;
+			assertTrue(owners <= 1);
+		}
+
+		// edge identifiers are shared with the boundary table
+		Shard s0 = graph.getShard(0), s1 = graph.getShard(1);
+		s0.addNode("A");
+		s0.addNode("B");
+		s1.addNode("C");
+		s0.addEdge("AB", "A", "B");
+		try {
+			graph.addEdge("AB", "A", "C", false);
+			fail();
+		} catch (IdAlreadyInUseException e) {
+		}
+		graph.addEdge("AC", "A", "C", false);
+		s1.addNode("D");
+		try {
+			s1.addEdge("AC", "C", "D");
+			fail();
+		} catch (IdAlreadyInUseException e) {
+		}
+		assertNull(s1.getEdge("AC"));
+
+		// released identifiers can be used again
+		s0.removeEdge("AB");
+		s1.addEdge("AB", "C", "D");
+		s0.removeNode("B");
+		s1.addNode("B");
+		assertSame(s1, graph.getShardOf("B"));
+	}
+}
@@ -31,9 +31,16 @@
  */
 package org.graphstream.stream.file.test;
 
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.graphstream.stream.EventBatch;
 import org.graphstream.stream.file.FileSinkDGS;
 import org.graphstream.stream.file.FileSourceDGS;
 import org.junit.Before;
+import org.junit.Test;
 
 public class TestFileSinkDGS extends TestFileSinkBase {
 	@Override
@@ -47,4 +54,39 @@ public class TestFileSinkDGS extends TestFileSinkBase {
 		input = new FileSourceDGS();
 		output = new FileSinkDGS();
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void testBatch() throws IOException {
+		EventBatch batch = new EventBatch();
+
+		batch.graphAttributeAdded("g", 1, "title", "a \"graph\"");
+		batch.nodeAdded("g", 2, "A");
+		batch.nodeAdded("g", 3, "B\"");
+		batch.edgeAdded("g", 4, "AB", "A", "B\"", true);
+		batch.edgeAdded("g", 5, "BA", "B\"", "A", false);
+		batch.stepBegins("g", 6, 1.5);
+		batch.nodeAttributeAdded("g", 7, "A", "x", 1);
+		batch.nodeAttributeChanged("g", 8, "A", "x", 1, 2.5);
+		batch.edgeAttributeAdded("g", 9, "AB", "w", new Object[] { 1, 2 });
+		batch.nodeAttributeRemoved("g", 10, "A", "x");
+		batch.edgeAttributeRemoved("g", 11, "AB", "w");
+		batch.graphAttributeRemoved("g", 12, "title");
+		batch.edgeRemoved("g", 13, "AB");
+		batch.nodeRemoved("g", 14, "B\"");
+		batch.graphCleared("g", 15);
+
+		StringWriter byEvent = new StringWriter();
+		FileSinkDGS sink = new FileSinkDGS();
+		sink.begin(byEvent);
+		batch.replay(sink);
+		sink.end();
+
+		StringWriter byBatch = new StringWriter();
+		sink = new FileSinkDGS();
+		sink.begin(byBatch);
+		sink.eventBatch(batch);
+		sink.end();
+
+		assertEquals(byEvent.toString(), byBatch.toString());
+	}
+}
@@ -76,4 +76,23 @@ public class TestSync {
 			assertTrue(tst.isNewEvent(st.getSourceId(), timeId));
 		}
 	}
+
+	@Test
+	public void testSeveralSources() {
+		TestSinkTime tst = new TestSinkTime();
+
+		if (!tst.isSynchEnable())
+			return;
+
+		assertTrue(tst.isNewEvent("a", 10));
+		assertTrue(tst.isNewEvent("b", 5));
+		assertFalse(tst.isNewEvent("a", 10));
+		assertTrue(tst.isNewEvent("a", 11));
+		assertFalse(tst.isNewEvent("b", 5));
+		assertTrue(tst.isNewEvent("b", 6));
+		// Equal but distinct source id strings share the same time.
+		assertFalse(tst.isNewEvent(new String("a"), 11));
+		assertTrue(tst.isNewEvent("c", -3));
+		assertFalse(tst.isNewEvent("a", 2));
+	}
 }
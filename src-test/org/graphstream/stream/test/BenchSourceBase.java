@@ -0,0 +1,198 @@
+/*
+ * Copyright 2006 - 2013
+ *     Stefan Balev     <stefan.balev@graphstream-project.org>
+ *     Julien Baudry    <julien.baudry@graphstream-project.org>
+ *     Antoine Dutot    <antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné      <yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin   <guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.stream.test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import org.graphstream.stream.BatchSink;
+import org.graphstream.stream.EventBatch;
+import org.graphstream.stream.PipeBase;
+import org.graphstream.stream.SinkAdapter;
+import org.graphstream.stream.SourceBase;
+import org.graphstream.stream.sync.SinkTime;
+import org.junit.Ignore;
+
+/**
+ * Measures the dispatch cost of {@link SourceBase}. Events are sent to two
+ * sinks, either directly or re-entrantly (one sink sends a new event for each
+ * event it receives, which is then deferred). The source time is synchronized
+ * with a {@link SinkTime}, like the one of a graph. Last, events go through a
+ * pipeline of {@link PipeBase}, one by one or in {@link EventBatch}es.
+ * 
+ * The bytes allocated by the sending thread are reported when the virtual
+ * machine provides them.
+ * 
+ * Usage: {@code BenchSourceBase [events]}
+ */
+@Ignore
+public class BenchSourceBase {
+	static class Source extends SourceBase {
+		Source() {
+			super("bench");
+			sourceTime.setSinkTime(new SinkTime());
+		}
+	}
+
+	static class Counter extends SinkAdapter {
+		long count;
+
+		@Override
+		public void nodeAdded(String sourceId, long timeId, String nodeId) {
+			count++;
+		}
+
+		@Override
+		public void nodeAttributeChanged(String sourceId, long timeId,
+				String nodeId, String attribute, Object oldValue,
+				Object newValue) {
+			count++;
+		}
+	}
+
+	static class Echo extends Counter {
+		final Source source;
+
+		Echo(Source source) {
+			this.source = source;
+		}
+
+		@Override
+		public void nodeAdded(String sourceId, long timeId, String nodeId) {
+			super.nodeAdded(sourceId, timeId, nodeId);
+			source.sendNodeAttributeChanged(sourceId, nodeId, "x", null,
+					sourceId);
+		}
+	}
+
+	static class BatchCounter extends Counter implements BatchSink {
+		public void eventBatch(EventBatch batch) {
+			count += batch.size();
+		}
+	}
+
+	final int events;
+	final String[] ids;
+
+	public BenchSourceBase(int events) {
+		this.events = events;
+		ids = new String[1024];
+		for (int i = 0; i < ids.length; i++)
+			ids[i] = "n" + i;
+	}
+
+	static long allocatedBytes() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+		if (bean instanceof com.sun.management.ThreadMXBean)
+			return ((com.sun.management.ThreadMXBean) bean)
+					.getThreadAllocatedBytes(Thread.currentThread().getId());
+
+		return -1;
+	}
+
+	void run(String name, boolean reentrant) {
+		Source source = new Source();
+		Counter counter = reentrant ? new Echo(source) : new Counter();
+		source.addSink(counter);
+		source.addSink(new Counter());
+
+		Object value = "v";
+		long bytes = allocatedBytes();
+		long t0 = System.nanoTime();
+		for (int i = 0; i < events; i++) {
+			if (reentrant || (i & 1) == 0)
+				source.sendNodeAdded("g", ids[i & 1023]);
+			else
+				source.sendNodeAttributeChanged("g", ids[i & 1023], "x", value,
+						value);
+		}
+		long elapsed = System.nanoTime() - t0;
+		bytes = bytes < 0 ? -1 : allocatedBytes() - bytes;
+
+		System.out.printf("%-12s%,14d events/s%,16d bytes%n", name,
+				counter.count * 1000000000L / elapsed, bytes);
+	}
+
+	void runPipeline(String name, int batchSize) {
+		Source source = new Source();
+		PipeBase last = new PipeBase();
+		source.addSink(last);
+		for (int i = 1; i < 5; i++) {
+			PipeBase pipe = new PipeBase();
+			last.addSink(pipe);
+			last = pipe;
+		}
+		Counter counter = batchSize > 1 ? new BatchCounter() : new Counter();
+		last.addSink(counter);
+
+		EventBatch batch = new EventBatch(Math.max(batchSize, 1));
+		Object value = "v";
+		long t0 = System.nanoTime();
+		for (int i = 0; i < events; i++) {
+			String id = ids[i & 1023];
+			if (batchSize <= 1) {
+				source.sendNodeAttributeChanged("g", id, "x", value, value);
+			} else {
+				batch.nodeAttributeChanged("g", i, id, "x", value, value);
+				if (batch.size() == batchSize) {
+					source.sendBatch(batch);
+					batch.clear();
+				}
+			}
+		}
+		source.sendBatch(batch);
+		long elapsed = System.nanoTime() - t0;
+
+		System.out.printf("%-12s%,14d events/s%n", name, counter.count
+				* 1000000000L / elapsed);
+	}
+
+	void bench(int runs) {
+		System.out.printf("%d events%n", events);
+		for (int run = 0; run < runs; run++) {
+			System.gc();
+			run("direct", false);
+			System.gc();
+			run("re-entrant", true);
+			System.gc();
+			runPipeline("pipeline", 1);
+			System.gc();
+			runPipeline("batch 256", 256);
+		}
+	}
+
+	public static void main(String[] args) {
+		int events = args.length > 0 ? Integer.parseInt(args[0]) : 10000000;
+		new BenchSourceBase(events).bench(3);
+	}
+}
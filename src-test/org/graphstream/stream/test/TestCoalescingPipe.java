@@ -0,0 +1,271 @@
+/*
+ * Copyright 2006 - 2013
+ *     Stefan Balev     <stefan.balev@graphstream-project.org>
+ *     Julien Baudry    <julien.baudry@graphstream-project.org>
+ *     Antoine Dutot    <antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné      <yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin   <guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.stream.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.graphstream.graph.Edge;
+import org.graphstream.graph.Element;
+import org.graphstream.graph.Graph;
+import org.graphstream.graph.Node;
+import org.graphstream.graph.implementations.MultiGraph;
+import org.graphstream.stream.CoalescingPipe;
+import org.graphstream.stream.SinkAdapter;
+import org.junit.Test;
+
+public class TestCoalescingPipe {
+	/**
+	 * Counts the received events.
+	 */
+	static class Counter extends SinkAdapter {
+		int nodeAdded, nodeRemoved, edgeAdded, attributeAdded,
+				attributeChanged, attributeRemoved, steps;
+
+		@Override
+		public void nodeAdded(String sourceId, long timeId, String nodeId) {
+			nodeAdded++;
+		}
+
+		@Override
+		public void nodeRemoved(String sourceId, long timeId, String nodeId) {
+			nodeRemoved++;
+		}
+
+		@Override
+		public void edgeAdded(String sourceId, long timeId, String edgeId,
+				String fromNodeId, String toNodeId, boolean directed) {
+			edgeAdded++;
+		}
+
+		@Override
+		public void nodeAttributeAdded(String sourceId, long timeId,
+				String nodeId, String attribute, Object value) {
+			attributeAdded++;
+		}
+
+		@Override
+		public void nodeAttributeChanged(String sourceId, long timeId,
+				String nodeId, String attribute, Object oldValue,
+				Object newValue) {
+			attributeChanged++;
+		}
+
+		@Override
+		public void nodeAttributeRemoved(String sourceId, long timeId,
+				String nodeId, String attribute) {
+			attributeRemoved++;
+		}
+
+		@Override
+		public void stepBegins(String sourceId, long timeId, double step) {
+			steps++;
+		}
+	}
+
+	@Test
+	public void testCoalescing() {
+		Graph source = new MultiGraph("source");
+		Graph target = new MultiGraph("target");
+		CoalescingPipe pipe = new CoalescingPipe();
+		Counter counter = new Counter();
+		source.addSink(pipe);
+		pipe.addSink(target);
+		pipe.addSink(counter);
+
+		Node a = source.addNode("A");
+		for (int i = 0; i < 100; i++) {
+			a.setAttribute("x", i);
+			a.setAttribute("y", -i);
+		}
+		assertTrue(pipe.hasPendingEvents());
+		assertEquals(0, target.getNodeCount());
+
+		source.stepBegins(1);
+		assertFalse(pipe.hasPendingEvents());
+		assertEquals(1, counter.nodeAdded);
+		assertEquals(2, counter.attributeAdded);
+		assertEquals(0, counter.attributeChanged);
+		assertEquals(1, counter.steps);
+		assertEquals(99, target.getNode("A").getAttribute("x"));
+		assertEquals(-99, target.getNode("A").getAttribute("y"));
+
+		// changes of an existing node
+		for (int i = 0; i < 100; i++)
+			a.setAttribute("x", 2 * i);
+		a.removeAttribute("y");
+		a.setAttribute("z", 1);
+		a.removeAttribute("z");
+		source.stepBegins(2);
+		assertEquals(1, counter.attributeChanged);
+		assertEquals(1, counter.attributeRemoved);
+		assertEquals(2, counter.attributeAdded);
+		assertEquals(198, target.getNode("A").getAttribute("x"));
+		assertFalse(target.getNode("A").hasAttribute("y"));
+
+		// an element added then removed is never sent
+		source.addNode("B").setAttribute("x", 1);
+		source.addEdge("AB", "A", "B");
+		source.removeNode("B");
+		source.stepBegins(3);
+		assertEquals(1, counter.nodeAdded);
+		assertEquals(0, counter.edgeAdded);
+		assertEquals(0, counter.nodeRemoved);
+
+		// an element removed then added again is replaced
+		source.removeNode("A");
+		source.addNode("A").setAttribute("w", 1);
+		source.stepBegins(4);
+		assertEquals(1, counter.nodeRemoved);
+		assertEquals(2, counter.nodeAdded);
+		assertEquals(1, target.getNode("A").getAttribute("w"));
+		assertFalse(target.getNode("A").hasAttribute("x"));
+
+		assertTrue(pipe.getSentEvents() * 10 < pipe.getReceivedEvents());
+	}
+
+	@Test
+	public void testClearAndInterval() throws InterruptedException {
+		Graph source = new MultiGraph("source");
+		Graph target = new MultiGraph("target");
+		CoalescingPipe pipe = new CoalescingPipe(50);
+		source.addSink(pipe);
+		pipe.addSink(target);
+
+		source.addNode("A");
+		source.addNode("B");
+		source.clear();
+		assertFalse(pipe.hasPendingEvents());
+		assertEquals(0, target.getNodeCount());
+
+		source.addNode("C");
+		Thread.sleep(60);
+		source.addNode("D");
+		assertNotNull(target.getNode("C"));
+		assertNotNull(target.getNode("D"));
+		source.addNode("E");
+		assertNull(target.getNode("E"));
+		pipe.flush();
+		assertNotNull(target.getNode("E"));
+	}
+
+	/**
+	 * Random changes, checked against the source graph at each step.
+	 */
+	@Test
+	public void testRandom() {
+		Graph source = new MultiGraph("source");
+		Graph target = new MultiGraph("target");
+		CoalescingPipe pipe = new CoalescingPipe();
+		source.addSink(pipe);
+		pipe.addSink(target);
+
+		Random random = new Random(5);
+		String[] keys = { "a", "b", "c" };
+		int edgeId = 0;
+
+		for (int step = 0; step < 200; step++) {
+			for (int i = 0; i < 50; i++) {
+				String id = Integer.toString(random.nextInt(30));
+				Node n = source.getNode(id);
+				switch (random.nextInt(6)) {
+				case 0:
+					if (n == null)
+						source.addNode(id);
+					else
+						source.removeNode(n);
+					break;
+				case 1:
+					Node m = source.getNode(random.nextInt(30) + "");
+					if (n != null && m != null)
+						source.addEdge("e" + edgeId++, n, m,
+								random.nextBoolean());
+					break;
+				case 2:
+					if (source.getEdgeCount() > 0)
+						source.removeEdge(source.getEdge(random
+								.nextInt(source.getEdgeCount())));
+					break;
+				case 3:
+					if (source.getEdgeCount() > 0)
+						changeAttribute(source.getEdge(random.nextInt(source
+								.getEdgeCount())), keys, random);
+					break;
+				case 4:
+					changeAttribute(source, keys, random);
+					break;
+				default:
+					if (n != null)
+						changeAttribute(n, keys, random);
+					break;
+				}
+			}
+			source.stepBegins(step);
+			check(source, target);
+		}
+	}
+
+	protected void changeAttribute(Element e, String[] keys, Random random) {
+		String key = keys[random.nextInt(keys.length)];
+		if (random.nextInt(4) == 0)
+			e.removeAttribute(key);
+		else
+			e.setAttribute(key, random.nextInt(100));
+	}
+
+	protected void check(Graph source, Graph target) {
+		assertEquals(source.getNodeCount(), target.getNodeCount());
+		assertEquals(source.getEdgeCount(), target.getEdgeCount());
+		checkAttributes(source, target);
+		for (Node n : source)
+			checkAttributes(n, target.getNode(n.getId()));
+		for (Edge e : source.getEachEdge()) {
+			Edge f = target.getEdge(e.getId());
+			assertEquals(e.getSourceNode().getId(), f.getSourceNode().getId());
+			assertEquals(e.getTargetNode().getId(), f.getTargetNode().getId());
+			assertEquals(e.isDirected(), f.isDirected());
+			checkAttributes(e, f);
+		}
+	}
+
+	protected void checkAttributes(Element e, Element f) {
+		assertNotNull(f);
+		assertEquals(e.getAttributeCount(), f.getAttributeCount());
+		for (String key : e.getAttributeKeySet())
+			assertEquals(e.getAttribute(key), f.getAttribute(key));
+	}
+}
@@ -34,10 +34,17 @@ package org.graphstream.stream.test;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.util.LinkedList;
 import java.util.Random;
 
+import org.graphstream.stream.AttributePipe;
+import org.graphstream.stream.AttributePredicate;
+import org.graphstream.stream.BatchSink;
+import org.graphstream.stream.ElementSink;
+import org.graphstream.stream.EventBatch;
+import org.graphstream.stream.PipeBase;
 import org.graphstream.stream.Sink;
 import org.graphstream.stream.SourceBase;
 import org.junit.Test;
@@ -209,6 +216,273 @@ public class TestSourceBase {
 		}
 	}
 
+	@Test
+	public void testReentrantEvents() {
+		final SourceBase source = new TestSource();
+		final EventStack stack = new EventStack();
+		final EventStack late = new EventStack();
+
+		// Re-entrant events are deferred and sent in order once the current
+		// event has been sent to every sink.
+		EventStack echo = new EventStack() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public void nodeAdded(String sourceId, long timeId, String nodeId) {
+				super.nodeAdded(sourceId, timeId, nodeId);
+
+				if (nodeId.equals("A")) {
+					source.sendNodeAttributeAdded("s", 2, "A", "x", 1);
+					source.addSink(late);
+					source.sendEdgeAdded("s", 3, "AB", "A", "B", true);
+					source.removeSink(this);
+					source.sendStepBegins("s", 4, 1.5);
+				}
+			}
+		};
+
+		source.addSink(echo);
+		source.addSink(stack);
+
+		for (int i = 0; i < 3; i++) {
+			stack.clear();
+			late.clear();
+			echo.clear();
+			source.clearSinks();
+			source.addSink(echo);
+			source.addSink(stack);
+			source.sendNodeAdded("s", 1, "A");
+
+			assertEquals(4, stack.size());
+			new Event(EventType.AN, "s", 1, "A").assertEventEquals(stack.get(0));
+			new Event(EventType.CNA, "s", 2, "A", "x", 1)
+					.assertEventEquals(stack.get(1));
+			new Event(EventType.AE, "s", 3, "AB", "A", "B", true)
+					.assertEventEquals(stack.get(2));
+			new Event(EventType.ST, "s", 4, 1.5).assertEventEquals(stack.get(3));
+
+			assertEquals(3, echo.size());
+			assertEquals(2, late.size());
+			assertEquals(EventType.AE, late.get(0).type);
+			assertEquals(EventType.ST, late.get(1).type);
+		}
+	}
+
+	@Test
+	public void testSinks() {
+		SourceBase source = new TestSource();
+		EventStack a = new EventStack();
+		EventStack b = new EventStack();
+
+		assertFalse(source.hasElementSinks());
+		assertFalse(source.hasAttributeSinks());
+
+		source.addSink(a);
+		source.addSink(a);
+		source.addElementSink(b);
+
+		Iterable<ElementSink> snapshot = source.elementSinks();
+		source.removeElementSink(a);
+
+		int count = 0;
+		for (ElementSink sink : snapshot) {
+			assertTrue(sink == a || sink == b);
+			count++;
+		}
+
+		assertEquals(2, count);
+		assertTrue(source.hasAttributeSinks());
+		assertTrue(source.elementSinks().iterator().next() == b);
+
+		source.sendNodeAdded("s", 1, "A");
+		source.sendGraphAttributeAdded("s", 2, "x", 1);
+
+		assertEquals(1, a.size());
+		assertEquals(1, b.size());
+		assertEquals(EventType.CGA, a.get(0).type);
+		assertEquals(EventType.AN, b.get(0).type);
+
+		source.clearSinks();
+
+		assertFalse(source.hasElementSinks());
+		assertFalse(source.hasAttributeSinks());
+	}
+
+	@Test
+	public void testBatch() {
+		LinkedList<Event> events = generateEventList(1000);
+		SourceBase recorder = new TestSource();
+		EventBatch batch = new EventBatch(4);
+
+		recorder.addSink(batch);
+
+		for (Event e : events)
+			send(recorder, e);
+
+		assertEquals(events.size(), batch.size());
+
+		for (int round = 0; round < 2; round++) {
+			SourceBase source = new TestSource();
+			EventStack stack = new EventStack();
+			BatchStack batched = new BatchStack();
+			EventStack attributes = new EventStack();
+			BatchStack elements = new BatchStack();
+
+			source.addSink(stack);
+			source.addSink(batched);
+			source.addAttributeSink(attributes);
+			source.addElementSink(elements);
+			source.sendBatch(batch);
+
+			// Full batch sinks receive the batch, the others event by event.
+			assertEquals(1, batched.batches);
+			assertEquals(0, elements.batches);
+			assertEquals(events.size(), stack.size());
+			assertEquals(events.size(), batched.size());
+			assertEquals(events.size(), attributes.size() + elements.size());
+
+			int a = 0, b = 0;
+
+			for (int i = 0; i < events.size(); i++) {
+				Event e = events.get(i);
+
+				e.assertEventEquals(stack.get(i));
+				e.assertEventEquals(batched.get(i));
+
+				if (e.type.name().startsWith("C") && e.type != EventType.CL)
+					e.assertEventEquals(attributes.get(a++));
+				else
+					e.assertEventEquals(elements.get(b++));
+			}
+
+			// The batch is kept as is when copied, and can be refilled.
+			batch = new EventBatch(batch);
+		}
+
+		batch.clear();
+		assertEquals(0, batch.size());
+		assertEquals(0, batch.getStringCount());
+	}
+
+	@Test
+	public void testReentrantBatch() {
+		final SourceBase source = new TestSource();
+		final EventBatch batch = new EventBatch();
+		final EventStack stack = new EventStack();
+
+		batch.nodeAdded("s", 2, "B");
+		batch.edgeAdded("s", 3, "AB", "A", "B", false);
+
+		source.addSink(new EventStack() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public void nodeAdded(String sourceId, long timeId, String nodeId) {
+				if (nodeId.equals("A")) {
+					source.sendBatch(batch);
+					// The batch has been copied, it can be reused.
+					batch.clear();
+				}
+			}
+		});
+		source.addSink(stack);
+		source.sendNodeAdded("s", 1, "A");
+
+		assertEquals(3, stack.size());
+		new Event(EventType.AN, "s", 1, "A").assertEventEquals(stack.get(0));
+		new Event(EventType.AN, "s", 2, "B").assertEventEquals(stack.get(1));
+		new Event(EventType.AE, "s", 3, "AB", "A", "B", false)
+				.assertEventEquals(stack.get(2));
+	}
+
+	@Test
+	public void testBatchNullIds() {
+		EventBatch batch = new EventBatch();
+		EventStack stack = new EventStack();
+
+		batch.nodeAdded(null, 1, "A");
+		batch.graphAttributeAdded("s", 2, null, 1);
+		batch.edgeAdded(null, 3, "AB", null, "B", true);
+		batch.replay(stack);
+
+		new Event(EventType.AN, null, 1, "A").assertEventEquals(stack.get(0));
+		new Event(EventType.CGA, "s", 2, null, 1)
+				.assertEventEquals(stack.get(1));
+		new Event(EventType.AE, null, 3, "AB", null, "B", true)
+				.assertEventEquals(stack.get(2));
+		assertEquals(-1, batch.getElementIndex(1));
+		assertEquals(4, batch.getStringCount());
+	}
+
+	@Test
+	public void testPipeBatches() {
+		EventBatch batch = new EventBatch();
+		batch.nodeAdded("s", 1, "A");
+		batch.nodeAttributeAdded("s", 2, "A", "x", 1);
+
+		PipeBase pipe = new PipeBase();
+		BatchStack forwarded = new BatchStack();
+		pipe.addSink(forwarded);
+		pipe.eventBatch(batch);
+		assertEquals(1, forwarded.batches);
+		assertEquals(2, forwarded.size());
+
+		// a pipe refining events sees every event of the batches it receives
+		final EventStack seen = new EventStack();
+		pipe = new PipeBase() {
+			@Override
+			public void nodeAdded(String sourceId, long timeId, String nodeId) {
+				seen.nodeAdded(sourceId, timeId, nodeId);
+				super.nodeAdded(sourceId, timeId, nodeId);
+			}
+		};
+		forwarded = new BatchStack();
+		pipe.addSink(forwarded);
+		pipe.eventBatch(batch);
+		assertEquals(1, seen.size());
+		assertEquals(0, forwarded.batches);
+		assertEquals(2, forwarded.size());
+
+		// without declining batches, a pipe dropping node additions drops
+		// them from the batches of its source too
+		SourceBase source = new TestSource();
+		pipe = new PipeBase() {
+			@Override
+			public void nodeAdded(String sourceId, long timeId, String nodeId) {
+			}
+		};
+		forwarded = new BatchStack();
+		source.addSink(pipe);
+		pipe.addSink(forwarded);
+		source.sendBatch(batch);
+		assertEquals(1, forwarded.size());
+		assertEquals(EventType.CNA, forwarded.get(0).type);
+
+		// attribute pipes filter the events of batches
+		AttributePipe filter = new AttributePipe();
+		filter.setNodeAttributeFilter(new AttributePredicate() {
+			public boolean matches(String attributeName, Object attributeValue) {
+				return attributeName.equals("x");
+			}
+		});
+		forwarded = new BatchStack();
+		filter.addSink(forwarded);
+		filter.eventBatch(batch);
+		assertEquals(1, forwarded.size());
+		assertEquals(EventType.AN, forwarded.get(0).type);
+	}
+
+	static class BatchStack extends EventStack implements BatchSink {
+		private static final long serialVersionUID = 1L;
+
+		int batches;
+
+		public void eventBatch(EventBatch batch) {
+			batches++;
+			batch.replay(this);
+		}
+	}
+
 	static enum EventType {
 		AN, DN, CNA, CNC, CNR, AE, DE, CEA, CEC, CER, CGA, CGC, CGR, ST, CL
 	}
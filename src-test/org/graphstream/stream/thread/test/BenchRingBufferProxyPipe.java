@@ -0,0 +1,134 @@
+/*
+ * Copyright 2006 - 2013
+ *     Stefan Balev     <stefan.balev@graphstream-project.org>
+ *     Julien Baudry    <julien.baudry@graphstream-project.org>
+ *     Antoine Dutot    <antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné      <yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin   <guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.stream.thread.test;
+
+import org.graphstream.stream.ProxyPipe;
+import org.graphstream.stream.SinkAdapter;
+import org.graphstream.stream.thread.RingBufferProxyPipe;
+import org.graphstream.stream.thread.RingBufferProxyPipe.WaitStrategy;
+import org.graphstream.stream.thread.ThreadProxyPipe;
+import org.junit.Ignore;
+
+/**
+ * Measures the throughput of the proxy pipes between two threads. The source
+ * thread posts a mix of node, edge and attribute events as fast as possible,
+ * the sink thread pumps them in a sink counting them.
+ * 
+ * Usage: {@code BenchRingBufferProxyPipe [events]}
+ */
+@Ignore
+public class BenchRingBufferProxyPipe {
+	static class Counter extends SinkAdapter {
+		long count;
+
+		@Override
+		public void nodeAdded(String sourceId, long timeId, String nodeId) {
+			count++;
+		}
+
+		@Override
+		public void edgeAdded(String sourceId, long timeId, String edgeId,
+				String fromNodeId, String toNodeId, boolean directed) {
+			count++;
+		}
+
+		@Override
+		public void nodeAttributeChanged(String sourceId, long timeId,
+				String nodeId, String attribute, Object oldValue,
+				Object newValue) {
+			count++;
+		}
+	}
+
+	final int events;
+	final String[] ids;
+
+	public BenchRingBufferProxyPipe(int events) {
+		this.events = events - events % 3;
+		ids = new String[1024];
+		for (int i = 0; i < ids.length; i++)
+			ids[i] = "n" + i;
+	}
+
+	/**
+	 * Posts the events in this thread and pumps them in another one.
+	 * 
+	 * @return The number of events per second.
+	 */
+	long run(final ProxyPipe pipe) throws InterruptedException {
+		final Counter counter = new Counter();
+		pipe.addSink(counter);
+
+		Thread consumer = new Thread() {
+			@Override
+			public void run() {
+				while (counter.count < events)
+					pipe.pump(4096);
+			}
+		};
+
+		Double value = 1.0;
+		long t0 = System.nanoTime();
+		consumer.start();
+		for (int i = 0; i < events; i += 3) {
+			String id = ids[i & 1023];
+			pipe.nodeAdded("g", i, id);
+			pipe.edgeAdded("g", i + 1, id, id, ids[(i + 1) & 1023], false);
+			pipe.nodeAttributeChanged("g", i + 2, id, "x", value, value);
+		}
+		consumer.join();
+		long elapsed = System.nanoTime() - t0;
+		return events * 1000000000L / elapsed;
+	}
+
+	void bench(int runs) throws InterruptedException {
+		System.out.printf("%d events, %d processors%n", events, Runtime
+				.getRuntime().availableProcessors());
+		for (int run = 0; run < runs; run++) {
+			System.gc();
+			System.out.printf("%-18s%,14d events/s%n", "ThreadProxyPipe",
+					run(new ThreadProxyPipe()));
+			for (WaitStrategy strategy : WaitStrategy.values()) {
+				System.gc();
+				System.out.printf("%-18s%,14d events/s%n", "Ring " + strategy,
+						run(new RingBufferProxyPipe(
+								RingBufferProxyPipe.DEFAULT_CAPACITY,
+								strategy)));
+			}
+		}
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		int events = args.length > 0 ? Integer.parseInt(args[0]) : 3000000;
+		new BenchRingBufferProxyPipe(events).bench(3);
+	}
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2006 - 2013
+ *     Stefan Balev     <stefan.balev@graphstream-project.org>
+ *     Julien Baudry    <julien.baudry@graphstream-project.org>
+ *     Antoine Dutot    <antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné      <yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin   <guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.stream.thread.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.graphstream.graph.Graph;
+import org.graphstream.graph.implementations.AdjacencyListGraph;
+import org.graphstream.graph.implementations.MultiGraph;
+import org.graphstream.stream.file.FileSinkDGS;
+import org.graphstream.stream.thread.RingBufferProxyPipe;
+import org.graphstream.stream.thread.RingBufferProxyPipe.WaitStrategy;
+import org.junit.Test;
+
+public class TestRingBufferProxyPipe {
+	@Test
+	public void testPump() {
+		Graph source = new MultiGraph("g1");
+		Graph target = new MultiGraph("g2");
+		source.addNode("A");
+		source.addNode("B");
+		source.addEdge("AB", "A", "B", true);
+		source.getNode("A").addAttribute("a", 1);
+
+		RingBufferProxyPipe pipe = new RingBufferProxyPipe(100,
+				WaitStrategy.YIELD);
+		assertEquals(128, pipe.getCapacity());
+		pipe.addSink(target);
+		pipe.init(source);
+
+		// the replay is buffered
+		assertTrue(pipe.hasPostRemaining());
+		assertEquals(0, target.getNodeCount());
+		pipe.pump();
+		assertFalse(pipe.hasPostRemaining());
+		assertEquals(2, target.getNodeCount());
+		assertTrue(target.getEdge("AB").isDirected());
+		assertEquals(1, target.getNode("A").getAttribute("a"));
+
+		for (int i = 0; i < 10; i++)
+			source.addNode("n" + i);
+		source.getNode("A").setAttribute("a", 2);
+		source.stepBegins(3);
+		pipe.pump(4);
+		assertEquals(6, target.getNodeCount());
+		pipe.pump(100);
+		assertEquals(12, target.getNodeCount());
+		assertEquals(2, target.getNode("A").getAttribute("a"));
+		assertEquals(3, target.getStep(), 0);
+
+		source.removeNode("A");
+		source.clear();
+		pipe.pump();
+		assertEquals(0, target.getNodeCount());
+
+		// init() drops the pending events
+		source.addNode("X");
+		pipe.init(null, false);
+		assertFalse(pipe.hasPostRemaining());
+		source.addNode("Y");
+		pipe.pump();
+		assertEquals(0, target.getNodeCount());
+	}
+
+	@Test
+	public void testBlockingPump() throws InterruptedException {
+		final RingBufferProxyPipe pipe = new RingBufferProxyPipe(16,
+				WaitStrategy.PARK);
+		Graph target = new MultiGraph("g");
+		pipe.addSink(target);
+
+		long t0 = System.nanoTime();
+		pipe.blockingPump(20);
+		assertTrue(System.nanoTime() - t0 >= 20000000);
+
+		Thread producer = new Thread() {
+			@Override
+			public void run() {
+				pipe.nodeAdded("g", 0, "A");
+			}
+		};
+		producer.start();
+		pipe.blockingPump();
+		producer.join();
+		assertEquals(1, target.getNodeCount());
+	}
+
+	/**
+	 * Events produced in one thread and pumped in another, through buffers
+	 * small enough to wrap around many times, are received unchanged.
+	 */
+	@Test
+	public void testThreads() throws IOException, InterruptedException {
+		for (WaitStrategy strategy : new WaitStrategy[] { WaitStrategy.YIELD,
+				WaitStrategy.PARK }) {
+			for (int capacity : new int[] { 8, 1024 }) {
+				for (int i = 0; i < 5; i++)
+					testThreads(new RingBufferProxyPipe(capacity, strategy));
+			}
+		}
+	}
+
+	protected void testThreads(final RingBufferProxyPipe pipe)
+			throws IOException, InterruptedException {
+		Graph g = new AdjacencyListGraph("g");
+		pipe.init(g);
+
+		FileSinkDGS dgs1 = new FileSinkDGS();
+		FileSinkDGS dgs2 = new FileSinkDGS();
+		StringWriter w1 = new StringWriter();
+		StringWriter w2 = new StringWriter();
+		g.addSink(dgs1);
+		pipe.addSink(dgs2);
+		dgs1.begin(w1);
+		dgs2.begin(w2);
+
+		final AtomicBoolean alive = new AtomicBoolean(true);
+		Thread consumer = new Thread() {
+			@Override
+			public void run() {
+				do
+					pipe.pump(100);
+				while (alive.get() || pipe.hasPostRemaining());
+			}
+		};
+		consumer.start();
+
+		new TestThreadProxyPipe().generateRandom(g, 1000);
+		g.stepBegins(1);
+		g.removeNode(0);
+		g.clear();
+
+		alive.set(false);
+		consumer.join();
+		w1.close();
+		w2.close();
+
+		assertTrue(w1.toString().length() > 0);
+		assertEquals(w1.toString(), w2.toString());
+	}
+}
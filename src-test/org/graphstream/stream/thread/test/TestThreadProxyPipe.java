@@ -39,8 +39,10 @@ import org.graphstream.graph.Graph;
 import org.graphstream.graph.Node;
 import org.graphstream.graph.implementations.AdjacencyListGraph;
 import org.graphstream.graph.implementations.MultiGraph;
+import org.graphstream.stream.EventBatch;
 import org.graphstream.stream.file.FileSinkDGS;
 import org.graphstream.stream.thread.ThreadProxyPipe;
+import org.graphstream.stream.thread.ThreadProxyPipe.OverflowPolicy;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -155,8 +157,11 @@ public class TestThreadProxyPipe {
 	}
 
 	public void testOne() throws IOException {
+		testOne(new ThreadProxyPipe());
+	}
+
+	public void testOne(ThreadProxyPipe tpp) throws IOException {
 		Graph g = new AdjacencyListGraph("g");
-		ThreadProxyPipe tpp = new ThreadProxyPipe();
 		tpp.init(g);
 
 		FileSinkDGS dgs1 = new FileSinkDGS();
@@ -193,9 +198,155 @@ public class TestThreadProxyPipe {
 		Assert.assertEquals(str1, str2);
 	}
 
+	@Test
+	public void testBlock() throws IOException {
+		for (int i = 0; i < 20; i++)
+			testOne(new ThreadProxyPipe(4, OverflowPolicy.BLOCK));
+	}
+
+	@Test
+	public void testBatch() {
+		Graph target = new MultiGraph("g2");
+		ThreadProxyPipe tpp = new ThreadProxyPipe();
+		tpp.addSink(target);
+
+		EventBatch batch = new EventBatch();
+		batch.nodeAdded("g1", 1, "A");
+		batch.nodeAdded("g1", 2, "B");
+		batch.edgeAdded("g1", 3, "AB", "A", "B", true);
+		batch.nodeAttributeAdded("g1", 4, "A", "x", 1);
+
+		tpp.eventBatch(batch);
+		// the pipe posted a copy
+		batch.clear();
+		Assert.assertEquals(1, tpp.getQueueDepth());
+
+		tpp.pump();
+		Assert.assertEquals(2, target.getNodeCount());
+		Assert.assertTrue(target.getEdge("AB").isDirected());
+		Assert.assertEquals(1, target.getNode("A").getAttribute("x"));
+
+		// other policies post the events one by one
+		ThreadProxyPipe dropping = new ThreadProxyPipe(2,
+				OverflowPolicy.DROP_OLDEST);
+		batch.nodeAdded("g1", 5, "C");
+		batch.nodeAdded("g1", 6, "D");
+		batch.nodeAdded("g1", 7, "E");
+		dropping.eventBatch(batch);
+		Assert.assertEquals(2, dropping.getQueueDepth());
+		Assert.assertEquals(1, dropping.getDroppedEvents());
+	}
+
+	@Test
+	public void testDropOldest() {
+		Graph source = new MultiGraph("g1");
+		Graph target = new MultiGraph("g2", false, true);
+		ThreadProxyPipe tpp = new ThreadProxyPipe(3,
+				OverflowPolicy.DROP_OLDEST);
+		tpp.addSink(target);
+		tpp.init(source);
+
+		for (int i = 0; i < 5; i++)
+			source.addNode("n" + i);
+		Assert.assertEquals(3, tpp.getQueueDepth());
+		Assert.assertEquals(2, tpp.getDroppedEvents());
+
+		tpp.pump();
+		Assert.assertEquals(0, tpp.getQueueDepth());
+		Assert.assertEquals(3, target.getNodeCount());
+		Assert.assertNull(target.getNode("n1"));
+		Assert.assertNotNull(target.getNode("n4"));
+
+		// the target creates the missing nodes
+		source.addEdge("e", "n0", "n1");
+		tpp.pump();
+		Assert.assertNotNull(target.getEdge("e"));
+	}
+
+	@Test
+	public void testCoalesce() {
+		Graph source = new MultiGraph("g1");
+		Graph target = new MultiGraph("g2");
+		ThreadProxyPipe tpp = new ThreadProxyPipe(100,
+				OverflowPolicy.COALESCE);
+		tpp.addSink(target);
+		tpp.init(source);
+
+		Node a = source.addNode("A");
+		Node b = source.addNode("B");
+		for (int i = 0; i < 10; i++) {
+			a.setAttribute("x", i);
+			b.setAttribute("x", -i);
+			source.setAttribute("step", i);
+		}
+		Assert.assertEquals(5, tpp.getQueueDepth());
+		Assert.assertEquals(27, tpp.getCoalescedEvents());
+		tpp.pump();
+		Assert.assertEquals(9, target.getNode("A").getAttribute("x"));
+		Assert.assertEquals(-9, target.getNode("B").getAttribute("x"));
+		Assert.assertEquals(9, target.getAttribute("step"));
+
+		// a pumped event is not changed anymore
+		a.setAttribute("x", 10);
+		tpp.pump();
+		a.setAttribute("x", 11);
+		Assert.assertEquals(1, tpp.getQueueDepth());
+
+		// removals end coalescing
+		a.removeAttribute("x");
+		a.setAttribute("x", 12);
+		a.setAttribute("x", 13);
+		source.removeNode("B");
+		source.addNode("B").setAttribute("x", 14);
+		source.getNode("B").setAttribute("x", 15);
+		Assert.assertEquals(6, tpp.getQueueDepth());
+		tpp.pump();
+		Assert.assertEquals(13, target.getNode("A").getAttribute("x"));
+		Assert.assertEquals(15, target.getNode("B").getAttribute("x"));
+		Assert.assertEquals(29, tpp.getCoalescedEvents());
+	}
+
+	/**
+	 * With coalescing, the target reaches the same state as the source.
+	 */
+	@Test
+	public void testCoalesceThreads() throws InterruptedException {
+		for (int k = 0; k < 20; k++) {
+			Graph g = new AdjacencyListGraph("g");
+			Graph target = new AdjacencyListGraph("target");
+			ThreadProxyPipe tpp = new ThreadProxyPipe(16,
+					OverflowPolicy.COALESCE);
+			tpp.addSink(target);
+			tpp.init(g);
+
+			Actor a = new Actor(tpp);
+			Thread t = new Thread(a);
+			t.start();
+			generateRandom(g, 300);
+			for (int i = 0; i < 3000; i++)
+				g.getNode(ri(300)).setAttribute("a", i);
+			a.alive = false;
+			t.join();
+
+			Assert.assertEquals(g.getNodeCount(), target.getNodeCount());
+			Assert.assertEquals(g.getEdgeCount(), target.getEdgeCount());
+			for (Node n : g) {
+				Node m = target.getNode(n.getId());
+				Assert.assertEquals(n.getAttributeCount(), m.getAttributeCount());
+				for (String key : n.getAttributeKeySet())
+					Assert.assertEquals(n.getAttribute(key), m.getAttribute(key));
+			}
+			for (Edge e : g.getEachEdge()) {
+				Edge f = target.getEdge(e.getId());
+				for (String key : e.getAttributeKeySet())
+					Assert.assertEquals(e.getAttribute(key), f.getAttribute(key));
+			}
+		}
+	}
+
 	static class Actor implements Runnable {
 		ThreadProxyPipe pipe;
-		boolean alive;
+		volatile boolean alive;
 
 		public Actor(ThreadProxyPipe pipe) {
 			this.pipe = pipe;
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2006 - 2013
+ *     Stefan Balev     <stefan.balev@graphstream-project.org>
+ *     Julien Baudry    <julien.baudry@graphstream-project.org>
+ *     Antoine Dutot    <antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné      <yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin   <guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.util.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.graphstream.graph.Graph;
+import org.graphstream.graph.Node;
+import org.graphstream.graph.implementations.MultiGraph;
+import org.graphstream.util.DegreeStatistics;
+import org.junit.Test;
+
+public class TestDegreeStatistics {
+	@Test
+	public void basic() {
+		Graph graph = new MultiGraph("g");
+		DegreeStatistics stats = new DegreeStatistics();
+		graph.addElementSink(stats);
+
+		assertEquals(0, stats.getMaxDegree());
+		assertEquals(0, stats.getAverageDegree(), 0);
+		assertEquals(0, stats.getDensity(), 0);
+		assertEquals(0, stats.getDegreeDistribution().length);
+
+		graph.addNode("A");
+		graph.addNode("B");
+		graph.addNode("C");
+		graph.addEdge("AB", "A", "B");
+		graph.addEdge("AC", "A", "C", true);
+		graph.addEdge("AA", "A", "A");
+		assertEquals(3, stats.getMaxDegree());
+		assertEquals(3, stats.getDegree("A"));
+		assertEquals(5.0 / 3, stats.getAverageDegree(), 1e-9);
+		assertEquals(1, stats.getDensity(), 0);
+		assertArrayEquals(new int[] { 0, 2, 0, 1 },
+				stats.getDegreeDistribution());
+
+		graph.removeNode("A");
+		assertEquals(0, stats.getMaxDegree());
+		assertEquals(2, stats.getNodeCountOfDegree(0));
+		assertEquals(0, stats.getEdgeCount());
+		assertEquals(-1, stats.getDegree("A"));
+
+		graph.clear();
+		assertEquals(0, stats.getNodeCount());
+	}
+
+	@Test
+	public void randomChanges() {
+		Graph graph = new MultiGraph("g");
+		Random random = new Random(3);
+		for (int i = 0; i < 20; i++)
+			graph.addNode("n" + i);
+		graph.addEdge("e", "n0", "n1");
+
+		DegreeStatistics stats = new DegreeStatistics(graph);
+		for (int i = 0; i < 2000; i++) {
+			int n = graph.getNodeCount();
+			int r = random.nextInt(10);
+			if (r == 0)
+				graph.addNode("m" + i);
+			else if (r == 1 && n > 0)
+				graph.removeNode(random.nextInt(n));
+			else if (r < 7 && n > 0)
+				graph.addEdge("e" + i, random.nextInt(n), random.nextInt(n),
+						random.nextBoolean());
+			else if (graph.getEdgeCount() > 0)
+				graph.removeEdge(random.nextInt(graph.getEdgeCount()));
+			check(graph, stats);
+		}
+	}
+
+	protected void check(Graph graph, DegreeStatistics stats) {
+		int n = graph.getNodeCount();
+		int max = 0;
+		long sum = 0;
+		for (Node node : graph) {
+			max = Math.max(max, node.getDegree());
+			sum += node.getDegree();
+			assertEquals(node.getDegree(), stats.getDegree(node.getId()));
+		}
+		int[] distribution = new int[n == 0 ? 0 : max + 1];
+		for (Node node : graph)
+			distribution[node.getDegree()]++;
+
+		assertEquals(n, stats.getNodeCount());
+		assertEquals(graph.getEdgeCount(), stats.getEdgeCount());
+		assertEquals(max, stats.getMaxDegree());
+		assertEquals(n == 0 ? 0 : (double) sum / n, stats.getAverageDegree(),
+				1e-9);
+		assertArrayEquals(distribution, stats.getDegreeDistribution());
+		if (n > 1)
+			assertEquals(2.0 * graph.getEdgeCount() / (n * (n - 1.0)),
+					stats.getDensity(), 1e-9);
+	}
+}
@@ -37,29 +37,52 @@ import java.util.NoSuchElementException;
 public class BreadthFirstIterator<T extends Node> implements Iterator<T> {
 	protected boolean directed;
 	protected Graph graph;
-	protected Node[] queue;
-	protected int[] depth;
+	protected TraversalContext context;
 	protected int qHead, qTail;
 
 	public BreadthFirstIterator(Node startNode, boolean directed) {
-		this.directed = directed;
-		graph = startNode.getGraph();
-		int n = graph.getNodeCount();
-		queue = new Node[n];
-		depth = new int[n];
-
-		int s = startNode.getIndex();
-		for (int i = 0; i < n; i++)
-			depth[i] = i == s ? 0 : -1;
-		queue[0] = startNode;
-		qHead = 0;
-		qTail = 1;
+		this(new TraversalContext(startNode.getGraph().getNodeCount()),
+				startNode, directed);
 	}
 
 	public BreadthFirstIterator(Node startNode) {
 		this(startNode, true);
 	}
 
+	/**
+	 * Creates an iterator working in the memory of a reusable context. The
+	 * traversal stops at the maximum depth of the context.
+	 * 
+	 * @param context
+	 *            The context, whose previous traversal is abandoned.
+	 * @param startNode
+	 *            The node where the traversal starts.
+	 * @param directed
+	 *            If true, only the leaving edges are followed.
+	 */
+	public BreadthFirstIterator(TraversalContext context, Node startNode,
+			boolean directed) {
+		this.context = context;
+		this.directed = directed;
+		reset(startNode);
+	}
+
+	/**
+	 * Restarts the traversal from another node, without allocating anything
+	 * once the context is large enough.
+	 * 
+	 * @param startNode
+	 *            The node where the new traversal starts.
+	 */
+	public void reset(Node startNode) {
+		graph = startNode.getGraph();
+		context.begin(graph.getNodeCount());
+		context.visit(startNode.getIndex(), 0);
+		context.put(0, startNode);
+		qHead = 0;
+		qTail = 1;
+	}
+
 	public boolean hasNext() {
 		return qHead < qTail;
 	}
@@ -68,19 +91,23 @@ public class BreadthFirstIterator<T extends Node> implements Iterator<T> {
 	public T next() {
 		if (qHead >= qTail)
 			throw new NoSuchElementException();
-		Node current = queue[qHead++];
-		int level = depth[current.getIndex()] + 1;
-		Iterable<Edge> edges = directed ? current.getEachLeavingEdge()
-				: current.getEachEdge();
-		for (Edge e : edges) {
-			Node node = e.getOpposite(current);
-			int j = node.getIndex();
-			if (depth[j] == -1) {
-				queue[qTail++] = node;
-				depth[j] = level;
+		TraversalContext c = context;
+		Node current = c.nodes[qHead++];
+		int level = c.depths[current.getIndex()] + 1;
+		if (level <= c.maxDepth) {
+			int n = directed ? current.getOutDegree() : current.getDegree();
+			for (int k = 0; k < n; k++) {
+				Edge e = directed ? current.getLeavingEdge(k) : current
+						.getEdge(k);
+				Node node = e.getOpposite(current);
+				int j = node.getIndex();
+				if (!c.isVisited(j)) {
+					c.visit(j, level);
+					c.put(qTail++, node);
+				}
 			}
 		}
-		return (T)current;
+		return (T) current;
 	}
 
 	public void remove() {
@@ -89,15 +116,15 @@ public class BreadthFirstIterator<T extends Node> implements Iterator<T> {
 	}
 
 	public int getDepthOf(Node node) {
-		return depth[node.getIndex()];
+		return context.depthOf(node.getIndex());
 	}
 
 	public int getDepthMax() {
-		return depth[queue[qTail - 1].getIndex()];
+		return context.depths[context.nodes[qTail - 1].getIndex()];
 	}
 
 	public boolean tabu(Node node) {
-		return depth[node.getIndex()] != -1;
+		return context.depthOf(node.getIndex()) != -1;
 	}
 
 	public boolean isDirected() {
@@ -38,50 +38,80 @@ public class DepthFirstIterator<T extends Node> implements Iterator<T> {
 	boolean directed;
 	Graph graph;
 
-	Node[] parent;
-	Iterator<Edge>[] iterator;
-	int depth[];
+	TraversalContext context;
+	int top;
 	Node next;
 	int maxDepth;
 
-	@SuppressWarnings("unchecked")
 	public DepthFirstIterator(Node startNode, boolean directed) {
+		this(new TraversalContext(startNode.getGraph().getNodeCount()),
+				startNode, directed);
+	}
+
+	public DepthFirstIterator(Node startNode) {
+		this(startNode, true);
+	}
+
+	/**
+	 * Creates an iterator working in the memory of a reusable context. The
+	 * traversal stops at the maximum depth of the context.
+	 * 
+	 * @param context
+	 *            The context, whose previous traversal is abandoned.
+	 * @param startNode
+	 *            The node where the traversal starts.
+	 * @param directed
+	 *            If true, only the leaving edges are followed.
+	 */
+	public DepthFirstIterator(TraversalContext context, Node startNode,
+			boolean directed) {
+		this.context = context;
 		this.directed = directed;
-		graph = startNode.getGraph();
-		int n = graph.getNodeCount();
-		parent = new Node[n];
-		iterator = new Iterator[n];
-		depth = new int[n];
+		reset(startNode);
+	}
 
-		int s = startNode.getIndex();
-		for (int i = 0; i < n; i++)
-			depth[i] = i == s ? 0 : -1;
+	/**
+	 * Restarts the traversal from another node, without allocating anything
+	 * once the context is large enough.
+	 * 
+	 * @param startNode
+	 *            The node where the new traversal starts.
+	 */
+	public void reset(Node startNode) {
+		graph = startNode.getGraph();
+		context.begin(graph.getNodeCount());
+		context.visit(startNode.getIndex(), 0);
+		context.put(0, startNode);
+		top = 0;
 		next = startNode;
+		maxDepth = 0;
 	}
 
 	protected void gotoNext() {
-		while (next != null) {
-			int i = next.getIndex();
-			while (iterator[i].hasNext()) {
-				Node neighbor = iterator[i].next().getOpposite(next);
+		TraversalContext c = context;
+		while (top >= 0) {
+			Node current = c.nodes[top];
+			int d = c.depths[current.getIndex()];
+			int n = d >= c.maxDepth ? 0 : directed ? current.getOutDegree()
+					: current.getInDegree();
+			while (c.positions[top] < n) {
+				int k = c.positions[top]++;
+				Edge e = directed ? current.getLeavingEdge(k) : current
+						.getEnteringEdge(k);
+				Node neighbor = e.getOpposite(current);
 				int j = neighbor.getIndex();
-				if (iterator[j] == null) {
-					parent[j] = next;
-					iterator[j] = directed ? neighbor.getLeavingEdgeIterator()
-							: neighbor.getEnteringEdgeIterator();
-					depth[j] = depth[i] + 1;
-					if (depth[j] > maxDepth)
-						maxDepth = depth[j];
+				if (!c.isVisited(j)) {
+					c.visit(j, d + 1);
+					if (d + 1 > maxDepth)
+						maxDepth = d + 1;
+					c.put(++top, neighbor);
 					next = neighbor;
 					return;
 				}
 			}
-			next = parent[i];
+			top--;
 		}
-	}
-
-	public DepthFirstIterator(Node startNode) {
-		this(startNode, true);
+		next = null;
 	}
 
 	public boolean hasNext() {
@@ -92,8 +122,6 @@ public class DepthFirstIterator<T extends Node> implements Iterator<T> {
 	public T next() {
 		if (next == null)
 			throw new NoSuchElementException();
-		iterator[next.getIndex()] = directed ? next.getLeavingEdgeIterator()
-				: next.getEnteringEdgeIterator();
 		Node previous = next;
 		gotoNext();
 		return (T) previous;
@@ -105,7 +133,7 @@ public class DepthFirstIterator<T extends Node> implements Iterator<T> {
 	}
 
 	public int getDepthOf(Node node) {
-		return depth[node.getIndex()];
+		return context.depthOf(node.getIndex());
 	}
 
 	public int getDepthMax() {
@@ -113,7 +141,7 @@ public class DepthFirstIterator<T extends Node> implements Iterator<T> {
 	}
 
 	public boolean tabu(Node node) {
-		return depth[node.getIndex()] != -1;
+		return context.depthOf(node.getIndex()) != -1;
 	}
 
 	public boolean isDirected() {
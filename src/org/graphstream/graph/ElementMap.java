@@ -5,26 +5,59 @@
  */
 package org.graphstream.graph;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 /**
  * a sorted, memory-efficient map of elements
+ * <p>
+ * Elements are sorted by id in a B+-tree whose leaves hold up to
+ * {@value #CAPACITY} elements in arrays, so that inserting or removing an
+ * element only shifts the entries of one leaf instead of the whole map. Inner
+ * nodes count the elements of each subtree, which gives the position of an
+ * element and access by index in O(log n). Nodes are merged with a sibling or
+ * rebalanced when they fall under a quarter of their capacity.
  *
  * @author bowen
  */
 public class ElementMap<T extends Element> implements Iterable<T>
 {
-    private long lastCheck = System.currentTimeMillis();
+    /**
+     * Maximum number of entries of a node.
+     */
+    private static final int CAPACITY = 64;
 
-    private final ArrayList<T> elements = new ArrayList<>(0);
+    /**
+     * Number of entries under which a node is merged or rebalanced.
+     */
+    private static final int MIN = CAPACITY / 4;
+
+    /**
+     * Root of the tree, {@code null} when the map is empty.
+     */
+    private Node root = null;
+
+    private int size = 0;
+
+    private int modCount = 0;
+
+    /**
+     * Set by {@link #insert(Node, Element)} when the element was added.
+     */
+    private boolean inserted;
+
+    /**
+     * Set by {@link #insert(Node, Element)} when it splits a node, first id of
+     * the new right node.
+     */
+    private String splitKey;
 
     public void clear()
     {
-        this.elements.clear();
-        this.elements.trimToSize();
+        this.root = null;
+        this.size = 0;
+        this.modCount++;
     }
 
     public boolean add(final T element)
@@ -33,34 +66,74 @@ public class ElementMap<T extends Element> implements Iterable<T>
         {
             return false;
         }
-        final int index = Collections.binarySearch(this.elements, element, ElementComparator.getInstance());
-        if (index >= 0)
+        if (null == this.root)
         {
-            return false;
+            this.root = new Leaf();
         }
-        final int insertionPoint = -(index) - 1;
-        this.elements.add(insertionPoint, element);
-        this.checkAndTrim();
-        return true;
+        this.inserted = false;
+        final Node right = this.insert(this.root, element);
+        if (right != null)
+        {
+            final Inner inner = new Inner();
+            inner.children[0] = this.root;
+            inner.sizes[0] = this.root.size();
+            inner.children[1] = right;
+            inner.sizes[1] = right.size();
+            inner.keys[1] = this.splitKey;
+            inner.n = 2;
+            inner.total = inner.sizes[0] + inner.sizes[1];
+            this.root = inner;
+        }
+        if (this.inserted)
+        {
+            this.size++;
+            this.modCount++;
+        }
+        return this.inserted;
     }
 
+    @SuppressWarnings("unchecked")
     public T get(final int index)
     {
-        return this.elements.get(index);
+        if (index < 0 || index >= this.size)
+        {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+        }
+        Node node = this.root;
+        int position = index;
+        while (node instanceof Inner)
+        {
+            final Inner inner = (Inner) node;
+            int i = 0;
+            while (position >= inner.sizes[i])
+            {
+                position -= inner.sizes[i++];
+            }
+            node = inner.children[i];
+        }
+        return (T) ((Leaf) node).items[position];
     }
 
+    @SuppressWarnings("unchecked")
     public T get(final String id)
     {
-        if (null == id)
+        if (null == id || null == this.root)
         {
             return null;
         }
-        final int index = Collections.binarySearch(this.elements, id, IdComparator.instance);
+        Node node = this.root;
+        while (node instanceof Inner)
+        {
+            final Inner inner = (Inner) node;
+            node = inner.children[inner.childFor(id)];
+        }
+        final Leaf leaf = (Leaf) node;
+        final int index = leaf.search(id);
         if (index < 0)
         {
             return null;
         }
-        return this.elements.get(index);
+        return (T) leaf.items[index];
     }
 
     public boolean remove(final T element)
@@ -69,104 +142,522 @@ public class ElementMap<T extends Element> implements Iterable<T>
         {
             return false;
         }
-        final int index = Collections.binarySearch(this.elements, element, ElementComparator.getInstance());
-        if (index < 0)
-        {
-            return false;
-        }
-        this.elements.remove(index);
-        this.checkAndTrim();
-        return true;
+        return this.remove(element.getId());
     }
 
     public boolean remove(final int index)
     {
-        if (null == this.elements.remove(index))
-        {
-            return false;
-        }
-        this.checkAndTrim();
-        return true;
+        return this.remove(this.get(index).getId());
     }
 
     public boolean remove(final String id)
     {
-        if (null == id)
+        if (null == id || null == this.root)
         {
             return false;
         }
-        final int index = Collections.binarySearch(this.elements, id, IdComparator.instance);
-        if (index < 0)
+        if (null == this.delete(this.root, id))
         {
             return false;
         }
-        this.elements.remove(index);
-        this.checkAndTrim();
+        this.size--;
+        this.modCount++;
+        if (0 == this.size)
+        {
+            this.root = null;
+        }
+        while (this.root instanceof Inner && 1 == this.root.n)
+        {
+            this.root = ((Inner) this.root).children[0];
+        }
         return true;
     }
 
     public int size()
     {
-        return this.elements.size();
+        return this.size;
+    }
+
+    @Override
+    public Iterator<T> iterator()
+    {
+        return new ElementIterator();
     }
 
-    synchronized private boolean checkAndTrim()
+    // Tree
+
+    /**
+     * Inserts an element in the subtree of a node.
+     *
+     * @return The new right sibling of {@code node} if it was split, whose
+     *         first id is put in {@link #splitKey}, or {@code null}.
+     */
+    private Node insert(final Node node, final T element)
     {
-        final long delta = System.currentTimeMillis() - this.lastCheck;
-        if (delta < 5000)
+        final String id = element.getId();
+        if (node instanceof Leaf)
         {
-            return false;
+            final Leaf leaf = (Leaf) node;
+            final int index = leaf.search(id);
+            if (index >= 0)
+            {
+                return null;
+            }
+            leaf.insert(-index - 1, element);
+            this.inserted = true;
+            if (leaf.n <= CAPACITY)
+            {
+                return null;
+            }
+            final Leaf right = leaf.split();
+            this.splitKey = right.items[0].getId();
+            return right;
         }
-        this.elements.trimToSize();
-        this.lastCheck = System.currentTimeMillis();
-        return true;
+
+        final Inner inner = (Inner) node;
+        final int i = inner.childFor(id);
+        final Node child = inner.children[i];
+        final Node right = this.insert(child, element);
+        if (!this.inserted)
+        {
+            return null;
+        }
+        inner.total++;
+        if (null == right)
+        {
+            inner.sizes[i]++;
+            return null;
+        }
+        inner.sizes[i] = child.size();
+        inner.insert(i + 1, right, this.splitKey);
+        if (inner.n <= CAPACITY)
+        {
+            return null;
+        }
+        final Inner sibling = inner.split();
+        this.splitKey = sibling.keys[0];
+        sibling.keys[0] = null;
+        return sibling;
     }
 
-    @Override
-    public Iterator<T> iterator()
+    /**
+     * Removes an element from the subtree of a node.
+     *
+     * @return The removed element or {@code null}.
+     */
+    private Element delete(final Node node, final String id)
+    {
+        if (node instanceof Leaf)
+        {
+            final Leaf leaf = (Leaf) node;
+            final int index = leaf.search(id);
+            if (index < 0)
+            {
+                return null;
+            }
+            final Element element = leaf.items[index];
+            leaf.remove(index);
+            return element;
+        }
+
+        final Inner inner = (Inner) node;
+        final int i = inner.childFor(id);
+        final Element element = this.delete(inner.children[i], id);
+        if (element != null)
+        {
+            inner.sizes[i]--;
+            inner.total--;
+            if (inner.children[i].n < MIN && inner.n > 1)
+            {
+                inner.rebalance(i > 0 ? i - 1 : 0);
+            }
+        }
+        return element;
+    }
+
+    private abstract static class Node
     {
-        return this.elements.iterator();
+        /**
+         * Number of entries, elements or children.
+         */
+        int n;
+
+        /**
+         * Number of elements in the subtree.
+         */
+        abstract int size();
+    }
+
+    private static final class Leaf extends Node
+    {
+        /**
+         * One more slot than the capacity, for the insertion that splits it.
+         */
+        final Element[] items = new Element[CAPACITY + 1];
+
+        Leaf next;
+
+        @Override
+        int size()
+        {
+            return this.n;
+        }
+
+        int search(final String id)
+        {
+            int low = 0;
+            int high = this.n - 1;
+            while (low <= high)
+            {
+                final int mid = (low + high) >>> 1;
+                final int c = this.items[mid].getId().compareTo(id);
+                if (c < 0)
+                {
+                    low = mid + 1;
+                }
+                else if (c > 0)
+                {
+                    high = mid - 1;
+                }
+                else
+                {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+
+        void insert(final int index, final Element element)
+        {
+            System.arraycopy(this.items, index, this.items, index + 1, this.n - index);
+            this.items[index] = element;
+            this.n++;
+        }
+
+        void remove(final int index)
+        {
+            System.arraycopy(this.items, index + 1, this.items, index, this.n - index - 1);
+            this.items[--this.n] = null;
+        }
+
+        Leaf split()
+        {
+            final Leaf right = new Leaf();
+            final int half = this.n / 2;
+            right.n = this.n - half;
+            System.arraycopy(this.items, half, right.items, 0, right.n);
+            for (int i = half; i < this.n; i++)
+            {
+                this.items[i] = null;
+            }
+            this.n = half;
+            right.next = this.next;
+            this.next = right;
+            return right;
+        }
     }
 
-    private static class IdComparator implements Comparator
+    private static final class Inner extends Node
     {
-        private static final IdComparator instance = new IdComparator();
+        final Node[] children = new Node[CAPACITY + 1];
+
+        /**
+         * Number of elements under each child.
+         */
+        final int[] sizes = new int[CAPACITY + 1];
+
+        /**
+         * {@code keys[i]} is not greater than the ids of the subtree of
+         * {@code children[i]}, and greater than the ids of the previous
+         * children. {@code keys[0]} is not used.
+         */
+        final String[] keys = new String[CAPACITY + 1];
+
+        int total;
 
         @Override
-        public int compare(final Object left, final Object right)
+        int size()
         {
-            final String leftId;
-            if (left instanceof Element)
+            return this.total;
+        }
+
+        /**
+         * Index of the child whose subtree may hold an id.
+         */
+        int childFor(final String id)
+        {
+            int low = 1;
+            int high = this.n - 1;
+            while (low <= high)
             {
-                leftId = ((Element) left).getId();
+                final int mid = (low + high) >>> 1;
+                if (this.keys[mid].compareTo(id) <= 0)
+                {
+                    low = mid + 1;
+                }
+                else
+                {
+                    high = mid - 1;
+                }
             }
-            else
+            return low - 1;
+        }
+
+        void insert(final int index, final Node child, final String key)
+        {
+            final int count = this.n - index;
+            System.arraycopy(this.children, index, this.children, index + 1, count);
+            System.arraycopy(this.sizes, index, this.sizes, index + 1, count);
+            System.arraycopy(this.keys, index, this.keys, index + 1, count);
+            this.children[index] = child;
+            this.sizes[index] = child.size();
+            this.keys[index] = key;
+            this.n++;
+        }
+
+        void remove(final int index)
+        {
+            final int count = this.n - index - 1;
+            System.arraycopy(this.children, index + 1, this.children, index, count);
+            System.arraycopy(this.sizes, index + 1, this.sizes, index, count);
+            System.arraycopy(this.keys, index + 1, this.keys, index, count);
+            this.n--;
+            this.children[this.n] = null;
+            this.keys[this.n] = null;
+        }
+
+        /**
+         * Splits this node in two, the separator of the new right node is in
+         * its {@code keys[0]}.
+         */
+        Inner split()
+        {
+            final Inner right = new Inner();
+            final int half = this.n / 2;
+            right.n = this.n - half;
+            System.arraycopy(this.children, half, right.children, 0, right.n);
+            System.arraycopy(this.sizes, half, right.sizes, 0, right.n);
+            System.arraycopy(this.keys, half, right.keys, 0, right.n);
+            for (int i = half; i < this.n; i++)
+            {
+                this.children[i] = null;
+                this.keys[i] = null;
+                right.total += this.sizes[i];
+            }
+            this.total -= right.total;
+            this.n = half;
+            return right;
+        }
+
+        /**
+         * Merges the children {@code i} and {@code i + 1} if they fit in one
+         * node, or shares their entries evenly otherwise.
+         */
+        void rebalance(final int i)
+        {
+            final Node left = this.children[i];
+            final Node right = this.children[i + 1];
+            if (left.n + right.n <= CAPACITY)
             {
-                leftId = left != null ? left.toString() : null;
+                if (left instanceof Leaf)
+                {
+                    final Leaf l = (Leaf) left;
+                    final Leaf r = (Leaf) right;
+                    System.arraycopy(r.items, 0, l.items, l.n, r.n);
+                    l.n += r.n;
+                    l.next = r.next;
+                }
+                else
+                {
+                    final Inner l = (Inner) left;
+                    final Inner r = (Inner) right;
+                    r.keys[0] = this.keys[i + 1];
+                    System.arraycopy(r.children, 0, l.children, l.n, r.n);
+                    System.arraycopy(r.sizes, 0, l.sizes, l.n, r.n);
+                    System.arraycopy(r.keys, 0, l.keys, l.n, r.n);
+                    l.n += r.n;
+                    l.total += r.total;
+                }
+                this.sizes[i] += this.sizes[i + 1];
+                this.remove(i + 1);
+                return;
             }
 
-            final String rightId;
-            if (right instanceof Element)
+            final int half = (left.n + right.n) / 2;
+            if (left instanceof Leaf)
             {
-                rightId = ((Element) right).getId();
+                final Leaf l = (Leaf) left;
+                final Leaf r = (Leaf) right;
+                if (l.n < half)
+                {
+                    final int moved = half - l.n;
+                    System.arraycopy(r.items, 0, l.items, l.n, moved);
+                    System.arraycopy(r.items, moved, r.items, 0, r.n - moved);
+                    for (int k = r.n - moved; k < r.n; k++)
+                    {
+                        r.items[k] = null;
+                    }
+                    l.n += moved;
+                    r.n -= moved;
+                }
+                else
+                {
+                    final int moved = l.n - half;
+                    System.arraycopy(r.items, 0, r.items, moved, r.n);
+                    System.arraycopy(l.items, half, r.items, 0, moved);
+                    for (int k = half; k < l.n; k++)
+                    {
+                        l.items[k] = null;
+                    }
+                    l.n -= moved;
+                    r.n += moved;
+                }
+                this.keys[i + 1] = r.items[0].getId();
             }
             else
             {
-                rightId = right != null ? right.toString() : null;
+                final Inner l = (Inner) left;
+                final Inner r = (Inner) right;
+                r.keys[0] = this.keys[i + 1];
+                if (l.n < half)
+                {
+                    final int moved = half - l.n;
+                    System.arraycopy(r.children, 0, l.children, l.n, moved);
+                    System.arraycopy(r.sizes, 0, l.sizes, l.n, moved);
+                    System.arraycopy(r.keys, 0, l.keys, l.n, moved);
+                    System.arraycopy(r.children, moved, r.children, 0, r.n - moved);
+                    System.arraycopy(r.sizes, moved, r.sizes, 0, r.n - moved);
+                    System.arraycopy(r.keys, moved, r.keys, 0, r.n - moved);
+                    for (int k = r.n - moved; k < r.n; k++)
+                    {
+                        r.children[k] = null;
+                        r.keys[k] = null;
+                    }
+                    l.n += moved;
+                    r.n -= moved;
+                }
+                else
+                {
+                    final int moved = l.n - half;
+                    System.arraycopy(r.children, 0, r.children, moved, r.n);
+                    System.arraycopy(r.sizes, 0, r.sizes, moved, r.n);
+                    System.arraycopy(r.keys, 0, r.keys, moved, r.n);
+                    System.arraycopy(l.children, half, r.children, 0, moved);
+                    System.arraycopy(l.sizes, half, r.sizes, 0, moved);
+                    System.arraycopy(l.keys, half, r.keys, 0, moved);
+                    for (int k = half; k < l.n; k++)
+                    {
+                        l.children[k] = null;
+                        l.keys[k] = null;
+                    }
+                    l.n -= moved;
+                    r.n += moved;
+                }
+                this.keys[i + 1] = r.keys[0];
+                r.keys[0] = null;
+                l.total = 0;
+                for (int k = 0; k < l.n; k++)
+                {
+                    l.total += l.sizes[k];
+                }
+                r.total = this.sizes[i] + this.sizes[i + 1] - l.total;
             }
+            this.sizes[i] = left.size();
+            this.sizes[i + 1] = right.size();
+        }
+    }
+
+    /**
+     * Iterates on the leaves in order. {@link #remove()} looks for the leaf of
+     * the next element again, since removing may merge leaves.
+     */
+    private final class ElementIterator implements Iterator<T>
+    {
+        private Leaf leaf;
+
+        private int offset;
+
+        /**
+         * Index of the next element.
+         */
+        private int position = 0;
 
-            if (null == leftId && null == rightId)
+        private T last = null;
+
+        private int expectedModCount = ElementMap.this.modCount;
+
+        ElementIterator()
+        {
+            this.seek();
+        }
+
+        private void seek()
+        {
+            this.leaf = null;
+            if (this.position >= ElementMap.this.size)
             {
-                return 1;
+                return;
             }
-            else if (leftId != null)
+            Node node = ElementMap.this.root;
+            int p = this.position;
+            while (node instanceof Inner)
             {
-                return leftId.compareTo(rightId);
+                final Inner inner = (Inner) node;
+                int i = 0;
+                while (p >= inner.sizes[i])
+                {
+                    p -= inner.sizes[i++];
+                }
+                node = inner.children[i];
             }
-            else
+            this.leaf = (Leaf) node;
+            this.offset = p;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return this.leaf != null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T next()
+        {
+            if (ElementMap.this.modCount != this.expectedModCount)
+            {
+                throw new ConcurrentModificationException();
+            }
+            if (null == this.leaf)
+            {
+                throw new NoSuchElementException();
+            }
+            this.last = (T) this.leaf.items[this.offset++];
+            this.position++;
+            if (this.offset == this.leaf.n)
+            {
+                this.leaf = this.leaf.next;
+                this.offset = 0;
+            }
+            return this.last;
+        }
+
+        @Override
+        public void remove()
+        {
+            if (null == this.last)
+            {
+                throw new IllegalStateException();
+            }
+            if (ElementMap.this.modCount != this.expectedModCount)
             {
-                return -1;
+                throw new ConcurrentModificationException();
             }
+            ElementMap.this.remove(this.last.getId());
+            this.last = null;
+            this.position--;
+            this.expectedModCount = ElementMap.this.modCount;
+            this.seek();
         }
     }
 }
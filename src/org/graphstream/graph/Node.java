@@ -349,6 +349,70 @@ public interface Node extends Element, Iterable<Edge> {
 	 */
 	<T extends Edge> T getLeavingEdge(int i);
 
+	/**
+	 * Gives the index of the opposite node of each edge of this node to a
+	 * consumer. A node linked to this one by several edges is given several
+	 * times, and a loop gives this node. No object is allocated, which makes
+	 * this method suited to the inner loops of algorithms working on node
+	 * indices. This node must not change during the call.
+	 * 
+	 * @param action
+	 *            The consumer of the indices.
+	 * @complexity O(d) where d is the degree
+	 */
+	void forEachNeighborIndex(IndexConsumer action);
+
+	/**
+	 * Like {@link #forEachNeighborIndex(IndexConsumer)}, but only for the
+	 * entering edges, undirected edges included.
+	 * 
+	 * @param action
+	 *            The consumer of the indices.
+	 */
+	void forEachEnteringNeighborIndex(IndexConsumer action);
+
+	/**
+	 * Like {@link #forEachNeighborIndex(IndexConsumer)}, but only for the
+	 * leaving edges, undirected edges included.
+	 * 
+	 * @param action
+	 *            The consumer of the indices.
+	 */
+	void forEachLeavingNeighborIndex(IndexConsumer action);
+
+	/**
+	 * Copies the index of the opposite node of each edge of this node, in the
+	 * order of {@link #getEdge(int)}, to an array. If the array is too short,
+	 * only its length is filled, so that a caller can reuse a buffer and grow
+	 * it when the returned count exceeds its length.
+	 * 
+	 * @param buf
+	 *            The array receiving the indices.
+	 * @return The number of indices, that is the degree.
+	 * @complexity O(d) where d is the degree
+	 */
+	int neighborIndices(int[] buf);
+
+	/**
+	 * Like {@link #neighborIndices(int[])}, but only for the entering edges,
+	 * in the order of {@link #getEnteringEdge(int)}.
+	 * 
+	 * @param buf
+	 *            The array receiving the indices.
+	 * @return The number of indices, that is the in-degree.
+	 */
+	int enteringNeighborIndices(int[] buf);
+
+	/**
+	 * Like {@link #neighborIndices(int[])}, but only for the leaving edges, in
+	 * the order of {@link #getLeavingEdge(int)}.
+	 * 
+	 * @param buf
+	 *            The array receiving the indices.
+	 * @return The number of indices, that is the out-degree.
+	 */
+	int leavingNeighborIndices(int[] buf);
+
 	/**
 	 * Iterator for breadth first exploration of the graph, starting at this
 	 * node.
@@ -0,0 +1,365 @@
+/*
+ * Copyright 2006 - 2013
+ *     Stefan Balev     <stefan.balev@graphstream-project.org>
+ *     Julien Baudry    <julien.baudry@graphstream-project.org>
+ *     Antoine Dutot    <antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné      <yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin   <guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.graph;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * Breadth-first search exploring each level of the graph in parallel. It
+ * computes the same depths as {@link BreadthFirstIterator}, but does not
+ * enumerate the nodes in order, which makes it suitable for reachability and
+ * distance layering on large graphs.
+ * </p>
+ * 
+ * <p>
+ * Each level is split into tasks run by a {@link ForkJoinPool}. Nodes are
+ * claimed with an atomic compare-and-set on the slot of their index, so each
+ * node joins the next level exactly once. The search is direction-optimizing:
+ * while the frontier is small, its nodes look for unvisited neighbors
+ * (top-down), and when the edges leaving the frontier outnumber a fraction of
+ * the edges left to explore, the unvisited nodes look for a neighbor in the
+ * frontier instead (bottom-up), which saves most of the edge checks on the
+ * middle levels of low-diameter graphs.
+ * </p>
+ * 
+ * <p>
+ * The graph must not change during {@link #compute(Node)}. Its nodes are read
+ * from several threads at once, which all the graph implementations support
+ * as long as nobody writes.
+ * </p>
+ * 
+ * <pre>
+ * ParallelBreadthFirstSearch bfs = new ParallelBreadthFirstSearch(graph, true);
+ * bfs.compute(graph.getNode(&quot;A&quot;));
+ * int d = bfs.getDepthOf(graph.getNode(&quot;B&quot;));
+ * </pre>
+ */
+public class ParallelBreadthFirstSearch {
+	/**
+	 * Number of frontier nodes, or of candidate nodes when going bottom-up,
+	 * handled by a task without splitting it.
+	 */
+	protected static final int GRAIN = 1024;
+
+	/**
+	 * The search goes bottom-up when the edges of the frontier are more than
+	 * the unexplored edges divided by this.
+	 */
+	protected static final int ALPHA = 14;
+
+	/**
+	 * The search goes back top-down when the frontier is smaller than the
+	 * number of nodes divided by this.
+	 */
+	protected static final int BETA = 24;
+
+	private static class DefaultPool {
+		static final ForkJoinPool POOL = new ForkJoinPool();
+	}
+
+	protected final Graph graph;
+	protected final boolean directed;
+	protected final ForkJoinPool pool;
+	protected boolean directionOptimizing;
+
+	/**
+	 * Nodes by index, depths by index (-1 for unvisited nodes), the current
+	 * level and the next one.
+	 */
+	Node[] nodes;
+	AtomicIntegerArray depths;
+	int[] frontier, next;
+
+	final AtomicInteger nextSize = new AtomicInteger();
+	final AtomicLong nextEdges = new AtomicLong();
+
+	int depthMax, visitedCount, bottomUpSteps;
+
+	/**
+	 * Creates a search running in a pool shared by all the searches.
+	 * 
+	 * @param graph
+	 *            The searched graph.
+	 * @param directed
+	 *            If true, only the leaving edges are followed.
+	 */
+	public ParallelBreadthFirstSearch(Graph graph, boolean directed) {
+		this(graph, directed, DefaultPool.POOL);
+	}
+
+	/**
+	 * Creates a search running in a given pool.
+	 * 
+	 * @param graph
+	 *            The searched graph.
+	 * @param directed
+	 *            If true, only the leaving edges are followed.
+	 * @param pool
+	 *            The pool running the tasks of each level.
+	 */
+	public ParallelBreadthFirstSearch(Graph graph, boolean directed,
+			ForkJoinPool pool) {
+		this.graph = graph;
+		this.directed = directed;
+		this.pool = pool;
+		directionOptimizing = true;
+	}
+
+	/**
+	 * Enables or disables the bottom-up steps. When disabled, all the levels
+	 * are explored top-down.
+	 * 
+	 * @param on
+	 *            True by default.
+	 */
+	public void setDirectionOptimizing(boolean on) {
+		directionOptimizing = on;
+	}
+
+	public boolean isDirected() {
+		return directed;
+	}
+
+	/**
+	 * Computes the depth of all the nodes reachable from a source node,
+	 * forgetting the previous results.
+	 * 
+	 * @param source
+	 *            The node at depth 0.
+	 */
+	public void compute(Node source) {
+		int n = graph.getNodeCount();
+		if (nodes == null || nodes.length != n) {
+			nodes = new Node[n];
+			depths = new AtomicIntegerArray(n);
+			frontier = new int[n];
+			next = new int[n];
+		}
+
+		long unexplored = 0;
+		for (int i = 0; i < n; i++) {
+			nodes[i] = graph.getNode(i);
+			depths.set(i, -1);
+			unexplored += degree(nodes[i]);
+		}
+
+		int s = source.getIndex();
+		depths.set(s, 0);
+		frontier[0] = s;
+		int frontierSize = 1;
+		long frontierEdges = degree(source);
+		unexplored -= frontierEdges;
+		depthMax = 0;
+		visitedCount = 1;
+		bottomUpSteps = 0;
+		boolean bottomUp = false;
+
+		for (int level = 1;; level++) {
+			if (directionOptimizing) {
+				if (!bottomUp)
+					bottomUp = frontierEdges > unexplored / ALPHA;
+				else
+					bottomUp = frontierSize >= n / BETA;
+			}
+
+			nextSize.set(0);
+			nextEdges.set(0);
+			if (bottomUp) {
+				pool.invoke(new BottomUp(0, n, level));
+				bottomUpSteps++;
+			} else {
+				pool.invoke(new TopDown(0, frontierSize, level));
+			}
+
+			frontierSize = nextSize.get();
+			if (frontierSize == 0)
+				break;
+			int[] t = frontier;
+			frontier = next;
+			next = t;
+			frontierEdges = nextEdges.get();
+			unexplored -= frontierEdges;
+			visitedCount += frontierSize;
+			depthMax = level;
+		}
+
+		// no need to keep the nodes after the search
+		Arrays.fill(nodes, null);
+	}
+
+	/**
+	 * The depth of a node in the last search.
+	 * 
+	 * @param node
+	 *            A node of the graph.
+	 * @return The depth of the node, or -1 if the last search did not reach
+	 *         it.
+	 */
+	public int getDepthOf(Node node) {
+		int i = node.getIndex();
+		return depths == null || i >= depths.length() ? -1 : depths.get(i);
+	}
+
+	/**
+	 * The depth of the farthest nodes reached by the last search.
+	 */
+	public int getDepthMax() {
+		return depthMax;
+	}
+
+	/**
+	 * The number of nodes reached by the last search, including the source.
+	 */
+	public int getVisitedCount() {
+		return visitedCount;
+	}
+
+	/**
+	 * The number of levels the last search explored bottom-up.
+	 */
+	public int getBottomUpSteps() {
+		return bottomUpSteps;
+	}
+
+	protected int degree(Node node) {
+		return directed ? node.getOutDegree() : node.getDegree();
+	}
+
+	/**
+	 * Appends the nodes found by a task to the next frontier.
+	 */
+	void publish(int[] found, int count, long edges) {
+		if (count == 0)
+			return;
+		int at = nextSize.getAndAdd(count);
+		System.arraycopy(found, 0, next, at, count);
+		nextEdges.addAndGet(edges);
+	}
+
+	/**
+	 * Frontier nodes from {@code lo} to {@code hi} claim their unvisited
+	 * neighbors.
+	 */
+	@SuppressWarnings("serial")
+	class TopDown extends RecursiveAction {
+		final int lo, hi, level;
+
+		TopDown(int lo, int hi, int level) {
+			this.lo = lo;
+			this.hi = hi;
+			this.level = level;
+		}
+
+		@Override
+		protected void compute() {
+			if (hi - lo > GRAIN) {
+				int mid = (lo + hi) >>> 1;
+				invokeAll(new TopDown(lo, mid, level), new TopDown(mid, hi,
+						level));
+				return;
+			}
+
+			int[] found = new int[64];
+			int count = 0;
+			long edges = 0;
+			for (int f = lo; f < hi; f++) {
+				Node u = nodes[frontier[f]];
+				int d = degree(u);
+				for (int k = 0; k < d; k++) {
+					Edge e = directed ? u.getLeavingEdge(k) : u.getEdge(k);
+					Node v = e.getOpposite(u);
+					int j = v.getIndex();
+					if (depths.get(j) == -1
+							&& depths.compareAndSet(j, -1, level)) {
+						if (count == found.length)
+							found = Arrays.copyOf(found, count * 2);
+						found[count++] = j;
+						edges += degree(v);
+					}
+				}
+			}
+			publish(found, count, edges);
+		}
+	}
+
+	/**
+	 * Unvisited nodes of index {@code lo} to {@code hi} look for a neighbor
+	 * in the frontier.
+	 */
+	@SuppressWarnings("serial")
+	class BottomUp extends RecursiveAction {
+		final int lo, hi, level;
+
+		BottomUp(int lo, int hi, int level) {
+			this.lo = lo;
+			this.hi = hi;
+			this.level = level;
+		}
+
+		@Override
+		protected void compute() {
+			if (hi - lo > GRAIN) {
+				int mid = (lo + hi) >>> 1;
+				invokeAll(new BottomUp(lo, mid, level), new BottomUp(mid, hi,
+						level));
+				return;
+			}
+
+			int[] found = new int[hi - lo];
+			int count = 0;
+			long edges = 0;
+			for (int i = lo; i < hi; i++) {
+				if (depths.get(i) != -1)
+					continue;
+				Node v = nodes[i];
+				int d = directed ? v.getInDegree() : v.getDegree();
+				for (int k = 0; k < d; k++) {
+					Edge e = directed ? v.getEnteringEdge(k) : v.getEdge(k);
+					// only this task writes the depth of v
+					if (depths.get(e.getOpposite(v).getIndex()) == level - 1) {
+						depths.set(i, level);
+						found[count++] = i;
+						edges += degree(v);
+						break;
+					}
+				}
+			}
+			publish(found, count, edges);
+		}
+	}
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2006 - 2013
+ *     Stefan Balev     <stefan.balev@graphstream-project.org>
+ *     Julien Baudry    <julien.baudry@graphstream-project.org>
+ *     Antoine Dutot    <antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné      <yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin   <guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.graph;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Working memory of {@link BreadthFirstIterator} and
+ * {@link DepthFirstIterator}, which can be reused from one traversal to the
+ * next.
+ * </p>
+ * 
+ * <p>
+ * Instead of clearing an array as large as the graph before each traversal,
+ * the context stamps the nodes it reaches with the number of the current
+ * traversal, so that starting a new one just increments this number. The
+ * queue, or the stack, of the traversal grows with the visited region. Once
+ * the context has grown to the size of the graph, traversals do not allocate
+ * anything and their cost is proportional to the number of nodes they visit.
+ * This matters when running many shallow traversals on a large graph:
+ * </p>
+ * 
+ * <pre>
+ * TraversalContext context = new TraversalContext();
+ * context.setMaxDepth(2);
+ * BreadthFirstIterator&lt;Node&gt; bfs = new BreadthFirstIterator&lt;Node&gt;(context,
+ * 		graph.getNode(0), true);
+ * for (Node source : graph) {
+ * 	bfs.reset(source);
+ * 	while (bfs.hasNext())
+ * 		bfs.next();
+ * }
+ * </pre>
+ * 
+ * <p>
+ * A context serves one traversal at a time: starting a traversal with a
+ * context invalidates the iterators that were using it. It is not thread-safe,
+ * concurrent traversals need a context each.
+ * </p>
+ */
+public class TraversalContext {
+	/**
+	 * Value of the maximum depth meaning that traversals are not bounded.
+	 */
+	public static final int UNBOUNDED = Integer.MAX_VALUE;
+
+	/**
+	 * Traversal that visited each node, by node index.
+	 */
+	int[] stamps;
+
+	/**
+	 * Depth of each node, by node index. Meaningful only for the nodes stamped
+	 * with the current traversal.
+	 */
+	int[] depths;
+
+	/**
+	 * Number of the current traversal, never 0 so that fresh stamps never
+	 * match.
+	 */
+	int epoch;
+
+	/**
+	 * Queue of the breadth-first traversal or stack of the depth-first one.
+	 */
+	Node[] nodes;
+
+	/**
+	 * Position of the next edge to explore for each node in the stack of the
+	 * depth-first traversal.
+	 */
+	int[] positions;
+
+	int maxDepth;
+
+	/**
+	 * Creates an empty context, which grows as needed.
+	 */
+	public TraversalContext() {
+		this(16);
+	}
+
+	/**
+	 * Creates a context ready for graphs having up to {@code nodeCount} nodes.
+	 * 
+	 * @param nodeCount
+	 *            The expected number of nodes of the graphs.
+	 */
+	public TraversalContext(int nodeCount) {
+		nodeCount = Math.max(nodeCount, 1);
+		stamps = new int[nodeCount];
+		depths = new int[nodeCount];
+		nodes = new Node[Math.min(nodeCount, 16)];
+		positions = new int[nodes.length];
+		epoch = 0;
+		maxDepth = UNBOUNDED;
+	}
+
+	/**
+	 * Bounds the depth of the traversals using this context. The nodes at the
+	 * maximum depth are visited, but their neighbors are not.
+	 * 
+	 * @param maxDepth
+	 *            The maximum depth, or {@link #UNBOUNDED}.
+	 */
+	public void setMaxDepth(int maxDepth) {
+		if (maxDepth < 0)
+			throw new IllegalArgumentException("Negative depth " + maxDepth);
+		this.maxDepth = maxDepth;
+	}
+
+	/**
+	 * The maximum depth of the traversals using this context.
+	 * 
+	 * @return The maximum depth, {@link #UNBOUNDED} by default.
+	 */
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+
+	/**
+	 * Starts a new traversal, forgetting the nodes visited by the previous one.
+	 * 
+	 * @param nodeCount
+	 *            The number of nodes of the traversed graph.
+	 */
+	void begin(int nodeCount) {
+		if (nodeCount > stamps.length) {
+			int capacity = Math.max(nodeCount, stamps.length * 2);
+			stamps = new int[capacity];
+			depths = new int[capacity];
+		}
+		if (++epoch == 0) {
+			// after four billion traversals, the stamps come back
+			Arrays.fill(stamps, 0);
+			epoch = 1;
+		}
+	}
+
+	boolean isVisited(int index) {
+		return stamps[index] == epoch;
+	}
+
+	void visit(int index, int depth) {
+		stamps[index] = epoch;
+		depths[index] = depth;
+	}
+
+	int depthOf(int index) {
+		return index < stamps.length && stamps[index] == epoch ? depths[index]
+				: -1;
+	}
+
+	/**
+	 * Stores a node in the queue or the stack, growing it if needed.
+	 */
+	void put(int i, Node node) {
+		if (i == nodes.length) {
+			int capacity = Math.max(16, i * 2);
+			nodes = Arrays.copyOf(nodes, capacity);
+			positions = Arrays.copyOf(positions, capacity);
+		}
+		nodes[i] = node;
+		positions[i] = 0;
+	}
+}
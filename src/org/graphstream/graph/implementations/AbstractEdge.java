@@ -97,7 +97,9 @@ public class AbstractEdge extends AbstractElement implements Edge {
 	@Override
 	protected void attributeChanged(AttributeChangeEvent event,
 			String attribute, Object oldValue, Object newValue) {
-		graph.listeners.sendAttributeChangedEvent(id, ElementType.EDGE,
+		graph.attributeVersion++;
+		graph.edgeAttributesChanged(this);
+		graph.listeners.sendAttributeChangedEvent(getId(), ElementType.EDGE,
 				attribute, event, oldValue, newValue);
 	}
 
@@ -106,6 +108,16 @@ public class AbstractEdge extends AbstractElement implements Edge {
 		return graph.nullAttributesAreErrors();
 	}
 
+	@Override
+	KeyDictionary attributeKeys() {
+		return graph.attributeKeys();
+	}
+
+	@Override
+	AttributeColumns attributeColumns() {
+		return graph.edgeColumns();
+	}
+
 	@Override
 	public String toString() {
 		return String.format("%s[%s-%s%s]", getId(), source, directed ? ">"
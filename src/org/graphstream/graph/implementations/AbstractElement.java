@@ -31,11 +31,11 @@
  */
 package org.graphstream.graph.implementations;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.Map;
-import java.util.TreeMap;
 import org.graphstream.graph.CompoundAttribute;
 import org.graphstream.graph.Element;
 import org.graphstream.graph.NullAttributeException;
@@ -57,9 +57,19 @@ public abstract class AbstractElement implements Element {
 	// Attribute
 
 	/**
-	 * Tag of this element.
+	 * Tag of this element. For an element created with a numeric identifier
+	 * it is {@code null} until {@link #getId()} is first called, which fills
+	 * it. Subclasses that may hold such elements read it through
+	 * {@link #getId()}.
 	 */
-	protected final String id;
+	protected String id;
+
+	/**
+	 * Identifier of an element created with {@link #AbstractElement(long)},
+	 * meaningful only when {@link #numeric} is set.
+	 */
+	long numericId;
+	boolean numeric;
 
 	/**
 	 * The index of this element.
@@ -69,8 +79,49 @@ public abstract class AbstractElement implements Element {
 	/**
 	 * Attributes map. This map is created only when needed. It contains pairs
 	 * (key,value) where the key is the attribute name and the value an Object.
+	 * It is a {@link CompactAttributeMap}, which stores the first attributes
+	 * inline and iterates on keys in their natural order. It is never
+	 * {@code null}: an element without attributes shares
+	 * {@link #NO_ATTRIBUTES}, replaced by a map of its own when the first
+	 * attribute is added.
+	 */
+	protected Map<String, Object> attributes = NO_ATTRIBUTES;
+
+	/**
+	 * The empty map of all the elements that have no attribute. It cannot be
+	 * changed.
+	 */
+	protected static final Map<String, Object> NO_ATTRIBUTES = Collections
+			.emptyMap();
+
+	/**
+	 * {@link #attributes} belongs to this element only.
+	 */
+	static final byte OWNED = 0;
+
+	/**
+	 * {@link #attributes} is also used by a snapshot and is copied before the
+	 * next change.
+	 */
+	static final byte SHARED = 1;
+
+	/**
+	 * The element belongs to a snapshot or a view, its attributes cannot be
+	 * changed.
+	 */
+	static final byte READ_ONLY = 2;
+
+	/**
+	 * One of {@link #OWNED}, {@link #SHARED} and {@link #READ_ONLY}.
+	 */
+	byte attributeState = OWNED;
+
+	/**
+	 * Element whose attributes are read in place of the attributes of this
+	 * element, or {@code null}. Used by the elements of a
+	 * {@link FilteredGraph}, which are {@link #READ_ONLY}.
 	 */
-	protected final Map<String, Object> attributes = new TreeMap<>();
+	AbstractElement attributeOwner = null;
 
 	// Construction
 
@@ -87,11 +138,34 @@ public abstract class AbstractElement implements Element {
 		this.id = id;
 	}
 
+	/**
+	 * New element with a numeric identifier. The string form of the
+	 * identifier, its decimal representation, is only created when
+	 * {@link #getId()} is called.
+	 *
+	 * @param id
+	 *            The unique identifier of this element.
+	 */
+	protected AbstractElement(long id) {
+		this.numericId = id;
+		this.numeric = true;
+	}
+
 	// Access
 
+	/**
+	 * The identifier if its string is already built, {@code null} otherwise.
+	 */
+	String cachedId() {
+		return id;
+	}
+
     @Override
 	public String getId() {
-		return id;
+		String s = id;
+		if (s == null)
+			id = s = Long.toString(numericId);
+		return s;
 	}
 
     @Override
@@ -125,6 +199,62 @@ public abstract class AbstractElement implements Element {
 
 	protected abstract boolean nullAttributesAreErrors(); // XXX
 
+	/**
+	 * The dictionary used to intern the attribute keys of this element.
+	 * Elements belonging to a graph share the dictionary of the graph.
+	 * 
+	 * @return The key dictionary or {@code null} if keys are not interned.
+	 */
+	KeyDictionary attributeKeys() {
+		return null;
+	}
+
+	/**
+	 * The numeric attribute columns in which some attributes of this element
+	 * are stored, indexed by {@link #getIndex()}.
+	 * 
+	 * @return The columns or {@code null} if the element has no column.
+	 */
+	AttributeColumns attributeColumns() {
+		return null;
+	}
+
+	/**
+	 * The column storing an attribute of this element, if any.
+	 */
+	AttributeColumn column(String key) {
+		// elements reading the attributes of another one use lookup()
+		if (attributeOwner != null)
+			return null;
+		// removed elements have no index anymore and only use the map
+		AttributeColumns columns = index < 0 ? null : attributeColumns();
+		return columns == null ? null : columns.get(key);
+	}
+
+	/**
+	 * Value of an attribute, taken from the columns or from the attribute map.
+	 * Elements storing their attributes elsewhere override it.
+	 * 
+	 * @return The value or {@code null} if the attribute is not present.
+	 */
+	Object lookup(String key) {
+		if (attributeOwner != null)
+			return attributeOwner.lookup(key);
+		AttributeColumn column = column(key);
+		if (column != null)
+			return column.getValue(index);
+		return attributes.get(key);
+	}
+
+	/**
+	 * Tells quickly that this element has no attribute. When {@code false},
+	 * the element may still have no attribute.
+	 */
+	boolean hasNoAttributes() {
+		return attributes == NO_ATTRIBUTES && attributeColumns() == null
+				&& attributeOwner == null;
+	}
+
 	/**
 	 * Called for each change in the attribute set. This method must be
 	 * implemented by sub-elements in order to send events to the graph
@@ -145,8 +275,7 @@ public abstract class AbstractElement implements Element {
 			String attribute, Object oldValue, Object newValue);
 
 	/**
-	 * @complexity O(log(n)) with n being the number of attributes of this
-	 *             element.
+	 * @complexity O(1)
 	 */
     @Override
 	public <T> T getAttribute(String key) {
@@ -154,12 +283,10 @@ public abstract class AbstractElement implements Element {
             return null;
         }
 
-		if (attributes != null) {
-			T value = (T) attributes.get(key);
+		T value = (T) lookup(key);
 
-			if (value != null)
-				return value;
-		}
+		if (value != null)
+			return value;
 
 		if (nullAttributesAreErrors())
 			throw new NullAttributeException(key);
@@ -168,19 +295,16 @@ public abstract class AbstractElement implements Element {
 	}
 
 	/**
-	 * @complexity O(log(n*m)) with n being the number of attributes of this
-	 *             element and m the number of keys given.
+	 * @complexity O(m) with m being the number of keys given.
 	 */
     @Override
 	public <T> T getFirstAttributeOf(String... keys) {
-		if (attributes != null) {
-			for (String key : keys) {
-                if (key != null) {
-                    final Object o = attributes.get(key);
-                    if (o != null)
-                        return (T) o;
-                }
-			}
+		for (String key : keys) {
+            if (key != null) {
+                final Object o = lookup(key);
+                if (o != null)
+                    return (T) o;
+            }
 		}
 
 		if (nullAttributesAreErrors())
@@ -190,8 +314,7 @@ public abstract class AbstractElement implements Element {
 	}
 
 	/**
-	 * @complexity O(log(n)) with n being the number of attributes of this
-	 *             element.
+	 * @complexity O(1)
 	 */
     @Override
 	public <T> T getAttribute(String key, Class<T> clazz) {
@@ -199,12 +322,10 @@ public abstract class AbstractElement implements Element {
             return null;
         }
 
-		if (attributes != null) {
-			Object o = attributes.get(key);
+		Object o = lookup(key);
 
-			if (o != null && clazz.isInstance(o))
-				return (T) o;
-		}
+		if (o != null && clazz.isInstance(o))
+			return (T) o;
 
 		if (nullAttributesAreErrors())
 			throw new NullAttributeException(key);
@@ -213,17 +334,16 @@ public abstract class AbstractElement implements Element {
 	}
 
 	/**
-	 * @complexity O(log(n*m)) with n being the number of attributes of this
-	 *             element and m the number of keys given.
+	 * @complexity O(m) with m being the number of keys given.
 	 */
     @Override
 	public <T> T getFirstAttributeOf(Class<T> clazz, String... keys) {
-		if (attributes == null)
+		if (hasNoAttributes())
 			return null;
 
 		for (String key : keys) {
             if (key != null) {
-                final Object o = attributes.get(key);
+                final Object o = lookup(key);
                 if (o != null && clazz.isInstance(o))
                     return (T) o;
             }
@@ -236,8 +356,7 @@ public abstract class AbstractElement implements Element {
 	}
 
 	/**
-	 * @complexity O(log(n)) with n being the number of attributes of this
-	 *             element.
+	 * @complexity O(1)
 	 */
     @Override
 	public String getLabel(String key) {
@@ -245,12 +364,10 @@ public abstract class AbstractElement implements Element {
             return null;
         }
 
-		if (attributes != null) {
-			Object o = attributes.get(key);
+		Object o = lookup(key);
 
-			if (o != null && o instanceof CharSequence)
-				return o.toString();
-		}
+		if (o != null && o instanceof CharSequence)
+			return o.toString();
 
 		if (nullAttributesAreErrors())
 			throw new NullAttributeException(key);
@@ -259,27 +376,24 @@ public abstract class AbstractElement implements Element {
 	}
 
 	/**
-	 * @complexity O(log(n)) with n being the number of attributes of this
-	 *             element.
+	 * @complexity O(1)
 	 */
     @Override
 	public Number getNumber(String key) {
         if (null == key) {
             return null;
         }
-		if (attributes != null) {
-			Object o = attributes.get(key);
-            if (o instanceof Number) {
-                return (Number) o;
-            }
-            if (o instanceof CharSequence) {
-                try {
-                    return Double.parseDouble((String) o);
-                } catch (NumberFormatException e) {
+		Object o = lookup(key);
+        if (o instanceof Number) {
+            return (Number) o;
+        }
+        if (o instanceof CharSequence) {
+            try {
+                return Double.parseDouble((String) o);
+            } catch (NumberFormatException e) {
 
-                }
             }
-		}
+        }
 
 		if (nullAttributesAreErrors())
 			throw new NullAttributeException(key);
@@ -289,6 +403,11 @@ public abstract class AbstractElement implements Element {
 
     @Override
     public double getDouble(String key) {
+        // numeric columns are read without boxing
+        final AttributeColumn column = column(key);
+        if (null != column && column.isSet(index)) {
+            return column.getDouble(index);
+        }
         final Number num = this.getNumber(key);
         if (null == num) {
             return Double.NaN;
@@ -316,6 +435,10 @@ public abstract class AbstractElement implements Element {
 
     @Override
     public long getLong(String key) {
+        final AttributeColumn column = column(key);
+        if (null != column && column.isSet(index)) {
+            return column.getLong(index);
+        }
         final Number num = this.getNumber(key);
         if (null == num) {
             return 0L;
@@ -333,8 +456,7 @@ public abstract class AbstractElement implements Element {
     }
 
 	/**
-	 * @complexity O(log(n)) with n being the number of attributes of this
-	 *             element.
+	 * @complexity O(1)
 	 */
     @Override
 	@SuppressWarnings("unchecked")
@@ -343,12 +465,10 @@ public abstract class AbstractElement implements Element {
             return null;
         }
 
-		if (attributes != null) {
-			Object o = attributes.get(key);
+		Object o = lookup(key);
 
-			if (o != null && o instanceof Collection)
-				return ((Collection<? extends Number>) o);
-		}
+		if (o != null && o instanceof Collection)
+			return ((Collection<? extends Number>) o);
 
 		if (nullAttributesAreErrors())
 			throw new NullAttributeException(key);
@@ -357,8 +477,7 @@ public abstract class AbstractElement implements Element {
 	}
 
 	/**
-	 * @complexity O(log(n)) with n being the number of attributes of this
-	 *             element.
+	 * @complexity O(1)
 	 */
     @Override
 	public Object[] getArray(String key) {
@@ -366,12 +485,10 @@ public abstract class AbstractElement implements Element {
             return null;
         }
 
-		if (attributes != null) {
-			Object o = attributes.get(key);
+		Object o = lookup(key);
 
-			if (o != null && o instanceof Object[])
-				return ((Object[]) o);
-		}
+		if (o != null && o instanceof Object[])
+			return ((Object[]) o);
 
 		if (nullAttributesAreErrors())
 			throw new NullAttributeException(key);
@@ -380,8 +497,7 @@ public abstract class AbstractElement implements Element {
 	}
 
 	/**
-	 * @complexity O(log(n)) with n being the number of attributes of this
-	 *             element.
+	 * @complexity O(1)
 	 */
     @Override
 	public Map<?, ?> getHash(String key) {
@@ -389,15 +505,13 @@ public abstract class AbstractElement implements Element {
             return null;
         }
 
-		if (attributes != null) {
-			Object o = attributes.get(key);
+		Object o = lookup(key);
 
-			if (o != null) {
-				if (o instanceof Map<?, ?>)
-					return ((Map<?, ?>) o);
-				if (o instanceof CompoundAttribute)
-					return ((CompoundAttribute) o).toHashMap();
-			}
+		if (o != null) {
+			if (o instanceof Map<?, ?>)
+				return ((Map<?, ?>) o);
+			if (o instanceof CompoundAttribute)
+				return ((CompoundAttribute) o).toHashMap();
 		}
 
 		if (nullAttributesAreErrors())
@@ -407,8 +521,7 @@ public abstract class AbstractElement implements Element {
 	}
 
 	/**
-	 * @complexity O(log(n)) with n being the number of attributes of this
-	 *             element.
+	 * @complexity O(1)
 	 */
     @Override
 	public boolean hasAttribute(String key) {
@@ -416,15 +529,18 @@ public abstract class AbstractElement implements Element {
             return false;
         }
 
-		if (attributes != null)
-			return attributes.containsKey(key);
+		if (attributeOwner != null)
+			return attributeOwner.hasAttribute(key);
 
-		return false;
+		AttributeColumn column = column(key);
+		if (column != null)
+			return column.isSet(index);
+
+		return attributes.containsKey(key);
 	}
 
 	/**
-	 * @complexity O(log(n)) with n being the number of attributes of this
-	 *             element.
+	 * @complexity O(1)
 	 */
     @Override
 	public boolean hasAttribute(String key, Class<?> clazz) {
@@ -432,19 +548,16 @@ public abstract class AbstractElement implements Element {
             return false;
         }
 
-		if (attributes != null) {
-			Object o = attributes.get(key);
+		Object o = lookup(key);
 
-			if (o != null)
-				return (clazz.isInstance(o));
-		}
+		if (o != null)
+			return (clazz.isInstance(o));
 
 		return false;
 	}
 
 	/**
-	 * @complexity O(log(n)) with n being the number of attributes of this
-	 *             element.
+	 * @complexity O(1)
 	 */
     @Override
 	public boolean hasLabel(String key) {
@@ -452,19 +565,16 @@ public abstract class AbstractElement implements Element {
             return false;
         }
 
-		if (attributes != null) {
-			Object o = attributes.get(key);
+		Object o = lookup(key);
 
-			if (o != null)
-				return (o instanceof CharSequence);
-		}
+		if (o != null)
+			return (o instanceof CharSequence);
 
 		return false;
 	}
 
 	/**
-	 * @complexity O(log(n)) with n being the number of attributes of this
-	 *             element.
+	 * @complexity O(1)
 	 */
     @Override
 	public boolean hasNumber(String key) {
@@ -472,19 +582,16 @@ public abstract class AbstractElement implements Element {
             return false;
         }
 
-		if (attributes != null) {
-			Object o = attributes.get(key);
+		Object o = lookup(key);
 
-			if (o != null)
-				return (o instanceof Number);
-		}
+		if (o != null)
+			return (o instanceof Number);
 
 		return false;
 	}
 
 	/**
-	 * @complexity O(log(n)) with n being the number of attributes of this
-	 *             element.
+	 * @complexity O(1)
 	 */
     @Override
 	public boolean hasVector(String key) {
@@ -492,19 +599,16 @@ public abstract class AbstractElement implements Element {
             return false;
         }
 
-		if (attributes != null) {
-			Object o = attributes.get(key);
+		Object o = lookup(key);
 
-			if (o != null && o instanceof Collection<?>)
-				return true;
-		}
+		if (o != null && o instanceof Collection<?>)
+			return true;
 
 		return false;
 	}
 
 	/**
-	 * @complexity O(log(n)) with n being the number of attributes of this
-	 *             element.
+	 * @complexity O(1)
 	 */
     @Override
 	public boolean hasArray(String key) {
@@ -512,19 +616,16 @@ public abstract class AbstractElement implements Element {
             return false;
         }
 
-		if (attributes != null) {
-			Object o = attributes.get(key);
+		Object o = lookup(key);
 
-			if (o != null && o instanceof Object[])
-				return true;
-		}
+		if (o != null && o instanceof Object[])
+			return true;
 
 		return false;
 	}
 
 	/**
-	 * @complexity O(log(n)) with n being the number of attributes of this
-	 *             element.
+	 * @complexity O(1)
 	 */
     @Override
 	public boolean hasHash(String key) {
@@ -532,23 +633,24 @@ public abstract class AbstractElement implements Element {
             return false;
         }
 
-		if (attributes != null) {
-			Object o = attributes.get(key);
+		Object o = lookup(key);
 
-			if (o != null
-					&& (o instanceof Map<?, ?> || o instanceof CompoundAttribute))
-				return true;
-		}
+		if (o != null
+				&& (o instanceof Map<?, ?> || o instanceof CompoundAttribute))
+			return true;
 
 		return false;
 	}
 
     @Override
 	public Iterator<String> getAttributeKeyIterator() {
-		if (attributes != null)
-			return attributes.keySet().iterator();
+		if (attributeOwner != null)
+			return attributeOwner.getAttributeKeyIterator();
+
+		if (attributeColumns() != null)
+			return getAttributeKeySet().iterator();
 
-		return Collections.emptyIterator();
+		return attributes.keySet().iterator();
 	}
 
     @Override
@@ -558,54 +660,125 @@ public abstract class AbstractElement implements Element {
 
     @Override
 	public Collection<String> getAttributeKeySet() {
-		if (attributes != null)
-			return Collections.unmodifiableCollection(attributes.keySet());
+		if (attributeOwner != null)
+			return attributeOwner.getAttributeKeySet();
+
+		AttributeColumns columns = attributeColumns();
+		if (columns != null && columns.count(index) > 0) {
+			// keys stored in columns are added to a copy of the map keys
+			ArrayList<String> keys = new ArrayList<>();
+			for (AttributeColumn column : columns.columns())
+				if (column.isSet(index))
+					keys.add(column.getKey());
+			keys.addAll(attributes.keySet());
+			return Collections.unmodifiableCollection(keys);
+		}
 
-		return Collections.emptySet();
+		return Collections.unmodifiableCollection(attributes.keySet());
 	}
 
 	@Override
 	public String toString() {
-		return id;
+		return getId();
 	}
 
     @Override
 	public int getAttributeCount() {
-		if (attributes != null)
-			return attributes.size();
+		if (attributeOwner != null)
+			return attributeOwner.getAttributeCount();
 
-		return 0;
+		AttributeColumns columns = attributeColumns();
+		int count = columns == null ? 0 : columns.count(index);
+
+		return count + attributes.size();
 	}
 
 	// Command
 
     @Override
 	public void clearAttributes() {
-        if (null == attributes) {
+        if (attributeState != OWNED)
+            prepareAttributeChange();
+        final AttributeColumns columns = attributeColumns();
+        if (null != columns) {
+            for (AttributeColumn column : columns.columns()) {
+                if (column.isSet(index)) {
+                    attributeChanged(AttributeChangeEvent.REMOVE, column.getKey(), column.getValue(index), null);
+                    column.unset(index);
+                }
+            }
+        }
+        if (attributes == NO_ATTRIBUTES) {
             return;
         }
         for (Map.Entry<String, Object> entry : attributes.entrySet()) {
             attributeChanged(AttributeChangeEvent.REMOVE, entry.getKey(), entry.getValue(), null);
         }
         attributes.clear();
+        releaseAttributes();
 	}
 
 	protected void clearAttributesWithNoEvent() {
-		if (attributes != null)
-			attributes.clear();
+		AttributeColumns columns = attributeColumns();
+		if (columns != null)
+			columns.unset(index);
+		if (attributeState == SHARED) {
+			// leave the map to the snapshot
+			attributes = newAttributeMap();
+			attributeState = OWNED;
+		}
+		releaseAttributes();
 	}
 
 	/**
-	 * @complexity O(log(n)) with n being the number of attributes of this
-	 *             element.
+	 * Must be called before changing {@link #attributes}. If the map is shared
+	 * with a snapshot, this element gets its own copy.
+	 * 
+	 * @throws UnsupportedOperationException
+	 *             If this element belongs to a snapshot or a view.
+	 */
+	void prepareAttributeChange() {
+		if (attributeState == SHARED) {
+			if (attributes != NO_ATTRIBUTES) {
+				Map<String, Object> copy = newAttributeMap();
+				copy.putAll(attributes);
+				attributes = copy;
+			}
+			attributeState = OWNED;
+		} else if (attributeState == READ_ONLY) {
+			throw new UnsupportedOperationException("element \"" + getId()
+					+ "\" belongs to a read-only graph and cannot be changed");
+		}
+	}
+
+	/**
+	 * Creates the map holding the attributes of this element when the first
+	 * one is added. By default it is a {@link CompactAttributeMap}.
+	 */
+	Map<String, Object> newAttributeMap() {
+		return new CompactAttributeMap(attributeKeys());
+	}
+
+	/**
+	 * Called when all the attributes of this element have been removed. By
+	 * default the map is dropped and created again by the next addition.
+	 */
+	void releaseAttributes() {
+		attributes = NO_ATTRIBUTES;
+	}
+
+	/**
+	 * @complexity O(1)
 	 */
     @Override
 	public boolean addAttribute(String attribute, Object... values) {
         if (null == attribute) {
             return false;
         }
+        if (attributeState != OWNED)
+            prepareAttributeChange();
 
-		final Object value;
+		Object value;
         if (null == values || values.length == 0)
 			value = Boolean.TRUE;
 		else if (values.length == 1)
@@ -613,7 +786,17 @@ public abstract class AbstractElement implements Element {
 		else
 			value = values;
 
-		final Object oldValue = this.attributes.put(attribute, value);
+		final AttributeColumn column = column(attribute);
+		final Object oldValue;
+		if (null != column) {
+			oldValue = column.put(index, value);
+			// report the value as it is stored in the column
+			value = column.getValue(index);
+		} else {
+			if (this.attributes == NO_ATTRIBUTES)
+				this.attributes = newAttributeMap();
+			oldValue = this.attributes.put(attribute, value);
+		}
         if (null == oldValue || !oldValue.equals(value)) {
             // send updates
             final AttributeChangeEvent event = oldValue != null ? AttributeChangeEvent.CHANGE : AttributeChangeEvent.ADD;
@@ -626,8 +809,7 @@ public abstract class AbstractElement implements Element {
 	}
 
 	/**
-	 * @complexity O(log(n)) with n being the number of attributes of this
-	 *             element.
+	 * @complexity O(1)
 	 */
     @Override
 	public boolean changeAttribute(String attribute, Object... values) {
@@ -635,8 +817,7 @@ public abstract class AbstractElement implements Element {
 	}
 
 	/**
-	 * @complexity O(log(n)) with n being the number of attributes of this
-	 *             element.
+	 * @complexity O(1)
 	 */
     @Override
 	public boolean setAttribute(String attribute, Object... values) {
@@ -644,8 +825,7 @@ public abstract class AbstractElement implements Element {
 	}
 
 	/**
-	 * @complexity O(log(n)) with n being the number of attributes of this
-	 *             element.
+	 * @complexity O(1)
 	 */
     @Override
 	public boolean addAttributes(final Map<String, Object> attributes) {
@@ -661,15 +841,26 @@ public abstract class AbstractElement implements Element {
 	}
 
 	/**
-	 * @complexity O(log(n)) with n being the number of attributes of this
-	 *             element.
+	 * @complexity O(1)
 	 */
     @Override
 	public boolean removeAttribute(String attribute) {
         if (null == attribute) {
             return false;
         }
-        if (null == attributes) {
+        if (attributeState != OWNED)
+            prepareAttributeChange();
+        final AttributeColumn column = column(attribute);
+        if (null != column) {
+            final Object oldValue = column.getValue(index);
+            if (null == oldValue) {
+                return false;
+            }
+            column.unset(index);
+            attributeChanged(AttributeChangeEvent.REMOVE, attribute, oldValue, null);
+            return true;
+        }
+        if (attributes == NO_ATTRIBUTES) {
             return false;
         }
 
@@ -56,7 +56,10 @@ import org.graphstream.ui.view.Viewer;
 import org.graphstream.util.GraphListeners;
 
 import java.io.IOException;
+import java.lang.ref.WeakReference;
 import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 
@@ -96,12 +99,56 @@ public abstract class AbstractGraph extends AbstractElement implements Graph, Re
 
     private EdgeFactory<? extends AbstractEdge> edgeFactory;
 
-	private double step = 0;
+	double step = 0;
 
 	private boolean nullAttributesAreErrors;
 
 	private long replayId = 0;
 
+	/**
+	 * Attribute keys shared by the graph and all its elements.
+	 */
+	private final KeyDictionary keyDictionary = new KeyDictionary();
+
+	/**
+	 * Incremented when elements are added or removed and when attributes
+	 * change, so that {@link #snapshot()} can tell if its last snapshot is
+	 * still up to date.
+	 */
+	int structureVersion = 0;
+	int attributeVersion = 0;
+
+	private WeakReference<CompactGraph> lastSnapshot;
+
+	/**
+	 * Current value of {@link #structureVersion}. Graphs changed by several
+	 * threads keep their own counters.
+	 */
+	long structureVersion() {
+		return structureVersion;
+	}
+
+	/**
+	 * Current value of {@link #attributeVersion}.
+	 */
+	long attributeVersion() {
+		return attributeVersion;
+	}
+
+	/**
+	 * Called when the attributes of a node of this graph change. The default
+	 * implementation does nothing.
+	 */
+	void nodeAttributesChanged(AbstractNode node) {
+	}
+
+	/**
+	 * Called when the attributes of an edge of this graph change. The default
+	 * implementation does nothing.
+	 */
+	void edgeAttributesChanged(AbstractEdge edge) {
+	}
+
 	// *** Constructors ***
 
 	/**
@@ -131,10 +178,33 @@ public abstract class AbstractGraph extends AbstractElement implements Graph, Re
 		this.listeners = new GraphListeners(this);
 	}
 
+	/**
+	 * Tests if a method is declared by a class or by one of its superclasses
+	 * below {@code base}, that is if a subclass of {@code base} overrides it.
+	 * Fast paths bypassing an overridable method are only taken when it is
+	 * not overridden. The result should be cached per class.
+	 * 
+	 * @return True if the method is overridden, or if this cannot be checked.
+	 */
+	public static boolean overrides(Class<?> type, Class<?> base, String name,
+			Class<?>... parameterTypes) {
+		for (Class<?> c = type; c != null && c != base; c = c.getSuperclass()) {
+			try {
+				c.getDeclaredMethod(name, parameterTypes);
+				return true;
+			} catch (NoSuchMethodException e) {
+			} catch (SecurityException e) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	@Override
 	protected void attributeChanged(AttributeChangeEvent event,
 			String attribute, Object oldValue, Object newValue) {
-		listeners.sendAttributeChangedEvent(id, SourceBase.ElementType.GRAPH,
+		attributeVersion++;
+		listeners.sendAttributeChangedEvent(getId(), SourceBase.ElementType.GRAPH,
 				attribute, event, oldValue, newValue);
 	}
 
@@ -143,6 +213,31 @@ public abstract class AbstractGraph extends AbstractElement implements Graph, Re
 		return nullAttributesAreErrors;
 	}
 
+	@Override
+	KeyDictionary attributeKeys() {
+		return keyDictionary;
+	}
+
+	/**
+	 * The numeric attribute columns of the nodes. Subclasses storing node
+	 * attributes in columns must maintain them when node indices change.
+	 * 
+	 * @return The columns or {@code null} if nodes have no column.
+	 */
+	AttributeColumns nodeColumns() {
+		return null;
+	}
+
+	/**
+	 * The numeric attribute columns of the edges. Subclasses storing edge
+	 * attributes in columns must maintain them when edge indices change.
+	 * 
+	 * @return The columns or {@code null} if edges have no column.
+	 */
+	AttributeColumns edgeColumns() {
+		return null;
+	}
+
 	public abstract <T extends Node> T getNode(String id);
 
 	public abstract <T extends Node> T getNode(int index);
@@ -275,6 +370,7 @@ public abstract class AbstractGraph extends AbstractElement implements Graph, Re
     @Override
 	public void clear() {
 		listeners.sendGraphCleared();
+		structureVersion++;
 
 		Iterator<AbstractNode> it = getNodeIterator();
 
@@ -299,12 +395,49 @@ public abstract class AbstractGraph extends AbstractElement implements Graph, Re
 
 		node = nodeFactory.newInstance(id, this);
 		addNodeCallback(node);
+		structureVersion++;
 
 		listeners.sendNodeAdded(id);
 
 		return (T) node;
 	}
 
+	/**
+	 * Adds a node whose identifier is the decimal form of {@code id}. The node
+	 * is the same as the one created by {@code addNode(Long.toString(id))} and
+	 * can be retrieved with {@link #getNode(String)} as well as with
+	 * {@link #getNode(long)}. Implementations indexing numeric identifiers,
+	 * such as {@link AdjacencyListGraph}, avoid creating the string
+	 * identifier until {@link Node#getId()} is first called.
+	 * 
+	 * @param id
+	 *            Identifier of the new node.
+	 * @return The created node, or the existing one if strict checking is
+	 *         disabled.
+	 * @throws IdAlreadyInUseException
+	 *             If strict checking is enabled and a node with the same
+	 *             identifier already exists.
+	 */
+	public <T extends Node> T addNode(long id) {
+		return addNode(Long.toString(id));
+	}
+
+	/**
+	 * Gets a node by numeric identifier, that is the node whose identifier
+	 * is the decimal form of {@code id}.
+	 * Note that an {@code int} argument selects {@link #getNode(int)}, which
+	 * gets a node by index: write {@code getNode(12L)}, not
+	 * {@code getNode(12)}.
+	 * 
+	 * @param id
+	 *            Identifier of the node.
+	 * @return The node or {@code null} if there is no such node.
+	 * @see #addNode(long)
+	 */
+	public <T extends Node> T getNode(long id) {
+		return getNode(Long.toString(id));
+	}
+
     @Override
 	public <T extends Edge> T addEdge(String id, String node1, String node2) {
 		return addEdge(id, node1, node2, false);
@@ -745,7 +878,24 @@ public abstract class AbstractGraph extends AbstractElement implements Graph, Re
 				dst = addNode(dstId);
 		}
 		// at this point edgeId is not in use and both src and dst are not null
-		edge = edgeFactory.newInstance(edgeId, src, dst, directed);
+		edge = attachEdge(edgeId, src, dst, directed);
+		if (edge == null)
+			return null;
+
+		listeners.sendEdgeAdded(edgeId, srcId, dstId, directed);
+
+		return (T) edge;
+	}
+
+	/**
+	 * Creates an edge and adds it to its end points and to the graph, without
+	 * sending any event. The identifier must not be in use.
+	 * 
+	 * @return The new edge or {@code null} if an end point rejects it.
+	 */
+	private AbstractEdge attachEdge(String edgeId, AbstractNode src,
+			AbstractNode dst, boolean directed) {
+		AbstractEdge edge = edgeFactory.newInstance(edgeId, src, dst, directed);
 		// see if the endpoints accept the edge
 		if (!src.addEdgeCallback(edge)) {
 			if (strictChecking)
@@ -766,10 +916,227 @@ public abstract class AbstractGraph extends AbstractElement implements Graph, Re
 
 		// now we can finally add it
 		addEdgeCallback(edge);
+		structureVersion++;
+		return edge;
+	}
 
-		listeners.sendEdgeAdded(edgeId, srcId, dstId, directed);
+	/**
+	 * <p>
+	 * Adds many nodes and edges at once, for example when loading a big graph.
+	 * The data structures of the graph and of the nodes are sized once, from
+	 * the number of new elements and the number of new edges of each node, and
+	 * the elements are inserted without sending an event for each of them.
+	 * Element sinks, if there are any, receive the usual node and edge added
+	 * events once the structure is built, all the nodes first.
+	 * </p>
+	 * 
+	 * <p>
+	 * Identifiers already in use, missing end points and rejected edges are
+	 * handled like in {@link #addNode(String)} and
+	 * {@link #addEdge(String, String, String, boolean)}, depending on strict
+	 * checking and auto-creation. If an exception is thrown, the elements
+	 * added before stay in the graph and are still sent to the sinks.
+	 * </p>
+	 * 
+	 * @param nodeIds
+	 *            Identifiers of the nodes to add, may be {@code null}.
+	 * @param edgeIds
+	 *            Identifiers of the edges to add, may be {@code null}.
+	 * @param sources
+	 *            Identifiers of the source nodes of the edges.
+	 * @param targets
+	 *            Identifiers of the target nodes of the edges.
+	 * @param directed
+	 *            Which edges are directed, or {@code null} if they are all
+	 *            undirected.
+	 * @throws IllegalArgumentException
+	 *             If the edge arrays do not have the same length.
+	 * @complexity O(n + m) where n is the number of new nodes and m the
+	 *             number of new edges
+	 */
+	public void bulkLoad(String[] nodeIds, String[] edgeIds, String[] sources,
+			String[] targets, boolean[] directed) {
+		int n = nodeIds == null ? 0 : nodeIds.length;
+		int m = edgeIds == null ? 0 : edgeIds.length;
 
-		return (T) edge;
+		if (m > 0
+				&& (sources == null || targets == null || sources.length != m
+						|| targets.length != m || (directed != null && directed.length != m)))
+			throw new IllegalArgumentException(
+					"edge identifiers, sources, targets and directions must have the same length");
+
+		ArrayList<AbstractNode> newNodes = new ArrayList<>(n);
+		ArrayList<AbstractEdge> newEdges = new ArrayList<>(m);
+
+		ensureCapacity(getNodeCount() + n, getEdgeCount() + m);
+
+		try {
+			for (int i = 0; i < n; i++) {
+				if (getNode(nodeIds[i]) != null) {
+					if (strictChecking)
+						throw new IdAlreadyInUseException("id \"" + nodeIds[i]
+								+ "\" already in use. Cannot create a node.");
+					continue;
+				}
+				AbstractNode node = nodeFactory.newInstance(nodeIds[i], this);
+				addNodeCallback(node);
+				newNodes.add(node);
+			}
+
+			// resolve the end points and count the new edges of each node
+			AbstractNode[] ends = new AbstractNode[2 * m];
+			int[] degrees = new int[getNodeCount()];
+
+			for (int j = 0; j < m; j++) {
+				AbstractNode src = getNode(sources[j]);
+				AbstractNode dst = getNode(targets[j]);
+
+				if (src == null || dst == null) {
+					if (strictChecking)
+						throw new ElementNotFoundException(
+								String.format(
+										"Cannot create edge %s[%s-%s%s]. Node '%s' does not exist.",
+										edgeIds[j], sources[j], directed != null
+												&& directed[j] ? ">" : "-",
+										targets[j], src == null ? sources[j]
+												: targets[j]));
+					if (!autoCreate)
+						continue;
+					if (src == null) {
+						src = nodeFactory.newInstance(sources[j], this);
+						addNodeCallback(src);
+						newNodes.add(src);
+					}
+					dst = getNode(targets[j]);
+					if (dst == null) {
+						dst = nodeFactory.newInstance(targets[j], this);
+						addNodeCallback(dst);
+						newNodes.add(dst);
+					}
+					if (degrees.length < getNodeCount())
+						degrees = Arrays.copyOf(degrees,
+								Math.max(getNodeCount(), 2 * degrees.length));
+				}
+
+				ends[2 * j] = src;
+				ends[2 * j + 1] = dst;
+				degrees[src.getIndex()]++;
+				if (src != dst)
+					degrees[dst.getIndex()]++;
+			}
+
+			for (int i = 0; i < degrees.length; i++)
+				if (degrees[i] > 0) {
+					AbstractNode node = getNode(i);
+					node.ensureCapacity(node.getDegree() + degrees[i]);
+				}
+
+			for (int j = 0; j < m; j++) {
+				AbstractNode src = ends[2 * j];
+				if (src == null)
+					continue;
+				if (getEdge(edgeIds[j]) != null) {
+					if (strictChecking)
+						throw new IdAlreadyInUseException("id \"" + edgeIds[j]
+								+ "\" already in use. Cannot create an edge.");
+					continue;
+				}
+				AbstractEdge edge = attachEdge(edgeIds[j], src, ends[2 * j + 1],
+						directed != null && directed[j]);
+				if (edge != null)
+					newEdges.add(edge);
+			}
+		} finally {
+			structureVersion++;
+			if (listeners.hasElementSinks()) {
+				for (AbstractNode node : newNodes)
+					listeners.sendNodeAdded(node.getId());
+				for (AbstractEdge edge : newEdges)
+					listeners.sendEdgeAdded(edge.getId(), edge.getSourceNode()
+							.getId(), edge.getTargetNode().getId(), edge
+							.isDirected());
+			}
+		}
+	}
+
+	/**
+	 * Prepares the data structures of the graph to hold a given number of
+	 * nodes and edges, so that adding them does not reallocate anything. The
+	 * default implementation does nothing.
+	 * 
+	 * @param nodeCapacity
+	 *            Expected number of nodes.
+	 * @param edgeCapacity
+	 *            Expected number of edges.
+	 */
+	public void ensureCapacity(int nodeCapacity, int edgeCapacity) {
+	}
+
+	/**
+	 * Releases the memory reserved for nodes and edges that the graph does not
+	 * have. The default implementation does nothing.
+	 */
+	public void trimToSize() {
+	}
+
+	/**
+	 * <p>
+	 * Returns an immutable snapshot of the current state of this graph. The
+	 * snapshot is a {@link CompactGraph}: later changes of this graph are not
+	 * reflected by it, and it cannot be changed, including its attributes.
+	 * Any number of threads can read a snapshot without locking while this
+	 * graph goes on changing.
+	 * </p>
+	 * 
+	 * <p>
+	 * Snapshots are cheap. They share the attribute maps of the elements of
+	 * this graph, which copy their map before their next change (copy on
+	 * write), and the pages of the numeric attribute columns, copied the same
+	 * way. The last snapshot is returned again as long as the graph does not
+	 * change. An {@link AdjacencyListGraph} keeps the chunks of its last
+	 * snapshot and only builds again the chunks in which elements changed,
+	 * see {@link CompactGraph}. Other graphs are copied entirely, except that
+	 * a new snapshot reuses the structure of the last one if only attributes
+	 * changed.
+	 * </p>
+	 * 
+	 * <p>
+	 * This graph must not be changed while the snapshot is being built, so
+	 * this method should be called by the thread changing the graph, which can
+	 * then hand the snapshot over to the readers.
+	 * </p>
+	 * 
+	 * @return A snapshot of this graph.
+	 * @complexity O(c) for an {@link AdjacencyListGraph}, where c is the
+	 *             number of elements in the chunks changed since the last
+	 *             snapshot, plus one reference copied per chunk; O(n + m) for
+	 *             other graphs where n is the number of nodes and m the
+	 *             number of edges; O(1) if the graph did not change since the
+	 *             last snapshot
+	 */
+	public CompactGraph snapshot() {
+		CompactGraph last = lastSnapshot == null ? null : lastSnapshot.get();
+		if (last != null && last.sourceStructureVersion == structureVersion()) {
+			if (last.sourceAttributeVersion == attributeVersion())
+				return last;
+		} else {
+			last = null;
+		}
+		CompactGraph snapshot = newSnapshot(last);
+		lastSnapshot = new WeakReference<CompactGraph>(snapshot);
+		return snapshot;
+	}
+
+	/**
+	 * Builds a new snapshot for {@link #snapshot()}.
+	 * 
+	 * @param last
+	 *            The last snapshot if only attributes changed since, or
+	 *            {@code null}.
+	 */
+	CompactGraph newSnapshot(CompactGraph last) {
+		return new CompactGraph(this, last == null ? CompactGraph.layout(this)
+				: last.layout());
 	}
 
 	private void removeAllEdges(AbstractNode node) {
@@ -796,6 +1163,59 @@ public abstract class AbstractGraph extends AbstractElement implements Graph, Re
 				removeEdge(node.getEdge(0));
 	}
 
+	/**
+	 * Classes overriding {@link #removeEdge(AbstractEdge, boolean, boolean,
+	 * boolean)}, whose edges are always removed through it.
+	 */
+	private static final ClassValue<Boolean> CUSTOM_REMOVE_EDGE = new ClassValue<Boolean>() {
+		@Override
+		protected Boolean computeValue(Class<?> type) {
+			return overrides(type, AbstractGraph.class, "removeEdge",
+					AbstractEdge.class, boolean.class, boolean.class,
+					boolean.class);
+		}
+	};
+
+	/**
+	 * Removes all the edges of a node, in the order given by
+	 * {@link AbstractNode#edgeRemovalOrder()}. The sinks receive the events
+	 * of the removals in this order, as one batch sent before any change of
+	 * the structure. Sinks that do not accept batches receive the same events
+	 * one by one. Then each neighbor drops all its edges toward the node in
+	 * one call, which avoids searching its edges once per edge when there are
+	 * parallel edges or when the neighbor is a hub too.
+	 */
+	private void removeAllEdges(AbstractNode node, AbstractEdge[] edges) {
+		if (listeners.hasElementSinks())
+			listeners.sendEdgesRemoved(edges);
+
+		// group the edges by neighbor, keeping their order
+		long[] keys = new long[edges.length];
+		int count = 0;
+		for (int k = 0; k < edges.length; k++) {
+			AbstractNode opposite = edges[k].getOpposite(node);
+			if (opposite != node)
+				keys[count++] = ((long) opposite.getIndex() << 32) | k;
+		}
+		Arrays.sort(keys, 0, count);
+		AbstractEdge[] grouped = new AbstractEdge[count];
+		for (int i = 0; i < count; i++)
+			grouped[i] = edges[(int) keys[i]];
+		for (int from = 0, to; from < count; from = to) {
+			AbstractNode opposite = grouped[from].getOpposite(node);
+			to = from + 1;
+			while (to < count && grouped[to].getOpposite(node) == opposite)
+				to++;
+			opposite.removeEdgesCallback(grouped, from, to);
+		}
+
+		for (AbstractEdge e : edges) {
+			removeEdgeCallback(e);
+			structureVersion++;
+		}
+		node.clearCallback();
+	}
+
 	/**
 	 * This method is similar to {@link #removeNode(Node)} but allows to control
 	 * if {@link #removeNodeCallback(AbstractNode)} is called or not. It is
@@ -812,8 +1232,14 @@ public abstract class AbstractGraph extends AbstractElement implements Graph, Re
 		if (node == null)
 			return;
 
-		removeAllEdges(node);
+		AbstractEdge[] edges = CUSTOM_REMOVE_EDGE.get(getClass()) ? null : node
+				.edgeRemovalOrder();
+		if (edges == null)
+			removeAllEdges(node);
+		else
+			removeAllEdges(node, edges);
 		listeners.sendNodeRemoved(node.getId());
+		structureVersion++;
 
 		if (graphCallback)
 			removeNodeCallback(node);
@@ -848,6 +1274,7 @@ public abstract class AbstractGraph extends AbstractElement implements Graph, Re
 		AbstractNode dst = edge.getTargetNode();
 
 		listeners.sendEdgeRemoved(edge.getId());
+		structureVersion++;
 
 		if (sourceCallback)
 			src.removeEdgeCallback(edge);
@@ -862,12 +1289,12 @@ public abstract class AbstractGraph extends AbstractElement implements Graph, Re
 	class GraphReplayController extends SourceBase implements Replayable.Controller {
 
 		GraphReplayController() {
-			super(AbstractGraph.this.id + "replay");
+			super(AbstractGraph.this.getId() + "replay");
 		}
 
         @Override
 		public void replay() {
-			String sourceId = String.format("%s-replay-%x", id, replayId++);
+			String sourceId = String.format("%s-replay-%x", getId(), replayId++);
 			replay(sourceId);
 		}
 
@@ -41,6 +41,7 @@ import org.graphstream.graph.BreadthFirstIterator;
 import org.graphstream.graph.DepthFirstIterator;
 import org.graphstream.graph.Edge;
 import org.graphstream.graph.Graph;
+import org.graphstream.graph.IndexConsumer;
 import org.graphstream.graph.Node;
 import org.graphstream.stream.SourceBase;
 
@@ -83,10 +84,26 @@ public abstract class AbstractNode extends AbstractElement implements Node {
 		this.graph = graph;
 	}
 
+	/**
+	 * Constructs a node with a numeric identifier, see
+	 * {@link AbstractGraph#addNode(long)}.
+	 * 
+	 * @param graph
+	 *            The graph to which this node belongs.
+	 * @param id
+	 *            Unique identifier of this node.
+	 */
+	protected AbstractNode(AbstractGraph graph, long id) {
+		super(id);
+		this.graph = graph;
+	}
+
 	@Override
 	protected void attributeChanged(AttributeChangeEvent event,
 			String attribute, Object oldValue, Object newValue) {
-		graph.listeners.sendAttributeChangedEvent(id,
+		graph.attributeVersion++;
+		graph.nodeAttributesChanged(this);
+		graph.listeners.sendAttributeChangedEvent(getId(),
 				SourceBase.ElementType.NODE, attribute, event, oldValue,
 				newValue);
 	}
@@ -96,6 +113,16 @@ public abstract class AbstractNode extends AbstractElement implements Node {
 		return graph.nullAttributesAreErrors();
 	}
 
+	@Override
+	KeyDictionary attributeKeys() {
+		return graph.attributeKeys();
+	}
+
+	@Override
+	AttributeColumns attributeColumns() {
+		return graph.nodeColumns();
+	}
+
     @Override
 	public Graph getGraph() {
 		return graph;
@@ -277,6 +304,58 @@ public abstract class AbstractNode extends AbstractElement implements Node {
 
 	public abstract <T extends Edge> T getLeavingEdge(int i);
 
+	// The following implementations go through the indexed access to the
+	// edges, subclasses read their own data structures
+
+	@Override
+	public void forEachNeighborIndex(IndexConsumer action) {
+		int n = getDegree();
+		for (int i = 0; i < n; i++)
+			action.accept(this.<Edge> getEdge(i).getOpposite(this).getIndex());
+	}
+
+	@Override
+	public void forEachEnteringNeighborIndex(IndexConsumer action) {
+		int n = getInDegree();
+		for (int i = 0; i < n; i++)
+			action.accept(this.<Edge> getEnteringEdge(i).getOpposite(this)
+					.getIndex());
+	}
+
+	@Override
+	public void forEachLeavingNeighborIndex(IndexConsumer action) {
+		int n = getOutDegree();
+		for (int i = 0; i < n; i++)
+			action.accept(this.<Edge> getLeavingEdge(i).getOpposite(this)
+					.getIndex());
+	}
+
+	@Override
+	public int neighborIndices(int[] buf) {
+		int n = getDegree();
+		for (int i = 0; i < n && i < buf.length; i++)
+			buf[i] = this.<Edge> getEdge(i).getOpposite(this).getIndex();
+		return n;
+	}
+
+	@Override
+	public int enteringNeighborIndices(int[] buf) {
+		int n = getInDegree();
+		for (int i = 0; i < n && i < buf.length; i++)
+			buf[i] = this.<Edge> getEnteringEdge(i).getOpposite(this)
+					.getIndex();
+		return n;
+	}
+
+	@Override
+	public int leavingNeighborIndices(int[] buf) {
+		int n = getOutDegree();
+		for (int i = 0; i < n && i < buf.length; i++)
+			buf[i] = this.<Edge> getLeavingEdge(i).getOpposite(this)
+					.getIndex();
+		return n;
+	}
+
     @Override
 	public <T extends Node> Iterator<T> getNeighborNodeIterator() {
 		return new Iterator<T>() {
@@ -353,6 +432,24 @@ public abstract class AbstractNode extends AbstractElement implements Node {
 	 */
 	protected abstract boolean addEdgeCallback(AbstractEdge edge);
 
+	/**
+	 * Prepares the data structures of this node to hold a given number of
+	 * edges, so that adding them does not reallocate anything. The default
+	 * implementation does nothing.
+	 * 
+	 * @param capacity
+	 *            Expected number of edges of this node.
+	 */
+	public void ensureCapacity(int capacity) {
+	}
+
+	/**
+	 * Releases the memory reserved for edges that this node does not have.
+	 * The default implementation does nothing.
+	 */
+	public void trimToSize() {
+	}
+
 	/**
 	 * This method is called automatically before removing an edge incident to
 	 * this node. Subclasses use it to remove the edge from their data
@@ -363,6 +460,37 @@ public abstract class AbstractNode extends AbstractElement implements Node {
 	 */
 	protected abstract void removeEdgeCallback(AbstractEdge edge);
 
+	/**
+	 * The edges of this node in the order they would be removed one by one
+	 * through the iterator of {@link #getEdgeIterator()}, for removing them
+	 * all at once when the node is removed. The default implementation
+	 * returns {@code null}, the edges of the node being then removed one by
+	 * one.
+	 * 
+	 * @return The edges of this node or {@code null}.
+	 */
+	protected AbstractEdge[] edgeRemovalOrder() {
+		return null;
+	}
+
+	/**
+	 * This method is called automatically before removing a neighbor of this
+	 * node, when the neighbor supports {@link #edgeRemovalOrder()}. Subclasses
+	 * use it to remove all the edges between this node and the neighbor from
+	 * their data structure at once, leaving it as if
+	 * {@link #removeEdgeCallback(AbstractEdge)} had been called for each edge
+	 * in turn, which the default implementation does.
+	 * 
+	 * @param edges
+	 *            an array holding, from {@code from} to {@code to} excluded,
+	 *            all the edges between this node and the removed neighbor in
+	 *            the order they are removed
+	 */
+	protected void removeEdgesCallback(AbstractEdge[] edges, int from, int to) {
+		for (int i = from; i < to; i++)
+			removeEdgeCallback(edges[i]);
+	}
+
 	/**
 	 * This method is called for each node when the graph is cleared. Subclasses
 	 * may use it to clear their data structures in order to facilitate the
@@ -34,12 +34,16 @@ package org.graphstream.graph.implementations;
 import org.graphstream.graph.Edge;
 import org.graphstream.graph.EdgeFactory;
 import org.graphstream.graph.Graph;
+import org.graphstream.graph.IdAlreadyInUseException;
 import org.graphstream.graph.Node;
-import org.graphstream.graph.NodeFactory;
 
+import java.security.AccessControlException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
 import java.util.NoSuchElementException;
 import java.util.TreeMap;
 
@@ -55,22 +59,111 @@ import java.util.TreeMap;
  * <code>complexity</code> tags on each method so as to figure out the impact on
  * the CPU.
  * </p>
+ * 
+ * <p>
+ * Nodes and edges are looked up by identifier through an open-addressing hash
+ * index over {@link #nodeArray} and {@link #edgeArray}, which gives O(1)
+ * access. The former sorted maps can still be used by passing
+ * {@link IdIndexType#TREE} to the constructor of the graph.
+ * </p>
  */
 public class AdjacencyListGraph extends AbstractGraph {
 
-	public static final double GROW_FACTOR = 1.1;
+	/**
+	 * System property setting the factor by which full arrays of nodes and
+	 * edges grow. The default is 2, values not greater than 1 are ignored.
+	 */
+	public static final String GROW_FACTOR_PROPERTY = "org.graphstream.graph.growFactor";
+
+	/**
+	 * System property setting the maximum number of elements added to an array
+	 * when it grows, so that very big arrays grow linearly. The default is
+	 * 2<sup>24</sup>.
+	 */
+	public static final String MAX_GROWTH_PROPERTY = "org.graphstream.graph.maxGrowth";
+
+	public static final double GROW_FACTOR;
+	public static final int MAX_GROWTH;
 	public static final int DEFAULT_NODE_CAPACITY = 128;
 	public static final int DEFAULT_EDGE_CAPACITY = 1024;
 
+	/*
+	 * Malformed or out of range values are ignored, the defaults are used
+	 * instead. An exception here would make the class unusable.
+	 */
+	static {
+		double growFactor = 2;
+		int maxGrowth = 1 << 24;
+		try {
+			String value = System.getProperty(GROW_FACTOR_PROPERTY);
+			if (value != null) {
+				double f = Double.parseDouble(value.trim());
+				if (f > 1 && !Double.isInfinite(f))
+					growFactor = f;
+			}
+		} catch (AccessControlException | NumberFormatException e) {
+		}
+		try {
+			String value = System.getProperty(MAX_GROWTH_PROPERTY);
+			if (value != null) {
+				int g = Integer.parseInt(value.trim());
+				if (g > 0)
+					maxGrowth = g;
+			}
+		} catch (AccessControlException | NumberFormatException e) {
+		}
+		GROW_FACTOR = growFactor;
+		MAX_GROWTH = maxGrowth;
+	}
+
+	/**
+	 * How nodes and edges are indexed by identifier.
+	 */
+	public static enum IdIndexType {
+		/**
+		 * Open-addressing hash index over the arrays of elements, the default.
+		 */
+		HASH,
+		/**
+		 * Sorted maps, slower but iterated in identifier order.
+		 */
+		TREE
+	}
+
+	/**
+	 * Elements by identifier. With {@link IdIndexType#TREE} these are the
+	 * sorted maps used for the lookups. With {@link IdIndexType#HASH} they are
+	 * live read-only views of the hash index, kept for subclasses.
+	 */
 	protected final Map<String, AbstractNode> nodeMap;
 	protected final Map<String, AbstractEdge> edgeMap;
 
+	/**
+	 * Hash indices of {@link #nodeArray} and {@link #edgeArray}. They are
+	 * {@code null} when the sorted maps are used.
+	 */
+	final IdIndex nodeIndex;
+	final IdIndex edgeIndex;
+
 	protected AbstractNode[] nodeArray;
 	protected AbstractEdge[] edgeArray;
 
 	protected int nodeCount;
 	protected int edgeCount;
 
+	/**
+	 * Numeric attribute columns, indexed like {@link #nodeArray} and
+	 * {@link #edgeArray}. They are {@code null} until a column is declared.
+	 */
+	AttributeColumns nodeColumns;
+	AttributeColumns edgeColumns;
+
+	/**
+	 * The chunks of the last snapshot, {@code null} until the first snapshot.
+	 * The callbacks mark the chunks they change.
+	 */
+	SnapshotStore snapshots;
+
 	// *** Constructors ***
 
 	/**
@@ -94,15 +187,22 @@ public class AdjacencyListGraph extends AbstractGraph {
 	 *            if you know the approximate maximum number of edges of the
 	 *            graph. The graph can grow beyond this limit, but storage
 	 *            reallocation is expensive operation.
+	 * @param indexType
+	 *            How nodes and edges are indexed by identifier.
 	 */
 	public AdjacencyListGraph(String id, boolean strictChecking, boolean autoCreate,
-			int initialNodeCapacity, int initialEdgeCapacity) {
+			int initialNodeCapacity, int initialEdgeCapacity,
+			IdIndexType indexType) {
 		super(id, strictChecking, autoCreate);
 
-		setNodeFactory(new NodeFactory<AdjacencyListNode>() {
+		setNodeFactory(new NumericNodeFactory<AdjacencyListNode>() {
 			public AdjacencyListNode newInstance(String id, Graph graph) {
 				return new AdjacencyListNode((AbstractGraph) graph, id);
 			}
+
+			AdjacencyListNode newInstance(long id, Graph graph) {
+				return new AdjacencyListNode((AbstractGraph) graph, id);
+			}
 		});
 
 		setEdgeFactory(new EdgeFactory<AbstractEdge>() {
@@ -118,13 +218,68 @@ public class AdjacencyListGraph extends AbstractGraph {
 		if (initialEdgeCapacity < DEFAULT_EDGE_CAPACITY)
 			initialEdgeCapacity = DEFAULT_EDGE_CAPACITY;
 
-		nodeMap = new TreeMap<>();
-		edgeMap = new TreeMap<>();
+		if (indexType == IdIndexType.TREE) {
+			nodeMap = new TreeMap<>();
+			edgeMap = new TreeMap<>();
+			nodeIndex = null;
+			edgeIndex = null;
+		} else {
+			nodeMap = new IndexView<AbstractNode>() {
+				AbstractNode get(String id) {
+					return getNode(id);
+				}
+
+				AbstractNode get(int index) {
+					return nodeArray[index];
+				}
+
+				int count() {
+					return nodeCount;
+				}
+			};
+			edgeMap = new IndexView<AbstractEdge>() {
+				AbstractEdge get(String id) {
+					return getEdge(id);
+				}
+
+				AbstractEdge get(int index) {
+					return edgeArray[index];
+				}
+
+				int count() {
+					return edgeCount;
+				}
+			};
+			nodeIndex = new IdIndex(initialNodeCapacity);
+			edgeIndex = new IdIndex(initialEdgeCapacity);
+		}
 		nodeArray = new AbstractNode[initialNodeCapacity];
 		edgeArray = new AbstractEdge[initialEdgeCapacity];
 		nodeCount = edgeCount = 0;
 	}
 
+	/**
+	 * Creates an empty graph indexed with {@link IdIndexType#HASH}.
+	 * 
+	 * @param id
+	 *            Unique identifier of the graph.
+	 * @param strictChecking
+	 *            If true any non-fatal error throws an exception.
+	 * @param autoCreate
+	 *            If true (and strict checking is false), nodes are
+	 *            automatically created when referenced when creating a edge,
+	 *            even if not yet inserted in the graph.
+	 * @param initialNodeCapacity
+	 *            Initial capacity of the node storage data structures.
+	 * @param initialEdgeCapacity
+	 *            Initial capacity of the edge storage data structures.
+	 */
+	public AdjacencyListGraph(String id, boolean strictChecking, boolean autoCreate,
+			int initialNodeCapacity, int initialEdgeCapacity) {
+		this(id, strictChecking, autoCreate, initialNodeCapacity,
+				initialEdgeCapacity, IdIndexType.HASH);
+	}
+
 	/**
 	 * Creates an empty graph with default edge and node capacity.
 	 * 
@@ -152,38 +307,115 @@ public class AdjacencyListGraph extends AbstractGraph {
 		this(id, true, false);
 	}
 
+	/**
+	 * New length of a full array, according to {@link #GROW_FACTOR} and
+	 * {@link #MAX_GROWTH}.
+	 * 
+	 * @param length
+	 *            Current length of the array.
+	 * @param minLength
+	 *            Length needed.
+	 * @return The new length, at least {@code minLength}.
+	 */
+	static int grow(int length, int minLength) {
+		long growth = (long) (length * (GROW_FACTOR - 1)) + 1;
+		if (growth > MAX_GROWTH)
+			growth = MAX_GROWTH;
+		long newLength = Math.max(length + growth, minLength);
+		return (int) Math.min(newLength, Integer.MAX_VALUE - 8);
+	}
+
 	// *** Callbacks ***
 
 	@Override
 	protected void addEdgeCallback(AbstractEdge edge) {
-		edgeMap.put(edge.getId(), edge);
-		if (edgeCount == edgeArray.length) {
-			AbstractEdge[] tmp = new AbstractEdge[(int) (edgeArray.length * GROW_FACTOR) + 1];
-			System.arraycopy(edgeArray, 0, tmp, 0, edgeArray.length);
-			Arrays.fill(edgeArray, null);
-			edgeArray = tmp;
+		if (edgeIndex == null)
+			edgeMap.put(edge.getId(), edge);
+		else
+			edgeIndex.put(edge, edgeCount);
+		if (edgeCount == edgeArray.length)
+			edgeArray = Arrays.copyOf(edgeArray,
+					grow(edgeArray.length, edgeCount + 1));
+		if (edgeColumns != null) {
+			edgeColumns.ensureCapacity(edgeArray.length);
+			edgeColumns.unset(edgeCount);
 		}
 		edgeArray[edgeCount] = edge;
 		edge.setIndex(edgeCount++);
+		if (snapshots != null)
+			snapshots.edgeAdded(edge);
 	}
 
 	@Override
 	protected void addNodeCallback(AbstractNode node) {
-		nodeMap.put(node.getId(), node);
-		if (nodeCount == nodeArray.length) {
-			AbstractNode[] tmp = new AbstractNode[(int) (nodeArray.length * GROW_FACTOR) + 1];
-			System.arraycopy(nodeArray, 0, tmp, 0, nodeArray.length);
-			Arrays.fill(nodeArray, null);
-			nodeArray = tmp;
+		if (nodeIndex == null)
+			nodeMap.put(node.getId(), node);
+		else
+			nodeIndex.put(node, nodeCount);
+		if (nodeCount == nodeArray.length)
+			nodeArray = Arrays.copyOf(nodeArray,
+					grow(nodeArray.length, nodeCount + 1));
+		if (nodeColumns != null) {
+			nodeColumns.ensureCapacity(nodeArray.length);
+			nodeColumns.unset(nodeCount);
 		}
 		nodeArray[nodeCount] = node;
 		node.setIndex(nodeCount++);
+		if (snapshots != null)
+			snapshots.nodeChanged(node.getIndex());
+	}
+
+	@Override
+	public void ensureCapacity(int nodeCapacity, int edgeCapacity) {
+		if (nodeCapacity > nodeArray.length) {
+			nodeArray = Arrays.copyOf(nodeArray, nodeCapacity);
+			if (nodeIndex != null)
+				nodeIndex.ensureCapacity(nodeCapacity);
+			if (nodeColumns != null)
+				nodeColumns.ensureCapacity(nodeCapacity);
+		}
+		if (edgeCapacity > edgeArray.length) {
+			edgeArray = Arrays.copyOf(edgeArray, edgeCapacity);
+			if (edgeIndex != null)
+				edgeIndex.ensureCapacity(edgeCapacity);
+			if (edgeColumns != null)
+				edgeColumns.ensureCapacity(edgeCapacity);
+		}
+	}
+
+	/**
+	 * Reduces the arrays of nodes and edges of the graph, and the arrays of
+	 * edges of its nodes, to their current number of elements.
+	 * 
+	 * @complexity O(n + m) where n is the number of nodes and m the number of
+	 *             edges
+	 */
+	@Override
+	public void trimToSize() {
+		if (nodeArray.length > nodeCount)
+			nodeArray = Arrays.copyOf(nodeArray, nodeCount);
+		if (edgeArray.length > edgeCount)
+			edgeArray = Arrays.copyOf(edgeArray, edgeCount);
+		for (int i = 0; i < nodeCount; i++)
+			nodeArray[i].trimToSize();
 	}
 
 	@Override
 	protected void removeEdgeCallback(AbstractEdge edge) {
-		edgeMap.remove(edge.getId());
 		int i = edge.getIndex();
+		if (snapshots != null)
+			snapshots.edgeRemoved(edge, edgeArray[edgeCount - 1]);
+		if (edgeIndex == null)
+			edgeMap.remove(edge.getId());
+		else {
+			edgeIndex.remove(edge, i);
+			if (i != edgeCount - 1)
+				edgeIndex.move(edgeArray[edgeCount - 1], edgeCount - 1, i);
+		}
+		if (edgeColumns != null) {
+			edgeColumns.move(edgeCount - 1, i);
+			edge.setIndex(-1);
+		}
 		edgeArray[i] = edgeArray[--edgeCount];
 		edgeArray[i].setIndex(i);
 		edgeArray[edgeCount] = null;
@@ -191,8 +423,20 @@ public class AdjacencyListGraph extends AbstractGraph {
 
 	@Override
 	protected void removeNodeCallback(AbstractNode node) {
-		nodeMap.remove(node.getId());
 		int i = node.getIndex();
+		if (snapshots != null)
+			snapshots.nodeRemoved(node, nodeArray[nodeCount - 1]);
+		if (nodeIndex == null)
+			nodeMap.remove(node.getId());
+		else {
+			nodeIndex.remove(node, i);
+			if (i != nodeCount - 1)
+				nodeIndex.move(nodeArray[nodeCount - 1], nodeCount - 1, i);
+		}
+		if (nodeColumns != null) {
+			nodeColumns.move(nodeCount - 1, i);
+			node.setIndex(-1);
+		}
 		nodeArray[i] = nodeArray[--nodeCount];
 		nodeArray[i].setIndex(i);
 		nodeArray[nodeCount] = null;
@@ -200,17 +444,66 @@ public class AdjacencyListGraph extends AbstractGraph {
 
 	@Override
 	protected void clearCallback() {
-		nodeMap.clear();
-		edgeMap.clear();
+		if (nodeIndex == null) {
+			nodeMap.clear();
+			edgeMap.clear();
+		} else {
+			nodeIndex.clear();
+			edgeIndex.clear();
+		}
+		if (nodeColumns != null)
+			nodeColumns.clear();
+		if (edgeColumns != null)
+			edgeColumns.clear();
 		Arrays.fill(nodeArray, 0, nodeCount, null);
 		Arrays.fill(edgeArray, 0, edgeCount, null);
 		nodeCount = edgeCount = 0;
+		// nothing is left to share with the next snapshot
+		snapshots = null;
+	}
+
+	@Override
+	void nodeAttributesChanged(AbstractNode node) {
+		if (snapshots != null)
+			snapshots.nodeChanged(node.getIndex());
+	}
+
+	@Override
+	void edgeAttributesChanged(AbstractEdge edge) {
+		if (snapshots != null)
+			snapshots.edgeChanged(edge.getIndex());
+	}
+
+	/**
+	 * Tells if snapshots share the chunks in which nothing changed with the
+	 * last snapshot, which requires the attributes to be stored in the maps of
+	 * the elements.
+	 */
+	boolean chunkedSnapshots() {
+		return true;
+	}
+
+	@Override
+	CompactGraph newSnapshot(CompactGraph last) {
+		if (chunkedSnapshots()) {
+			if (snapshots == null)
+				snapshots = new SnapshotStore(nodeCount, edgeCount);
+			CompactGraph.Layout layout = snapshots.update(this);
+			if (layout != null)
+				return new CompactGraph(this, layout);
+			// the nodes are not adjacency list nodes
+			snapshots = null;
+		}
+		return super.newSnapshot(last);
 	}
 
 	@SuppressWarnings("unchecked")
 	@Override
 	public <T extends Edge> T getEdge(String id) {
-		return (T) edgeMap.get(id);
+		if (edgeIndex == null)
+			return (T) edgeMap.get(id);
+		int i = edgeIndex.get(id, edgeArray);
+		return i < 0 ? null : (T) edgeArray[i];
 	}
 
 	@SuppressWarnings("unchecked")
@@ -230,7 +523,10 @@ public class AdjacencyListGraph extends AbstractGraph {
 	@SuppressWarnings("unchecked")
 	@Override
 	public <T extends Node> T getNode(String id) {
-		return (T) nodeMap.get(id);
+		if (nodeIndex == null)
+			return (T) nodeMap.get(id);
+		int i = nodeIndex.get(id, nodeArray);
+		return i < 0 ? null : (T) nodeArray[i];
 	}
 
 	@SuppressWarnings("unchecked")
@@ -247,6 +543,174 @@ public class AdjacencyListGraph extends AbstractGraph {
 		return nodeCount;
 	}
 
+	// *** Numeric identifiers ***
+
+	/**
+	 * Classes overriding {@link #addNode(String)}, whose nodes are all added
+	 * through it.
+	 */
+	private static final ClassValue<Boolean> CUSTOM_ADD_NODE = new ClassValue<Boolean>() {
+		@Override
+		protected Boolean computeValue(Class<?> type) {
+			return overrides(type, AdjacencyListGraph.class, "addNode",
+					String.class);
+		}
+	};
+
+	/**
+	 * Adds a node with a numeric identifier. When the node factory is the
+	 * default one, {@link #addNode(String)} is not overridden and the graph
+	 * has no element sink, no string is created: the hash index stores the
+	 * hash code of the decimal form of {@code id}, computed arithmetically,
+	 * and {@link Node#getId()} builds the string the first time it is called.
+	 * 
+	 * @complexity O(1) on average
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public <T extends Node> T addNode(long id) {
+		if (nodeIndex == null || !(nodeFactory() instanceof NumericNodeFactory)
+				|| CUSTOM_ADD_NODE.get(getClass()))
+			return addNode(Long.toString(id));
+
+		AbstractNode node = getNode(id);
+
+		if (node != null) {
+			if (isStrict())
+				throw new IdAlreadyInUseException("id \"" + id
+						+ "\" already in use. Cannot create a node.");
+			return (T) node;
+		}
+
+		node = ((NumericNodeFactory<?>) nodeFactory()).newInstance(id, this);
+		addNodeCallback(node);
+		structureVersion++;
+
+		if (listeners.hasElementSinks())
+			listeners.sendNodeAdded(node.getId());
+
+		return (T) node;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <T extends Node> T getNode(long id) {
+		if (nodeIndex == null)
+			return (T) nodeMap.get(Long.toString(id));
+		int i = nodeIndex.get(id, nodeArray);
+		return i < 0 ? null : (T) nodeArray[i];
+	}
+
+	// *** Attribute columns ***
+
+	@Override
+	AttributeColumns nodeColumns() {
+		return nodeColumns;
+	}
+
+	@Override
+	AttributeColumns edgeColumns() {
+		return edgeColumns;
+	}
+
+	/**
+	 * Stores a numeric node attribute in a primitive array instead of the
+	 * attribute maps of the nodes. Values already set on the nodes are moved
+	 * into the column. Once declared, the attribute can only hold numbers.
+	 * 
+	 * @param key
+	 *            The attribute key.
+	 * @param type
+	 *            Primitive type of the values.
+	 * @return The column, or the existing one if the key is already declared.
+	 * @throws IllegalArgumentException
+	 *             If the key is already declared with another type or if a
+	 *             node has a value which is not a number.
+	 * @complexity O(n) where n is the number of nodes
+	 */
+	public AttributeColumn declareNodeColumn(String key, AttributeColumn.Type type) {
+		if (nodeColumns == null)
+			nodeColumns = new AttributeColumns(nodeArray.length);
+		return declareColumn(nodeColumns, nodeArray, nodeCount, key, type);
+	}
+
+	/**
+	 * Stores a numeric edge attribute in a primitive array instead of the
+	 * attribute maps of the edges. Values already set on the edges are moved
+	 * into the column. Once declared, the attribute can only hold numbers.
+	 * 
+	 * @param key
+	 *            The attribute key.
+	 * @param type
+	 *            Primitive type of the values.
+	 * @return The column, or the existing one if the key is already declared.
+	 * @throws IllegalArgumentException
+	 *             If the key is already declared with another type or if an
+	 *             edge has a value which is not a number.
+	 * @complexity O(m) where m is the number of edges
+	 */
+	public AttributeColumn declareEdgeColumn(String key, AttributeColumn.Type type) {
+		if (edgeColumns == null)
+			edgeColumns = new AttributeColumns(edgeArray.length);
+		return declareColumn(edgeColumns, edgeArray, edgeCount, key, type);
+	}
+
+	/**
+	 * The column of a node attribute.
+	 * 
+	 * @param key
+	 *            The attribute key.
+	 * @return The column or {@code null} if the key has not been declared.
+	 */
+	public AttributeColumn getNodeColumn(String key) {
+		return nodeColumns == null ? null : nodeColumns.get(key);
+	}
+
+	/**
+	 * The column of an edge attribute.
+	 * 
+	 * @param key
+	 *            The attribute key.
+	 * @return The column or {@code null} if the key has not been declared.
+	 */
+	public AttributeColumn getEdgeColumn(String key) {
+		return edgeColumns == null ? null : edgeColumns.get(key);
+	}
+
+	private AttributeColumn declareColumn(AttributeColumns columns,
+			AbstractElement[] elements, int count, String key,
+			AttributeColumn.Type type) {
+		AttributeColumn column = columns.get(key);
+		if (column != null) {
+			if (column.getType() != type)
+				throw new IllegalArgumentException(String.format(
+						"attribute \"%s\" is already declared as %s", key,
+						column.getType()));
+			return column;
+		}
+		// check the values first so that a failure leaves the graph unchanged
+		AttributeColumn check = new AttributeColumn(key, type, 1);
+		for (int i = 0; i < count; i++) {
+			Map<String, Object> map = elements[i].attributes;
+			if (map.containsKey(key))
+				check.put(0, map.get(key));
+		}
+		column = columns.add(attributeKeys().intern(key), type);
+		for (int i = 0; i < count; i++) {
+			AbstractElement e = elements[i];
+			if (e.attributes.containsKey(key)) {
+				// the map may be shared with a snapshot
+				e.prepareAttributeChange();
+				column.put(i, e.attributes.remove(key));
+				if (e instanceof AbstractNode)
+					nodeAttributesChanged((AbstractNode) e);
+				else
+					edgeAttributesChanged((AbstractEdge) e);
+			}
+		}
+		return column;
+	}
+
 	// *** Iterators ***
 
 	protected class EdgeIterator<T extends Edge> implements Iterator<T> {
@@ -314,4 +778,68 @@ public class AdjacencyListGraph extends AbstractGraph {
 	public <T extends Node> Iterator<T> getNodeIterator() {
 		return new NodeIterator<T>();
 	}
+
+	/**
+	 * Read-only map view of the elements of the graph, backed by the hash
+	 * index and the arrays of elements.
+	 */
+	abstract class IndexView<T extends AbstractElement> extends
+			AbstractMap<String, T> {
+		abstract T get(String id);
+
+		abstract T get(int index);
+
+		abstract int count();
+
+		@Override
+		public T get(Object key) {
+			return key instanceof String ? get((String) key) : null;
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return get(key) != null;
+		}
+
+		@Override
+		public int size() {
+			return count();
+		}
+
+		@Override
+		public Set<Map.Entry<String, T>> entrySet() {
+			return new AbstractSet<Map.Entry<String, T>>() {
+				@Override
+				public Iterator<Map.Entry<String, T>> iterator() {
+					return new Iterator<Map.Entry<String, T>>() {
+						int iNext = 0;
+
+						@Override
+						public boolean hasNext() {
+							return iNext < count();
+						}
+
+						@Override
+						public Map.Entry<String, T> next() {
+							if (iNext >= count())
+								throw new NoSuchElementException();
+							T element = get(iNext++);
+							return new AbstractMap.SimpleImmutableEntry<String, T>(
+									element.getId(), element);
+						}
+
+						@Override
+						public void remove() {
+							throw new UnsupportedOperationException();
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					return count();
+				}
+			};
+		}
+	}
 }
@@ -32,21 +32,36 @@
 package org.graphstream.graph.implementations;
 
 import org.graphstream.graph.Edge;
+import org.graphstream.graph.IndexConsumer;
 import org.graphstream.graph.Node;
 
 import java.security.AccessControlException;
 import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
 /**
+ * <p>
  * Nodes used with {@link AdjacencyListGraph}
+ * </p>
  * 
+ * <p>
+ * The edges are kept in an array, so finding the edge toward a given node
+ * means scanning it. When the degree of a node exceeds
+ * {@link #NEIGHBOR_INDEX_THRESHOLD}, the node builds a {@link NeighborIndex}
+ * keyed by the indices of its neighbors, which makes
+ * {@link #getEdgeBetween(Node)}, {@link #getEdgeFrom(Node)} and
+ * {@link #getEdgeToward(Node)} constant time. The threshold can be set with
+ * the {@code org.graphstream.graph.node.neighborIndexThreshold} system
+ * property.
+ * </p>
  */
 public class AdjacencyListNode extends AbstractNode {
 
 	protected static final int INITIAL_EDGE_CAPACITY;
-	protected static final double GROWTH_FACTOR = 1.1;
+	protected static final int NEIGHBOR_INDEX_THRESHOLD;
+	protected static final double GROWTH_FACTOR = AdjacencyListGraph.GROW_FACTOR;
 
 	static {
 		String p = "org.graphstream.graph.node.initialEdgeCapacity";
@@ -56,6 +71,15 @@ public class AdjacencyListNode extends AbstractNode {
 		} catch (AccessControlException e) {
 		}
 		INITIAL_EDGE_CAPACITY = initialEdgeCapacity;
+
+		p = "org.graphstream.graph.node.neighborIndexThreshold";
+		int neighborIndexThreshold = 64;
+		try {
+			neighborIndexThreshold = Integer.valueOf(System.getProperty(p,
+					"64"));
+		} catch (AccessControlException | NumberFormatException e) {
+		}
+		NEIGHBOR_INDEX_THRESHOLD = neighborIndexThreshold;
 	}
 
 	protected static final char I_EDGE = 0;
@@ -65,6 +89,11 @@ public class AdjacencyListNode extends AbstractNode {
 	protected AbstractEdge[] edges;
 	protected int ioStart, oStart, degree;
 
+	/**
+	 * Index of the neighbors, {@code null} while the degree is low.
+	 */
+	NeighborIndex neighbors;
+
 	// *** Constructor ***
 
 	protected AdjacencyListNode(AbstractGraph graph, String id) {
@@ -73,6 +102,12 @@ public class AdjacencyListNode extends AbstractNode {
 		ioStart = oStart = degree = 0;
 	}
 
+	protected AdjacencyListNode(AbstractGraph graph, long id) {
+		super(graph, id);
+		edges = new AbstractEdge[INITIAL_EDGE_CAPACITY];
+		ioStart = oStart = degree = 0;
+	}
+
 	// *** Helpers ***
 
 	protected char edgeType(AbstractEdge e) {
@@ -81,8 +116,30 @@ public class AdjacencyListNode extends AbstractNode {
 		return e.source == this ? O_EDGE : I_EDGE;
 	}
 
+	/**
+	 * Degree above which this node builds a {@link NeighborIndex}. Subclasses
+	 * having their own neighbor map return {@link Integer#MAX_VALUE}.
+	 */
+	protected int neighborIndexThreshold() {
+		return NEIGHBOR_INDEX_THRESHOLD;
+	}
+
+	private void indexNeighbor(AbstractEdge e) {
+		neighbors.add(e.getOpposite(this).getIndex(), e);
+	}
+
 	@SuppressWarnings("unchecked")
 	protected <T extends Edge> T locateEdge(Node opposite, char type) {
+		if (neighbors != null) {
+			if (opposite == null)
+				return null;
+			AbstractEdge e = neighbors.find(opposite.getIndex(), this,
+					type == I_EDGE, type == O_EDGE);
+			// the node may belong to another graph
+			return e != null && e.getOpposite(this) == opposite ? (T) e
+					: null;
+		}
+
 		// where to search ?
 		int start = 0;
 		int end = degree;
@@ -98,6 +155,12 @@ public class AdjacencyListNode extends AbstractNode {
 	}
 
 	protected void removeEdge(int i) {
+		if (neighbors != null) {
+			neighbors.remove(edges[i].getOpposite(this).getIndex(), edges[i]);
+			if (degree <= neighborIndexThreshold() / 2)
+				neighbors = null;
+		}
+
 		if (i >= oStart) {
 			edges[i] = edges[--degree];
 			edges[degree] = null;
@@ -123,32 +186,52 @@ public class AdjacencyListNode extends AbstractNode {
 	@Override
 	protected boolean addEdgeCallback(AbstractEdge edge) {
 		// resize edges if necessary
-		if (edges.length == degree) {
-			AbstractEdge[] tmp = new AbstractEdge[(int) (GROWTH_FACTOR * edges.length) + 1];
-			System.arraycopy(edges, 0, tmp, 0, edges.length);
-			Arrays.fill(edges, null);
-			edges = tmp;
-		}
+		if (edges.length == degree)
+			edges = Arrays.copyOf(edges,
+					AdjacencyListGraph.grow(edges.length, degree + 1));
 
 		char type = edgeType(edge);
 
 		if (type == O_EDGE) {
 			edges[degree++] = edge;
-			return true;
-		}
-
-		if (type == IO_EDGE) {
+		} else if (type == IO_EDGE) {
 			edges[degree++] = edges[oStart];
 			edges[oStart++] = edge;
-			return true;
+		} else {
+			edges[degree++] = edges[oStart];
+			edges[oStart++] = edges[ioStart];
+			edges[ioStart++] = edge;
 		}
 
-		edges[degree++] = edges[oStart];
-		edges[oStart++] = edges[ioStart];
-		edges[ioStart++] = edge;
+		edgeAdded(edge);
 		return true;
 	}
 
+	/**
+	 * Updates the neighbor index after an edge has been added.
+	 */
+	private void edgeAdded(AbstractEdge edge) {
+		if (neighbors != null) {
+			indexNeighbor(edge);
+		} else if (degree > neighborIndexThreshold()) {
+			neighbors = new NeighborIndex(degree);
+			for (int i = 0; i < degree; i++)
+				indexNeighbor(edges[i]);
+		}
+	}
+
+	@Override
+	public void ensureCapacity(int capacity) {
+		if (capacity > edges.length)
+			edges = Arrays.copyOf(edges, capacity);
+	}
+
+	@Override
+	public void trimToSize() {
+		if (edges.length > degree)
+			edges = Arrays.copyOf(edges, degree);
+	}
+
 	@Override
 	protected void removeEdgeCallback(AbstractEdge edge) {
 		// locate the edge first
@@ -164,12 +247,112 @@ public class AdjacencyListNode extends AbstractNode {
 		removeEdge(i);
 	}
 
+	@Override
+	protected AbstractEdge[] edgeRemovalOrder() {
+		// replays removeEdge(0) on a copy, as done by the edge iterator
+		AbstractEdge[] e = Arrays.copyOf(edges, degree);
+		AbstractEdge[] order = new AbstractEdge[degree];
+		int io = ioStart, o = oStart, d = degree;
+		for (int k = 0; k < order.length; k++) {
+			order[k] = e[0];
+			if (o == 0) {
+				e[0] = e[--d];
+			} else if (io == 0) {
+				e[0] = e[--o];
+				e[o] = e[--d];
+			} else {
+				e[0] = e[--io];
+				e[io] = e[--o];
+				e[o] = e[--d];
+			}
+		}
+		return order;
+	}
+
+	@Override
+	protected void removeEdgesCallback(AbstractEdge[] toRemove, int from,
+			int to) {
+		if (to - from == 1) {
+			removeEdgeCallback(toRemove[from]);
+			return;
+		}
+
+		// replays removeEdge(i) for each edge without searching the edges
+		// again: pos gives the position of each edge to remove and slot the
+		// edge to remove at each position, plus one
+		IdentityHashMap<AbstractEdge, Integer> order = new IdentityHashMap<AbstractEdge, Integer>(
+				to - from);
+		for (int k = from; k < to; k++)
+			order.put(toRemove[k], k - from);
+		int[] pos = new int[to - from];
+		int[] slot = new int[degree];
+		for (int i = 0; i < degree; i++) {
+			Integer k = order.get(edges[i]);
+			if (k != null) {
+				pos[k] = i;
+				slot[i] = k + 1;
+			}
+		}
+
+		int d = degree;
+		if (neighbors != null) {
+			neighbors.removeAll(toRemove[from].getOpposite(this).getIndex());
+			if (d - (to - from) < neighborIndexThreshold() / 2)
+				neighbors = null;
+		}
+
+		for (int k = 0; k < pos.length; k++) {
+			int i = pos[k];
+			if (i >= oStart) {
+				moveEdge(--degree, i, slot, pos);
+			} else if (i >= ioStart) {
+				moveEdge(--oStart, i, slot, pos);
+				moveEdge(--degree, oStart, slot, pos);
+			} else {
+				moveEdge(--ioStart, i, slot, pos);
+				moveEdge(--oStart, ioStart, slot, pos);
+				moveEdge(--degree, oStart, slot, pos);
+			}
+			edges[degree] = null;
+			slot[degree] = 0;
+		}
+	}
+
+	private void moveEdge(int from, int to, int[] slot, int[] pos) {
+		if (from == to)
+			return;
+		edges[to] = edges[from];
+		slot[to] = slot[from];
+		if (slot[to] != 0)
+			pos[slot[to] - 1] = to;
+	}
+
 	@Override
 	protected void clearCallback() {
+		neighbors = null;
 		Arrays.fill(edges, 0, degree, null);
 		ioStart = oStart = degree = 0;
 	}
 
+	@Override
+	protected void setIndex(int index) {
+		int old = getIndex();
+		super.setIndex(index);
+		// nodes that never build an index are not indexed by their neighbors
+		// either, all the nodes of a graph being of the same kind
+		if (old == index || neighborIndexThreshold() == Integer.MAX_VALUE)
+			return;
+		// the neighbors indexing this node must know its new index
+		for (int i = 0; i < degree; i++) {
+			AbstractNode opposite = edges[i].getOpposite(this);
+			if (opposite instanceof AdjacencyListNode) {
+				NeighborIndex n = ((AdjacencyListNode) opposite).neighbors;
+				if (n != null)
+					n.move(old, index);
+			}
+		}
+	}
+
 	// *** Access methods ***
 
 	@Override
@@ -229,6 +412,67 @@ public class AdjacencyListNode extends AbstractNode {
 		return locateEdge(node, O_EDGE);
 	}
 
+	// *** Neighbor indices ***
+
+	/**
+	 * Gives the index of the opposite node of the edges of a type to a
+	 * consumer.
+	 */
+	protected void forEachOpposite(char type, IndexConsumer action) {
+		int end = type == I_EDGE ? oStart : degree;
+		for (int i = type == O_EDGE ? ioStart : 0; i < end; i++) {
+			AbstractEdge e = edges[i];
+			action.accept((e.source == this ? e.target : e.source).getIndex());
+		}
+	}
+
+	/**
+	 * Copies the index of the opposite node of the edges of a type to an
+	 * array, as much as it can hold.
+	 * 
+	 * @return The number of edges of the type.
+	 */
+	protected int copyOpposites(char type, int[] buf) {
+		int start = type == O_EDGE ? ioStart : 0;
+		int end = type == I_EDGE ? oStart : degree;
+		int n = Math.min(end - start, buf.length);
+		for (int k = 0; k < n; k++) {
+			AbstractEdge e = edges[start + k];
+			buf[k] = (e.source == this ? e.target : e.source).getIndex();
+		}
+		return end - start;
+	}
+
+	@Override
+	public void forEachNeighborIndex(IndexConsumer action) {
+		forEachOpposite(IO_EDGE, action);
+	}
+
+	@Override
+	public void forEachEnteringNeighborIndex(IndexConsumer action) {
+		forEachOpposite(I_EDGE, action);
+	}
+
+	@Override
+	public void forEachLeavingNeighborIndex(IndexConsumer action) {
+		forEachOpposite(O_EDGE, action);
+	}
+
+	@Override
+	public int neighborIndices(int[] buf) {
+		return copyOpposites(IO_EDGE, buf);
+	}
+
+	@Override
+	public int enteringNeighborIndices(int[] buf) {
+		return copyOpposites(I_EDGE, buf);
+	}
+
+	@Override
+	public int leavingNeighborIndices(int[] buf) {
+		return copyOpposites(O_EDGE, buf);
+	}
+
 	// *** Iterators ***
 
 	protected class EdgeIterator<T extends Edge> implements Iterator<T> {
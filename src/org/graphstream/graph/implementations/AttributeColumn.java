@@ -0,0 +1,452 @@
+/*
+ * Copyright 2006 - 2013
+ *     Stefan Balev     <stefan.balev@graphstream-project.org>
+ *     Julien Baudry    <julien.baudry@graphstream-project.org>
+ *     Antoine Dutot    <antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné      <yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin   <guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.graph.implementations;
+
+import java.util.Arrays;
+
+import org.graphstream.graph.Element;
+import org.graphstream.graph.Element.AttributeChangeEvent;
+
+/**
+ * <p>
+ * A numeric attribute stored in a primitive array for all the nodes or all the
+ * edges of an {@link AdjacencyListGraph}.
+ * </p>
+ * 
+ * <p>
+ * Columns are created with
+ * {@link AdjacencyListGraph#declareNodeColumn(String, Type)} and
+ * {@link AdjacencyListGraph#declareEdgeColumn(String, Type)}. The value of an
+ * element is stored at the position given by {@link Element#getIndex()}, so
+ * that reading it with {@link Element#getDouble(String)} or
+ * {@link #getDouble(int)} does not allocate anything and scanning all the
+ * elements of the graph reads contiguous memory. The attribute is still
+ * visible through the usual {@link Element} methods and changes are still sent
+ * to the attribute sinks of the graph.
+ * </p>
+ * 
+ * <p>
+ * Only {@link Number} values (or strings that can be parsed as numbers) can be
+ * stored in a column. Values of removed elements are not kept.
+ * </p>
+ * 
+ * <p>
+ * The values are stored in pages of {@value #PAGE_SIZE} elements. A snapshot
+ * of the graph shares the pages of the column and the column copies a page
+ * before its first change after the snapshot, so that taking a snapshot does
+ * not copy the values.
+ * </p>
+ */
+public final class AttributeColumn {
+	/**
+	 * Primitive type of the values of a column.
+	 */
+	public static enum Type {
+		/**
+		 * Values are stored as {@code double}.
+		 */
+		DOUBLE,
+		/**
+		 * Values are stored as {@code long}.
+		 */
+		LONG
+	}
+
+	/**
+	 * Number of values in a page.
+	 */
+	static final int PAGE_SIZE = 1 << 10;
+
+	private static final int PAGE_SHIFT = 10;
+	private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+	private final String key;
+	private final Type type;
+
+	private double[][] doubles;
+	private long[][] longs;
+
+	/**
+	 * Bit sets of the positions holding a value, one per page.
+	 */
+	private long[][] present;
+
+	/**
+	 * Generation in which each page was last copied. Pages of an older
+	 * generation are shared with a copy of the column and are copied before
+	 * being changed.
+	 */
+	private int[] owners;
+	private int generation;
+
+	AttributeColumn(String key, Type type, int capacity) {
+		this.key = key;
+		this.type = type;
+		if (type == Type.DOUBLE)
+			doubles = new double[0][];
+		else
+			longs = new long[0][];
+		present = new long[0][];
+		owners = new int[0];
+		ensureCapacity(capacity);
+	}
+
+	/**
+	 * Copies the first values of a column, sharing its pages.
+	 */
+	private AttributeColumn(AttributeColumn source, int length) {
+		this.key = source.key;
+		this.type = source.type;
+		int pages = Math.min((length + PAGE_MASK) >> PAGE_SHIFT,
+				source.present.length);
+		if (type == Type.DOUBLE)
+			doubles = Arrays.copyOf(source.doubles, pages);
+		else
+			longs = Arrays.copyOf(source.longs, pages);
+		present = Arrays.copyOf(source.present, pages);
+		// the pages belong to none of the two columns anymore
+		owners = new int[pages];
+		generation = 1;
+		source.generation++;
+	}
+
+	/**
+	 * Page holding an index, copied first if it is shared.
+	 */
+	private int writablePage(int index) {
+		int p = index >> PAGE_SHIFT;
+		if (owners[p] != generation) {
+			if (type == Type.DOUBLE)
+				doubles[p] = doubles[p].clone();
+			else
+				longs[p] = longs[p].clone();
+			present[p] = present[p].clone();
+			owners[p] = generation;
+		}
+		return p;
+	}
+
+	// *** Access ***
+
+	/**
+	 * Key of the attribute stored in this column.
+	 */
+	public String getKey() {
+		return key;
+	}
+
+	/**
+	 * Primitive type of the values of this column.
+	 */
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * Checks if the element at a given index has a value.
+	 * 
+	 * @param index
+	 *            Index of a node or an edge.
+	 * @return {@code true} if a value is set at this index.
+	 */
+	public boolean isSet(int index) {
+		return index >= 0 && (index >> PAGE_SHIFT) < present.length
+				&& (present[index >> PAGE_SHIFT][(index & PAGE_MASK) >> 6]
+						& (1L << index)) != 0;
+	}
+
+	/**
+	 * Value of the element at a given index.
+	 * 
+	 * @param index
+	 *            Index of a node or an edge.
+	 * @return The value or {@code NaN} if there is no value at this index.
+	 */
+	public double getDouble(int index) {
+		if (!isSet(index))
+			return Double.NaN;
+		return type == Type.DOUBLE ? doubles[index >> PAGE_SHIFT][index
+				& PAGE_MASK] : longs[index >> PAGE_SHIFT][index & PAGE_MASK];
+	}
+
+	/**
+	 * Value of the element at a given index.
+	 * 
+	 * @param index
+	 *            Index of a node or an edge.
+	 * @return The value or 0 if there is no value at this index.
+	 */
+	public long getLong(int index) {
+		if (!isSet(index))
+			return 0;
+		return type == Type.LONG ? longs[index >> PAGE_SHIFT][index
+				& PAGE_MASK] : (long) doubles[index >> PAGE_SHIFT][index
+				& PAGE_MASK];
+	}
+
+	/**
+	 * Value of an element.
+	 * 
+	 * @param e
+	 *            A node or an edge of the graph.
+	 * @return The value or {@code NaN} if the element has no value.
+	 */
+	public double getDouble(Element e) {
+		return getDouble(e.getIndex());
+	}
+
+	/**
+	 * Value of an element.
+	 * 
+	 * @param e
+	 *            A node or an edge of the graph.
+	 * @return The value or 0 if the element has no value.
+	 */
+	public long getLong(Element e) {
+		return getLong(e.getIndex());
+	}
+
+	// *** Modification ***
+
+	/**
+	 * Changes the value of an element. The attribute sinks of the graph are
+	 * notified if the value changes.
+	 * 
+	 * @param e
+	 *            A node or an edge of the graph.
+	 * @param value
+	 *            The new value.
+	 * @throws IllegalArgumentException
+	 *             If the element has been removed or does not belong to the
+	 *             graph of this column.
+	 * @throws UnsupportedOperationException
+	 *             If the element is read-only.
+	 */
+	public void set(Element e, double value) {
+		AbstractElement element = writable(e);
+		int i = element.getIndex();
+		boolean wasSet = isSet(i);
+		double old = getDouble(i);
+		if (type == Type.DOUBLE) {
+			if (wasSet && Double.compare(old, value) == 0)
+				return;
+			doubles[writablePage(i)][i & PAGE_MASK] = value;
+		} else {
+			if (wasSet && getLong(i) == (long) value)
+				return;
+			longs[writablePage(i)][i & PAGE_MASK] = (long) value;
+		}
+		setPresent(i);
+		element.attributeChanged(wasSet ? AttributeChangeEvent.CHANGE
+				: AttributeChangeEvent.ADD, key, wasSet ? box(old) : null,
+				getValue(i));
+	}
+
+	/**
+	 * Changes the value of an element. The attribute sinks of the graph are
+	 * notified if the value changes.
+	 * 
+	 * @param e
+	 *            A node or an edge of the graph.
+	 * @param value
+	 *            The new value.
+	 * @throws IllegalArgumentException
+	 *             If the element has been removed or does not belong to the
+	 *             graph of this column.
+	 * @throws UnsupportedOperationException
+	 *             If the element is read-only.
+	 */
+	public void set(Element e, long value) {
+		if (type == Type.DOUBLE) {
+			set(e, (double) value);
+			return;
+		}
+		AbstractElement element = writable(e);
+		int i = element.getIndex();
+		boolean wasSet = isSet(i);
+		long old = getLong(i);
+		if (wasSet && old == value)
+			return;
+		longs[writablePage(i)][i & PAGE_MASK] = value;
+		setPresent(i);
+		element.attributeChanged(wasSet ? AttributeChangeEvent.CHANGE
+				: AttributeChangeEvent.ADD, key, wasSet ? Long.valueOf(old)
+				: null, Long.valueOf(value));
+	}
+
+	/**
+	 * Checks that an element can be changed through this column, like
+	 * {@link Element#setAttribute(String, Object...)} would.
+	 */
+	private AbstractElement writable(Element e) {
+		AbstractElement element = (AbstractElement) e;
+		if (element.getIndex() < 0)
+			throw new IllegalArgumentException(String.format(
+					"element \"%s\" has been removed from its graph",
+					element.getId()));
+		// the column of an element is the one of its own graph, snapshots
+		// and views have their own columns or none
+		if (element.column(key) != this)
+			throw new IllegalArgumentException(String.format(
+					"element \"%s\" does not belong to the graph of column \"%s\"",
+					element.getId(), key));
+		if (element.attributeState != AbstractElement.OWNED)
+			element.prepareAttributeChange();
+		return element;
+	}
+
+	// *** Package methods used by elements and graphs ***
+
+	/**
+	 * Marks an index as holding a value, its page must be writable.
+	 */
+	private void setPresent(int index) {
+		present[index >> PAGE_SHIFT][(index & PAGE_MASK) >> 6] |= 1L << index;
+	}
+
+	private Object box(double value) {
+		return type == Type.DOUBLE ? Double.valueOf(value) : Long
+				.valueOf((long) value);
+	}
+
+	/**
+	 * Boxed value at an index or null.
+	 */
+	Object getValue(int index) {
+		if (!isSet(index))
+			return null;
+		return type == Type.DOUBLE ? Double.valueOf(getDouble(index)) : Long
+				.valueOf(getLong(index));
+	}
+
+	/**
+	 * Stores a value without sending any event.
+	 * 
+	 * @return The previous value or null.
+	 * @throws IllegalArgumentException
+	 *             If the value is not a number.
+	 */
+	Object put(int index, Object value) {
+		Object old = getValue(index);
+		if (value instanceof Number) {
+			Number n = (Number) value;
+			if (type == Type.DOUBLE)
+				doubles[writablePage(index)][index & PAGE_MASK] = n
+						.doubleValue();
+			else
+				longs[writablePage(index)][index & PAGE_MASK] = n.longValue();
+		} else if (value instanceof CharSequence) {
+			try {
+				if (type == Type.DOUBLE)
+					doubles[writablePage(index)][index & PAGE_MASK] = Double
+							.parseDouble(value.toString());
+				else
+					longs[writablePage(index)][index & PAGE_MASK] = Long
+							.parseLong(value.toString());
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException(String.format(
+						"attribute \"%s\" is numeric, cannot store \"%s\"",
+						key, value));
+			}
+		} else {
+			throw new IllegalArgumentException(String.format(
+					"attribute \"%s\" is numeric, cannot store %s", key, value));
+		}
+		setPresent(index);
+		return old;
+	}
+
+	/**
+	 * Removes the value at an index without sending any event.
+	 */
+	void unset(int index) {
+		if (isSet(index))
+			present[writablePage(index)][(index & PAGE_MASK) >> 6] &= ~(1L
+					<< index);
+	}
+
+	/**
+	 * Moves the value at {@code from} to {@code to}, after {@code to} has been
+	 * freed.
+	 */
+	void move(int from, int to) {
+		if (isSet(from)) {
+			if (type == Type.DOUBLE)
+				doubles[writablePage(to)][to & PAGE_MASK] = getDouble(from);
+			else
+				longs[writablePage(to)][to & PAGE_MASK] = getLong(from);
+			setPresent(to);
+			unset(from);
+		} else {
+			unset(to);
+		}
+	}
+
+	void ensureCapacity(int capacity) {
+		int from = present.length;
+		int pages = (capacity + PAGE_MASK) >> PAGE_SHIFT;
+		if (pages <= from)
+			return;
+		if (type == Type.DOUBLE)
+			doubles = Arrays.copyOf(doubles, pages);
+		else
+			longs = Arrays.copyOf(longs, pages);
+		present = Arrays.copyOf(present, pages);
+		owners = Arrays.copyOf(owners, pages);
+		for (int p = from; p < pages; p++)
+			newPage(p);
+	}
+
+	private void newPage(int p) {
+		if (type == Type.DOUBLE)
+			doubles[p] = new double[PAGE_SIZE];
+		else
+			longs[p] = new long[PAGE_SIZE];
+		present[p] = new long[PAGE_SIZE >> 6];
+		owners[p] = generation;
+	}
+
+	void clear() {
+		for (int p = 0; p < present.length; p++)
+			if (owners[p] == generation)
+				Arrays.fill(present[p], 0);
+			else
+				newPage(p);
+	}
+
+	/**
+	 * Copy of the values at the indices lower than {@code length}.
+	 */
+	AttributeColumn copy(int length) {
+		return new AttributeColumn(this, length);
+	}
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2006 - 2013
+ *     Stefan Balev     <stefan.balev@graphstream-project.org>
+ *     Julien Baudry    <julien.baudry@graphstream-project.org>
+ *     Antoine Dutot    <antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné      <yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin   <guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.graph.implementations;
+
+import java.util.Arrays;
+
+/**
+ * The attribute columns of the nodes or of the edges of a graph. There are
+ * usually only a few columns, so they are kept in an array and searched
+ * linearly, comparing keys by reference first since they are interned.
+ */
+final class AttributeColumns {
+	private AttributeColumn[] columns = new AttributeColumn[0];
+	private int capacity;
+
+	AttributeColumns(int capacity) {
+		this.capacity = capacity;
+	}
+
+	AttributeColumn get(String key) {
+		AttributeColumn[] c = columns;
+		for (int i = 0; i < c.length; i++)
+			if (c[i].getKey() == key)
+				return c[i];
+		for (int i = 0; i < c.length; i++)
+			if (c[i].getKey().equals(key))
+				return c[i];
+		return null;
+	}
+
+	AttributeColumn add(String key, AttributeColumn.Type type) {
+		AttributeColumn column = new AttributeColumn(key, type, capacity);
+		columns = Arrays.copyOf(columns, columns.length + 1);
+		columns[columns.length - 1] = column;
+		return column;
+	}
+
+	AttributeColumn[] columns() {
+		return columns;
+	}
+
+	/**
+	 * Number of columns having a value at an index.
+	 */
+	int count(int index) {
+		int n = 0;
+		for (AttributeColumn c : columns)
+			if (c.isSet(index))
+				n++;
+		return n;
+	}
+
+	void ensureCapacity(int capacity) {
+		if (capacity <= this.capacity)
+			return;
+		this.capacity = capacity;
+		for (AttributeColumn c : columns)
+			c.ensureCapacity(capacity);
+	}
+
+	void unset(int index) {
+		for (AttributeColumn c : columns)
+			c.unset(index);
+	}
+
+	void move(int from, int to) {
+		for (AttributeColumn c : columns)
+			c.move(from, to);
+	}
+
+	void clear() {
+		for (AttributeColumn c : columns)
+			c.clear();
+	}
+
+	/**
+	 * Copy of the values of the first {@code count} elements.
+	 */
+	AttributeColumns copy(int count) {
+		AttributeColumns copy = new AttributeColumns(count);
+		copy.columns = new AttributeColumn[columns.length];
+		for (int i = 0; i < columns.length; i++)
+			copy.columns[i] = columns[i].copy(count);
+		return copy;
+	}
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright 2006 - 2013
+ *     Stefan Balev     <stefan.balev@graphstream-project.org>
+ *     Julien Baudry    <julien.baudry@graphstream-project.org>
+ *     Antoine Dutot    <antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné      <yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin   <guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.graph.implementations;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * The identifier index of a {@link CompactGraph}, mapping identifiers to the
+ * indices of elements stored in chunks.
+ * </p>
+ * 
+ * <p>
+ * It is an open-addressing hash table like {@link IdIndex}, whose buckets are
+ * stored in pages. {@link #freeze()} returns a copy sharing the pages, and the
+ * index copies a page before its first change afterwards. Successive snapshots
+ * of a graph thus share the pages in which no identifier changed.
+ * </p>
+ */
+final class ChunkIndex {
+	/**
+	 * Maximum ratio between the number of entries and the table length.
+	 */
+	private static final double LOAD_FACTOR = 0.5;
+
+	private static final int PAGE_SHIFT = 10;
+	private static final int PAGE_MASK = (1 << PAGE_SHIFT) - 1;
+
+	/**
+	 * Slot of the element plus one, zero marks an empty bucket.
+	 */
+	private int[][] slots;
+
+	/**
+	 * Cached hash codes of the identifiers.
+	 */
+	private int[][] hashes;
+
+	/**
+	 * Generation in which each page was last copied. Pages of an older
+	 * generation are shared with a frozen copy.
+	 */
+	private int[] owners;
+	private int generation;
+
+	private int mask;
+	private int size;
+	private int threshold;
+
+	/**
+	 * Creates an index able to hold {@code expectedSize} entries without
+	 * rehashing.
+	 * 
+	 * @param expectedSize
+	 *            Expected number of elements.
+	 */
+	ChunkIndex(int expectedSize) {
+		allocate(tableLength(expectedSize));
+	}
+
+	private ChunkIndex(ChunkIndex source) {
+		slots = source.slots.clone();
+		hashes = source.hashes.clone();
+		// none of the pages belongs to the copy
+		owners = new int[slots.length];
+		generation = 1;
+		mask = source.mask;
+		size = source.size;
+		threshold = source.threshold;
+	}
+
+	// *** Helpers ***
+
+	private static int tableLength(int expectedSize) {
+		int length = 16;
+		while (length * LOAD_FACTOR < expectedSize && length < (1 << 30))
+			length <<= 1;
+		return length;
+	}
+
+	private void allocate(int length) {
+		int pages = Math.max(1, length >> PAGE_SHIFT);
+		int pageLength = Math.min(length, 1 << PAGE_SHIFT);
+		slots = new int[pages][pageLength];
+		hashes = new int[pages][pageLength];
+		owners = new int[pages];
+		Arrays.fill(owners, generation);
+		mask = length - 1;
+		threshold = (int) (length * LOAD_FACTOR);
+	}
+
+	private int slotAt(int i) {
+		return slots[i >> PAGE_SHIFT][i & PAGE_MASK];
+	}
+
+	private int hashAt(int i) {
+		return hashes[i >> PAGE_SHIFT][i & PAGE_MASK];
+	}
+
+	private void set(int i, int slotPlusOne, int hash) {
+		int p = i >> PAGE_SHIFT;
+		if (owners[p] != generation) {
+			slots[p] = slots[p].clone();
+			hashes[p] = hashes[p].clone();
+			owners[p] = generation;
+		}
+		slots[p][i & PAGE_MASK] = slotPlusOne;
+		hashes[p][i & PAGE_MASK] = hash;
+	}
+
+	private void rehash(int length) {
+		int[][] oldSlots = slots;
+		int[][] oldHashes = hashes;
+		allocate(length);
+		for (int p = 0; p < oldSlots.length; p++)
+			for (int i = 0; i < oldSlots[p].length; i++)
+				if (oldSlots[p][i] != 0)
+					insert(oldHashes[p][i], oldSlots[p][i]);
+	}
+
+	private void insert(int hash, int slotPlusOne) {
+		int i = IdIndex.mix(hash) & mask;
+		while (slotAt(i) != 0)
+			i = (i + 1) & mask;
+		set(i, slotPlusOne, hash);
+	}
+
+	// *** Access ***
+
+	/**
+	 * Number of entries in the index.
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Looks for the slot of an element.
+	 * 
+	 * @param id
+	 *            Identifier of the element.
+	 * @param chunks
+	 *            The chunks holding the identifiers of the elements.
+	 * @return The slot of the element or -1 if there is no such element.
+	 * @complexity O(1) on average
+	 */
+	int get(String id, CompactGraph.Chunk[] chunks) {
+		int hash = id.hashCode();
+		int i = IdIndex.mix(hash) & mask;
+		int s;
+		while ((s = slotAt(i)) != 0) {
+			if (hashAt(i) == hash && id.equals(CompactGraph.idAt(chunks, s - 1)))
+				return s - 1;
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * A copy of this index, sharing its pages. The copy must not be changed.
+	 * 
+	 * @complexity O(p) where p is the number of pages
+	 */
+	ChunkIndex freeze() {
+		ChunkIndex copy = new ChunkIndex(this);
+		generation++;
+		return copy;
+	}
+
+	// *** Modification ***
+
+	/**
+	 * Adds a new entry. The caller must ensure that the identifier is not
+	 * already present.
+	 * 
+	 * @param id
+	 *            Identifier of the element.
+	 * @param slot
+	 *            Slot of the element.
+	 */
+	void put(String id, int slot) {
+		if (size >= threshold)
+			rehash((mask + 1) << 1);
+		insert(id.hashCode(), slot + 1);
+		size++;
+	}
+
+	/**
+	 * Removes the entry of an element.
+	 * 
+	 * @param id
+	 *            Identifier of the element.
+	 * @param slot
+	 *            Slot of the element.
+	 */
+	void remove(String id, int slot) {
+		int i = IdIndex.mix(id.hashCode()) & mask;
+		int s;
+		while ((s = slotAt(i)) != 0 && s != slot + 1)
+			i = (i + 1) & mask;
+		if (s == 0)
+			return;
+
+		// backward shift the following entries of the cluster
+		int j = i;
+		while (true) {
+			j = (j + 1) & mask;
+			if (slotAt(j) == 0)
+				break;
+			int home = IdIndex.mix(hashAt(j)) & mask;
+			// move j to i only if its home bucket is not in ]i, j]
+			if (i <= j ? (home <= i || home > j) : (home <= i && home > j)) {
+				set(i, slotAt(j), hashAt(j));
+				i = j;
+			}
+		}
+		set(i, 0, 0);
+		size--;
+	}
+}
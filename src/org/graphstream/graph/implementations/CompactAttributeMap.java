@@ -0,0 +1,326 @@
+/*
+ * Copyright 2006 - 2013
+ *     Stefan Balev     <stefan.balev@graphstream-project.org>
+ *     Julien Baudry    <julien.baudry@graphstream-project.org>
+ *     Antoine Dutot    <antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné      <yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin   <guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.graph.implementations;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * <p>
+ * The attribute map used by {@link AbstractElement}.
+ * </p>
+ * 
+ * <p>
+ * Most elements have only a few attributes. Up to {@link #INLINE_CAPACITY}
+ * attributes, keys and values are stored in a single array and searched
+ * linearly, which is both faster and much smaller than a tree or a hash map
+ * for so few entries. Past this limit the entries are moved to a
+ * {@link TreeMap}. In both cases keys are kept sorted, so the iteration order
+ * is the natural order of the keys, as with the tree map previously used for
+ * every element.
+ * </p>
+ * 
+ * <p>
+ * New keys are interned through the {@link KeyDictionary} of the graph, if
+ * any, so that equal keys share the same instance. Null keys are not
+ * supported, null values are.
+ * </p>
+ */
+final class CompactAttributeMap extends AbstractMap<String, Object> {
+	/**
+	 * Maximum number of attributes stored inline.
+	 */
+	static final int INLINE_CAPACITY = 8;
+
+	private final KeyDictionary dictionary;
+
+	/**
+	 * Keys at even positions, sorted, values at odd positions. {@code null}
+	 * once the map has overflowed.
+	 */
+	private Object[] table;
+
+	private int size;
+
+	private TreeMap<String, Object> overflow;
+
+	private EntrySet entrySet;
+
+	/**
+	 * Creates an empty map.
+	 * 
+	 * @param dictionary
+	 *            The dictionary used to intern new keys, may be {@code null}.
+	 */
+	CompactAttributeMap(KeyDictionary dictionary) {
+		this.dictionary = dictionary;
+		this.table = new Object[4];
+	}
+
+	// *** Helpers ***
+
+	private int indexOf(Object key) {
+		Object[] t = table;
+		int n = size << 1;
+		// interned keys are found by reference
+		for (int i = 0; i < n; i += 2)
+			if (t[i] == key)
+				return i;
+		for (int i = 0; i < n; i += 2)
+			if (t[i].equals(key))
+				return i;
+		return -1;
+	}
+
+	private void removeAt(int i) {
+		int n = size << 1;
+		System.arraycopy(table, i + 2, table, i, n - i - 2);
+		table[n - 2] = table[n - 1] = null;
+		size--;
+	}
+
+	private String intern(String key) {
+		return dictionary == null ? key : dictionary.intern(key);
+	}
+
+	// *** Map ***
+
+	@Override
+	public int size() {
+		return overflow == null ? size : overflow.size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		if (overflow != null)
+			return key instanceof String && overflow.containsKey(key);
+		return key != null && indexOf(key) >= 0;
+	}
+
+	@Override
+	public Object get(Object key) {
+		if (overflow != null)
+			return key instanceof String ? overflow.get(key) : null;
+		if (key == null)
+			return null;
+		int i = indexOf(key);
+		return i < 0 ? null : table[i + 1];
+	}
+
+	@Override
+	public Object put(String key, Object value) {
+		if (key == null)
+			throw new NullPointerException("null attribute key");
+
+		if (overflow != null) {
+			if (!overflow.containsKey(key))
+				key = intern(key);
+			return overflow.put(key, value);
+		}
+
+		int i = indexOf(key);
+		if (i >= 0) {
+			Object old = table[i + 1];
+			table[i + 1] = value;
+			return old;
+		}
+
+		key = intern(key);
+
+		if (size == INLINE_CAPACITY) {
+			overflow = new TreeMap<String, Object>();
+			for (int j = 0; j < size << 1; j += 2)
+				overflow.put((String) table[j], table[j + 1]);
+			overflow.put(key, value);
+			table = null;
+			size = 0;
+			return null;
+		}
+
+		if (size << 1 == table.length) {
+			Object[] tmp = new Object[Math.min(table.length << 1,
+					INLINE_CAPACITY << 1)];
+			System.arraycopy(table, 0, tmp, 0, table.length);
+			table = tmp;
+		}
+
+		// keep the keys sorted
+		int n = size << 1;
+		i = n;
+		while (i > 0 && ((String) table[i - 2]).compareTo(key) > 0)
+			i -= 2;
+		System.arraycopy(table, i, table, i + 2, n - i);
+		table[i] = key;
+		table[i + 1] = value;
+		size++;
+		return null;
+	}
+
+	@Override
+	public Object remove(Object key) {
+		if (overflow != null)
+			return key instanceof String ? overflow.remove(key) : null;
+		if (key == null)
+			return null;
+		int i = indexOf(key);
+		if (i < 0)
+			return null;
+		Object old = table[i + 1];
+		removeAt(i);
+		return old;
+	}
+
+	@Override
+	public void clear() {
+		if (overflow != null) {
+			overflow = null;
+			table = new Object[4];
+		} else {
+			for (int i = 0; i < size << 1; i++)
+				table[i] = null;
+		}
+		size = 0;
+	}
+
+	@Override
+	public Set<Map.Entry<String, Object>> entrySet() {
+		if (entrySet == null)
+			entrySet = new EntrySet();
+		return entrySet;
+	}
+
+	// *** Views ***
+
+	private class EntrySet extends AbstractSet<Map.Entry<String, Object>> {
+		@Override
+		public Iterator<Map.Entry<String, Object>> iterator() {
+			if (overflow != null)
+				return overflow.entrySet().iterator();
+			return new InlineIterator();
+		}
+
+		@Override
+		public int size() {
+			return CompactAttributeMap.this.size();
+		}
+
+		@Override
+		public void clear() {
+			CompactAttributeMap.this.clear();
+		}
+	}
+
+	private class InlineIterator implements Iterator<Map.Entry<String, Object>> {
+		int next = 0;
+		int last = -1;
+
+		@Override
+		public boolean hasNext() {
+			return table != null && next < size << 1;
+		}
+
+		@Override
+		public Map.Entry<String, Object> next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			last = next;
+			next += 2;
+			return new InlineEntry(last);
+		}
+
+		@Override
+		public void remove() {
+			if (last < 0)
+				throw new IllegalStateException();
+			removeAt(last);
+			next = last;
+			last = -1;
+		}
+	}
+
+	private class InlineEntry implements Map.Entry<String, Object> {
+		final String key;
+		final int i;
+
+		InlineEntry(int i) {
+			this.i = i;
+			this.key = (String) table[i];
+		}
+
+		@Override
+		public String getKey() {
+			return key;
+		}
+
+		@Override
+		public Object getValue() {
+			return table != null && table[i] == key ? table[i + 1] : get(key);
+		}
+
+		@Override
+		public Object setValue(Object value) {
+			return put(key, value);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Map.Entry))
+				return false;
+			Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+			Object v = getValue();
+			return key.equals(e.getKey())
+					&& (v == null ? e.getValue() == null : v.equals(e
+							.getValue()));
+		}
+
+		@Override
+		public int hashCode() {
+			Object v = getValue();
+			return key.hashCode() ^ (v == null ? 0 : v.hashCode());
+		}
+
+		@Override
+		public String toString() {
+			return key + "=" + getValue();
+		}
+	}
+}
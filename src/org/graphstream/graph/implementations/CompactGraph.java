@@ -0,0 +1,811 @@
+/*
+ * Copyright 2006 - 2013
+ *     Stefan Balev     <stefan.balev@graphstream-project.org>
+ *     Julien Baudry    <julien.baudry@graphstream-project.org>
+ *     Antoine Dutot    <antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné      <yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin   <guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.graph.implementations;
+
+import org.graphstream.graph.Edge;
+import org.graphstream.graph.Graph;
+import org.graphstream.graph.Node;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * <p>
+ * An immutable snapshot of a graph stored in compressed sparse row form,
+ * intended for read-heavy analytics on big graphs.
+ * </p>
+ * 
+ * <p>
+ * Nodes and edges are stored in chunks of {@value #CHUNK_SIZE} elements. The
+ * incidences of the nodes of a chunk are stored in two {@code int} arrays: the
+ * index of the opposite node and the index of the edge. The incidences of a
+ * node are partitioned like in {@link AdjacencyListNode} into entering edges,
+ * undirected (or loop) edges and leaving edges. Traversals can use the index
+ * based methods such as {@link #getNeighborIndex(int, int)}, which read
+ * contiguous memory instead of following edge objects. Nodes and edges keep
+ * the indices they have in the original graph.
+ * </p>
+ * 
+ * <p>
+ * The structure cannot be modified: adding or removing elements and clearing
+ * the graph throw an {@link UnsupportedOperationException}. Attributes are
+ * copied from the original graph and can still be changed, for example to
+ * store the results of an algorithm. Snapshots made by
+ * {@link AbstractGraph#snapshot()} are read-only instead: they share the
+ * attribute maps of the original graph and their attributes cannot be
+ * changed. Successive snapshots of an {@link AdjacencyListGraph} also share
+ * the chunks in which nothing changed, and create the node and edge objects
+ * of a chunk when one of them is first used.
+ * </p>
+ * 
+ * @see Graphs#compact(Graph)
+ */
+public class CompactGraph extends AbstractGraph {
+
+	/**
+	 * Number of elements in a chunk.
+	 */
+	static final int CHUNK_SIZE = 1 << 10;
+
+	static final int CHUNK_SHIFT = 10;
+	static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	/**
+	 * The identifiers and the attributes of the elements of a chunk. Chunks
+	 * are not changed once built.
+	 */
+	static class Chunk {
+		final String[] ids;
+
+		/**
+		 * Attribute maps shared with the elements of the source graph, or
+		 * {@code null} if the attributes are copied to the elements.
+		 */
+		final Map<String, Object>[] attributes;
+
+		Chunk(String[] ids, Map<String, Object>[] attributes) {
+			this.ids = ids;
+			this.attributes = attributes;
+		}
+	}
+
+	/**
+	 * The nodes of a chunk and their incidences.
+	 */
+	static final class NodeChunk extends Chunk {
+		/**
+		 * Start of the incidences of each node, with one more entry for the
+		 * end of the last node.
+		 */
+		final int[] offsets;
+
+		/**
+		 * Start of the undirected and of the leaving incidences of each node.
+		 */
+		final int[] ioStarts, oStarts;
+
+		/**
+		 * Index of the opposite node and of the edge of each incidence.
+		 */
+		final int[] neighbors, edges;
+
+		NodeChunk(String[] ids, Map<String, Object>[] attributes,
+				int[] offsets, int[] ioStarts, int[] oStarts, int[] neighbors,
+				int[] edges) {
+			super(ids, attributes);
+			this.offsets = offsets;
+			this.ioStarts = ioStarts;
+			this.oStarts = oStarts;
+			this.neighbors = neighbors;
+			this.edges = edges;
+		}
+	}
+
+	/**
+	 * The edges of a chunk and the indices of their end points.
+	 */
+	static final class EdgeChunk extends Chunk {
+		final int[] sources, targets;
+		final boolean[] directed;
+
+		EdgeChunk(String[] ids, Map<String, Object>[] attributes,
+				int[] sources, int[] targets, boolean[] directed) {
+			super(ids, attributes);
+			this.sources = sources;
+			this.targets = targets;
+			this.directed = directed;
+		}
+	}
+
+	/**
+	 * The chunks and the identifier indices of a graph.
+	 */
+	static final class Layout {
+		final NodeChunk[] nodeChunks;
+		final EdgeChunk[] edgeChunks;
+		final int nodeCount, edgeCount;
+		final ChunkIndex nodeIndex, edgeIndex;
+
+		Layout(NodeChunk[] nodeChunks, int nodeCount, ChunkIndex nodeIndex,
+				EdgeChunk[] edgeChunks, int edgeCount, ChunkIndex edgeIndex) {
+			this.nodeChunks = nodeChunks;
+			this.nodeCount = nodeCount;
+			this.nodeIndex = nodeIndex;
+			this.edgeChunks = edgeChunks;
+			this.edgeCount = edgeCount;
+			this.edgeIndex = edgeIndex;
+		}
+	}
+
+	final NodeChunk[] nodeChunks;
+	final EdgeChunk[] edgeChunks;
+
+	final int nodeCount, edgeCount;
+
+	final ChunkIndex nodeIndex;
+	final ChunkIndex edgeIndex;
+
+	/**
+	 * The node and edge objects of each chunk, {@code null} until one of them
+	 * is used.
+	 */
+	private final AtomicReferenceArray<AbstractNode[]> nodeObjects;
+	private final AtomicReferenceArray<AbstractEdge[]> edgeObjects;
+
+	/**
+	 * Numeric attribute columns copied from the source of a read-only
+	 * snapshot, {@code null} otherwise.
+	 */
+	final AttributeColumns nodeColumns, edgeColumns;
+
+	/**
+	 * Versions of the source graph when a read-only snapshot was made.
+	 */
+	final long sourceStructureVersion, sourceAttributeVersion;
+
+	// *** Constructors ***
+
+	/**
+	 * Creates a snapshot of a graph. Later changes of the graph are not
+	 * reflected by the snapshot.
+	 * 
+	 * @param source
+	 *            The graph to copy.
+	 * @complexity O(n + m) where n is the number of nodes and m the number of
+	 *             edges
+	 */
+	public CompactGraph(Graph source) {
+		this(source, layout(source), false);
+	}
+
+	/**
+	 * Creates a read-only snapshot of a graph, sharing the attribute maps of
+	 * its elements. See {@link AbstractGraph#snapshot()}.
+	 * 
+	 * @param source
+	 *            The graph to copy.
+	 * @param layout
+	 *            The chunks of the graph, built by {@link #layout(Graph)} or
+	 *            by the {@link SnapshotStore} of the graph.
+	 */
+	CompactGraph(AbstractGraph source, Layout layout) {
+		this(source, layout, true);
+	}
+
+	private CompactGraph(Graph source, Layout layout, boolean readOnly) {
+		super(source.getId(), source.isStrict(), false);
+
+		nodeChunks = layout.nodeChunks;
+		edgeChunks = layout.edgeChunks;
+		nodeCount = layout.nodeCount;
+		edgeCount = layout.edgeCount;
+		nodeIndex = layout.nodeIndex;
+		edgeIndex = layout.edgeIndex;
+		nodeObjects = new AtomicReferenceArray<AbstractNode[]>(
+				nodeChunks.length);
+		edgeObjects = new AtomicReferenceArray<AbstractEdge[]>(
+				edgeChunks.length);
+
+		// chunks built by a snapshot store hold the attribute maps of their
+		// elements, which are created when needed
+		boolean shared = nodeCount > 0 ? nodeChunks[0].attributes != null
+				: edgeCount > 0 && edgeChunks[0].attributes != null;
+
+		if (readOnly) {
+			AbstractGraph g = (AbstractGraph) source;
+			share(g, this);
+			if (!shared) {
+				for (int i = 0; i < nodeCount; i++)
+					share((AbstractElement) g.getNode(i), node(i));
+				for (int j = 0; j < edgeCount; j++)
+					share((AbstractElement) g.getEdge(j), edge(j));
+			}
+			nodeColumns = g.nodeColumns() == null ? null : g.nodeColumns()
+					.copy(nodeCount);
+			edgeColumns = g.edgeColumns() == null ? null : g.edgeColumns()
+					.copy(edgeCount);
+			sourceStructureVersion = g.structureVersion();
+			sourceAttributeVersion = g.attributeVersion();
+		} else {
+			Graphs.copyAttributes(source, this);
+			for (int i = 0; i < nodeCount; i++)
+				Graphs.copyAttributes(source.getNode(i), node(i));
+			for (int j = 0; j < edgeCount; j++)
+				Graphs.copyAttributes(source.getEdge(j), edge(j));
+			nodeColumns = edgeColumns = null;
+			sourceStructureVersion = sourceAttributeVersion = 0;
+		}
+	}
+
+	/**
+	 * Builds all the chunks of a graph.
+	 * 
+	 * @complexity O(n + m) where n is the number of nodes and m the number of
+	 *             edges
+	 */
+	static Layout layout(Graph source) {
+		int n = source.getNodeCount();
+		int m = source.getEdgeCount();
+
+		NodeChunk[] nodeChunks = new NodeChunk[chunks(n)];
+		EdgeChunk[] edgeChunks = new EdgeChunk[chunks(m)];
+		ChunkIndex nodeIndex = new ChunkIndex(n);
+		ChunkIndex edgeIndex = new ChunkIndex(m);
+
+		// the node identifiers are indexed first to find the end points
+		Chunk[] named = new Chunk[nodeChunks.length];
+		for (int c = 0; c < named.length; c++)
+			named[c] = new Chunk(new String[chunkSize(n, c)], null);
+		for (int i = 0; i < n; i++) {
+			String id = source.getNode(i).getId();
+			named[i >> CHUNK_SHIFT].ids[i & CHUNK_MASK] = id;
+			nodeIndex.put(id, i);
+		}
+
+		// count the incidences of each kind and keep the end points
+		int[] ends = new int[2 * m];
+		int[] in = new int[n], io = new int[n], out = new int[n];
+
+		for (int c = 0; c < edgeChunks.length; c++) {
+			int size = chunkSize(m, c);
+			String[] ids = new String[size];
+			int[] sources = new int[size], targets = new int[size];
+			boolean[] directed = new boolean[size];
+
+			for (int k = 0; k < size; k++) {
+				int j = (c << CHUNK_SHIFT) | k;
+				Edge e = source.getEdge(j);
+				int s = nodeIndex.get(e.getSourceNode().getId(), named);
+				int t = nodeIndex.get(e.getTargetNode().getId(), named);
+				ids[k] = e.getId();
+				sources[k] = s;
+				targets[k] = t;
+				directed[k] = e.isDirected();
+				edgeIndex.put(ids[k], j);
+				ends[2 * j] = s;
+				ends[2 * j + 1] = t;
+
+				if (!e.isDirected() || s == t) {
+					io[s]++;
+					if (s != t)
+						io[t]++;
+				} else {
+					out[s]++;
+					in[t]++;
+				}
+			}
+			edgeChunks[c] = new EdgeChunk(ids, null, sources, targets,
+					directed);
+		}
+
+		int[] offsets = new int[n + 1];
+		int[] ioStarts = new int[n];
+		int[] oStarts = new int[n];
+
+		for (int i = 0; i < n; i++) {
+			ioStarts[i] = offsets[i] + in[i];
+			oStarts[i] = ioStarts[i] + io[i];
+			offsets[i + 1] = oStarts[i] + out[i];
+		}
+
+		int[] neighbors = new int[offsets[n]];
+		int[] edges = new int[offsets[n]];
+
+		// the counters now become the insertion positions
+		System.arraycopy(offsets, 0, in, 0, n);
+		System.arraycopy(ioStarts, 0, io, 0, n);
+		System.arraycopy(oStarts, 0, out, 0, n);
+
+		for (int j = 0; j < m; j++) {
+			int s = ends[2 * j];
+			int t = ends[2 * j + 1];
+			int p;
+
+			if (!edgeChunks[j >> CHUNK_SHIFT].directed[j & CHUNK_MASK]
+					|| s == t) {
+				p = io[s]++;
+				neighbors[p] = t;
+				edges[p] = j;
+				if (s != t) {
+					p = io[t]++;
+					neighbors[p] = s;
+					edges[p] = j;
+				}
+			} else {
+				p = out[s]++;
+				neighbors[p] = t;
+				edges[p] = j;
+				p = in[t]++;
+				neighbors[p] = s;
+				edges[p] = j;
+			}
+		}
+
+		// split the incidences between the chunks
+		for (int c = 0; c < nodeChunks.length; c++) {
+			int base = c << CHUNK_SHIFT;
+			int size = chunkSize(n, c);
+			int from = offsets[base];
+			int to = offsets[base + size];
+			int[] o = new int[size + 1], ios = new int[size], os = new int[size];
+			for (int k = 0; k < size; k++) {
+				o[k] = offsets[base + k] - from;
+				ios[k] = ioStarts[base + k] - from;
+				os[k] = oStarts[base + k] - from;
+			}
+			o[size] = to - from;
+			nodeChunks[c] = new NodeChunk(named[c].ids, null, o, ios, os,
+					Arrays.copyOfRange(neighbors, from, to),
+					Arrays.copyOfRange(edges, from, to));
+		}
+
+		return new Layout(nodeChunks, n, nodeIndex, edgeChunks, m, edgeIndex);
+	}
+
+	/**
+	 * The chunks and indices of this graph, used again by a snapshot of the
+	 * same structure.
+	 */
+	Layout layout() {
+		return new Layout(nodeChunks, nodeCount, nodeIndex, edgeChunks,
+				edgeCount, edgeIndex);
+	}
+
+	/**
+	 * Number of chunks holding {@code count} elements.
+	 */
+	static int chunks(int count) {
+		return (count + CHUNK_MASK) >> CHUNK_SHIFT;
+	}
+
+	/**
+	 * Number of elements in a chunk, when there are {@code count} elements.
+	 */
+	static int chunkSize(int count, int chunk) {
+		return Math.min(CHUNK_SIZE, count - (chunk << CHUNK_SHIFT));
+	}
+
+	/**
+	 * Identifier of the element at an index.
+	 */
+	static String idAt(Chunk[] chunks, int index) {
+		return chunks[index >> CHUNK_SHIFT].ids[index & CHUNK_MASK];
+	}
+
+	/**
+	 * The attribute map of an element, which becomes shared with a read-only
+	 * snapshot. The element will copy its map before changing it.
+	 * 
+	 * @return The map or {@code null} if the element has no attribute.
+	 */
+	static Map<String, Object> shareAttributes(AbstractElement source) {
+		if (source.attributes.isEmpty())
+			return null;
+		if (source.attributeState == OWNED)
+			source.attributeState = SHARED;
+		return source.attributes;
+	}
+
+	/**
+	 * Gives the attribute map of an element to its copy in a read-only
+	 * snapshot.
+	 */
+	private static void share(AbstractElement source, AbstractElement copy) {
+		if (source.attributeOwner != null) {
+			// the element of a view has no map of its own
+			Graphs.copyAttributes(source, copy);
+		} else {
+			Map<String, Object> attributes = shareAttributes(source);
+			if (attributes != null)
+				copy.attributes = attributes;
+		}
+		copy.attributeState = READ_ONLY;
+	}
+
+	// *** Nodes and edges of the chunks ***
+
+	/**
+	 * The node at an index, created with the other nodes of its chunk when
+	 * first needed.
+	 */
+	AbstractNode node(int index) {
+		AbstractNode[] nodes = nodeObjects.get(index >> CHUNK_SHIFT);
+		if (nodes == null)
+			nodes = createNodes(index >> CHUNK_SHIFT);
+		return nodes[index & CHUNK_MASK];
+	}
+
+	/**
+	 * The edge at an index, created with the other edges of its chunk when
+	 * first needed.
+	 */
+	AbstractEdge edge(int index) {
+		AbstractEdge[] edges = edgeObjects.get(index >> CHUNK_SHIFT);
+		if (edges == null)
+			edges = createEdges(index >> CHUNK_SHIFT);
+		return edges[index & CHUNK_MASK];
+	}
+
+	private AbstractNode[] createNodes(int c) {
+		NodeChunk chunk = nodeChunks[c];
+		AbstractNode[] nodes = new AbstractNode[chunk.ids.length];
+		for (int k = 0; k < nodes.length; k++) {
+			CompactNode node = new CompactNode(this, chunk.ids[k]);
+			node.setIndex((c << CHUNK_SHIFT) | k);
+			if (chunk.attributes != null) {
+				if (chunk.attributes[k] != null)
+					node.attributes = chunk.attributes[k];
+				node.attributeState = READ_ONLY;
+			}
+			nodes[k] = node;
+		}
+		// readers may create the objects of a chunk at the same time, the
+		// first ones are kept
+		return nodeObjects.compareAndSet(c, null, nodes) ? nodes : nodeObjects
+				.get(c);
+	}
+
+	private AbstractEdge[] createEdges(int c) {
+		EdgeChunk chunk = edgeChunks[c];
+		AbstractEdge[] edges = new AbstractEdge[chunk.ids.length];
+		for (int k = 0; k < edges.length; k++) {
+			AbstractEdge edge = new AbstractEdge(chunk.ids[k],
+					node(chunk.sources[k]), node(chunk.targets[k]),
+					chunk.directed[k]);
+			edge.setIndex((c << CHUNK_SHIFT) | k);
+			if (chunk.attributes != null) {
+				if (chunk.attributes[k] != null)
+					edge.attributes = chunk.attributes[k];
+				edge.attributeState = READ_ONLY;
+			}
+			edges[k] = edge;
+		}
+		return edgeObjects.compareAndSet(c, null, edges) ? edges : edgeObjects
+				.get(c);
+	}
+
+	@Override
+	AttributeColumns nodeColumns() {
+		return nodeColumns;
+	}
+
+	@Override
+	AttributeColumns edgeColumns() {
+		return edgeColumns;
+	}
+
+	/**
+	 * A read-only snapshot is its own snapshot.
+	 */
+	@Override
+	public CompactGraph snapshot() {
+		return attributeState == READ_ONLY ? this : super.snapshot();
+	}
+
+	// *** Index based access ***
+
+	/**
+	 * The chunk of a node.
+	 */
+	NodeChunk chunk(int node) {
+		if (node < 0 || node >= nodeCount)
+			throw new IndexOutOfBoundsException("Node " + node
+					+ " does not exist");
+		return nodeChunks[node >> CHUNK_SHIFT];
+	}
+
+	/**
+	 * Number of edges of a node.
+	 * 
+	 * @param node
+	 *            Index of the node.
+	 * @return The degree of the node.
+	 * @complexity O(1)
+	 */
+	public int getDegree(int node) {
+		NodeChunk c = chunk(node);
+		int k = node & CHUNK_MASK;
+		return c.offsets[k + 1] - c.offsets[k];
+	}
+
+	/**
+	 * Number of edges entering a node.
+	 * 
+	 * @param node
+	 *            Index of the node.
+	 * @return The in-degree of the node.
+	 * @complexity O(1)
+	 */
+	public int getInDegree(int node) {
+		NodeChunk c = chunk(node);
+		int k = node & CHUNK_MASK;
+		return c.oStarts[k] - c.offsets[k];
+	}
+
+	/**
+	 * Number of edges leaving a node.
+	 * 
+	 * @param node
+	 *            Index of the node.
+	 * @return The out-degree of the node.
+	 * @complexity O(1)
+	 */
+	public int getOutDegree(int node) {
+		NodeChunk c = chunk(node);
+		int k = node & CHUNK_MASK;
+		return c.offsets[k + 1] - c.ioStarts[k];
+	}
+
+	private int position(int node, int from, int to, int i) {
+		int p = from + i;
+		if (i < 0 || p >= to)
+			throw new IndexOutOfBoundsException("Node " + node
+					+ " has no edge " + i);
+		return p;
+	}
+
+	/**
+	 * Index of the node at the other end of an edge. The edges of a node are
+	 * in the same order as with {@link Node#getEdge(int)}.
+	 * 
+	 * @param node
+	 *            Index of the node.
+	 * @param i
+	 *            Index of the edge among the edges of the node, between 0
+	 *            and {@code getDegree(node) - 1}.
+	 * @return Index of the opposite node.
+	 * @complexity O(1)
+	 */
+	public int getNeighborIndex(int node, int i) {
+		NodeChunk c = chunk(node);
+		int k = node & CHUNK_MASK;
+		return c.neighbors[position(node, c.offsets[k], c.offsets[k + 1], i)];
+	}
+
+	/**
+	 * Index of the source of an entering edge. The edges are in the same order
+	 * as with {@link Node#getEnteringEdge(int)}.
+	 * 
+	 * @param node
+	 *            Index of the node.
+	 * @param i
+	 *            Index of the edge among the entering edges of the node.
+	 * @return Index of the opposite node.
+	 * @complexity O(1)
+	 */
+	public int getEnteringNeighborIndex(int node, int i) {
+		NodeChunk c = chunk(node);
+		int k = node & CHUNK_MASK;
+		return c.neighbors[position(node, c.offsets[k], c.oStarts[k], i)];
+	}
+
+	/**
+	 * Index of the target of a leaving edge. The edges are in the same order as
+	 * with {@link Node#getLeavingEdge(int)}.
+	 * 
+	 * @param node
+	 *            Index of the node.
+	 * @param i
+	 *            Index of the edge among the leaving edges of the node.
+	 * @return Index of the opposite node.
+	 * @complexity O(1)
+	 */
+	public int getLeavingNeighborIndex(int node, int i) {
+		NodeChunk c = chunk(node);
+		int k = node & CHUNK_MASK;
+		return c.neighbors[position(node, c.ioStarts[k], c.offsets[k + 1], i)];
+	}
+
+	/**
+	 * Index of an edge of a node in the graph.
+	 * 
+	 * @param node
+	 *            Index of the node.
+	 * @param i
+	 *            Index of the edge among the edges of the node, between 0
+	 *            and {@code getDegree(node) - 1}.
+	 * @return The index of the edge, as given by {@link Edge#getIndex()}.
+	 * @complexity O(1)
+	 */
+	public int getEdgeIndex(int node, int i) {
+		NodeChunk c = chunk(node);
+		int k = node & CHUNK_MASK;
+		return c.edges[position(node, c.offsets[k], c.offsets[k + 1], i)];
+	}
+
+	// *** Access methods ***
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <T extends Node> T getNode(String id) {
+		int i = nodeIndex.get(id, nodeChunks);
+		return i < 0 ? null : (T) node(i);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <T extends Node> T getNode(int index) {
+		if (index < 0 || index >= nodeCount)
+			throw new IndexOutOfBoundsException("Node " + index
+					+ " does not exist");
+		return (T) node(index);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <T extends Edge> T getEdge(String id) {
+		int i = edgeIndex.get(id, edgeChunks);
+		return i < 0 ? null : (T) edge(i);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <T extends Edge> T getEdge(int index) {
+		if (index < 0 || index >= edgeCount)
+			throw new IndexOutOfBoundsException("Edge " + index
+					+ " does not exist");
+		return (T) edge(index);
+	}
+
+	@Override
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	@Override
+	public int getEdgeCount() {
+		return edgeCount;
+	}
+
+	// *** Iterators ***
+
+	private class ElementIterator<T> implements Iterator<T> {
+		private final boolean nodes;
+		private int iNext;
+		private final int iEnd;
+
+		ElementIterator(boolean nodes, int count) {
+			this.nodes = nodes;
+			iEnd = count;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return iNext < iEnd;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public T next() {
+			if (iNext >= iEnd)
+				throw new NoSuchElementException();
+			return (T) (nodes ? node(iNext++) : edge(iNext++));
+		}
+
+		@Override
+		public void remove() {
+			throw immutable();
+		}
+	}
+
+	@Override
+	public <T extends Node> Iterator<T> getNodeIterator() {
+		return new ElementIterator<T>(true, nodeCount);
+	}
+
+	@Override
+	public <T extends Edge> Iterator<T> getEdgeIterator() {
+		return new ElementIterator<T>(false, edgeCount);
+	}
+
+	// *** Structure changes are not supported ***
+
+	static UnsupportedOperationException immutable() {
+		return new UnsupportedOperationException(
+				"the structure of a compact graph cannot be changed");
+	}
+
+	@Override
+	public <T extends Node> T addNode(String id) {
+		throw immutable();
+	}
+
+	@Override
+	protected <T extends Edge> T addEdge(String edgeId, AbstractNode src,
+			String srcId, AbstractNode dst, String dstId, boolean directed) {
+		throw immutable();
+	}
+
+	@Override
+	protected void removeNode(AbstractNode node, boolean graphCallback) {
+		throw immutable();
+	}
+
+	@Override
+	protected void removeEdge(AbstractEdge edge, boolean graphCallback,
+			boolean sourceCallback, boolean targetCallback) {
+		throw immutable();
+	}
+
+	@Override
+	public void clear() {
+		throw immutable();
+	}
+
+	@Override
+	protected void addNodeCallback(AbstractNode node) {
+		throw immutable();
+	}
+
+	@Override
+	protected void addEdgeCallback(AbstractEdge edge) {
+		throw immutable();
+	}
+
+	@Override
+	protected void removeNodeCallback(AbstractNode node) {
+		throw immutable();
+	}
+
+	@Override
+	protected void removeEdgeCallback(AbstractEdge edge) {
+		throw immutable();
+	}
+
+	@Override
+	protected void clearCallback() {
+		throw immutable();
+	}
+}
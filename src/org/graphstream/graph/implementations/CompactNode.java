@@ -0,0 +1,272 @@
+/*
+ * Copyright 2006 - 2013
+ *     Stefan Balev     <stefan.balev@graphstream-project.org>
+ *     Julien Baudry    <julien.baudry@graphstream-project.org>
+ *     Antoine Dutot    <antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné      <yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin   <guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.graph.implementations;
+
+import org.graphstream.graph.Edge;
+import org.graphstream.graph.IndexConsumer;
+import org.graphstream.graph.Node;
+import org.graphstream.graph.implementations.CompactGraph.NodeChunk;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Nodes used with {@link CompactGraph}. They do not store their edges, which
+ * are read from the chunk of the node in the graph.
+ */
+public class CompactNode extends AbstractNode {
+
+	protected CompactNode(CompactGraph graph, String id) {
+		super(graph, id);
+	}
+
+	// *** Helpers ***
+
+	private CompactGraph compact() {
+		return (CompactGraph) graph;
+	}
+
+	private NodeChunk chunk() {
+		return compact().nodeChunks[getIndex() >> CompactGraph.CHUNK_SHIFT];
+	}
+
+	private int local() {
+		return getIndex() & CompactGraph.CHUNK_MASK;
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T extends Edge> T locateEdge(Node opposite, NodeChunk c,
+			int from, int to) {
+		CompactGraph g = compact();
+		int j = opposite.getIndex();
+		if (j < 0 || j >= g.nodeCount || g.node(j) != opposite)
+			return null;
+		for (int p = from; p < to; p++)
+			if (c.neighbors[p] == j)
+				return (T) g.edge(c.edges[p]);
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T extends Edge> T edgeAt(NodeChunk c, int from, int to, int i) {
+		if (i < 0 || from + i >= to)
+			throw new IndexOutOfBoundsException("Node \"" + this + "\""
+					+ " has no edge " + i);
+		return (T) compact().edge(c.edges[from + i]);
+	}
+
+	// *** Callbacks ***
+
+	@Override
+	protected boolean addEdgeCallback(AbstractEdge edge) {
+		throw CompactGraph.immutable();
+	}
+
+	@Override
+	protected void removeEdgeCallback(AbstractEdge edge) {
+		throw CompactGraph.immutable();
+	}
+
+	@Override
+	protected void clearCallback() {
+		throw CompactGraph.immutable();
+	}
+
+	// *** Access methods ***
+
+	@Override
+	public int getDegree() {
+		return compact().getDegree(getIndex());
+	}
+
+	@Override
+	public int getInDegree() {
+		return compact().getInDegree(getIndex());
+	}
+
+	@Override
+	public int getOutDegree() {
+		return compact().getOutDegree(getIndex());
+	}
+
+	@Override
+	public <T extends Edge> T getEdge(int i) {
+		NodeChunk c = chunk();
+		int k = local();
+		return edgeAt(c, c.offsets[k], c.offsets[k + 1], i);
+	}
+
+	@Override
+	public <T extends Edge> T getEnteringEdge(int i) {
+		NodeChunk c = chunk();
+		int k = local();
+		return edgeAt(c, c.offsets[k], c.oStarts[k], i);
+	}
+
+	@Override
+	public <T extends Edge> T getLeavingEdge(int i) {
+		NodeChunk c = chunk();
+		int k = local();
+		return edgeAt(c, c.ioStarts[k], c.offsets[k + 1], i);
+	}
+
+	private void forEachNeighbor(int[] neighbors, int from, int to,
+			IndexConsumer action) {
+		for (int p = from; p < to; p++)
+			action.accept(neighbors[p]);
+	}
+
+	private int copyNeighbors(int[] neighbors, int from, int to, int[] buf) {
+		System.arraycopy(neighbors, from, buf, 0,
+				Math.min(to - from, buf.length));
+		return to - from;
+	}
+
+	@Override
+	public void forEachNeighborIndex(IndexConsumer action) {
+		NodeChunk c = chunk();
+		int k = local();
+		forEachNeighbor(c.neighbors, c.offsets[k], c.offsets[k + 1], action);
+	}
+
+	@Override
+	public void forEachEnteringNeighborIndex(IndexConsumer action) {
+		NodeChunk c = chunk();
+		int k = local();
+		forEachNeighbor(c.neighbors, c.offsets[k], c.oStarts[k], action);
+	}
+
+	@Override
+	public void forEachLeavingNeighborIndex(IndexConsumer action) {
+		NodeChunk c = chunk();
+		int k = local();
+		forEachNeighbor(c.neighbors, c.ioStarts[k], c.offsets[k + 1], action);
+	}
+
+	@Override
+	public int neighborIndices(int[] buf) {
+		NodeChunk c = chunk();
+		int k = local();
+		return copyNeighbors(c.neighbors, c.offsets[k], c.offsets[k + 1], buf);
+	}
+
+	@Override
+	public int enteringNeighborIndices(int[] buf) {
+		NodeChunk c = chunk();
+		int k = local();
+		return copyNeighbors(c.neighbors, c.offsets[k], c.oStarts[k], buf);
+	}
+
+	@Override
+	public int leavingNeighborIndices(int[] buf) {
+		NodeChunk c = chunk();
+		int k = local();
+		return copyNeighbors(c.neighbors, c.ioStarts[k], c.offsets[k + 1], buf);
+	}
+
+	@Override
+	public <T extends Edge> T getEdgeBetween(Node node) {
+		NodeChunk c = chunk();
+		int k = local();
+		return locateEdge(node, c, c.offsets[k], c.offsets[k + 1]);
+	}
+
+	@Override
+	public <T extends Edge> T getEdgeFrom(Node node) {
+		NodeChunk c = chunk();
+		int k = local();
+		return locateEdge(node, c, c.offsets[k], c.oStarts[k]);
+	}
+
+	@Override
+	public <T extends Edge> T getEdgeToward(Node node) {
+		NodeChunk c = chunk();
+		int k = local();
+		return locateEdge(node, c, c.ioStarts[k], c.offsets[k + 1]);
+	}
+
+	// *** Iterators ***
+
+	/**
+	 * Iterates over the edges stored at some positions of the incidences of
+	 * a chunk.
+	 */
+	protected class EdgeIterator<T extends Edge> implements Iterator<T> {
+		protected final int[] edges;
+		protected int iNext, iEnd;
+
+		protected EdgeIterator(int[] edges, int from, int to) {
+			this.edges = edges;
+			iNext = from;
+			iEnd = to;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return iNext < iEnd;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public T next() {
+			if (iNext >= iEnd)
+				throw new NoSuchElementException();
+			return (T) compact().edge(edges[iNext++]);
+		}
+
+		@Override
+		public void remove() {
+			throw CompactGraph.immutable();
+		}
+	}
+
+	@Override
+	public <T extends Edge> Iterator<T> getEdgeIterator() {
+		NodeChunk c = chunk();
+		int k = local();
+		return new EdgeIterator<T>(c.edges, c.offsets[k], c.offsets[k + 1]);
+	}
+
+	@Override
+	public <T extends Edge> Iterator<T> getEnteringEdgeIterator() {
+		NodeChunk c = chunk();
+		int k = local();
+		return new EdgeIterator<T>(c.edges, c.offsets[k], c.oStarts[k]);
+	}
+
+	@Override
+	public <T extends Edge> Iterator<T> getLeavingEdgeIterator() {
+		NodeChunk c = chunk();
+		int k = local();
+		return new EdgeIterator<T>(c.edges, c.ioStarts[k], c.offsets[k + 1]);
+	}
+}
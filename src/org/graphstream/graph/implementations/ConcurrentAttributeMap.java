@@ -0,0 +1,168 @@
+/*
+ * Copyright 2006 - 2013
+ *     Stefan Balev     <stefan.balev@graphstream-project.org>
+ *     Julien Baudry    <julien.baudry@graphstream-project.org>
+ *     Antoine Dutot    <antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné      <yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin   <guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.graph.implementations;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>
+ * The attribute map used by the elements of a {@link ConcurrentGraph}.
+ * </p>
+ * 
+ * <p>
+ * It is backed by a {@link ConcurrentHashMap}, so attributes can be read
+ * without locking while another thread changes them. Iteration is weakly
+ * consistent and does not follow the insertion order. Since the concurrent map
+ * does not accept nulls, null values are stored as a private marker. New keys
+ * are interned through the {@link KeyDictionary} of the graph, if any.
+ * </p>
+ */
+final class ConcurrentAttributeMap extends AbstractMap<String, Object> {
+	private static final Object NULL = new Object();
+
+	private final KeyDictionary dictionary;
+
+	private final ConcurrentMap<String, Object> map;
+
+	private EntrySet entrySet;
+
+	/**
+	 * Creates an empty map.
+	 * 
+	 * @param dictionary
+	 *            The dictionary used to intern new keys, may be {@code null}.
+	 */
+	ConcurrentAttributeMap(KeyDictionary dictionary) {
+		this.dictionary = dictionary;
+		this.map = new ConcurrentHashMap<String, Object>(8, 0.75f, 2);
+	}
+
+	private static Object mask(Object value) {
+		return value == null ? NULL : value;
+	}
+
+	private static Object unmask(Object value) {
+		return value == NULL ? null : value;
+	}
+
+	// *** Map ***
+
+	@Override
+	public int size() {
+		return map.size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return map.isEmpty();
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return key != null && map.containsKey(key);
+	}
+
+	@Override
+	public Object get(Object key) {
+		return key == null ? null : unmask(map.get(key));
+	}
+
+	@Override
+	public Object put(String key, Object value) {
+		if (key == null)
+			throw new NullPointerException("null attribute key");
+		if (dictionary != null)
+			key = dictionary.intern(key);
+		return unmask(map.put(key, mask(value)));
+	}
+
+	@Override
+	public Object remove(Object key) {
+		return key == null ? null : unmask(map.remove(key));
+	}
+
+	@Override
+	public void clear() {
+		map.clear();
+	}
+
+	@Override
+	public Set<Map.Entry<String, Object>> entrySet() {
+		if (entrySet == null)
+			entrySet = new EntrySet();
+		return entrySet;
+	}
+
+	// *** Views ***
+
+	private class EntrySet extends AbstractSet<Map.Entry<String, Object>> {
+		@Override
+		public Iterator<Map.Entry<String, Object>> iterator() {
+			final Iterator<Map.Entry<String, Object>> it = map.entrySet()
+					.iterator();
+			return new Iterator<Map.Entry<String, Object>>() {
+				@Override
+				public boolean hasNext() {
+					return it.hasNext();
+				}
+
+				@Override
+				public Map.Entry<String, Object> next() {
+					Map.Entry<String, Object> e = it.next();
+					return new SimpleImmutableEntry<String, Object>(
+							e.getKey(), unmask(e.getValue()));
+				}
+
+				@Override
+				public void remove() {
+					it.remove();
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			return map.size();
+		}
+
+		@Override
+		public void clear() {
+			map.clear();
+		}
+	}
+}
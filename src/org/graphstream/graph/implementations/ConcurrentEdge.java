@@ -0,0 +1,106 @@
+/*
+ * Copyright 2006 - 2013
+ *     Stefan Balev     <stefan.balev@graphstream-project.org>
+ *     Julien Baudry    <julien.baudry@graphstream-project.org>
+ *     Antoine Dutot    <antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné      <yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin   <guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.graph.implementations;
+
+import org.graphstream.stream.SourceBase.ElementType;
+
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Edges used with {@link ConcurrentGraph}. Their attributes are read without
+ * locking and changed under the lock of the edge in the graph.
+ */
+public class ConcurrentEdge extends AbstractEdge {
+	/**
+	 * The stripe of the graph protecting this edge.
+	 */
+	final ReentrantLock lock;
+
+	protected ConcurrentEdge(String id, AbstractNode source,
+			AbstractNode target, boolean directed) {
+		super(id, source, target, directed);
+		lock = ((ConcurrentGraph) graph).lockFor(id);
+		attributes = newAttributeMap();
+	}
+
+	@Override
+	Map<String, Object> newAttributeMap() {
+		return new ConcurrentAttributeMap(attributeKeys());
+	}
+
+	@Override
+	void releaseAttributes() {
+		attributes.clear();
+	}
+
+	@Override
+	protected void attributeChanged(AttributeChangeEvent event,
+			String attribute, Object oldValue, Object newValue) {
+		((ConcurrentGraph) graph).attributeChanges.incrementAndGet();
+		((ConcurrentGraph) graph).queueAttributeChanged(getId(), ElementType.EDGE,
+				attribute, event, oldValue, newValue);
+	}
+
+	@Override
+	public boolean addAttribute(String attribute, Object... values) {
+		lock.lock();
+		try {
+			return super.addAttribute(attribute, values);
+		} finally {
+			lock.unlock();
+			((ConcurrentGraph) graph).flushEvents();
+		}
+	}
+
+	@Override
+	public boolean removeAttribute(String attribute) {
+		lock.lock();
+		try {
+			return super.removeAttribute(attribute);
+		} finally {
+			lock.unlock();
+			((ConcurrentGraph) graph).flushEvents();
+		}
+	}
+
+	@Override
+	public void clearAttributes() {
+		lock.lock();
+		try {
+			super.clearAttributes();
+		} finally {
+			lock.unlock();
+			((ConcurrentGraph) graph).flushEvents();
+		}
+	}
+}
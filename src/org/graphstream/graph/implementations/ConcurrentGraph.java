@@ -0,0 +1,1530 @@
+/*
+ * Copyright 2006 - 2013
+ *     Stefan Balev     <stefan.balev@graphstream-project.org>
+ *     Julien Baudry    <julien.baudry@graphstream-project.org>
+ *     Antoine Dutot    <antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné      <yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin   <guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.graph.implementations;
+
+import org.graphstream.graph.Edge;
+import org.graphstream.graph.EdgeFactory;
+import org.graphstream.graph.ElementNotFoundException;
+import org.graphstream.graph.Graph;
+import org.graphstream.graph.IdAlreadyInUseException;
+import org.graphstream.graph.Node;
+import org.graphstream.graph.NodeFactory;
+import org.graphstream.stream.AttributeSink;
+import org.graphstream.stream.ElementSink;
+import org.graphstream.stream.Sink;
+import org.graphstream.stream.SourceBase.ElementType;
+
+import java.security.AccessControlException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>
+ * A graph that can be read and modified by several threads at the same time.
+ * </p>
+ * 
+ * <p>
+ * Nodes and edges are found by identifier through concurrent maps, so lookups
+ * never block. Changes are serialized by a fixed array of locks, the
+ * "stripes", chosen from the hash of the identifiers: adding a node holds the
+ * stripe of the node, adding or removing an edge holds the stripes of the edge
+ * and of its two end points, and removing a node holds the stripes of the node
+ * and of all its edges, always taken in the same order. Threads working on different parts of the graph thus rarely wait for
+ * each other, unlike with {@link Graphs#synchronizedGraph(Graph)} which
+ * serializes every call. The number of stripes can be set with the
+ * {@value #STRIPES_PROPERTY} system property; by default it is sixteen times
+ * the number of processors.
+ * </p>
+ * 
+ * <p>
+ * Attribute values are stored in concurrent maps and are read without
+ * locking. Changing an attribute holds the stripe of its element. The edges of
+ * a node are read under the stripe of the node, and the edge iterators of the
+ * nodes work on a copy of the edges taken when they are created.
+ * </p>
+ * 
+ * <p>
+ * Sinks receive the events of an element in the order the changes were
+ * applied to it, and never concurrently. Events are queued while the stripes
+ * of the changed elements are held, and sent under a single lock once the
+ * thread has released its stripes, so a sink may change the graph: the
+ * events of its own changes are sent after the current one. A sink must
+ * still not wait for another thread changing the graph. When a change
+ * returns its events have been sent, unless it was made by a sink. Since
+ * they are sent after the change, sinks see removals once they are done.
+ * When the graph has no sink, no event is built and this lock is never
+ * taken.
+ * </p>
+ * 
+ * <p>
+ * The indices of the elements are maintained as in the other graphs, but
+ * another thread removing an element may move an element to another index at
+ * any time. Iterators over the nodes and the edges of the graph are weakly
+ * consistent: they never fail, may not see the changes made during the
+ * iteration and do not follow the index order.
+ * </p>
+ * 
+ * <p>
+ * The node and edge factories of this graph must create instances of
+ * {@link ConcurrentNode} and {@link ConcurrentEdge}.
+ * </p>
+ */
+public class ConcurrentGraph extends AbstractGraph {
+
+	/**
+	 * System property setting the number of locks protecting the graph. It is
+	 * rounded up to a power of two.
+	 */
+	public static final String STRIPES_PROPERTY = "org.graphstream.graph.concurrent.stripes";
+
+	public static final int STRIPES;
+
+	static {
+		int stripes = 16 * Runtime.getRuntime().availableProcessors();
+		try {
+			stripes = Integer.valueOf(System.getProperty(STRIPES_PROPERTY,
+					String.valueOf(stripes)));
+		} catch (AccessControlException | NumberFormatException e) {
+		}
+		int n = 1;
+		while (n < stripes && n < 1 << 16)
+			n <<= 1;
+		STRIPES = n;
+	}
+
+	protected final ConcurrentMap<String, AbstractNode> nodeMap;
+	protected final ConcurrentMap<String, AbstractEdge> edgeMap;
+
+	/**
+	 * Elements by index. They are changed under {@link #nodeArrayLock} and
+	 * {@link #edgeArrayLock}.
+	 */
+	protected volatile AbstractNode[] nodeArray;
+	protected volatile AbstractEdge[] edgeArray;
+
+	protected volatile int nodeCount;
+	protected volatile int edgeCount;
+
+	private final ReentrantLock[] stripes;
+
+	private final ReentrantLock nodeArrayLock = new ReentrantLock();
+	private final ReentrantLock edgeArrayLock = new ReentrantLock();
+
+	/**
+	 * Lock under which the events are sent to the sinks. It is never taken
+	 * while a stripe is held.
+	 */
+	private final ReentrantLock dispatchLock = new ReentrantLock();
+
+	/**
+	 * Lock under which the events received from a source are applied. The
+	 * events of the changes made meanwhile by its thread are not sent, only
+	 * the event received is forwarded.
+	 */
+	private final ReentrantLock sourceLock = new ReentrantLock();
+
+	/**
+	 * Events waiting to be sent, in the order the changes were applied.
+	 */
+	private final Queue<PendingEvent> pending = new ConcurrentLinkedQueue<PendingEvent>();
+
+	/**
+	 * Whether there is at least one sink, so that changes must be sent.
+	 */
+	private volatile boolean hasSinks = false;
+
+	/**
+	 * Versions of the graph, replacing the fields of {@link AbstractGraph}
+	 * since they are incremented under different stripes.
+	 */
+	final AtomicLong structureChanges = new AtomicLong();
+	final AtomicLong attributeChanges = new AtomicLong();
+
+	// *** Constructors ***
+
+	/**
+	 * Creates an empty graph.
+	 * 
+	 * @param id
+	 *            Unique identifier of the graph.
+	 * @param strictChecking
+	 *            If true any non-fatal error throws an exception.
+	 * @param autoCreate
+	 *            If true (and strict checking is false), nodes are
+	 *            automatically created when referenced when creating a edge,
+	 *            even if not yet inserted in the graph.
+	 * @param initialNodeCapacity
+	 *            Initial capacity of the node storage data structures.
+	 * @param initialEdgeCapacity
+	 *            Initial capacity of the edge storage data structures.
+	 */
+	public ConcurrentGraph(String id, boolean strictChecking,
+			boolean autoCreate, int initialNodeCapacity, int initialEdgeCapacity) {
+		super(id, strictChecking, autoCreate);
+
+		setNodeFactory(new NodeFactory<ConcurrentNode>() {
+			public ConcurrentNode newInstance(String id, Graph graph) {
+				return new ConcurrentNode((AbstractGraph) graph, id);
+			}
+		});
+
+		setEdgeFactory(new EdgeFactory<ConcurrentEdge>() {
+			public ConcurrentEdge newInstance(String id, Node src, Node dst,
+					boolean directed) {
+				return new ConcurrentEdge(id, (AbstractNode) src,
+						(AbstractNode) dst, directed);
+			}
+		});
+
+		if (initialNodeCapacity < AdjacencyListGraph.DEFAULT_NODE_CAPACITY)
+			initialNodeCapacity = AdjacencyListGraph.DEFAULT_NODE_CAPACITY;
+		if (initialEdgeCapacity < AdjacencyListGraph.DEFAULT_EDGE_CAPACITY)
+			initialEdgeCapacity = AdjacencyListGraph.DEFAULT_EDGE_CAPACITY;
+
+		stripes = new ReentrantLock[STRIPES];
+		for (int i = 0; i < STRIPES; i++)
+			stripes[i] = new ReentrantLock();
+
+		int concurrency = Math.min(STRIPES, 1 << 12);
+		nodeMap = new ConcurrentHashMap<String, AbstractNode>(
+				initialNodeCapacity, 0.75f, concurrency);
+		edgeMap = new ConcurrentHashMap<String, AbstractEdge>(
+				initialEdgeCapacity, 0.75f, concurrency);
+		nodeArray = new AbstractNode[initialNodeCapacity];
+		edgeArray = new AbstractEdge[initialEdgeCapacity];
+		nodeCount = edgeCount = 0;
+		attributes = newAttributeMap();
+	}
+
+	/**
+	 * Creates an empty graph with default edge and node capacity.
+	 * 
+	 * @param id
+	 *            Unique identifier of the graph.
+	 * @param strictChecking
+	 *            If true any non-fatal error throws an exception.
+	 * @param autoCreate
+	 *            If true (and strict checking is false), nodes are
+	 *            automatically created when referenced when creating a edge,
+	 *            even if not yet inserted in the graph.
+	 */
+	public ConcurrentGraph(String id, boolean strictChecking, boolean autoCreate) {
+		this(id, strictChecking, autoCreate,
+				AdjacencyListGraph.DEFAULT_NODE_CAPACITY,
+				AdjacencyListGraph.DEFAULT_EDGE_CAPACITY);
+	}
+
+	/**
+	 * Creates an empty graph with strict checking and without auto-creation.
+	 * 
+	 * @param id
+	 *            Unique identifier of the graph.
+	 */
+	public ConcurrentGraph(String id) {
+		this(id, true, false);
+	}
+
+	// *** Locks ***
+
+	private int stripe(String id) {
+		int h = id.hashCode();
+		h ^= (h >>> 16);
+		return h & (stripes.length - 1);
+	}
+
+	/**
+	 * The lock protecting the element having a given identifier.
+	 */
+	ReentrantLock lockFor(String id) {
+		return stripes[stripe(id)];
+	}
+
+	/**
+	 * Locks the stripes of three identifiers, in increasing order and only
+	 * once each.
+	 * 
+	 * @return The locked stripes packed in increasing order, 16 bits each, to
+	 *         give back to {@link #unlock(long)}.
+	 */
+	private long lock(String id0, String id1, String id2) {
+		int a = stripe(id0), b = stripe(id1), c = stripe(id2), t;
+		if (a > b) {
+			t = a;
+			a = b;
+			b = t;
+		}
+		if (b > c) {
+			t = b;
+			b = c;
+			c = t;
+		}
+		if (a > b) {
+			t = a;
+			a = b;
+			b = t;
+		}
+		stripes[a].lock();
+		if (b != a)
+			stripes[b].lock();
+		if (c != b)
+			stripes[c].lock();
+		return ((long) a << 32) | ((long) b << 16) | c;
+	}
+
+	private void unlock(long s) {
+		int a = (int) (s >>> 32), b = (int) (s >>> 16) & 0xFFFF, c = (int) s & 0xFFFF;
+		if (c != b)
+			stripes[c].unlock();
+		if (b != a)
+			stripes[b].unlock();
+		stripes[a].unlock();
+	}
+
+	/**
+	 * Locks the stripe of a node and the stripes needed to remove all its
+	 * edges, in increasing order. Since edges can be added to the node until
+	 * its stripe is held, this is tried again until the locked stripes cover
+	 * all its edges.
+	 * 
+	 * @return The locked stripes, to give back to {@link #unlock(int[])}.
+	 */
+	private int[] lockWithEdges(ConcurrentNode node) {
+		for (;;) {
+			AbstractEdge[] edges;
+			node.lock.lock();
+			try {
+				edges = Arrays.copyOf(node.edges, node.degree);
+			} finally {
+				node.lock.unlock();
+			}
+
+			int[] s = new int[1 + 3 * edges.length];
+			int n = 0;
+			s[n++] = stripe(node.getId());
+			for (AbstractEdge e : edges) {
+				s[n++] = stripe(e.getId());
+				s[n++] = stripe(e.getSourceNode().getId());
+				s[n++] = stripe(e.getTargetNode().getId());
+			}
+			Arrays.sort(s);
+			int k = 1;
+			for (int i = 1; i < n; i++)
+				if (s[i] != s[k - 1])
+					s[k++] = s[i];
+			if (k < s.length)
+				s = Arrays.copyOf(s, k);
+
+			for (int i : s)
+				stripes[i].lock();
+			if (covers(s, node))
+				return s;
+			unlock(s);
+		}
+	}
+
+	/**
+	 * Whether some sorted stripes include those of all the edges of a node.
+	 * Must be called with the stripe of the node held.
+	 */
+	private boolean covers(int[] s, ConcurrentNode node) {
+		for (int i = 0; i < node.degree; i++) {
+			AbstractEdge e = node.edges[i];
+			if (Arrays.binarySearch(s, stripe(e.getId())) < 0
+					|| Arrays.binarySearch(s, stripe(e.getSourceNode().getId())) < 0
+					|| Arrays.binarySearch(s, stripe(e.getTargetNode().getId())) < 0)
+				return false;
+		}
+		return true;
+	}
+
+	private void unlock(int[] s) {
+		for (int i = s.length - 1; i >= 0; i--)
+			stripes[s[i]].unlock();
+	}
+
+	private void lockAll() {
+		for (ReentrantLock l : stripes)
+			l.lock();
+	}
+
+	private void unlockAll() {
+		for (int i = stripes.length - 1; i >= 0; i--)
+			stripes[i].unlock();
+	}
+
+	// *** Versions ***
+
+	@Override
+	long structureVersion() {
+		return structureChanges.get();
+	}
+
+	@Override
+	long attributeVersion() {
+		return attributeChanges.get();
+	}
+
+	// *** Events ***
+
+	private void updateSinks() {
+		hasSinks = listeners.hasAttributeSinks()
+				|| listeners.hasElementSinks();
+	}
+
+	/**
+	 * An event waiting to be sent to the sinks.
+	 */
+	private static abstract class PendingEvent {
+		abstract void send();
+	}
+
+	/**
+	 * Whether the changes of the current thread must be queued.
+	 */
+	private boolean mustQueue() {
+		return hasSinks && !sourceLock.isHeldByCurrentThread();
+	}
+
+	/**
+	 * Queues an event received from a source, to be forwarded as is.
+	 */
+	private void forward(PendingEvent event) {
+		if (hasSinks)
+			pending.add(event);
+	}
+
+	/**
+	 * Sends the queued events. Must be called once the stripes of the changes
+	 * have been released. Does nothing when called by a sink, the events being
+	 * sent by the loop calling it, or while a source event is applied.
+	 */
+	void flushEvents() {
+		if (pending.isEmpty() || dispatchLock.isHeldByCurrentThread()
+				|| sourceLock.isHeldByCurrentThread())
+			return;
+		dispatchLock.lock();
+		try {
+			PendingEvent event;
+			while ((event = pending.poll()) != null)
+				event.send();
+		} finally {
+			dispatchLock.unlock();
+		}
+	}
+
+	void queueAttributeChanged(final String eltId, final ElementType eltType,
+			final String attribute, final AttributeChangeEvent event,
+			final Object oldValue, final Object newValue) {
+		if (mustQueue())
+			pending.add(new PendingEvent() {
+				void send() {
+					listeners.sendAttributeChangedEvent(eltId, eltType,
+							attribute, event, oldValue, newValue);
+				}
+			});
+	}
+
+	private void queueNodeAdded(final String nodeId) {
+		if (mustQueue())
+			pending.add(new PendingEvent() {
+				void send() {
+					listeners.sendNodeAdded(nodeId);
+				}
+			});
+	}
+
+	private void queueNodeRemoved(final String nodeId) {
+		if (mustQueue())
+			pending.add(new PendingEvent() {
+				void send() {
+					listeners.sendNodeRemoved(nodeId);
+				}
+			});
+	}
+
+	private void queueEdgeAdded(final String edgeId, final String srcId,
+			final String dstId, final boolean directed) {
+		if (mustQueue())
+			pending.add(new PendingEvent() {
+				void send() {
+					listeners.sendEdgeAdded(edgeId, srcId, dstId, directed);
+				}
+			});
+	}
+
+	private void queueEdgeRemoved(final String edgeId) {
+		if (mustQueue())
+			pending.add(new PendingEvent() {
+				void send() {
+					listeners.sendEdgeRemoved(edgeId);
+				}
+			});
+	}
+
+	private void queueGraphCleared() {
+		if (mustQueue())
+			pending.add(new PendingEvent() {
+				void send() {
+					listeners.sendGraphCleared();
+				}
+			});
+	}
+
+	private void queueStepBegins(final double time) {
+		if (mustQueue())
+			pending.add(new PendingEvent() {
+				void send() {
+					listeners.sendStepBegins(time);
+				}
+			});
+	}
+
+	@Override
+	protected void attributeChanged(AttributeChangeEvent event,
+			String attribute, Object oldValue, Object newValue) {
+		attributeChanges.incrementAndGet();
+		queueAttributeChanged(getId(), ElementType.GRAPH, attribute, event,
+				oldValue, newValue);
+	}
+
+	// *** Attributes ***
+
+	@Override
+	Map<String, Object> newAttributeMap() {
+		return new ConcurrentAttributeMap(attributeKeys());
+	}
+
+	@Override
+	void releaseAttributes() {
+		attributes.clear();
+	}
+
+	@Override
+	public boolean addAttribute(String attribute, Object... values) {
+		ReentrantLock lock = lockFor(getId());
+		lock.lock();
+		try {
+			return super.addAttribute(attribute, values);
+		} finally {
+			lock.unlock();
+			flushEvents();
+		}
+	}
+
+	@Override
+	public boolean removeAttribute(String attribute) {
+		ReentrantLock lock = lockFor(getId());
+		lock.lock();
+		try {
+			return super.removeAttribute(attribute);
+		} finally {
+			lock.unlock();
+			flushEvents();
+		}
+	}
+
+	@Override
+	public void clearAttributes() {
+		ReentrantLock lock = lockFor(getId());
+		lock.lock();
+		try {
+			super.clearAttributes();
+		} finally {
+			lock.unlock();
+			flushEvents();
+		}
+	}
+
+	// *** Structure changes ***
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <T extends Node> T addNode(String id) {
+		ReentrantLock lock = lockFor(id);
+		lock.lock();
+		try {
+			AbstractNode node = nodeMap.get(id);
+			if (node != null) {
+				if (isStrict())
+					throw new IdAlreadyInUseException("id \"" + id
+							+ "\" already in use. Cannot create a node.");
+				return (T) node;
+			}
+
+			node = (AbstractNode) nodeFactory().newInstance(id, this);
+			nodeMap.put(id, node);
+			addNodeCallback(node);
+			structureChanges.incrementAndGet();
+			queueNodeAdded(id);
+			return (T) node;
+		} finally {
+			lock.unlock();
+			flushEvents();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	protected <T extends Edge> T addEdge(String edgeId, AbstractNode src,
+			String srcId, AbstractNode dst, String dstId, boolean directed) {
+		if (src == null || dst == null) {
+			if (isStrict())
+				throw new ElementNotFoundException(
+						String.format(
+								"Cannot create edge %s[%s-%s%s]. Node '%s' does not exist.",
+								edgeId, srcId, directed ? ">" : "-", dstId,
+								src == null ? srcId : dstId));
+			if (!isAutoCreationEnabled())
+				return null;
+			if (src == null)
+				src = addNode(srcId);
+			if (dst == null)
+				dst = addNode(dstId);
+		}
+
+		long s = lock(edgeId, srcId, dstId);
+		try {
+			AbstractEdge edge = edgeMap.get(edgeId);
+			if (edge != null) {
+				if (isStrict())
+					throw new IdAlreadyInUseException("id \"" + edgeId
+							+ "\" already in use. Cannot create an edge.");
+				if ((edge.getSourceNode() == src && edge.getTargetNode() == dst)
+						|| (!directed && edge.getTargetNode() == src && edge
+								.getSourceNode() == dst))
+					return (T) edge;
+				return null;
+			}
+
+			// an end point may have been removed by another thread
+			if (((ConcurrentNode) src).removed
+					|| ((ConcurrentNode) dst).removed) {
+				if (isStrict())
+					throw new ElementNotFoundException(String.format(
+							"Cannot create edge %s[%s-%s%s]. Node '%s' was removed.",
+							edgeId, srcId, directed ? ">" : "-", dstId,
+							((ConcurrentNode) src).removed ? srcId : dstId));
+				return null;
+			}
+
+			edge = (AbstractEdge) edgeFactory().newInstance(edgeId, src, dst,
+					directed);
+			edgeMap.put(edgeId, edge);
+			src.addEdgeCallback(edge);
+			if (src != dst)
+				dst.addEdgeCallback(edge);
+			addEdgeCallback(edge);
+			structureChanges.incrementAndGet();
+			queueEdgeAdded(edgeId, srcId, dstId, directed);
+			return (T) edge;
+		} finally {
+			unlock(s);
+			flushEvents();
+		}
+	}
+
+	/**
+	 * Adds the nodes and the edges one after the other, each of them being
+	 * sent to the sinks at once. The arrays of the graph are sized first.
+	 */
+	@Override
+	public void bulkLoad(String[] nodeIds, String[] edgeIds, String[] sources,
+			String[] targets, boolean[] directed) {
+		int n = nodeIds == null ? 0 : nodeIds.length;
+		int m = edgeIds == null ? 0 : edgeIds.length;
+
+		if (m > 0
+				&& (sources == null || targets == null
+						|| sources.length != m || targets.length != m || (directed != null && directed.length != m)))
+			throw new IllegalArgumentException(
+					"edge identifiers, sources, targets and directions must have the same length");
+
+		ensureCapacity(nodeCount + n, edgeCount + m);
+
+		for (int i = 0; i < n; i++)
+			addNode(nodeIds[i]);
+		for (int i = 0; i < m; i++)
+			addEdge(edgeIds[i], sources[i], targets[i],
+					directed != null && directed[i]);
+	}
+
+	/**
+	 * Removes a node and its edges. The stripe of the node and those of its
+	 * edges are held during the whole removal, so other threads never see the
+	 * node without some of its edges, and no edge can be added to it
+	 * meanwhile.
+	 */
+	@Override
+	protected void removeNode(AbstractNode node, boolean graphCallback) {
+		if (node == null)
+			return;
+
+		ConcurrentNode cn = (ConcurrentNode) node;
+		int[] s = lockWithEdges(cn);
+		try {
+			// the node may be removed by several threads at once
+			if (nodeMap.get(node.getId()) != node)
+				return;
+			// the end points of an edge being added are checked again once
+			// their stripes are held
+			cn.removed = true;
+
+			// the stripes held cover the edges, whose events must not be
+			// sent before they are released
+			AbstractEdge e;
+			while ((e = cn.anyEdge()) != null)
+				detachEdge(e, true);
+
+			nodeMap.remove(node.getId(), node);
+			structureChanges.incrementAndGet();
+			queueNodeRemoved(node.getId());
+			if (graphCallback)
+				removeNodeCallback(node);
+		} finally {
+			unlock(s);
+			flushEvents();
+		}
+	}
+
+	/**
+	 * Removes an edge from the graph and from its end points. The callbacks of
+	 * the end points are always called, since the edge iterators of
+	 * {@link ConcurrentNode} do not remove edges by themselves.
+	 */
+	@Override
+	protected void removeEdge(AbstractEdge edge, boolean graphCallback,
+			boolean sourceCallback, boolean targetCallback) {
+		if (edge == null)
+			return;
+
+		AbstractNode src = edge.getSourceNode();
+		AbstractNode dst = edge.getTargetNode();
+
+		long s = lock(edge.getId(), src.getId(), dst.getId());
+		try {
+			detachEdge(edge, graphCallback);
+		} finally {
+			unlock(s);
+			flushEvents();
+		}
+	}
+
+	/**
+	 * Removes an edge whose stripe and those of its end points are held.
+	 */
+	private void detachEdge(AbstractEdge edge, boolean graphCallback) {
+		// the edge may be removed by several threads at once
+		if (!edgeMap.remove(edge.getId(), edge))
+			return;
+		AbstractNode src = edge.getSourceNode();
+		AbstractNode dst = edge.getTargetNode();
+		structureChanges.incrementAndGet();
+		queueEdgeRemoved(edge.getId());
+		src.removeEdgeCallback(edge);
+		if (src != dst)
+			dst.removeEdgeCallback(edge);
+		if (graphCallback)
+			removeEdgeCallback(edge);
+	}
+
+	/**
+	 * Removes all the elements. All the locks of the graph are held meanwhile,
+	 * so this blocks every other change.
+	 */
+	@Override
+	public void clear() {
+		lockAll();
+		try {
+			queueGraphCleared();
+			structureChanges.incrementAndGet();
+			for (AbstractNode node : nodeMap.values()) {
+				((ConcurrentNode) node).removed = true;
+				node.clearCallback();
+			}
+			clearCallback();
+			clearAttributesWithNoEvent();
+		} finally {
+			unlockAll();
+			flushEvents();
+		}
+	}
+
+	/**
+	 * Holds all the locks of the graph while the snapshot is built, so it can
+	 * be called by any thread.
+	 */
+	@Override
+	public CompactGraph snapshot() {
+		lockAll();
+		try {
+			return super.snapshot();
+		} finally {
+			unlockAll();
+		}
+	}
+
+	@Override
+	public void stepBegins(double time) {
+		queueStepBegins(time);
+		step = time;
+		flushEvents();
+	}
+
+	// *** Callbacks ***
+
+	@Override
+	protected void addNodeCallback(AbstractNode node) {
+		nodeArrayLock.lock();
+		try {
+			AbstractNode[] a = nodeArray;
+			if (nodeCount == a.length)
+				nodeArray = a = Arrays.copyOf(a,
+						AdjacencyListGraph.grow(a.length, nodeCount + 1));
+			a[nodeCount] = node;
+			node.setIndex(nodeCount++);
+		} finally {
+			nodeArrayLock.unlock();
+		}
+	}
+
+	@Override
+	protected void addEdgeCallback(AbstractEdge edge) {
+		edgeArrayLock.lock();
+		try {
+			AbstractEdge[] a = edgeArray;
+			if (edgeCount == a.length)
+				edgeArray = a = Arrays.copyOf(a,
+						AdjacencyListGraph.grow(a.length, edgeCount + 1));
+			a[edgeCount] = edge;
+			edge.setIndex(edgeCount++);
+		} finally {
+			edgeArrayLock.unlock();
+		}
+	}
+
+	@Override
+	protected void removeNodeCallback(AbstractNode node) {
+		nodeArrayLock.lock();
+		try {
+			AbstractNode[] a = nodeArray;
+			int i = node.getIndex();
+			int last = --nodeCount;
+			a[i] = a[last];
+			a[i].setIndex(i);
+			a[last] = null;
+		} finally {
+			nodeArrayLock.unlock();
+		}
+	}
+
+	@Override
+	protected void removeEdgeCallback(AbstractEdge edge) {
+		edgeArrayLock.lock();
+		try {
+			AbstractEdge[] a = edgeArray;
+			int i = edge.getIndex();
+			int last = --edgeCount;
+			a[i] = a[last];
+			a[i].setIndex(i);
+			a[last] = null;
+		} finally {
+			edgeArrayLock.unlock();
+		}
+	}
+
+	@Override
+	protected void clearCallback() {
+		nodeArrayLock.lock();
+		edgeArrayLock.lock();
+		try {
+			nodeMap.clear();
+			edgeMap.clear();
+			Arrays.fill(nodeArray, 0, nodeCount, null);
+			Arrays.fill(edgeArray, 0, edgeCount, null);
+			nodeCount = edgeCount = 0;
+		} finally {
+			edgeArrayLock.unlock();
+			nodeArrayLock.unlock();
+		}
+	}
+
+	@Override
+	public void ensureCapacity(int nodeCapacity, int edgeCapacity) {
+		nodeArrayLock.lock();
+		try {
+			if (nodeCapacity > nodeArray.length)
+				nodeArray = Arrays.copyOf(nodeArray, nodeCapacity);
+		} finally {
+			nodeArrayLock.unlock();
+		}
+		edgeArrayLock.lock();
+		try {
+			if (edgeCapacity > edgeArray.length)
+				edgeArray = Arrays.copyOf(edgeArray, edgeCapacity);
+		} finally {
+			edgeArrayLock.unlock();
+		}
+	}
+
+	@Override
+	public void trimToSize() {
+		nodeArrayLock.lock();
+		try {
+			if (nodeArray.length > nodeCount)
+				nodeArray = Arrays.copyOf(nodeArray, nodeCount);
+		} finally {
+			nodeArrayLock.unlock();
+		}
+		edgeArrayLock.lock();
+		try {
+			if (edgeArray.length > edgeCount)
+				edgeArray = Arrays.copyOf(edgeArray, edgeCount);
+		} finally {
+			edgeArrayLock.unlock();
+		}
+		for (AbstractNode node : nodeMap.values())
+			node.trimToSize();
+	}
+
+	// *** Access methods ***
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <T extends Node> T getNode(String id) {
+		return (T) nodeMap.get(id);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <T extends Node> T getNode(int index) {
+		AbstractNode[] a = nodeArray;
+		if (index < 0 || index >= nodeCount || index >= a.length)
+			throw new IndexOutOfBoundsException("Node " + index
+					+ " does not exist");
+		return (T) a[index];
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <T extends Edge> T getEdge(String id) {
+		return (T) edgeMap.get(id);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <T extends Edge> T getEdge(int index) {
+		AbstractEdge[] a = edgeArray;
+		if (index < 0 || index >= edgeCount || index >= a.length)
+			throw new IndexOutOfBoundsException("Edge " + index
+					+ " does not exist");
+		return (T) a[index];
+	}
+
+	@Override
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	@Override
+	public int getEdgeCount() {
+		return edgeCount;
+	}
+
+	// *** Iterators ***
+
+	/**
+	 * Weakly consistent iterator over the values of one of the maps of the
+	 * graph.
+	 */
+	protected abstract class ElementIterator<T, E> implements Iterator<T> {
+		final Iterator<E> it;
+		E last;
+
+		ElementIterator(Iterator<E> it) {
+			this.it = it;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return it.hasNext();
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public T next() {
+			last = it.next();
+			return (T) last;
+		}
+
+		@Override
+		public void remove() {
+			if (last == null)
+				throw new IllegalStateException();
+			remove(last);
+			last = null;
+		}
+
+		abstract void remove(E element);
+	}
+
+	@Override
+	public <T extends Node> Iterator<T> getNodeIterator() {
+		return new ElementIterator<T, AbstractNode>(nodeMap.values()
+				.iterator()) {
+			@Override
+			void remove(AbstractNode node) {
+				removeNode(node, true);
+			}
+		};
+	}
+
+	@Override
+	public <T extends Edge> Iterator<T> getEdgeIterator() {
+		return new ElementIterator<T, AbstractEdge>(edgeMap.values()
+				.iterator()) {
+			@Override
+			void remove(AbstractEdge edge) {
+				removeEdge(edge, true, true, true);
+			}
+		};
+	}
+
+	// *** Sinks ***
+
+	@Override
+	public void addAttributeSink(AttributeSink sink) {
+		dispatchLock.lock();
+		try {
+			super.addAttributeSink(sink);
+			updateSinks();
+		} finally {
+			dispatchLock.unlock();
+		}
+	}
+
+	@Override
+	public void addElementSink(ElementSink sink) {
+		dispatchLock.lock();
+		try {
+			super.addElementSink(sink);
+			updateSinks();
+		} finally {
+			dispatchLock.unlock();
+		}
+	}
+
+	@Override
+	public void addSink(Sink sink) {
+		dispatchLock.lock();
+		try {
+			super.addSink(sink);
+			updateSinks();
+		} finally {
+			dispatchLock.unlock();
+		}
+	}
+
+	@Override
+	public void clearAttributeSinks() {
+		dispatchLock.lock();
+		try {
+			super.clearAttributeSinks();
+			updateSinks();
+		} finally {
+			dispatchLock.unlock();
+		}
+	}
+
+	@Override
+	public void clearElementSinks() {
+		dispatchLock.lock();
+		try {
+			super.clearElementSinks();
+			updateSinks();
+		} finally {
+			dispatchLock.unlock();
+		}
+	}
+
+	@Override
+	public void clearSinks() {
+		dispatchLock.lock();
+		try {
+			super.clearSinks();
+			updateSinks();
+		} finally {
+			dispatchLock.unlock();
+		}
+	}
+
+	@Override
+	public void removeAttributeSink(AttributeSink sink) {
+		dispatchLock.lock();
+		try {
+			super.removeAttributeSink(sink);
+			updateSinks();
+		} finally {
+			dispatchLock.unlock();
+		}
+	}
+
+	@Override
+	public void removeElementSink(ElementSink sink) {
+		dispatchLock.lock();
+		try {
+			super.removeElementSink(sink);
+			updateSinks();
+		} finally {
+			dispatchLock.unlock();
+		}
+	}
+
+	@Override
+	public void removeSink(Sink sink) {
+		dispatchLock.lock();
+		try {
+			super.removeSink(sink);
+			updateSinks();
+		} finally {
+			dispatchLock.unlock();
+		}
+	}
+
+	// *** Events received from a source ***
+
+	// The events coming from a source are applied under the source lock and
+	// the stripes of the elements. The changes made meanwhile send no event
+	// and the event received is queued instead, to be forwarded as is once
+	// the locks are released.
+
+	@Override
+	public void nodeAdded(final String sourceId, final long timeId,
+			final String nodeId) {
+		if (!listeners.isNewEvent(sourceId, timeId))
+			return;
+		ReentrantLock lock = lockFor(nodeId);
+		sourceLock.lock();
+		lock.lock();
+		try {
+			addNode(nodeId);
+			forward(new PendingEvent() {
+				void send() {
+					listeners.sendNodeAdded(sourceId, timeId, nodeId);
+				}
+			});
+		} finally {
+			lock.unlock();
+			sourceLock.unlock();
+		}
+		flushEvents();
+	}
+
+	@Override
+	public void nodeRemoved(final String sourceId, final long timeId,
+			final String nodeId) {
+		if (!listeners.isNewEvent(sourceId, timeId))
+			return;
+		sourceLock.lock();
+		try {
+			int[] s;
+			while (true) {
+				AbstractNode node = nodeMap.get(nodeId);
+				if (node == null) {
+					s = new int[] { stripe(nodeId) };
+					stripes[s[0]].lock();
+					if (nodeMap.get(nodeId) == null)
+						break;
+				} else {
+					s = lockWithEdges((ConcurrentNode) node);
+					if (nodeMap.get(nodeId) == node)
+						break;
+				}
+				// the node changed meanwhile
+				unlock(s);
+			}
+			try {
+				forward(new PendingEvent() {
+					void send() {
+						listeners.sendNodeRemoved(sourceId, timeId, nodeId);
+					}
+				});
+				removeNode(nodeId);
+			} finally {
+				unlock(s);
+			}
+		} finally {
+			sourceLock.unlock();
+		}
+		flushEvents();
+	}
+
+	@Override
+	public void edgeAdded(final String sourceId, final long timeId,
+			final String edgeId, final String fromNodeId,
+			final String toNodeId, final boolean directed) {
+		if (!listeners.isNewEvent(sourceId, timeId))
+			return;
+		sourceLock.lock();
+		long s = lock(edgeId, fromNodeId, toNodeId);
+		try {
+			addEdge(edgeId, fromNodeId, toNodeId, directed);
+			forward(new PendingEvent() {
+				void send() {
+					listeners.sendEdgeAdded(sourceId, timeId, edgeId,
+							fromNodeId, toNodeId, directed);
+				}
+			});
+		} finally {
+			unlock(s);
+			sourceLock.unlock();
+		}
+		flushEvents();
+	}
+
+	@Override
+	public void edgeRemoved(final String sourceId, final long timeId,
+			final String edgeId) {
+		if (!listeners.isNewEvent(sourceId, timeId))
+			return;
+		sourceLock.lock();
+		try {
+			long s;
+			while (true) {
+				AbstractEdge edge = edgeMap.get(edgeId);
+				if (edge == null) {
+					s = lock(edgeId, edgeId, edgeId);
+					if (edgeMap.get(edgeId) == null)
+						break;
+				} else {
+					s = lock(edgeId, edge.getSourceNode().getId(), edge
+							.getTargetNode().getId());
+					if (edgeMap.get(edgeId) == edge)
+						break;
+				}
+				// the edge changed meanwhile
+				unlock(s);
+			}
+			try {
+				forward(new PendingEvent() {
+					void send() {
+						listeners.sendEdgeRemoved(sourceId, timeId, edgeId);
+					}
+				});
+				removeEdge(edgeId);
+			} finally {
+				unlock(s);
+			}
+		} finally {
+			sourceLock.unlock();
+		}
+		flushEvents();
+	}
+
+	@Override
+	public void graphCleared(final String sourceId, final long timeId) {
+		if (!listeners.isNewEvent(sourceId, timeId))
+			return;
+		sourceLock.lock();
+		lockAll();
+		try {
+			forward(new PendingEvent() {
+				void send() {
+					listeners.sendGraphCleared(sourceId, timeId);
+				}
+			});
+			clear();
+		} finally {
+			unlockAll();
+			sourceLock.unlock();
+		}
+		flushEvents();
+	}
+
+	@Override
+	public void stepBegins(final String sourceId, final long timeId,
+			final double step) {
+		if (!listeners.isNewEvent(sourceId, timeId))
+			return;
+		sourceLock.lock();
+		try {
+			stepBegins(step);
+			forward(new PendingEvent() {
+				void send() {
+					listeners.sendStepBegins(sourceId, timeId, step);
+				}
+			});
+		} finally {
+			sourceLock.unlock();
+		}
+		flushEvents();
+	}
+
+	@Override
+	public void graphAttributeAdded(final String sourceId, final long timeId,
+			final String attribute, final Object value) {
+		if (!listeners.isNewEvent(sourceId, timeId))
+			return;
+		ReentrantLock lock = lockFor(getId());
+		sourceLock.lock();
+		lock.lock();
+		try {
+			addAttribute(attribute, value);
+			forward(new PendingEvent() {
+				void send() {
+					listeners.sendGraphAttributeAdded(sourceId, timeId,
+							attribute, value);
+				}
+			});
+		} finally {
+			lock.unlock();
+			sourceLock.unlock();
+		}
+		flushEvents();
+	}
+
+	@Override
+	public void graphAttributeChanged(final String sourceId, final long timeId,
+			final String attribute, Object oldValue, final Object newValue) {
+		if (!listeners.isNewEvent(sourceId, timeId))
+			return;
+		ReentrantLock lock = lockFor(getId());
+		sourceLock.lock();
+		lock.lock();
+		try {
+			final Object old = oldValue == null ? getAttribute(attribute)
+					: oldValue;
+			changeAttribute(attribute, newValue);
+			forward(new PendingEvent() {
+				void send() {
+					listeners.sendGraphAttributeChanged(sourceId, timeId,
+							attribute, old, newValue);
+				}
+			});
+		} finally {
+			lock.unlock();
+			sourceLock.unlock();
+		}
+		flushEvents();
+	}
+
+	@Override
+	public void graphAttributeRemoved(final String sourceId, final long timeId,
+			final String attribute) {
+		if (!listeners.isNewEvent(sourceId, timeId))
+			return;
+		ReentrantLock lock = lockFor(getId());
+		sourceLock.lock();
+		lock.lock();
+		try {
+			forward(new PendingEvent() {
+				void send() {
+					listeners.sendGraphAttributeRemoved(sourceId, timeId,
+							attribute);
+				}
+			});
+			removeAttribute(attribute);
+		} finally {
+			lock.unlock();
+			sourceLock.unlock();
+		}
+		flushEvents();
+	}
+
+	@Override
+	public void nodeAttributeAdded(final String sourceId, final long timeId,
+			final String nodeId, final String attribute, final Object value) {
+		if (!listeners.isNewEvent(sourceId, timeId))
+			return;
+		ReentrantLock lock = lockFor(nodeId);
+		sourceLock.lock();
+		lock.lock();
+		try {
+			Node node = getNode(nodeId);
+			if (node != null) {
+				node.addAttribute(attribute, value);
+				forward(new PendingEvent() {
+					void send() {
+						listeners.sendNodeAttributeAdded(sourceId, timeId,
+								nodeId, attribute, value);
+					}
+				});
+			}
+		} finally {
+			lock.unlock();
+			sourceLock.unlock();
+		}
+		flushEvents();
+	}
+
+	@Override
+	public void nodeAttributeChanged(final String sourceId, final long timeId,
+			final String nodeId, final String attribute, Object oldValue,
+			final Object newValue) {
+		if (!listeners.isNewEvent(sourceId, timeId))
+			return;
+		ReentrantLock lock = lockFor(nodeId);
+		sourceLock.lock();
+		lock.lock();
+		try {
+			Node node = getNode(nodeId);
+			if (node != null) {
+				final Object old = oldValue == null ? node
+						.getAttribute(attribute) : oldValue;
+				node.changeAttribute(attribute, newValue);
+				forward(new PendingEvent() {
+					void send() {
+						listeners.sendNodeAttributeChanged(sourceId, timeId,
+								nodeId, attribute, old, newValue);
+					}
+				});
+			}
+		} finally {
+			lock.unlock();
+			sourceLock.unlock();
+		}
+		flushEvents();
+	}
+
+	@Override
+	public void nodeAttributeRemoved(final String sourceId, final long timeId,
+			final String nodeId, final String attribute) {
+		if (!listeners.isNewEvent(sourceId, timeId))
+			return;
+		ReentrantLock lock = lockFor(nodeId);
+		sourceLock.lock();
+		lock.lock();
+		try {
+			Node node = getNode(nodeId);
+			if (node != null) {
+				forward(new PendingEvent() {
+					void send() {
+						listeners.sendNodeAttributeRemoved(sourceId, timeId,
+								nodeId, attribute);
+					}
+				});
+				node.removeAttribute(attribute);
+			}
+		} finally {
+			lock.unlock();
+			sourceLock.unlock();
+		}
+		flushEvents();
+	}
+
+	@Override
+	public void edgeAttributeAdded(final String sourceId, final long timeId,
+			final String edgeId, final String attribute, final Object value) {
+		if (!listeners.isNewEvent(sourceId, timeId))
+			return;
+		ReentrantLock lock = lockFor(edgeId);
+		sourceLock.lock();
+		lock.lock();
+		try {
+			Edge edge = getEdge(edgeId);
+			if (edge != null) {
+				edge.addAttribute(attribute, value);
+				forward(new PendingEvent() {
+					void send() {
+						listeners.sendEdgeAttributeAdded(sourceId, timeId,
+								edgeId, attribute, value);
+					}
+				});
+			}
+		} finally {
+			lock.unlock();
+			sourceLock.unlock();
+		}
+		flushEvents();
+	}
+
+	@Override
+	public void edgeAttributeChanged(final String sourceId, final long timeId,
+			final String edgeId, final String attribute, Object oldValue,
+			final Object newValue) {
+		if (!listeners.isNewEvent(sourceId, timeId))
+			return;
+		ReentrantLock lock = lockFor(edgeId);
+		sourceLock.lock();
+		lock.lock();
+		try {
+			Edge edge = getEdge(edgeId);
+			if (edge != null) {
+				final Object old = oldValue == null ? edge
+						.getAttribute(attribute) : oldValue;
+				edge.changeAttribute(attribute, newValue);
+				forward(new PendingEvent() {
+					void send() {
+						listeners.sendEdgeAttributeChanged(sourceId, timeId,
+								edgeId, attribute, old, newValue);
+					}
+				});
+			}
+		} finally {
+			lock.unlock();
+			sourceLock.unlock();
+		}
+		flushEvents();
+	}
+
+	@Override
+	public void edgeAttributeRemoved(final String sourceId, final long timeId,
+			final String edgeId, final String attribute) {
+		if (!listeners.isNewEvent(sourceId, timeId))
+			return;
+		ReentrantLock lock = lockFor(edgeId);
+		sourceLock.lock();
+		lock.lock();
+		try {
+			Edge edge = getEdge(edgeId);
+			if (edge != null) {
+				forward(new PendingEvent() {
+					void send() {
+						listeners.sendEdgeAttributeRemoved(sourceId, timeId,
+								edgeId, attribute);
+					}
+				});
+				edge.removeAttribute(attribute);
+			}
+		} finally {
+			lock.unlock();
+			sourceLock.unlock();
+		}
+		flushEvents();
+	}
+}
@@ -0,0 +1,333 @@
+/*
+ * Copyright 2006 - 2013
+ *     Stefan Balev     <stefan.balev@graphstream-project.org>
+ *     Julien Baudry    <julien.baudry@graphstream-project.org>
+ *     Antoine Dutot    <antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné      <yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin   <guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.graph.implementations;
+
+import org.graphstream.graph.Edge;
+import org.graphstream.graph.IndexConsumer;
+import org.graphstream.graph.Node;
+import org.graphstream.stream.SourceBase.ElementType;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>
+ * Nodes used with {@link ConcurrentGraph}.
+ * </p>
+ * 
+ * <p>
+ * The edges are stored like in {@link AdjacencyListNode}, but they are read
+ * and changed under the lock of the node in the graph. Edge iterators work on
+ * a copy of the edges made when they are created; removing an edge through
+ * them removes it from the graph. These nodes never build a
+ * {@link NeighborIndex}, since it would be changed by the nodes at the other
+ * end of the edges.
+ * </p>
+ */
+public class ConcurrentNode extends AdjacencyListNode {
+	/**
+	 * The stripe of the graph protecting this node.
+	 */
+	final ReentrantLock lock;
+
+	/**
+	 * Set when the node starts being removed, edges cannot be added to it
+	 * anymore. Changed under {@link #lock}.
+	 */
+	volatile boolean removed = false;
+
+	// *** Constructor ***
+
+	protected ConcurrentNode(AbstractGraph graph, String id) {
+		super(graph, id);
+		lock = ((ConcurrentGraph) graph).lockFor(id);
+		attributes = newAttributeMap();
+	}
+
+	// *** Helpers ***
+
+	@Override
+	protected int neighborIndexThreshold() {
+		return Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Any edge of this node, or {@code null} if it has none.
+	 */
+	AbstractEdge anyEdge() {
+		lock.lock();
+		try {
+			return degree == 0 ? null : edges[degree - 1];
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	protected <T extends Edge> T locateEdge(Node opposite, char type) {
+		lock.lock();
+		try {
+			return super.locateEdge(opposite, type);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void ensureCapacity(int capacity) {
+		lock.lock();
+		try {
+			super.ensureCapacity(capacity);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void trimToSize() {
+		lock.lock();
+		try {
+			super.trimToSize();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	// *** Attributes ***
+
+	@Override
+	Map<String, Object> newAttributeMap() {
+		return new ConcurrentAttributeMap(attributeKeys());
+	}
+
+	@Override
+	void releaseAttributes() {
+		attributes.clear();
+	}
+
+	@Override
+	protected void attributeChanged(AttributeChangeEvent event,
+			String attribute, Object oldValue, Object newValue) {
+		((ConcurrentGraph) graph).attributeChanges.incrementAndGet();
+		((ConcurrentGraph) graph).queueAttributeChanged(getId(), ElementType.NODE,
+				attribute, event, oldValue, newValue);
+	}
+
+	@Override
+	public boolean addAttribute(String attribute, Object... values) {
+		lock.lock();
+		try {
+			return super.addAttribute(attribute, values);
+		} finally {
+			lock.unlock();
+			((ConcurrentGraph) graph).flushEvents();
+		}
+	}
+
+	@Override
+	public boolean removeAttribute(String attribute) {
+		lock.lock();
+		try {
+			return super.removeAttribute(attribute);
+		} finally {
+			lock.unlock();
+			((ConcurrentGraph) graph).flushEvents();
+		}
+	}
+
+	@Override
+	public void clearAttributes() {
+		lock.lock();
+		try {
+			super.clearAttributes();
+		} finally {
+			lock.unlock();
+			((ConcurrentGraph) graph).flushEvents();
+		}
+	}
+
+	// *** Access methods ***
+
+	@Override
+	public int getDegree() {
+		lock.lock();
+		try {
+			return degree;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int getInDegree() {
+		lock.lock();
+		try {
+			return oStart;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int getOutDegree() {
+		lock.lock();
+		try {
+			return degree - ioStart;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public <T extends Edge> T getEdge(int i) {
+		lock.lock();
+		try {
+			return super.getEdge(i);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public <T extends Edge> T getEnteringEdge(int i) {
+		lock.lock();
+		try {
+			return super.getEnteringEdge(i);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public <T extends Edge> T getLeavingEdge(int i) {
+		lock.lock();
+		try {
+			return super.getLeavingEdge(i);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	// *** Neighbor indices ***
+
+	@Override
+	protected void forEachOpposite(char type, IndexConsumer action) {
+		// the consumer is called without holding the lock
+		int[] buf;
+		int n;
+		lock.lock();
+		try {
+			buf = new int[degree];
+			n = super.copyOpposites(type, buf);
+		} finally {
+			lock.unlock();
+		}
+		for (int i = 0; i < n; i++)
+			action.accept(buf[i]);
+	}
+
+	@Override
+	protected int copyOpposites(char type, int[] buf) {
+		lock.lock();
+		try {
+			return super.copyOpposites(type, buf);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	// *** Iterators ***
+
+	/**
+	 * Iterator over a copy of some of the edges of the node.
+	 */
+	protected class SnapshotIterator<T extends Edge> implements Iterator<T> {
+		final AbstractEdge[] snapshot;
+		int iNext = 0;
+		AbstractEdge last;
+
+		protected SnapshotIterator(char type) {
+			lock.lock();
+			try {
+				int start = 0;
+				int end = degree;
+				if (type == I_EDGE)
+					end = oStart;
+				else if (type == O_EDGE)
+					start = ioStart;
+				snapshot = Arrays.copyOfRange(edges, start, end);
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return iNext < snapshot.length;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public T next() {
+			if (iNext >= snapshot.length)
+				throw new NoSuchElementException();
+			last = snapshot[iNext++];
+			return (T) last;
+		}
+
+		@Override
+		public void remove() {
+			if (last == null)
+				throw new IllegalStateException();
+			graph.removeEdge(last, true, true, true);
+			last = null;
+		}
+	}
+
+	@Override
+	public <T extends Edge> Iterator<T> getEdgeIterator() {
+		return new SnapshotIterator<T>(IO_EDGE);
+	}
+
+	@Override
+	public <T extends Edge> Iterator<T> getEnteringEdgeIterator() {
+		return new SnapshotIterator<T>(I_EDGE);
+	}
+
+	@Override
+	public <T extends Edge> Iterator<T> getLeavingEdgeIterator() {
+		return new SnapshotIterator<T>(O_EDGE);
+	}
+}
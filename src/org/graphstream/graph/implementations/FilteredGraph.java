@@ -0,0 +1,508 @@
+/*
+ * Copyright 2006 - 2013
+ *     Stefan Balev     <stefan.balev@graphstream-project.org>
+ *     Julien Baudry    <julien.baudry@graphstream-project.org>
+ *     Antoine Dutot    <antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné      <yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin   <guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.graph.implementations;
+
+import java.util.ArrayList;
+
+import org.graphstream.graph.Edge;
+import org.graphstream.graph.Element;
+import org.graphstream.graph.Element.AttributeChangeEvent;
+import org.graphstream.graph.Node;
+import org.graphstream.stream.Sink;
+import org.graphstream.stream.SourceBase.ElementType;
+import org.graphstream.util.Filter;
+import org.graphstream.util.Filters;
+
+/**
+ * <p>
+ * A read-only view of the part of a graph whose elements pass a node filter
+ * and an edge filter. An edge is in the view when it passes the edge filter
+ * and its two nodes are in the view.
+ * </p>
+ * 
+ * <p>
+ * The filters are evaluated once per element when the view is created. The
+ * view then listens to its source and evaluates them again only for the
+ * elements concerned by each event: an element added, removed or whose
+ * attributes changed. The view is an {@link AdjacencyListGraph} replicating
+ * the selected elements, so algorithms run on it at the speed of a plain
+ * graph instead of testing the filters at each step. The filters must only
+ * depend on the element they are given, otherwise {@link #refresh()} must be
+ * called after the state they depend on changed.
+ * </p>
+ * 
+ * <p>
+ * The structure of the view and its attributes cannot be changed directly,
+ * such changes throw an {@link UnsupportedOperationException}. Attributes
+ * are not copied: the elements of the view read the attributes of the
+ * corresponding elements of the source. The sinks of the view receive the
+ * element events of the view and the attribute events of the elements it
+ * contains. An element entering the view is announced with its attributes.
+ * </p>
+ * 
+ * <p>
+ * A view is not thread-safe: it is updated by the thread changing its source.
+ * Call {@link #detach()} when the view is not needed anymore, so that the
+ * source stops updating it.
+ * </p>
+ */
+public class FilteredGraph extends AdjacencyListGraph {
+
+	protected final AbstractGraph source;
+
+	protected final Filter<Node> nodeFilter;
+
+	protected final Filter<Edge> edgeFilter;
+
+	/**
+	 * Listens to the source and updates the view.
+	 */
+	private final Updater updater;
+
+	/**
+	 * The structure can only be changed by the view itself while this is
+	 * {@code true}.
+	 */
+	private boolean updating = false;
+
+	/**
+	 * Creates a view of a graph. The identifier of the view is the one of the
+	 * source followed by {@code "-filtered"}.
+	 * 
+	 * @param source
+	 *            The graph to filter.
+	 * @param nodeFilter
+	 *            The nodes in the view, or {@code null} for all the nodes.
+	 * @param edgeFilter
+	 *            The edges in the view, or {@code null} for all the edges
+	 *            between nodes of the view.
+	 */
+	public FilteredGraph(AbstractGraph source, Filter<Node> nodeFilter,
+			Filter<Edge> edgeFilter) {
+		this(source.getId() + "-filtered", source, nodeFilter, edgeFilter);
+	}
+
+	/**
+	 * Creates a view of a graph.
+	 * 
+	 * @param id
+	 *            Identifier of the view.
+	 * @param source
+	 *            The graph to filter.
+	 * @param nodeFilter
+	 *            The nodes in the view, or {@code null} for all the nodes.
+	 * @param edgeFilter
+	 *            The edges in the view, or {@code null} for all the edges
+	 *            between nodes of the view.
+	 */
+	public FilteredGraph(String id, AbstractGraph source,
+			Filter<Node> nodeFilter, Filter<Edge> edgeFilter) {
+		super(id, true, false, source.getNodeCount(), source.getEdgeCount());
+		this.source = source;
+		this.nodeFilter = nodeFilter == null ? Filters.<Node> trueFilter()
+				: nodeFilter;
+		this.edgeFilter = edgeFilter == null ? Filters.<Edge> trueFilter()
+				: edgeFilter;
+		attributeOwner = source;
+		attributeState = READ_ONLY;
+
+		refresh();
+
+		updater = new Updater();
+		source.addSink(updater);
+	}
+
+	/**
+	 * The graph filtered by this view.
+	 */
+	public AbstractGraph getSource() {
+		return source;
+	}
+
+	/**
+	 * Tells if a node of the source is in the view.
+	 * 
+	 * @param node
+	 *            A node of the source.
+	 */
+	public boolean contains(Node node) {
+		return getNode(node.getId()) != null;
+	}
+
+	/**
+	 * Tells if an edge of the source is in the view.
+	 * 
+	 * @param edge
+	 *            An edge of the source.
+	 */
+	public boolean contains(Edge edge) {
+		return getEdge(edge.getId()) != null;
+	}
+
+	/**
+	 * Evaluates the filters again for all the elements of the source. This is
+	 * needed only when the filters depend on something else than the elements
+	 * they are given.
+	 * 
+	 * @complexity O(n + m) where n is the number of nodes and m the number of
+	 *             edges of the source
+	 */
+	public void refresh() {
+		// removals first so that the nodes entering the view do not
+		// connect to nodes leaving it
+		// elements the source does not contain anymore (after a detach for
+		// instance) leave the view without being given to the filters
+		for (int i = getNodeCount() - 1; i >= 0; i--) {
+			Node node = getNode(i);
+			Node original = source.getNode(node.getId());
+			if (original == null || !nodeFilter.isAvailable(original))
+				exclude(node);
+		}
+		for (int j = getEdgeCount() - 1; j >= 0; j--) {
+			Edge edge = getEdge(j);
+			Edge original = source.getEdge(edge.getId());
+			if (original == null || !edgeFilter.isAvailable(original))
+				exclude(edge);
+		}
+		for (int i = 0, n = source.getNodeCount(); i < n; i++) {
+			Node node = source.getNode(i);
+			if (getNode(node.getId()) == null && nodeFilter.isAvailable(node))
+				include(node, false);
+		}
+		for (int j = 0, m = source.getEdgeCount(); j < m; j++) {
+			Edge edge = source.getEdge(j);
+			if (getEdge(edge.getId()) == null)
+				includeIfAvailable(edge);
+		}
+	}
+
+	/**
+	 * Stops updating the view. The structure of the view does not follow the
+	 * source anymore, but its elements still read the attributes of the
+	 * source elements.
+	 */
+	public void detach() {
+		source.removeSink(updater);
+	}
+
+	// *** Updates ***
+
+	/**
+	 * Adds a node of the source to the view and, if {@code withEdges}, its
+	 * edges to the nodes already in the view that pass the edge filter.
+	 */
+	private void include(Node node, boolean withEdges) {
+		updating = true;
+		try {
+			super.addNode(node.getId());
+		} finally {
+			updating = false;
+		}
+		announce(node, ElementType.NODE);
+
+		if (withEdges)
+			for (int i = 0, d = node.getDegree(); i < d; i++)
+				includeIfAvailable(node.getEdge(i));
+	}
+
+	/**
+	 * Adds an edge of the source to the view if it passes the edge filter and
+	 * its nodes are in the view.
+	 */
+	private void includeIfAvailable(Edge edge) {
+		String src = edge.getSourceNode().getId();
+		String dst = edge.getTargetNode().getId();
+
+		if (getEdge(edge.getId()) != null || getNode(src) == null
+				|| getNode(dst) == null || !edgeFilter.isAvailable(edge))
+			return;
+
+		updating = true;
+		try {
+			super.addEdge(edge.getId(), src, dst, edge.isDirected());
+		} finally {
+			updating = false;
+		}
+		announce(edge, ElementType.EDGE);
+	}
+
+	private void exclude(Element element) {
+		updating = true;
+		try {
+			if (element instanceof Node)
+				super.removeNode((AbstractNode) element, true);
+			else
+				super.removeEdge((AbstractEdge) element, true, true, true);
+		} finally {
+			updating = false;
+		}
+	}
+
+	/**
+	 * Sends the attributes of an element entering the view to the sinks of
+	 * the view.
+	 */
+	private void announce(Element element, ElementType type) {
+		if (element.getAttributeCount() == 0)
+			return;
+		for (String key : new ArrayList<String>(element.getAttributeKeySet()))
+			listeners.sendAttributeChangedEvent(element.getId(), type, key,
+					AttributeChangeEvent.ADD, null, element.getAttribute(key));
+	}
+
+	/**
+	 * The elements of a view have no attributes of their own, snapshots copy
+	 * the attributes of the source.
+	 */
+	@Override
+	boolean chunkedSnapshots() {
+		return false;
+	}
+
+	@Override
+	protected void addNodeCallback(AbstractNode node) {
+		super.addNodeCallback(node);
+		node.attributeOwner = source.getNode(node.getId());
+		node.attributeState = READ_ONLY;
+	}
+
+	@Override
+	protected void addEdgeCallback(AbstractEdge edge) {
+		super.addEdgeCallback(edge);
+		edge.attributeOwner = source.getEdge(edge.getId());
+		edge.attributeState = READ_ONLY;
+	}
+
+	private class Updater implements Sink {
+
+		private void nodeChanged(String nodeId, String attribute,
+				AttributeChangeEvent event, Object oldValue, Object newValue) {
+			Node node = source.getNode(nodeId);
+			AbstractNode copy = getNode(nodeId);
+			boolean available = node != null && nodeFilter.isAvailable(node);
+
+			if (copy == null) {
+				if (available)
+					include(node, true);
+			} else if (!available) {
+				exclude(copy);
+			} else {
+				attributeVersion++;
+				listeners.sendAttributeChangedEvent(nodeId, ElementType.NODE,
+						attribute, event, oldValue, newValue);
+			}
+		}
+
+		private void edgeChanged(String edgeId, String attribute,
+				AttributeChangeEvent event, Object oldValue, Object newValue) {
+			Edge edge = source.getEdge(edgeId);
+			AbstractEdge copy = getEdge(edgeId);
+
+			if (copy == null) {
+				if (edge != null)
+					includeIfAvailable(edge);
+			} else if (edge == null || !edgeFilter.isAvailable(edge)) {
+				exclude(copy);
+			} else {
+				attributeVersion++;
+				listeners.sendAttributeChangedEvent(edgeId, ElementType.EDGE,
+						attribute, event, oldValue, newValue);
+			}
+		}
+
+		private void graphChanged(String attribute, AttributeChangeEvent event,
+				Object oldValue, Object newValue) {
+			attributeVersion++;
+			listeners.sendAttributeChangedEvent(getId(), ElementType.GRAPH,
+					attribute, event, oldValue, newValue);
+		}
+
+		@Override
+		public void graphAttributeAdded(String sourceId, long timeId,
+				String attribute, Object value) {
+			graphChanged(attribute, AttributeChangeEvent.ADD, null, value);
+		}
+
+		@Override
+		public void graphAttributeChanged(String sourceId, long timeId,
+				String attribute, Object oldValue, Object newValue) {
+			graphChanged(attribute, AttributeChangeEvent.CHANGE, oldValue,
+					newValue);
+		}
+
+		@Override
+		public void graphAttributeRemoved(String sourceId, long timeId,
+				String attribute) {
+			graphChanged(attribute, AttributeChangeEvent.REMOVE, null, null);
+		}
+
+		@Override
+		public void nodeAttributeAdded(String sourceId, long timeId,
+				String nodeId, String attribute, Object value) {
+			nodeChanged(nodeId, attribute, AttributeChangeEvent.ADD, null,
+					value);
+		}
+
+		@Override
+		public void nodeAttributeChanged(String sourceId, long timeId,
+				String nodeId, String attribute, Object oldValue,
+				Object newValue) {
+			nodeChanged(nodeId, attribute, AttributeChangeEvent.CHANGE,
+					oldValue, newValue);
+		}
+
+		@Override
+		public void nodeAttributeRemoved(String sourceId, long timeId,
+				String nodeId, String attribute) {
+			nodeChanged(nodeId, attribute, AttributeChangeEvent.REMOVE, null,
+					null);
+		}
+
+		@Override
+		public void edgeAttributeAdded(String sourceId, long timeId,
+				String edgeId, String attribute, Object value) {
+			edgeChanged(edgeId, attribute, AttributeChangeEvent.ADD, null,
+					value);
+		}
+
+		@Override
+		public void edgeAttributeChanged(String sourceId, long timeId,
+				String edgeId, String attribute, Object oldValue,
+				Object newValue) {
+			edgeChanged(edgeId, attribute, AttributeChangeEvent.CHANGE,
+					oldValue, newValue);
+		}
+
+		@Override
+		public void edgeAttributeRemoved(String sourceId, long timeId,
+				String edgeId, String attribute) {
+			edgeChanged(edgeId, attribute, AttributeChangeEvent.REMOVE, null,
+					null);
+		}
+
+		@Override
+		public void nodeAdded(String sourceId, long timeId, String nodeId) {
+			Node node = source.getNode(nodeId);
+			if (node != null && nodeFilter.isAvailable(node))
+				include(node, true);
+		}
+
+		@Override
+		public void nodeRemoved(String sourceId, long timeId, String nodeId) {
+			AbstractNode copy = getNode(nodeId);
+			if (copy != null)
+				exclude(copy);
+		}
+
+		@Override
+		public void edgeAdded(String sourceId, long timeId, String edgeId,
+				String fromNodeId, String toNodeId, boolean directed) {
+			Edge edge = source.getEdge(edgeId);
+			if (edge != null)
+				includeIfAvailable(edge);
+		}
+
+		@Override
+		public void edgeRemoved(String sourceId, long timeId, String edgeId) {
+			AbstractEdge copy = getEdge(edgeId);
+			if (copy != null)
+				exclude(copy);
+		}
+
+		@Override
+		public void graphCleared(String sourceId, long timeId) {
+			updating = true;
+			try {
+				FilteredGraph.super.clear();
+			} finally {
+				updating = false;
+			}
+		}
+
+		@Override
+		public void stepBegins(String sourceId, long timeId, double step) {
+			FilteredGraph.super.stepBegins(step);
+		}
+	}
+
+	// *** The structure is only changed by the updates ***
+
+	private void checkUpdating() {
+		if (!updating)
+			throw new UnsupportedOperationException("the filtered view \""
+					+ getId() + "\" cannot be changed directly");
+	}
+
+	@Override
+	public <T extends Node> T addNode(String id) {
+		checkUpdating();
+		return super.addNode(id);
+	}
+
+	@Override
+	public <T extends Node> T addNode(long id) {
+		return addNode(Long.toString(id));
+	}
+
+	@Override
+	protected <T extends Edge> T addEdge(String edgeId, AbstractNode src,
+			String srcId, AbstractNode dst, String dstId, boolean directed) {
+		checkUpdating();
+		return super.addEdge(edgeId, src, srcId, dst, dstId, directed);
+	}
+
+	@Override
+	protected void removeNode(AbstractNode node, boolean graphCallback) {
+		checkUpdating();
+		super.removeNode(node, graphCallback);
+	}
+
+	@Override
+	protected void removeEdge(AbstractEdge edge, boolean graphCallback,
+			boolean sourceCallback, boolean targetCallback) {
+		checkUpdating();
+		super.removeEdge(edge, graphCallback, sourceCallback, targetCallback);
+	}
+
+	@Override
+	public void clear() {
+		checkUpdating();
+		super.clear();
+	}
+
+	@Override
+	public void bulkLoad(String[] nodeIds, String[] edgeIds, String[] sources,
+			String[] targets, boolean[] directed) {
+		checkUpdating();
+		super.bulkLoad(nodeIds, edgeIds, sources, targets, directed);
+	}
+}
@@ -38,6 +38,7 @@ import org.graphstream.graph.Element;
 import org.graphstream.graph.ElementNotFoundException;
 import org.graphstream.graph.Graph;
 import org.graphstream.graph.IdAlreadyInUseException;
+import org.graphstream.graph.IndexConsumer;
 import org.graphstream.graph.Node;
 import org.graphstream.graph.NodeFactory;
 import org.graphstream.stream.AttributeSink;
@@ -69,6 +70,20 @@ public class Graphs {
 		return null;
 	}
 
+	/**
+	 * Creates an immutable snapshot of a graph stored in compressed sparse row
+	 * form. It is much faster to traverse than the original graph, especially
+	 * with its index based methods, but its structure cannot be changed.
+	 * 
+	 * @param g
+	 *            the graph to compact
+	 * @return a compact copy of g
+	 * @see CompactGraph
+	 */
+	public static CompactGraph compact(Graph g) {
+		return new CompactGraph(g);
+	}
+
 	/**
 	 * Synchronizes a graph. The returned graph can be accessed and modified by
 	 * several threads. You lose genericity in methods returning edge or node
@@ -1502,6 +1517,72 @@ public class Graphs {
 			return l;
 		}
 
+		public void forEachNeighborIndex(IndexConsumer action) {
+			int[] buf;
+
+			elementLock.lock();
+			buf = new int[wrappedElement.getDegree()];
+			wrappedElement.neighborIndices(buf);
+			elementLock.unlock();
+
+			for (int index : buf)
+				action.accept(index);
+		}
+
+		public void forEachEnteringNeighborIndex(IndexConsumer action) {
+			int[] buf;
+
+			elementLock.lock();
+			buf = new int[wrappedElement.getInDegree()];
+			wrappedElement.enteringNeighborIndices(buf);
+			elementLock.unlock();
+
+			for (int index : buf)
+				action.accept(index);
+		}
+
+		public void forEachLeavingNeighborIndex(IndexConsumer action) {
+			int[] buf;
+
+			elementLock.lock();
+			buf = new int[wrappedElement.getOutDegree()];
+			wrappedElement.leavingNeighborIndices(buf);
+			elementLock.unlock();
+
+			for (int index : buf)
+				action.accept(index);
+		}
+
+		public int neighborIndices(int[] buf) {
+			int n;
+
+			elementLock.lock();
+			n = wrappedElement.neighborIndices(buf);
+			elementLock.unlock();
+
+			return n;
+		}
+
+		public int enteringNeighborIndices(int[] buf) {
+			int n;
+
+			elementLock.lock();
+			n = wrappedElement.enteringNeighborIndices(buf);
+			elementLock.unlock();
+
+			return n;
+		}
+
+		public int leavingNeighborIndices(int[] buf) {
+			int n;
+
+			elementLock.lock();
+			n = wrappedElement.leavingNeighborIndices(buf);
+			elementLock.unlock();
+
+			return n;
+		}
+
 		public Iterator<Node> getNeighborNodeIterator() {
 			ArrayList<Node> l;
 			Iterator<Node> it;
@@ -0,0 +1,354 @@
+/*
+ * Copyright 2006 - 2013
+ *     Stefan Balev     <stefan.balev@graphstream-project.org>
+ *     Julien Baudry    <julien.baudry@graphstream-project.org>
+ *     Antoine Dutot    <antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné      <yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin   <guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.graph.implementations;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * An open-addressing hash index mapping element identifiers to the slots of an
+ * element array, as used by {@link AdjacencyListGraph} for its
+ * {@code nodeArray} and {@code edgeArray}.
+ * </p>
+ * 
+ * <p>
+ * The index does not store the identifiers themselves. Each bucket holds the
+ * slot of an element in the indexed array and the cached hash code of its
+ * identifier. The array is passed to {@link #get(String, AbstractElement[])}
+ * in order to compare identifiers when hash codes match. Since the graph moves
+ * the last element into the slot of a removed one, {@link #move(AbstractElement,
+ * int, int)} must be called to keep the index coherent. Removal uses backward
+ * shifting, so no tombstones are left in the table.
+ * </p>
+ * 
+ * <p>
+ * Elements created with a numeric identifier (see
+ * {@link AbstractGraph#addNode(long)}) are indexed with the hash code of the
+ * decimal form of their identifier, computed without creating the string, so
+ * that they can be found both by {@link #get(String, AbstractElement[])} and
+ * by {@link #get(long, AbstractElement[])}.
+ * </p>
+ */
+final class IdIndex {
+	/**
+	 * Maximum ratio between the number of entries and the table length.
+	 */
+	private static final double LOAD_FACTOR = 0.5;
+
+	/**
+	 * Slot of the element plus one, zero marks an empty bucket.
+	 */
+	private int[] slots;
+
+	/**
+	 * Cached hash codes of the identifiers.
+	 */
+	private int[] hashes;
+
+	private int mask;
+	private int size;
+	private int threshold;
+
+	/**
+	 * Creates an index able to hold {@code expectedSize} entries without
+	 * rehashing.
+	 * 
+	 * @param expectedSize
+	 *            Expected number of elements.
+	 */
+	IdIndex(int expectedSize) {
+		allocate(tableLength(expectedSize));
+	}
+
+	// *** Helpers ***
+
+	private static int tableLength(int expectedSize) {
+		int length = 16;
+		while (length * LOAD_FACTOR < expectedSize && length < (1 << 30))
+			length <<= 1;
+		return length;
+	}
+
+	static int mix(int h) {
+		h *= 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	private void allocate(int length) {
+		slots = new int[length];
+		hashes = new int[length];
+		mask = length - 1;
+		threshold = (int) (length * LOAD_FACTOR);
+	}
+
+	private void rehash(int length) {
+		int[] oldSlots = slots;
+		int[] oldHashes = hashes;
+		allocate(length);
+		for (int i = 0; i < oldSlots.length; i++)
+			if (oldSlots[i] != 0)
+				insert(oldHashes[i], oldSlots[i]);
+	}
+
+	private void insert(int hash, int slotPlusOne) {
+		int i = mix(hash) & mask;
+		while (slots[i] != 0)
+			i = (i + 1) & mask;
+		slots[i] = slotPlusOne;
+		hashes[i] = hash;
+	}
+
+	/**
+	 * Hash code of the identifier of an element, equal to the hash code of
+	 * the string returned by {@link AbstractElement#getId()}.
+	 */
+	private static int hashOf(AbstractElement element) {
+		String id = element.cachedId();
+		return id == null ? hashOf(element.numericId) : id.hashCode();
+	}
+
+	/**
+	 * Hash code of {@code Long.toString(id)}.
+	 */
+	static int hashOf(long id) {
+		int h = 0;
+		// digits are extracted from the negative value, which holds
+		// Long.MIN_VALUE
+		if (id < 0)
+			h = '-';
+		else
+			id = -id;
+		for (long p = powerOf(id); p != 0; p /= 10) {
+			long d = id / p;
+			h = 31 * h + (int) ('0' + d);
+			id -= d * p;
+		}
+		return h;
+	}
+
+	/**
+	 * Tests if {@code s} is the decimal form of {@code id}.
+	 */
+	static boolean matches(String s, long id) {
+		int length = s.length();
+		int i = 0;
+		if (id < 0) {
+			if (length == 0 || s.charAt(0) != '-')
+				return false;
+			i = 1;
+		} else {
+			id = -id;
+		}
+		for (long p = powerOf(id); p != 0; p /= 10, i++) {
+			long d = id / p;
+			if (i >= length || s.charAt(i) != '0' + d)
+				return false;
+			id -= d * p;
+		}
+		return i == length;
+	}
+
+	/**
+	 * Opposite of the largest power of ten not greater than {@code -id}, or -1
+	 * if {@code id} is zero.
+	 */
+	private static long powerOf(long id) {
+		long p = -1;
+		while (p >= Long.MIN_VALUE / 10 && p * 10 >= id)
+			p *= 10;
+		return p;
+	}
+
+	private static boolean hasId(AbstractElement element, String id) {
+		String s = element.cachedId();
+		return s == null ? matches(id, element.numericId) : s.equals(id);
+	}
+
+	private static boolean hasId(AbstractElement element, long id) {
+		return element.numeric ? element.numericId == id : matches(
+				element.getId(), id);
+	}
+
+	private int bucketOf(AbstractElement element, int slot) {
+		int hash = hashOf(element);
+		int i = mix(hash) & mask;
+		while (slots[i] != 0) {
+			if (slots[i] == slot + 1)
+				return i;
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+
+	// *** Access ***
+
+	/**
+	 * Number of entries in the index.
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Looks for the slot of an element.
+	 * 
+	 * @param id
+	 *            Identifier of the element.
+	 * @param elements
+	 *            The indexed array.
+	 * @return The slot of the element in {@code elements} or -1 if there is no
+	 *         such element.
+	 * @complexity O(1) on average
+	 */
+	int get(String id, AbstractElement[] elements) {
+		int hash = id.hashCode();
+		int i = mix(hash) & mask;
+		int s;
+		while ((s = slots[i]) != 0) {
+			if (hashes[i] == hash && hasId(elements[s - 1], id))
+				return s - 1;
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Looks for the slot of an element by numeric identifier, that is by the
+	 * decimal form of {@code id}, without creating any string.
+	 * 
+	 * @param id
+	 *            Identifier of the element.
+	 * @param elements
+	 *            The indexed array.
+	 * @return The slot of the element in {@code elements} or -1 if there is no
+	 *         such element.
+	 * @complexity O(1) on average
+	 */
+	int get(long id, AbstractElement[] elements) {
+		int hash = hashOf(id);
+		int i = mix(hash) & mask;
+		int s;
+		while ((s = slots[i]) != 0) {
+			if (hashes[i] == hash && hasId(elements[s - 1], id))
+				return s - 1;
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+
+	// *** Modification ***
+
+	/**
+	 * Adds a new entry. The caller must ensure that the identifier of
+	 * {@code element} is not already present.
+	 * 
+	 * @param element
+	 *            The element.
+	 * @param slot
+	 *            Slot of the element in the indexed array.
+	 */
+	void put(AbstractElement element, int slot) {
+		if (size >= threshold)
+			rehash(slots.length << 1);
+		insert(hashOf(element), slot + 1);
+		size++;
+	}
+
+	/**
+	 * Updates the slot of an element which has been moved in the indexed
+	 * array.
+	 * 
+	 * @param element
+	 *            The moved element.
+	 * @param from
+	 *            Old slot of the element.
+	 * @param to
+	 *            New slot of the element.
+	 */
+	void move(AbstractElement element, int from, int to) {
+		int i = bucketOf(element, from);
+		if (i >= 0)
+			slots[i] = to + 1;
+	}
+
+	/**
+	 * Removes the entry of an element.
+	 * 
+	 * @param element
+	 *            The element.
+	 * @param slot
+	 *            Slot of the element in the indexed array.
+	 */
+	void remove(AbstractElement element, int slot) {
+		int i = bucketOf(element, slot);
+		if (i < 0)
+			return;
+
+		// backward shift the following entries of the cluster
+		int j = i;
+		while (true) {
+			j = (j + 1) & mask;
+			if (slots[j] == 0)
+				break;
+			int home = mix(hashes[j]) & mask;
+			// move j to i only if its home bucket is not in ]i, j]
+			if (i <= j ? (home <= i || home > j) : (home <= i && home > j)) {
+				slots[i] = slots[j];
+				hashes[i] = hashes[j];
+				i = j;
+			}
+		}
+		slots[i] = 0;
+		size--;
+	}
+
+	/**
+	 * Prepares the index to hold {@code expectedSize} entries without
+	 * rehashing.
+	 * 
+	 * @param expectedSize
+	 *            Expected number of elements.
+	 */
+	void ensureCapacity(int expectedSize) {
+		int length = tableLength(expectedSize);
+		if (length > slots.length)
+			rehash(length);
+	}
+
+	/**
+	 * Removes all the entries.
+	 */
+	void clear() {
+		Arrays.fill(slots, 0);
+		size = 0;
+	}
+}
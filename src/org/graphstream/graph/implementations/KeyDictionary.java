@@ -0,0 +1,77 @@
+/*
+ * Copyright 2006 - 2013
+ *     Stefan Balev     <stefan.balev@graphstream-project.org>
+ *     Julien Baudry    <julien.baudry@graphstream-project.org>
+ *     Antoine Dutot    <antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné      <yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin   <guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.graph.implementations;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>
+ * A dictionary of attribute keys shared by all the elements of a graph.
+ * </p>
+ * 
+ * <p>
+ * Attribute keys coming from file sources or from the network are usually new
+ * strings for each element, although there are only a few different keys in a
+ * graph. Interning them through this dictionary ensures that each key is
+ * stored only once and allows {@link CompactAttributeMap} to compare keys by
+ * reference in the common case. The dictionary only grows, keys are never
+ * removed from it.
+ * </p>
+ */
+final class KeyDictionary {
+	private final ConcurrentHashMap<String, String> keys = new ConcurrentHashMap<>();
+
+	/**
+	 * Returns the canonical representation of a key.
+	 * 
+	 * @param key
+	 *            An attribute key.
+	 * @return A string equal to {@code key}, always the same instance for equal
+	 *         keys.
+	 */
+	String intern(String key) {
+		String canonical = keys.get(key);
+		if (canonical == null) {
+			canonical = keys.putIfAbsent(key, key);
+			if (canonical == null)
+				canonical = key;
+		}
+		return canonical;
+	}
+
+	/**
+	 * Number of different keys in the dictionary.
+	 */
+	int size() {
+		return keys.size();
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2006 - 2013
+ *     Stefan Balev     <stefan.balev@graphstream-project.org>
+ *     Julien Baudry    <julien.baudry@graphstream-project.org>
+ *     Antoine Dutot    <antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné      <yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin   <guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.graph.implementations;
+
+import java.util.Collection;
+import java.util.Iterator;
+
+import org.graphstream.graph.Node;
+
+/**
+ * Edges of a {@link MappedGraph}. They are created on demand and read their
+ * numeric attributes from the mapped file. Two edges with the same index are
+ * equal.
+ */
+public class MappedEdge extends AbstractEdge {
+
+	protected MappedEdge(String id, MappedNode source, MappedNode target,
+			boolean directed, int index) {
+		super(id, source, target, directed);
+		setIndex(index);
+		attributeState = READ_ONLY;
+	}
+
+	private MappedGraph mapped() {
+		return (MappedGraph) graph;
+	}
+
+	// *** Attributes ***
+
+	@Override
+	Object lookup(String key) {
+		return mapped().getValue(this, key);
+	}
+
+	@Override
+	boolean hasNoAttributes() {
+		return false;
+	}
+
+	@Override
+	public boolean hasAttribute(String key) {
+		return key != null && mapped().hasValue(this, key);
+	}
+
+	@Override
+	public Collection<String> getAttributeKeySet() {
+		return mapped().getKeys(this);
+	}
+
+	@Override
+	public Iterator<String> getAttributeKeyIterator() {
+		return getAttributeKeySet().iterator();
+	}
+
+	@Override
+	public int getAttributeCount() {
+		return getAttributeKeySet().size();
+	}
+
+	// *** Access methods ***
+
+	/**
+	 * End points are compared by index, as nodes are created on demand.
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public <T extends Node> T getOpposite(Node node) {
+		if (source.equals(node))
+			return (T) target;
+		if (target.equals(node))
+			return (T) source;
+		return null;
+	}
+
+	@Override
+	public boolean isLoop() {
+		return source.getIndex() == target.getIndex();
+	}
+
+	// *** Identity ***
+
+	@Override
+	public boolean equals(Object o) {
+		return o instanceof MappedEdge && ((MappedEdge) o).graph == graph
+				&& ((MappedEdge) o).getIndex() == getIndex();
+	}
+
+	@Override
+	public int hashCode() {
+		return getIndex();
+	}
+}
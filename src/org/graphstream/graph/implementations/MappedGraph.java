@@ -0,0 +1,1131 @@
+/*
+ * Copyright 2006 - 2013
+ *     Stefan Balev     <stefan.balev@graphstream-project.org>
+ *     Julien Baudry    <julien.baudry@graphstream-project.org>
+ *     Antoine Dutot    <antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné      <yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin   <guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.graph.implementations;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.NoSuchElementException;
+
+import org.graphstream.graph.Edge;
+import org.graphstream.graph.Element;
+import org.graphstream.graph.Graph;
+import org.graphstream.graph.Node;
+
+/**
+ * <p>
+ * A read-only graph stored in a memory-mapped file, for graphs too big to be
+ * held in the heap as node and edge objects.
+ * </p>
+ * 
+ * <p>
+ * The file is written once from a graph by {@link #write(Graph, File)}, or
+ * from nodes and edges read from elsewhere by
+ * {@link #write(EdgeSource, File)} for graphs that do not fit in memory. It
+ * contains the structure in compressed sparse row form, like
+ * {@link CompactGraph}, the identifiers of the elements with a hash index to
+ * find them, and the numeric attributes of the nodes and of the edges in
+ * columns. Opening a file with {@link #MappedGraph(File)} only maps it and
+ * reads its header, the operating system then loads the pages when they are
+ * read and can drop them when memory is needed.
+ * </p>
+ * 
+ * <p>
+ * Nodes and edges are not kept in memory: {@link #getNode(int)},
+ * {@link #getEdge(int)} and the iterators create a new {@link MappedNode} or
+ * {@link MappedEdge} at each call. Such elements are equal when they have the
+ * same index, but are not the same objects. Traversals should rather use the
+ * index based methods of the nodes, such as
+ * {@link Node#forEachNeighborIndex(org.graphstream.graph.IndexConsumer)}, or
+ * of this class, such as {@link #getNeighborIndex(int, int)}, which read the
+ * mapped file without creating objects.
+ * </p>
+ * 
+ * <p>
+ * The structure and the attributes of the nodes and edges cannot be changed.
+ * Attributes other than numbers are not stored. Numbers are read back as
+ * {@link Long}s for the attributes whose values were all integers, as
+ * {@link Double}s otherwise. The graph itself can have attributes, which are
+ * kept in memory and not stored in the file. Several threads can read the
+ * graph at the same time.
+ * </p>
+ */
+public class MappedGraph extends AbstractGraph {
+
+	static final int MAGIC = 0x47534d47;
+	static final int VERSION = 2;
+
+	static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * Size of the mapped chunks. Sections are aligned on 8 bytes, so that the
+	 * numbers never overlap two chunks.
+	 */
+	static final int CHUNK_BITS = 30;
+	static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+
+	// sections of the file, their positions follow the header
+	static final int OFFSETS = 0, IO_STARTS = 1, O_STARTS = 2, NEIGHBORS = 3,
+			EDGES = 4, SOURCES = 5, TARGETS = 6, DIRECTED = 7,
+			NODE_ID_OFFSETS = 8, NODE_IDS = 9, NODE_HASH = 10,
+			EDGE_ID_OFFSETS = 11, EDGE_IDS = 12, EDGE_HASH = 13,
+			COLUMNS = 14, SECTIONS = 15;
+
+	/**
+	 * A numeric attribute of all the nodes or all the edges.
+	 */
+	static class Column {
+		final String key;
+		final boolean integral;
+		final long present, values;
+
+		Column(String key, boolean integral, long present, long values) {
+			this.key = key;
+			this.integral = integral;
+			this.present = present;
+			this.values = values;
+		}
+	}
+
+	private final ByteBuffer[] chunks;
+
+	final int nodeCount, edgeCount;
+
+	final long[] sections;
+
+	final long nodeHashMask, edgeHashMask;
+
+	final LinkedHashMap<String, Column> nodeColumns, edgeColumns;
+
+	// *** Constructors ***
+
+	/**
+	 * Opens a file written by {@link #write(Graph, File)}. Only the header is
+	 * read.
+	 * 
+	 * @param file
+	 *            The file.
+	 * @throws IOException
+	 *             If the file cannot be mapped or was not written by this
+	 *             class.
+	 */
+	public MappedGraph(File file) throws IOException {
+		this(map(file));
+	}
+
+	private MappedGraph(ByteBuffer[] chunks) throws IOException {
+		super(readString(chunks, 16 + 8 * SECTIONS), true, false);
+		this.chunks = chunks;
+
+		nodeCount = getInt(8);
+		edgeCount = getInt(12);
+		sections = new long[SECTIONS];
+		for (int s = 0; s < SECTIONS; s++)
+			sections[s] = getLong(16 + 8 * s);
+		nodeHashMask = hashCapacity(nodeCount) - 1;
+		edgeHashMask = hashCapacity(edgeCount) - 1;
+
+		nodeColumns = new LinkedHashMap<>();
+		edgeColumns = new LinkedHashMap<>();
+		long p = sections[COLUMNS];
+		int count = getInt(p);
+		p += 8;
+		for (int c = 0; c < count; c++) {
+			boolean edge = getInt(p) != 0;
+			boolean integral = getInt(p + 4) != 0;
+			Column column = new Column(readString(chunks, p + 24), integral,
+					getLong(p + 8), getLong(p + 16));
+			(edge ? edgeColumns : nodeColumns).put(column.key, column);
+			p = align(p + 28 + getInt(p + 24));
+		}
+	}
+
+	private static ByteBuffer[] map(File file) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+				FileChannel channel = raf.getChannel()) {
+			long size = channel.size();
+			if (size < 16 + 8 * SECTIONS + 4)
+				throw new IOException("\"" + file
+						+ "\" is not a mapped graph file");
+			ByteBuffer[] chunks = new ByteBuffer[(int) ((size + CHUNK_MASK) >> CHUNK_BITS)];
+			for (int k = 0; k < chunks.length; k++) {
+				long start = (long) k << CHUNK_BITS;
+				chunks[k] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+						Math.min(size - start, 1L << CHUNK_BITS));
+			}
+			if (chunks[0].getInt(0) != MAGIC || chunks[0].getInt(4) != VERSION)
+				throw new IOException("\"" + file
+						+ "\" is not a mapped graph file");
+			return chunks;
+		}
+	}
+
+	// *** Reading the file ***
+
+	int getInt(long position) {
+		return chunks[(int) (position >>> CHUNK_BITS)]
+				.getInt((int) (position & CHUNK_MASK));
+	}
+
+	long getLong(long position) {
+		return chunks[(int) (position >>> CHUNK_BITS)]
+				.getLong((int) (position & CHUNK_MASK));
+	}
+
+	double getDouble(long position) {
+		return chunks[(int) (position >>> CHUNK_BITS)]
+				.getDouble((int) (position & CHUNK_MASK));
+	}
+
+	byte getByte(long position) {
+		return chunks[(int) (position >>> CHUNK_BITS)]
+				.get((int) (position & CHUNK_MASK));
+	}
+
+	private static byte[] getBytes(ByteBuffer[] chunks, long position,
+			int length) {
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length;) {
+			ByteBuffer chunk = chunks[(int) ((position + i) >>> CHUNK_BITS)]
+					.duplicate();
+			chunk.position((int) ((position + i) & CHUNK_MASK));
+			int n = Math.min(length - i, chunk.remaining());
+			chunk.get(bytes, i, n);
+			i += n;
+		}
+		return bytes;
+	}
+
+	/**
+	 * Reads a string stored as its length followed by its UTF-8 bytes.
+	 */
+	private static String readString(ByteBuffer[] chunks, long position) {
+		int length = chunks[(int) (position >>> CHUNK_BITS)]
+				.getInt((int) (position & CHUNK_MASK));
+		return new String(getBytes(chunks, position + 4, length), UTF8);
+	}
+
+	private byte[] idBytes(int idOffsets, int idBytes, int index) {
+		long from = getLong(sections[idOffsets] + 8L * index);
+		long to = getLong(sections[idOffsets] + 8L * (index + 1));
+		return getBytes(chunks, sections[idBytes] + from, (int) (to - from));
+	}
+
+	String nodeId(int index) {
+		return new String(idBytes(NODE_ID_OFFSETS, NODE_IDS, index), UTF8);
+	}
+
+	String edgeId(int index) {
+		return new String(idBytes(EDGE_ID_OFFSETS, EDGE_IDS, index), UTF8);
+	}
+
+	/**
+	 * Finds an identifier in the hash index of the nodes or of the edges.
+	 * 
+	 * @return The index of the element or -1.
+	 */
+	private int find(String id, boolean edge) {
+		if (id == null)
+			return -1;
+		byte[] key = id.getBytes(UTF8);
+		long mask = edge ? edgeHashMask : nodeHashMask;
+		long table = sections[edge ? EDGE_HASH : NODE_HASH];
+		for (long slot = hash(id) & mask;; slot = (slot + 1) & mask) {
+			int i = getInt(table + 4L * slot) - 1;
+			if (i < 0)
+				return -1;
+			if (Arrays.equals(key, edge ? idBytes(EDGE_ID_OFFSETS, EDGE_IDS,
+					i) : idBytes(NODE_ID_OFFSETS, NODE_IDS, i)))
+				return i;
+		}
+	}
+
+	static int hash(String id) {
+		int h = id.hashCode();
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Number of slots of a hash index, a power of two. Slots are computed in
+	 * longs, the index of more than 2^29 elements has more than 2^31 slots.
+	 */
+	static long hashCapacity(int count) {
+		return Long.highestOneBit(Math.max(2, 2L * count - 1)) << 1;
+	}
+
+	static long align(long position) {
+		return (position + 7) & ~7L;
+	}
+
+	// *** Numeric attributes ***
+
+	private Column column(Element element, String key) {
+		return (element instanceof Edge ? edgeColumns : nodeColumns).get(key);
+	}
+
+	private boolean isSet(Column column, int index) {
+		return (getLong(column.present + 8L * (index >> 6)) & (1L << index)) != 0;
+	}
+
+	/**
+	 * Value of an attribute of a node or an edge of this graph.
+	 */
+	Object getValue(Element element, String key) {
+		Column column = column(element, key);
+		int i = element.getIndex();
+		if (column == null || !isSet(column, i))
+			return null;
+		long p = column.values + 8L * i;
+		return column.integral ? (Object) getLong(p) : (Object) getDouble(p);
+	}
+
+	boolean hasValue(Element element, String key) {
+		Column column = column(element, key);
+		return column != null && isSet(column, element.getIndex());
+	}
+
+	Collection<String> getKeys(Element element) {
+		ArrayList<String> keys = null;
+		int i = element.getIndex();
+		for (Column column : (element instanceof Edge ? edgeColumns
+				: nodeColumns).values())
+			if (isSet(column, i)) {
+				if (keys == null)
+					keys = new ArrayList<>();
+				keys.add(column.key);
+			}
+		return keys == null ? Collections.<String> emptySet() : Collections
+				.unmodifiableCollection(keys);
+	}
+
+	// *** Index based access ***
+
+	private int check(int node) {
+		if (node < 0 || node >= nodeCount)
+			throw new IndexOutOfBoundsException("Node " + node
+					+ " does not exist");
+		return node;
+	}
+
+	// positions in the incidences are longs, a graph can have more than
+	// 2^31 of them
+
+	long offset(int node) {
+		return getLong(sections[OFFSETS] + 8L * node);
+	}
+
+	long ioStart(int node) {
+		return getLong(sections[IO_STARTS] + 8L * node);
+	}
+
+	long oStart(int node) {
+		return getLong(sections[O_STARTS] + 8L * node);
+	}
+
+	int neighborAt(long position) {
+		return getInt(sections[NEIGHBORS] + 4L * position);
+	}
+
+	int edgeAt(long position) {
+		return getInt(sections[EDGES] + 4L * position);
+	}
+
+	/**
+	 * Number of edges of a node.
+	 * 
+	 * @param node
+	 *            Index of the node.
+	 * @return The degree of the node.
+	 * @complexity O(1)
+	 */
+	public int getDegree(int node) {
+		return (int) (offset(check(node) + 1) - offset(node));
+	}
+
+	/**
+	 * Number of edges entering a node.
+	 * 
+	 * @param node
+	 *            Index of the node.
+	 * @return The in-degree of the node.
+	 * @complexity O(1)
+	 */
+	public int getInDegree(int node) {
+		return (int) (oStart(check(node)) - offset(node));
+	}
+
+	/**
+	 * Number of edges leaving a node.
+	 * 
+	 * @param node
+	 *            Index of the node.
+	 * @return The out-degree of the node.
+	 * @complexity O(1)
+	 */
+	public int getOutDegree(int node) {
+		return (int) (offset(check(node) + 1) - ioStart(node));
+	}
+
+	private long position(int node, long from, long to, int i) {
+		long p = from + i;
+		if (i < 0 || p >= to)
+			throw new IndexOutOfBoundsException("Node " + node
+					+ " has no edge " + i);
+		return p;
+	}
+
+	/**
+	 * Index of the node at the other end of an edge. The edges of a node are
+	 * in the same order as with {@link Node#getEdge(int)}.
+	 * 
+	 * @param node
+	 *            Index of the node.
+	 * @param i
+	 *            Index of the edge among the edges of the node, between 0
+	 *            and {@code getDegree(node) - 1}.
+	 * @return Index of the opposite node.
+	 * @complexity O(1)
+	 */
+	public int getNeighborIndex(int node, int i) {
+		return neighborAt(position(node, offset(check(node)),
+				offset(node + 1), i));
+	}
+
+	/**
+	 * Index of an edge of a node in the graph.
+	 * 
+	 * @param node
+	 *            Index of the node.
+	 * @param i
+	 *            Index of the edge among the edges of the node, between 0
+	 *            and {@code getDegree(node) - 1}.
+	 * @return The index of the edge, as given by {@link Edge#getIndex()}.
+	 * @complexity O(1)
+	 */
+	public int getEdgeIndex(int node, int i) {
+		return edgeAt(position(node, offset(check(node)), offset(node + 1),
+				i));
+	}
+
+	/**
+	 * Index of the source node of an edge.
+	 * 
+	 * @complexity O(1)
+	 */
+	public int getSourceIndex(int edge) {
+		return getInt(sections[SOURCES] + 4L * checkEdge(edge));
+	}
+
+	/**
+	 * Index of the target node of an edge.
+	 * 
+	 * @complexity O(1)
+	 */
+	public int getTargetIndex(int edge) {
+		return getInt(sections[TARGETS] + 4L * checkEdge(edge));
+	}
+
+	private int checkEdge(int edge) {
+		if (edge < 0 || edge >= edgeCount)
+			throw new IndexOutOfBoundsException("Edge " + edge
+					+ " does not exist");
+		return edge;
+	}
+
+	// *** Flyweights ***
+
+	MappedNode node(int index) {
+		return new MappedNode(this, nodeId(index), index);
+	}
+
+	/**
+	 * A new edge object. An end point given by {@code known} is used as is,
+	 * so that {@link Edge#getOpposite(Node)} works with the node the edge was
+	 * obtained from.
+	 */
+	MappedEdge edge(int index, MappedNode known) {
+		int s = getInt(sections[SOURCES] + 4L * index);
+		int t = getInt(sections[TARGETS] + 4L * index);
+		MappedNode source = known != null && known.getIndex() == s ? known
+				: node(s);
+		MappedNode target = s == t ? source : known != null
+				&& known.getIndex() == t ? known : node(t);
+		return new MappedEdge(edgeId(index), source, target,
+				getByte(sections[DIRECTED] + index) != 0, index);
+	}
+
+	// *** Access methods ***
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <T extends Node> T getNode(String id) {
+		int i = find(id, false);
+		return i < 0 ? null : (T) node(i);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <T extends Node> T getNode(int index) {
+		return (T) node(check(index));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <T extends Edge> T getEdge(String id) {
+		int j = find(id, true);
+		return j < 0 ? null : (T) edge(j, null);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <T extends Edge> T getEdge(int index) {
+		return (T) edge(checkEdge(index), null);
+	}
+
+	@Override
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	@Override
+	public int getEdgeCount() {
+		return edgeCount;
+	}
+
+	// *** Iterators ***
+
+	private class ElementIterator<T> implements Iterator<T> {
+		private final boolean edges;
+		private int iNext = 0;
+
+		ElementIterator(boolean edges) {
+			this.edges = edges;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return iNext < (edges ? edgeCount : nodeCount);
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public T next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			return (T) (edges ? edge(iNext++, null) : node(iNext++));
+		}
+
+		@Override
+		public void remove() {
+			throw immutable();
+		}
+	}
+
+	@Override
+	public <T extends Node> Iterator<T> getNodeIterator() {
+		return new ElementIterator<T>(false);
+	}
+
+	@Override
+	public <T extends Edge> Iterator<T> getEdgeIterator() {
+		return new ElementIterator<T>(true);
+	}
+
+	// *** Writing ***
+
+	/**
+	 * The nodes and the edges of a graph written by
+	 * {@link MappedGraph#write(EdgeSource, File)}, for graphs that do not fit
+	 * in memory. Nodes are given by their index. Edges are read in order with
+	 * a cursor, their index in the written graph is their rank. The edges are
+	 * read twice, {@link #rewind()} being called before each pass, and both
+	 * passes must give the same edges in the same order.
+	 */
+	public interface EdgeSource {
+		/**
+		 * Identifier of the graph.
+		 */
+		String getId();
+
+		/**
+		 * Number of nodes.
+		 */
+		int getNodeCount();
+
+		/**
+		 * Identifier of a node.
+		 * 
+		 * @param index
+		 *            Index of the node, between 0 and
+		 *            {@code getNodeCount() - 1}.
+		 */
+		String getNodeId(int index);
+
+		/**
+		 * Goes back before the first edge.
+		 */
+		void rewind() throws IOException;
+
+		/**
+		 * Moves to the next edge.
+		 * 
+		 * @return false if there are no more edges.
+		 */
+		boolean nextEdge() throws IOException;
+
+		/**
+		 * Identifier of the current edge.
+		 */
+		String getEdgeId();
+
+		/**
+		 * Index of the source node of the current edge.
+		 */
+		int getSourceIndex();
+
+		/**
+		 * Index of the target node of the current edge.
+		 */
+		int getTargetIndex();
+
+		/**
+		 * Whether the current edge is directed.
+		 */
+		boolean isDirected();
+	}
+
+	/**
+	 * Reads the nodes and edges of a graph in memory.
+	 */
+	private static class GraphSource implements EdgeSource {
+		final Graph graph;
+		Edge edge;
+		int iNext;
+
+		GraphSource(Graph graph) {
+			this.graph = graph;
+		}
+
+		@Override
+		public String getId() {
+			return graph.getId();
+		}
+
+		@Override
+		public int getNodeCount() {
+			return graph.getNodeCount();
+		}
+
+		@Override
+		public String getNodeId(int index) {
+			return graph.getNode(index).getId();
+		}
+
+		@Override
+		public void rewind() {
+			iNext = 0;
+		}
+
+		@Override
+		public boolean nextEdge() {
+			if (iNext >= graph.getEdgeCount())
+				return false;
+			edge = graph.getEdge(iNext++);
+			return true;
+		}
+
+		@Override
+		public String getEdgeId() {
+			return edge.getId();
+		}
+
+		@Override
+		public int getSourceIndex() {
+			return edge.getSourceNode().getIndex();
+		}
+
+		@Override
+		public int getTargetIndex() {
+			return edge.getTargetNode().getIndex();
+		}
+
+		@Override
+		public boolean isDirected() {
+			return edge.isDirected();
+		}
+	}
+
+	/**
+	 * Writes a graph to a file that can then be opened as a
+	 * {@link MappedGraph}. The structure, the identifiers and the numeric
+	 * attributes of the nodes and edges are written.
+	 * 
+	 * @param source
+	 *            The graph to write.
+	 * @param file
+	 *            The file, replaced if it exists.
+	 * @throws IOException
+	 *             If the file cannot be written.
+	 * @complexity O(n + m) where n is the number of nodes and m the number of
+	 *             edges
+	 */
+	public static void write(Graph source, File file) throws IOException {
+		new Writer(new GraphSource(source), source).write(file);
+	}
+
+	/**
+	 * Writes a graph read from a source to a file that can then be opened as
+	 * a {@link MappedGraph}. The structure and the identifiers are written,
+	 * the nodes and edges have no attributes. The edges are read twice: the
+	 * first pass counts the edges of each node, the second one writes them
+	 * at their place in the file. Only three integers per node are kept in
+	 * memory, the edges are not.
+	 * 
+	 * @param source
+	 *            The nodes and edges to write.
+	 * @param file
+	 *            The file, replaced if it exists.
+	 * @throws IOException
+	 *             If the source cannot be read, gives an edge whose end
+	 *             points are not nodes, has more than
+	 *             {@code Integer.MAX_VALUE} edges or if the file cannot be
+	 *             written.
+	 * @complexity O(n + m) where n is the number of nodes and m the number of
+	 *             edges
+	 */
+	public static void write(EdgeSource source, File file) throws IOException {
+		new Writer(source, null).write(file);
+	}
+
+	/**
+	 * Computes the size of each section, then maps the file and writes the
+	 * sections at their place, so that nothing but the edge counts of the
+	 * nodes is held in memory.
+	 */
+	private static class Writer {
+		final EdgeSource source;
+		final Graph graph;
+		final int n;
+		int m;
+		final long[] sections = new long[SECTIONS];
+		final LinkedHashMap<String, Column> nodeColumns = new LinkedHashMap<>(),
+				edgeColumns = new LinkedHashMap<>();
+		ByteBuffer[] chunks;
+
+		/**
+		 * @param graph
+		 *            The graph of the source whose numeric attributes are
+		 *            written, or null.
+		 */
+		Writer(EdgeSource source, Graph graph) {
+			this.source = source;
+			this.graph = graph;
+			n = source.getNodeCount();
+		}
+
+		void write(File file) throws IOException {
+			byte[] id = source.getId().getBytes(UTF8);
+
+			// first pass, the number of edges of each node and the size of
+			// the identifiers
+			int[] in = new int[n], io = new int[n], o = new int[n];
+			long nodeIdBytes = 0, edgeIdBytes = 0, edges = 0;
+			for (int i = 0; i < n; i++)
+				nodeIdBytes += source.getNodeId(i).getBytes(UTF8).length;
+			source.rewind();
+			while (source.nextEdge()) {
+				if (edges == Integer.MAX_VALUE)
+					throw new IOException("more than " + Integer.MAX_VALUE
+							+ " edges cannot be written");
+				int s = endPoint(source.getSourceIndex());
+				int t = endPoint(source.getTargetIndex());
+				if (!source.isDirected() || s == t) {
+					io[s]++;
+					if (s != t)
+						io[t]++;
+				} else {
+					o[s]++;
+					in[t]++;
+				}
+				edgeIdBytes += source.getEdgeId().getBytes(UTF8).length;
+				edges++;
+			}
+			m = (int) edges;
+			long incidences = 0;
+			for (int i = 0; i < n; i++)
+				incidences += in[i] + io[i] + o[i];
+
+			long position = align(16 + 8 * SECTIONS + 4 + id.length);
+			position = section(OFFSETS, position, 8L * (n + 1));
+			position = section(IO_STARTS, position, 8L * n);
+			position = section(O_STARTS, position, 8L * n);
+			position = section(NEIGHBORS, position, 4 * incidences);
+			position = section(EDGES, position, 4 * incidences);
+			position = section(SOURCES, position, 4L * m);
+			position = section(TARGETS, position, 4L * m);
+			position = section(DIRECTED, position, m);
+			position = section(NODE_ID_OFFSETS, position, 8L * (n + 1));
+			position = section(NODE_IDS, position, nodeIdBytes);
+			position = section(NODE_HASH, position, 4 * hashCapacity(n));
+			position = section(EDGE_ID_OFFSETS, position, 8L * (m + 1));
+			position = section(EDGE_IDS, position, edgeIdBytes);
+			position = section(EDGE_HASH, position, 4 * hashCapacity(m));
+			if (graph != null) {
+				position = columns(false, position);
+				position = columns(true, position);
+			}
+			sections[COLUMNS] = position;
+			position += 8;
+			for (Column column : nodeColumns.values())
+				position = align(position + 28
+						+ column.key.getBytes(UTF8).length);
+			for (Column column : edgeColumns.values())
+				position = align(position + 28
+						+ column.key.getBytes(UTF8).length);
+
+			try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+					FileChannel channel = raf.getChannel()) {
+				// the new file is filled with zeros
+				raf.setLength(0);
+				raf.setLength(position);
+				chunks = new ByteBuffer[(int) ((position + CHUNK_MASK) >> CHUNK_BITS)];
+				for (int k = 0; k < chunks.length; k++) {
+					long start = (long) k << CHUNK_BITS;
+					chunks[k] = channel.map(FileChannel.MapMode.READ_WRITE,
+							start, Math.min(position - start, 1L << CHUNK_BITS));
+				}
+
+				writeStructure(in, io, o);
+				writeNodeIds();
+				if (graph != null)
+					writeValues();
+				writeColumns();
+				// the header last, an incomplete file cannot be opened
+				putInt(8, n);
+				putInt(12, m);
+				for (int s = 0; s < SECTIONS; s++)
+					putLong(16 + 8 * s, sections[s]);
+				putInt(16 + 8 * SECTIONS, id.length);
+				putBytes(16 + 8 * SECTIONS + 4, id);
+				putInt(4, VERSION);
+				putInt(0, MAGIC);
+			} finally {
+				chunks = null;
+			}
+		}
+
+		int endPoint(int node) throws IOException {
+			if (node < 0 || node >= n)
+				throw new IOException("Edge \"" + source.getEdgeId()
+						+ "\" has no node " + node);
+			return node;
+		}
+
+		long section(int section, long position, long size) {
+			sections[section] = position;
+			return align(position + size);
+		}
+
+		void putInt(long position, int v) {
+			chunks[(int) (position >>> CHUNK_BITS)].putInt(
+					(int) (position & CHUNK_MASK), v);
+		}
+
+		void putLong(long position, long v) {
+			chunks[(int) (position >>> CHUNK_BITS)].putLong(
+					(int) (position & CHUNK_MASK), v);
+		}
+
+		void putByte(long position, byte v) {
+			chunks[(int) (position >>> CHUNK_BITS)].put(
+					(int) (position & CHUNK_MASK), v);
+		}
+
+		int getInt(long position) {
+			return chunks[(int) (position >>> CHUNK_BITS)]
+					.getInt((int) (position & CHUNK_MASK));
+		}
+
+		long getLong(long position) {
+			return chunks[(int) (position >>> CHUNK_BITS)]
+					.getLong((int) (position & CHUNK_MASK));
+		}
+
+		void putBytes(long position, byte[] bytes) {
+			for (int i = 0; i < bytes.length;) {
+				ByteBuffer chunk = chunks[(int) ((position + i) >>> CHUNK_BITS)]
+						.duplicate();
+				chunk.position((int) ((position + i) & CHUNK_MASK));
+				int k = Math.min(bytes.length - i, chunk.remaining());
+				chunk.put(bytes, i, k);
+				i += k;
+			}
+		}
+
+		/**
+		 * Second pass over the edges. The counts of the first pass are
+		 * reused as the number of edges already placed in each part of the
+		 * incidences of a node, which gives the same layout as the arrays of
+		 * {@link CompactGraph}.
+		 */
+		void writeStructure(int[] in, int[] io, int[] o) throws IOException {
+			long offset = 0;
+			for (int i = 0; i < n; i++) {
+				putLong(sections[OFFSETS] + 8L * i, offset);
+				offset += in[i];
+				putLong(sections[IO_STARTS] + 8L * i, offset);
+				offset += io[i];
+				putLong(sections[O_STARTS] + 8L * i, offset);
+				offset += o[i];
+			}
+			putLong(sections[OFFSETS] + 8L * n, offset);
+			Arrays.fill(in, 0);
+			Arrays.fill(io, 0);
+			Arrays.fill(o, 0);
+
+			long idOffset = 0, mask = hashCapacity(m) - 1;
+			source.rewind();
+			for (int j = 0; j < m; j++) {
+				if (!source.nextEdge())
+					throw new IOException(
+							"the source gave fewer edges in the second pass");
+				int s = endPoint(source.getSourceIndex());
+				int t = endPoint(source.getTargetIndex());
+				boolean directed = source.isDirected();
+				putInt(sections[SOURCES] + 4L * j, s);
+				putInt(sections[TARGETS] + 4L * j, t);
+				if (directed)
+					putByte(sections[DIRECTED] + j, (byte) 1);
+				if (!directed || s == t) {
+					incidence(start(IO_STARTS, s) + io[s]++, t, j);
+					if (s != t)
+						incidence(start(IO_STARTS, t) + io[t]++, s, j);
+				} else {
+					incidence(start(O_STARTS, s) + o[s]++, t, j);
+					incidence(start(OFFSETS, t) + in[t]++, s, j);
+				}
+				idOffset = putId(EDGE_ID_OFFSETS, EDGE_IDS, EDGE_HASH, mask,
+						j, source.getEdgeId(), idOffset);
+			}
+			if (source.nextEdge())
+				throw new IOException(
+						"the source gave more edges in the second pass");
+			putLong(sections[EDGE_ID_OFFSETS] + 8L * m, idOffset);
+		}
+
+		long start(int section, int node) {
+			return getLong(sections[section] + 8L * node);
+		}
+
+		void incidence(long position, int neighbor, int edge) {
+			putInt(sections[NEIGHBORS] + 4L * position, neighbor);
+			putInt(sections[EDGES] + 4L * position, edge);
+		}
+
+		void writeNodeIds() {
+			long idOffset = 0, mask = hashCapacity(n) - 1;
+			for (int i = 0; i < n; i++)
+				idOffset = putId(NODE_ID_OFFSETS, NODE_IDS, NODE_HASH, mask, i,
+						source.getNodeId(i), idOffset);
+			putLong(sections[NODE_ID_OFFSETS] + 8L * n, idOffset);
+		}
+
+		/**
+		 * Writes the identifier of an element and adds it to the hash index.
+		 * 
+		 * @return The offset of the next identifier.
+		 */
+		long putId(int idOffsets, int idBytes, int hash, long mask, int index,
+				String id, long offset) {
+			byte[] bytes = id.getBytes(UTF8);
+			putLong(sections[idOffsets] + 8L * index, offset);
+			putBytes(sections[idBytes] + offset, bytes);
+			long slot = hash(id) & mask;
+			while (getInt(sections[hash] + 4L * slot) != 0)
+				slot = (slot + 1) & mask;
+			putInt(sections[hash] + 4L * slot, index + 1);
+			return offset + bytes.length;
+		}
+
+		/**
+		 * Finds the numeric attributes of the nodes or the edges of the
+		 * graph, and places their presence bits and values.
+		 * 
+		 * @return The position after the columns.
+		 */
+		long columns(boolean edge, long position) {
+			int count = edge ? m : n;
+			LinkedHashMap<String, Boolean> integral = new LinkedHashMap<>();
+			for (int i = 0; i < count; i++) {
+				Element e = edge ? graph.getEdge(i) : graph.getNode(i);
+				for (String key : e.getAttributeKeySet()) {
+					Object value = e.getAttribute(key);
+					if (value instanceof Number)
+						integral.put(key, integral(value)
+								&& !Boolean.FALSE.equals(integral.get(key)));
+				}
+			}
+			for (String key : integral.keySet()) {
+				long present = position;
+				long values = align(present + 8L * ((count >> 6) + 1));
+				position = align(values + 8L * count);
+				(edge ? edgeColumns : nodeColumns).put(key, new Column(key,
+						integral.get(key), present, values));
+			}
+			return position;
+		}
+
+		static boolean integral(Object value) {
+			return value instanceof Long || value instanceof Integer
+					|| value instanceof Short || value instanceof Byte;
+		}
+
+		void writeValues() {
+			for (int edge = 0; edge < 2; edge++) {
+				LinkedHashMap<String, Column> columns = edge == 0 ? nodeColumns
+						: edgeColumns;
+				int count = edge == 0 ? n : m;
+				for (int i = 0; i < count && !columns.isEmpty(); i++) {
+					Element e = edge == 0 ? graph.getNode(i) : graph.getEdge(i);
+					for (String key : e.getAttributeKeySet()) {
+						Object value = e.getAttribute(key);
+						if (!(value instanceof Number))
+							continue;
+						Column column = columns.get(key);
+						Number number = (Number) value;
+						long bits = column.present + 8L * (i >> 6);
+						putLong(bits, getLong(bits) | (1L << i));
+						putLong(column.values + 8L * i,
+								column.integral ? number.longValue() : Double
+										.doubleToRawLongBits(number
+												.doubleValue()));
+					}
+				}
+			}
+		}
+
+		/**
+		 * The directory of the columns read when opening the file.
+		 */
+		void writeColumns() {
+			long position = sections[COLUMNS];
+			putInt(position, nodeColumns.size() + edgeColumns.size());
+			position += 8;
+			for (int edge = 0; edge < 2; edge++)
+				for (Column column : (edge == 0 ? nodeColumns : edgeColumns)
+						.values()) {
+					byte[] key = column.key.getBytes(UTF8);
+					putInt(position, edge);
+					putInt(position + 4, column.integral ? 1 : 0);
+					putLong(position + 8, column.present);
+					putLong(position + 16, column.values);
+					putInt(position + 24, key.length);
+					putBytes(position + 28, key);
+					position = align(position + 28 + key.length);
+				}
+		}
+	}
+
+	// *** Structure changes are not supported ***
+
+	static UnsupportedOperationException immutable() {
+		return new UnsupportedOperationException(
+				"the structure of a mapped graph cannot be changed");
+	}
+
+	@Override
+	public <T extends Node> T addNode(String id) {
+		throw immutable();
+	}
+
+	@Override
+	protected <T extends Edge> T addEdge(String edgeId, AbstractNode src,
+			String srcId, AbstractNode dst, String dstId, boolean directed) {
+		throw immutable();
+	}
+
+	@Override
+	protected void removeNode(AbstractNode node, boolean graphCallback) {
+		throw immutable();
+	}
+
+	@Override
+	protected void removeEdge(AbstractEdge edge, boolean graphCallback,
+			boolean sourceCallback, boolean targetCallback) {
+		throw immutable();
+	}
+
+	@Override
+	public void clear() {
+		throw immutable();
+	}
+
+	@Override
+	public void bulkLoad(String[] nodeIds, String[] edgeIds, String[] sources,
+			String[] targets, boolean[] directed) {
+		throw immutable();
+	}
+
+	@Override
+	protected void addNodeCallback(AbstractNode node) {
+		throw immutable();
+	}
+
+	@Override
+	protected void addEdgeCallback(AbstractEdge edge) {
+		throw immutable();
+	}
+
+	@Override
+	protected void removeNodeCallback(AbstractNode node) {
+		throw immutable();
+	}
+
+	@Override
+	protected void removeEdgeCallback(AbstractEdge edge) {
+		throw immutable();
+	}
+
+	@Override
+	protected void clearCallback() {
+		throw immutable();
+	}
+}
@@ -0,0 +1,312 @@
+/*
+ * Copyright 2006 - 2013
+ *     Stefan Balev     <stefan.balev@graphstream-project.org>
+ *     Julien Baudry    <julien.baudry@graphstream-project.org>
+ *     Antoine Dutot    <antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné      <yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin   <guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.graph.implementations;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.graphstream.graph.Edge;
+import org.graphstream.graph.IndexConsumer;
+import org.graphstream.graph.Node;
+
+/**
+ * Nodes of a {@link MappedGraph}. They are created on demand and read their
+ * edges and numeric attributes from the mapped file. Two nodes with the same
+ * index are equal.
+ */
+public class MappedNode extends AbstractNode {
+
+	protected MappedNode(MappedGraph graph, String id, int index) {
+		super(graph, id);
+		setIndex(index);
+		attributeState = READ_ONLY;
+	}
+
+	// *** Helpers ***
+
+	private MappedGraph mapped() {
+		return (MappedGraph) graph;
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T extends Edge> T locateEdge(Node opposite, long from, long to) {
+		MappedGraph g = mapped();
+		if (opposite == null || opposite.getGraph() != g)
+			return null;
+		int j = opposite.getIndex();
+		for (long p = from; p < to; p++)
+			if (g.neighborAt(p) == j)
+				return (T) g.edge(g.edgeAt(p), this);
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T extends Edge> T edgeAt(long from, long to, int i) {
+		if (i < 0 || from + i >= to)
+			throw new IndexOutOfBoundsException("Node \"" + this + "\""
+					+ " has no edge " + i);
+		MappedGraph g = mapped();
+		return (T) g.edge(g.edgeAt(from + i), this);
+	}
+
+	// *** Attributes ***
+
+	@Override
+	Object lookup(String key) {
+		return mapped().getValue(this, key);
+	}
+
+	@Override
+	boolean hasNoAttributes() {
+		return false;
+	}
+
+	@Override
+	public boolean hasAttribute(String key) {
+		return key != null && mapped().hasValue(this, key);
+	}
+
+	@Override
+	public Collection<String> getAttributeKeySet() {
+		return mapped().getKeys(this);
+	}
+
+	@Override
+	public Iterator<String> getAttributeKeyIterator() {
+		return getAttributeKeySet().iterator();
+	}
+
+	@Override
+	public int getAttributeCount() {
+		return getAttributeKeySet().size();
+	}
+
+	// *** Callbacks ***
+
+	@Override
+	protected boolean addEdgeCallback(AbstractEdge edge) {
+		throw MappedGraph.immutable();
+	}
+
+	@Override
+	protected void removeEdgeCallback(AbstractEdge edge) {
+		throw MappedGraph.immutable();
+	}
+
+	@Override
+	protected void clearCallback() {
+		throw MappedGraph.immutable();
+	}
+
+	// *** Access methods ***
+
+	@Override
+	public int getDegree() {
+		return mapped().getDegree(getIndex());
+	}
+
+	@Override
+	public int getInDegree() {
+		return mapped().getInDegree(getIndex());
+	}
+
+	@Override
+	public int getOutDegree() {
+		return mapped().getOutDegree(getIndex());
+	}
+
+	@Override
+	public <T extends Edge> T getEdge(int i) {
+		MappedGraph g = mapped();
+		int k = getIndex();
+		return edgeAt(g.offset(k), g.offset(k + 1), i);
+	}
+
+	@Override
+	public <T extends Edge> T getEnteringEdge(int i) {
+		MappedGraph g = mapped();
+		int k = getIndex();
+		return edgeAt(g.offset(k), g.oStart(k), i);
+	}
+
+	@Override
+	public <T extends Edge> T getLeavingEdge(int i) {
+		MappedGraph g = mapped();
+		int k = getIndex();
+		return edgeAt(g.ioStart(k), g.offset(k + 1), i);
+	}
+
+	private void forEachNeighbor(long from, long to, IndexConsumer action) {
+		MappedGraph g = mapped();
+		for (long p = from; p < to; p++)
+			action.accept(g.neighborAt(p));
+	}
+
+	private int copyNeighbors(long from, long to, int[] buf) {
+		MappedGraph g = mapped();
+		for (long p = from, end = Math.min(to, from + buf.length); p < end; p++)
+			buf[(int) (p - from)] = g.neighborAt(p);
+		return (int) (to - from);
+	}
+
+	@Override
+	public void forEachNeighborIndex(IndexConsumer action) {
+		MappedGraph g = mapped();
+		int k = getIndex();
+		forEachNeighbor(g.offset(k), g.offset(k + 1), action);
+	}
+
+	@Override
+	public void forEachEnteringNeighborIndex(IndexConsumer action) {
+		MappedGraph g = mapped();
+		int k = getIndex();
+		forEachNeighbor(g.offset(k), g.oStart(k), action);
+	}
+
+	@Override
+	public void forEachLeavingNeighborIndex(IndexConsumer action) {
+		MappedGraph g = mapped();
+		int k = getIndex();
+		forEachNeighbor(g.ioStart(k), g.offset(k + 1), action);
+	}
+
+	@Override
+	public int neighborIndices(int[] buf) {
+		MappedGraph g = mapped();
+		int k = getIndex();
+		return copyNeighbors(g.offset(k), g.offset(k + 1), buf);
+	}
+
+	@Override
+	public int enteringNeighborIndices(int[] buf) {
+		MappedGraph g = mapped();
+		int k = getIndex();
+		return copyNeighbors(g.offset(k), g.oStart(k), buf);
+	}
+
+	@Override
+	public int leavingNeighborIndices(int[] buf) {
+		MappedGraph g = mapped();
+		int k = getIndex();
+		return copyNeighbors(g.ioStart(k), g.offset(k + 1), buf);
+	}
+
+	@Override
+	public <T extends Edge> T getEdgeBetween(Node node) {
+		MappedGraph g = mapped();
+		int k = getIndex();
+		return locateEdge(node, g.offset(k), g.offset(k + 1));
+	}
+
+	@Override
+	public <T extends Edge> T getEdgeFrom(Node node) {
+		MappedGraph g = mapped();
+		int k = getIndex();
+		return locateEdge(node, g.offset(k), g.oStart(k));
+	}
+
+	@Override
+	public <T extends Edge> T getEdgeToward(Node node) {
+		MappedGraph g = mapped();
+		int k = getIndex();
+		return locateEdge(node, g.ioStart(k), g.offset(k + 1));
+	}
+
+	// *** Iterators ***
+
+	/**
+	 * Iterates over the edges stored at some positions of the incidences of
+	 * the graph.
+	 */
+	protected class EdgeIterator<T extends Edge> implements Iterator<T> {
+		protected long iNext, iEnd;
+
+		protected EdgeIterator(long from, long to) {
+			iNext = from;
+			iEnd = to;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return iNext < iEnd;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public T next() {
+			if (iNext >= iEnd)
+				throw new NoSuchElementException();
+			MappedGraph g = mapped();
+			return (T) g.edge(g.edgeAt(iNext++), MappedNode.this);
+		}
+
+		@Override
+		public void remove() {
+			throw MappedGraph.immutable();
+		}
+	}
+
+	@Override
+	public <T extends Edge> Iterator<T> getEdgeIterator() {
+		MappedGraph g = mapped();
+		int k = getIndex();
+		return new EdgeIterator<T>(g.offset(k), g.offset(k + 1));
+	}
+
+	@Override
+	public <T extends Edge> Iterator<T> getEnteringEdgeIterator() {
+		MappedGraph g = mapped();
+		int k = getIndex();
+		return new EdgeIterator<T>(g.offset(k), g.oStart(k));
+	}
+
+	@Override
+	public <T extends Edge> Iterator<T> getLeavingEdgeIterator() {
+		MappedGraph g = mapped();
+		int k = getIndex();
+		return new EdgeIterator<T>(g.ioStart(k), g.offset(k + 1));
+	}
+
+	// *** Identity ***
+
+	@Override
+	public boolean equals(Object o) {
+		return o instanceof MappedNode && ((MappedNode) o).graph == graph
+				&& ((MappedNode) o).getIndex() == getIndex();
+	}
+
+	@Override
+	public int hashCode() {
+		return getIndex();
+	}
+}
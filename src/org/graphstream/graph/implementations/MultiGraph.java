@@ -32,7 +32,6 @@
 package org.graphstream.graph.implementations;
 
 import org.graphstream.graph.Graph;
-import org.graphstream.graph.NodeFactory;
 
 /**
  * A graph implementation that supports multiple edges between two nodes.
@@ -61,19 +60,48 @@ public class MultiGraph extends AdjacencyListGraph {
 	 *            if you know the approximate maximum number of edges of the
 	 *            graph. The graph can grow beyond this limit, but storage
 	 *            reallocation is expensive operation.
+	 * @param indexType
+	 *            How nodes and edges are indexed by identifier.
 	 */
 	public MultiGraph(String id, boolean strictChecking, boolean autoCreate,
-			int initialNodeCapacity, int initialEdgeCapacity) {
+			int initialNodeCapacity, int initialEdgeCapacity,
+			IdIndexType indexType) {
 		super(id, strictChecking, autoCreate, initialNodeCapacity,
-				initialEdgeCapacity);
+				initialEdgeCapacity, indexType);
 		// All we need to do is to change the node factory
-		setNodeFactory(new NodeFactory<MultiNode>() {
+		setNodeFactory(new NumericNodeFactory<MultiNode>() {
 			public MultiNode newInstance(String id, Graph graph) {
 				return new MultiNode((AbstractGraph) graph, id);
 			}
+
+			MultiNode newInstance(long id, Graph graph) {
+				return new MultiNode((AbstractGraph) graph, id);
+			}
 		});
 	}
 
+	/**
+	 * Creates an empty graph indexed with {@link IdIndexType#HASH}.
+	 * 
+	 * @param id
+	 *            Unique identifier of the graph.
+	 * @param strictChecking
+	 *            If true any non-fatal error throws an exception.
+	 * @param autoCreate
+	 *            If true (and strict checking is false), nodes are
+	 *            automatically created when referenced when creating a edge,
+	 *            even if not yet inserted in the graph.
+	 * @param initialNodeCapacity
+	 *            Initial capacity of the node storage data structures.
+	 * @param initialEdgeCapacity
+	 *            Initial capacity of the edge storage data structures.
+	 */
+	public MultiGraph(String id, boolean strictChecking, boolean autoCreate,
+			int initialNodeCapacity, int initialEdgeCapacity) {
+		this(id, strictChecking, autoCreate, initialNodeCapacity,
+				initialEdgeCapacity, IdIndexType.HASH);
+	}
+
 	/**
 	 * Creates an empty graph with default edge and node capacity.
 	 * 
@@ -31,93 +31,96 @@
  */
 package org.graphstream.graph.implementations;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 import org.graphstream.graph.Edge;
 import org.graphstream.graph.Node;
 
 /**
- * Nodes used with {@link MultiGraph}
- *
+ * Nodes used with {@link MultiGraph}. The edges are grouped by neighbor in a
+ * {@link NeighborIndex} built with the first edge, so that parallel edges can
+ * be found without scanning all the edges of the node.
  */
 public class MultiNode extends AdjacencyListNode {
-	protected HashMap<AbstractNode, List<AbstractEdge>> neighborMap;
 
 	// *** Constructor ***
 
 	public MultiNode(AbstractGraph graph, String id) {
 		super(graph, id);
-		neighborMap = new HashMap<AbstractNode, List<AbstractEdge>>(
-				4 * INITIAL_EDGE_CAPACITY / 3 + 1);
 	}
 
-	// *** Helpers ***
-
-	@SuppressWarnings("unchecked")
-	@Override
-	protected <T extends Edge> T locateEdge(Node opposite, char type) {
-		List<AbstractEdge> l = neighborMap.get(opposite);
-		if (l == null)
-			return null;
-
-		for (AbstractEdge e : l) {
-			char etype = edgeType(e);
-			if ((type != I_EDGE || etype != O_EDGE)
-					&& (type != O_EDGE || etype != I_EDGE))
-				return (T) e;
-		}
-		return null;
-	}
-
-	@Override
-	protected void removeEdge(int i) {
-		AbstractNode opposite = edges[i].getOpposite(this);
-		List<AbstractEdge> l = neighborMap.get(opposite);
-		l.remove(edges[i]);
-		if (l.isEmpty())
-			neighborMap.remove(opposite);
-		super.removeEdge(i);
+	public MultiNode(AbstractGraph graph, long id) {
+		super(graph, id);
 	}
 
-	// *** Callbacks ***
-
-	@Override
-	protected boolean addEdgeCallback(AbstractEdge edge) {
-		AbstractNode opposite = edge.getOpposite(this);
-		List<AbstractEdge> l = neighborMap.get(opposite);
-		if (l == null) {
-			l = new LinkedList<AbstractEdge>();
-			neighborMap.put(opposite, l);
-		}
-		l.add(edge);
-		return super.addEdgeCallback(edge);
-	}
+	// *** Helpers ***
 
 	@Override
-	protected void clearCallback() {
-		neighborMap.clear();
-		super.clearCallback();
+	protected int neighborIndexThreshold() {
+		// parallel edges are always grouped
+		return 0;
 	}
 
 	// *** Others ***
 
-	@SuppressWarnings("unchecked")
 	@Override
 	public <T extends Node> Iterator<T> getNeighborNodeIterator() {
-		return (Iterator<T>) Collections.unmodifiableSet(neighborMap.keySet())
-				.iterator();
+		if (neighbors == null)
+			return Collections.<T> emptyList().iterator();
+
+		return new Iterator<T>() {
+			final NeighborIndex index = neighbors;
+			int next = -1;
+			{
+				gotoNext();
+			}
+
+			private void gotoNext() {
+				do
+					next++;
+				while (next < index.capacity() && index.neighborAt(next) < 0);
+			}
+
+			public boolean hasNext() {
+				return next < index.capacity();
+			}
+
+			public T next() {
+				if (next >= index.capacity())
+					throw new NoSuchElementException();
+				T node = graph.getNode(index.neighborAt(next));
+				gotoNext();
+				return node;
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
 	}
 
+	/**
+	 * The edges between this node and another one, in the order they were
+	 * added. The returned collection is a read-only copy.
+	 * 
+	 * @param node
+	 *            the other node
+	 * @return the edges between the two nodes, empty if there is none
+	 */
 	@SuppressWarnings("unchecked")
 	public <T extends Edge> Collection<T> getEdgeSetBetween(Node node) {
-		List<AbstractEdge> l = neighborMap.get(node);
-		if (l == null)
+		if (neighbors == null || node == null)
+			return Collections.emptyList();
+		int i = node.getIndex();
+		// the node may belong to another graph
+		if (i < 0 || i >= graph.getNodeCount() || graph.getNode(i) != node)
 			return Collections.emptyList();
+		List<AbstractEdge> l = Arrays.asList(neighbors.edges(i));
 		return (Collection<T>) Collections.unmodifiableList(l);
 	}
 
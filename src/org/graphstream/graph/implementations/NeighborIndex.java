@@ -0,0 +1,330 @@
+/*
+ * Copyright 2006 - 2013
+ *     Stefan Balev     <stefan.balev@graphstream-project.org>
+ *     Julien Baudry    <julien.baudry@graphstream-project.org>
+ *     Antoine Dutot    <antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné      <yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin   <guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.graph.implementations;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * An open-addressing hash index of the neighbors of a node, keyed by the
+ * index of the neighbor in the graph. It is used by {@link AdjacencyListNode}
+ * when its degree is high, so that finding the edges toward a given node does
+ * not need to scan all the edges of hubs, and by {@link MultiNode} to group
+ * parallel edges.
+ * </p>
+ * 
+ * <p>
+ * Each bucket holds the edges between the node and one neighbor, in insertion
+ * order. A single edge is stored directly in the bucket and several edges in
+ * a small array that grows when needed, so that simple graphs allocate
+ * nothing per edge. Since node indices change when a node is removed from
+ * the graph, {@link #move(int, int)} must be called for the neighbors of moved
+ * nodes.
+ * </p>
+ */
+final class NeighborIndex {
+	/**
+	 * Maximum ratio between the number of entries and the table length.
+	 */
+	private static final double LOAD_FACTOR = 0.5;
+
+	/**
+	 * Index of the neighbor plus one, zero marks an empty bucket.
+	 */
+	private int[] keys;
+
+	/**
+	 * Number of edges between the node and each neighbor.
+	 */
+	private int[] counts;
+
+	/**
+	 * The edge toward each neighbor if there is only one, else an array of
+	 * edges.
+	 */
+	private Object[] edges;
+
+	private int mask;
+	private int size;
+	private int threshold;
+
+	/**
+	 * Creates an index able to hold {@code expectedSize} neighbors without
+	 * rehashing.
+	 */
+	NeighborIndex(int expectedSize) {
+		int length = 4;
+		while (length * LOAD_FACTOR < expectedSize && length < (1 << 30))
+			length <<= 1;
+		allocate(length);
+	}
+
+	// *** Helpers ***
+
+	private static int mix(int h) {
+		h *= 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	private void allocate(int length) {
+		keys = new int[length];
+		counts = new int[length];
+		edges = new Object[length];
+		mask = length - 1;
+		threshold = (int) (length * LOAD_FACTOR);
+	}
+
+	private void rehash(int length) {
+		int[] oldKeys = keys;
+		int[] oldCounts = counts;
+		Object[] oldEdges = edges;
+		allocate(length);
+		for (int i = 0; i < oldKeys.length; i++)
+			if (oldKeys[i] != 0) {
+				int j = free(oldKeys[i]);
+				keys[j] = oldKeys[i];
+				counts[j] = oldCounts[i];
+				edges[j] = oldEdges[i];
+			}
+	}
+
+	private int free(int key) {
+		int i = mix(key) & mask;
+		while (keys[i] != 0)
+			i = (i + 1) & mask;
+		return i;
+	}
+
+	private int bucketOf(int neighbor) {
+		int key = neighbor + 1;
+		int i = mix(key) & mask;
+		int k;
+		while ((k = keys[i]) != 0) {
+			if (k == key)
+				return i;
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+
+	private void delete(int i) {
+		// backward shift the following entries of the cluster
+		int j = i;
+		while (true) {
+			j = (j + 1) & mask;
+			if (keys[j] == 0)
+				break;
+			int home = mix(keys[j]) & mask;
+			// move j to i only if its home bucket is not in ]i, j]
+			if (i <= j ? (home <= i || home > j) : (home <= i && home > j)) {
+				keys[i] = keys[j];
+				counts[i] = counts[j];
+				edges[i] = edges[j];
+				i = j;
+			}
+		}
+		keys[i] = 0;
+		edges[i] = null;
+		size--;
+	}
+
+	private AbstractEdge edgeAt(int i, int k) {
+		return counts[i] == 1 ? (AbstractEdge) edges[i]
+				: ((AbstractEdge[]) edges[i])[k];
+	}
+
+	// *** Access ***
+
+	/**
+	 * Number of distinct neighbors.
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Number of edges between the node and a neighbor.
+	 * 
+	 * @complexity O(1) on average
+	 */
+	int count(int neighbor) {
+		int i = bucketOf(neighbor);
+		return i < 0 ? 0 : counts[i];
+	}
+
+	/**
+	 * The first edge between a node and a neighbor that can be used in the
+	 * given directions. Undirected edges and loops can be used in both.
+	 * 
+	 * @param node
+	 *            The node owning this index.
+	 * @param entering
+	 *            If the edge must enter the node.
+	 * @param leaving
+	 *            If the edge must leave the node.
+	 * @return The edge or {@code null} if there is none.
+	 * @complexity O(1) on average, plus the number of parallel edges
+	 */
+	AbstractEdge find(int neighbor, AbstractNode node, boolean entering,
+			boolean leaving) {
+		int i = bucketOf(neighbor);
+		if (i < 0)
+			return null;
+		for (int k = 0; k < counts[i]; k++) {
+			AbstractEdge e = edgeAt(i, k);
+			if (!e.directed || e.source == e.target
+					|| ((!entering || e.target == node) && (!leaving || e.source == node)))
+				return e;
+		}
+		return null;
+	}
+
+	/**
+	 * Copy of the edges between the node and a neighbor, in the order they
+	 * were added.
+	 */
+	AbstractEdge[] edges(int neighbor) {
+		int i = bucketOf(neighbor);
+		if (i < 0)
+			return new AbstractEdge[0];
+		if (counts[i] == 1)
+			return new AbstractEdge[] { (AbstractEdge) edges[i] };
+		return Arrays.copyOf((AbstractEdge[]) edges[i], counts[i]);
+	}
+
+	/**
+	 * Length of the table, for iterating with {@link #neighborAt(int)}.
+	 */
+	int capacity() {
+		return keys.length;
+	}
+
+	/**
+	 * Neighbor stored in a bucket.
+	 * 
+	 * @return The index of the neighbor or -1 if the bucket is empty.
+	 */
+	int neighborAt(int bucket) {
+		return keys[bucket] - 1;
+	}
+
+	// *** Modification ***
+
+	/**
+	 * Adds an edge between the node and a neighbor.
+	 */
+	void add(int neighbor, AbstractEdge edge) {
+		int i = bucketOf(neighbor);
+		if (i < 0) {
+			if (size >= threshold)
+				rehash(keys.length << 1);
+			i = free(neighbor + 1);
+			keys[i] = neighbor + 1;
+			counts[i] = 1;
+			edges[i] = edge;
+			size++;
+			return;
+		}
+
+		int count = counts[i];
+		AbstractEdge[] bucket;
+		if (count == 1) {
+			bucket = new AbstractEdge[2];
+			bucket[0] = (AbstractEdge) edges[i];
+			edges[i] = bucket;
+		} else {
+			bucket = (AbstractEdge[]) edges[i];
+			if (count == bucket.length) {
+				bucket = Arrays.copyOf(bucket, count << 1);
+				edges[i] = bucket;
+			}
+		}
+		bucket[count] = edge;
+		counts[i] = count + 1;
+	}
+
+	/**
+	 * Removes an edge between the node and a neighbor.
+	 */
+	void remove(int neighbor, AbstractEdge edge) {
+		int i = bucketOf(neighbor);
+		if (i < 0)
+			return;
+		int count = counts[i];
+		if (count == 1) {
+			if (edges[i] == edge)
+				delete(i);
+			return;
+		}
+
+		AbstractEdge[] bucket = (AbstractEdge[]) edges[i];
+		int k = 0;
+		while (k < count && bucket[k] != edge)
+			k++;
+		if (k == count)
+			return;
+		// keep the insertion order
+		System.arraycopy(bucket, k + 1, bucket, k, count - k - 1);
+		bucket[--count] = null;
+		counts[i] = count;
+		if (count == 1)
+			edges[i] = bucket[0];
+		else if (count <= bucket.length >> 2)
+			edges[i] = Arrays.copyOf(bucket, bucket.length >> 1);
+	}
+
+	/**
+	 * Removes all the edges between the node and a neighbor.
+	 */
+	void removeAll(int neighbor) {
+		int i = bucketOf(neighbor);
+		if (i >= 0)
+			delete(i);
+	}
+
+	/**
+	 * Changes the index of a neighbor that has been moved in the graph.
+	 */
+	void move(int from, int to) {
+		int i = bucketOf(from);
+		if (i < 0)
+			return;
+		int count = counts[i];
+		Object e = edges[i];
+		delete(i);
+		int j = free(to + 1);
+		keys[j] = to + 1;
+		counts[j] = count;
+		edges[j] = e;
+		size++;
+	}
+}
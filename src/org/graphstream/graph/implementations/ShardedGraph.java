@@ -0,0 +1,790 @@
+/*
+ * Copyright 2006 - 2013
+ *     Stefan Balev     <stefan.balev@graphstream-project.org>
+ *     Julien Baudry    <julien.baudry@graphstream-project.org>
+ *     Antoine Dutot    <antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné      <yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin   <guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.graph.implementations;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.graphstream.graph.Edge;
+import org.graphstream.graph.ElementNotFoundException;
+import org.graphstream.graph.IdAlreadyInUseException;
+import org.graphstream.graph.Node;
+import org.graphstream.stream.Sink;
+import org.graphstream.stream.SourceBase;
+
+/**
+ * <p>
+ * A graph split into shards that different threads can change at the same
+ * time without locking.
+ * </p>
+ * 
+ * <p>
+ * Each node belongs to one shard, chosen from the hash of its identifier by
+ * {@link #addNode(String)} or given explicitly to
+ * {@link #addNode(String, int)}. A shard is an {@link AdjacencyListGraph}
+ * with its own node and edge arrays and its own sinks; it holds its nodes and
+ * the edges between them. A shard is not thread-safe: it must be changed and
+ * read by a single thread at a time, typically the worker owning a community
+ * of the graph. Threads working on different shards never wait for each
+ * other. The indices of the elements are the indices in their shard.
+ * </p>
+ * 
+ * <p>
+ * Edges between nodes of different shards are stored in a boundary table
+ * shared by all the shards, as {@link BoundaryEdge}s without attributes.
+ * Adding or removing a boundary edge, and removing a node, lock this table.
+ * Node identifiers, and edge identifiers, are unique across the shards and
+ * the boundary table: they are reserved in concurrent maps before an element
+ * is added, so that an identifier used by another shard is rejected with an
+ * {@link IdAlreadyInUseException}.
+ * </p>
+ * 
+ * <p>
+ * The events of all the shards and of the boundary table are merged into a
+ * single stream sent to the sinks of this graph by {@link #pump()}. Events
+ * are stamped when they happen and sent in stamp order, so the events of a
+ * shard keep their order and a boundary edge is always announced after its
+ * nodes. The events of the shards keep their source identifier, those of the
+ * boundary table have the identifier of this graph. Events are queued until
+ * they are pumped, so {@link #pump()} must be called regularly by the thread
+ * owning the sinks, like {@link org.graphstream.stream.thread.ThreadProxyPipe}.
+ * </p>
+ * 
+ * <p>
+ * A sharded graph is not a {@link org.graphstream.graph.Graph}: its elements
+ * live in graphs owned by different threads, so there is no consistent way to
+ * iterate over all of them or to index them. It only offers the lookups
+ * above. Algorithms needing a whole graph run either on a shard, which is a
+ * graph, or on a graph fed with the merged stream, for instance an
+ * {@link AdjacencyListGraph} added as a sink and updated by {@link #pump()}.
+ * </p>
+ */
+public class ShardedGraph extends SourceBase {
+
+	/**
+	 * An edge between nodes of two different shards.
+	 */
+	public static class BoundaryEdge {
+		final String id, sourceId, targetId;
+		final int sourceShard, targetShard;
+		final boolean directed;
+
+		BoundaryEdge(String id, String sourceId, int sourceShard,
+				String targetId, int targetShard, boolean directed) {
+			this.id = id;
+			this.sourceId = sourceId;
+			this.sourceShard = sourceShard;
+			this.targetId = targetId;
+			this.targetShard = targetShard;
+			this.directed = directed;
+		}
+
+		public String getId() {
+			return id;
+		}
+
+		public String getSourceId() {
+			return sourceId;
+		}
+
+		public String getTargetId() {
+			return targetId;
+		}
+
+		/**
+		 * Index of the shard of the source node.
+		 */
+		public int getSourceShard() {
+			return sourceShard;
+		}
+
+		/**
+		 * Index of the shard of the target node.
+		 */
+		public int getTargetShard() {
+			return targetShard;
+		}
+
+		public boolean isDirected() {
+			return directed;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s[%s-%s%s]", id, sourceId, directed ? ">"
+					: "-", targetId);
+		}
+	}
+
+	/**
+	 * One part of the graph. The identifiers of its nodes and edges are
+	 * reserved in the sharded graph before they are added, its nodes are
+	 * registered in the directory of the sharded graph once they are
+	 * announced, and its events are stamped and queued for the merged stream.
+	 */
+	public class Shard extends AdjacencyListGraph {
+		final int index;
+
+		final ConcurrentLinkedQueue<Event> queue = new ConcurrentLinkedQueue<>();
+
+		Shard(int index) {
+			super(ShardedGraph.this.sourceId + "#" + index);
+			this.index = index;
+			addSink(new Recorder(this));
+		}
+
+		/**
+		 * Index of this shard in its sharded graph.
+		 */
+		public int getShardIndex() {
+			return index;
+		}
+
+		public ShardedGraph getShardedGraph() {
+			return ShardedGraph.this;
+		}
+
+		/**
+		 * Reserves the identifier of a node before it is added, so that two
+		 * shards cannot add the same node at the same time. The node is
+		 * published in {@link #directory} once its event is stamped.
+		 */
+		@Override
+		protected void addNodeCallback(AbstractNode node) {
+			String id = node.getId();
+			Shard owner = nodeIds.putIfAbsent(id, this);
+			if (owner != null && owner != this)
+				throw new IdAlreadyInUseException("id \"" + id
+						+ "\" already in use by shard " + owner.index
+						+ ". Cannot create a node.");
+			try {
+				super.addNodeCallback(node);
+			} catch (RuntimeException | Error e) {
+				if (owner == null)
+					nodeIds.remove(id, this);
+				throw e;
+			}
+		}
+
+		@Override
+		public <T extends Node> T addNode(long id) {
+			return addNode(Long.toString(id));
+		}
+
+		/**
+		 * Reserves the identifier of an edge before it is added, since edge
+		 * identifiers are unique across the shards and the boundary table.
+		 */
+		@Override
+		protected <T extends Edge> T addEdge(String edgeId, AbstractNode src,
+				String srcId, AbstractNode dst, String dstId, boolean directed) {
+			Object owner = edgeIds.putIfAbsent(edgeId, this);
+			if (owner != null && owner != this) {
+				if (isStrict())
+					throw new IdAlreadyInUseException("id \"" + edgeId
+							+ "\" already in use. Cannot create an edge.");
+				return null;
+			}
+			T edge = null;
+			try {
+				edge = super.addEdge(edgeId, src, srcId, dst, dstId, directed);
+			} finally {
+				if (owner == null && edge == null)
+					edgeIds.remove(edgeId, this);
+			}
+			return edge;
+		}
+
+		@Override
+		public void bulkLoad(String[] nodeIds, String[] edgeIds,
+				String[] sources, String[] targets, boolean[] directed) {
+			ArrayList<String> reserved = new ArrayList<>();
+			try {
+				if (edgeIds != null)
+					for (String id : edgeIds) {
+						Object owner = ShardedGraph.this.edgeIds.putIfAbsent(id,
+								this);
+						if (owner == null)
+							reserved.add(id);
+						else if (owner != this && isStrict())
+							throw new IdAlreadyInUseException("id \"" + id
+									+ "\" already in use. Cannot create an edge.");
+					}
+				super.bulkLoad(nodeIds, edgeIds, sources, targets, directed);
+			} finally {
+				// edges skipped or not reached give their identifier back
+				for (String id : reserved)
+					if (getEdge(id) == null)
+						ShardedGraph.this.edgeIds.remove(id, this);
+			}
+		}
+
+		@Override
+		protected void removeEdgeCallback(AbstractEdge edge) {
+			super.removeEdgeCallback(edge);
+			edgeIds.remove(edge.getId(), this);
+		}
+
+		@Override
+		protected void removeNode(AbstractNode node, boolean graphCallback) {
+			if (node == null)
+				return;
+			synchronized (boundary) {
+				ArrayList<BoundaryEdge> edges = incidences.get(node.getId());
+				if (edges != null)
+					for (BoundaryEdge edge : new ArrayList<>(edges))
+						removeBoundaryEdge(edge);
+				directory.remove(node.getId(), this);
+			}
+			super.removeNode(node, graphCallback);
+			// released once the removal is stamped
+			nodeIds.remove(node.getId(), this);
+		}
+
+		/**
+		 * Clearing a shard removes its nodes one by one, so that the other
+		 * shards and the merged stream are not cleared.
+		 */
+		@Override
+		public void clear() {
+			for (int i = getNodeCount() - 1; i >= 0; i--)
+				removeNode(i);
+			clearAttributes();
+		}
+	}
+
+	private static enum GraphEvents {
+		ADD_NODE, DEL_NODE, ADD_EDGE, DEL_EDGE, STEP, CLEARED, ADD_GRAPH_ATTR, CHG_GRAPH_ATTR, DEL_GRAPH_ATTR, ADD_NODE_ATTR, CHG_NODE_ATTR, DEL_NODE_ATTR, ADD_EDGE_ATTR, CHG_EDGE_ATTR, DEL_EDGE_ATTR
+	}
+
+	/**
+	 * An event waiting to be pumped.
+	 */
+	static class Event implements Comparable<Event> {
+		final long stamp;
+		final GraphEvents event;
+		final Object[] data;
+
+		Event(long stamp, GraphEvents event, Object[] data) {
+			this.stamp = stamp;
+			this.event = event;
+			this.data = data;
+		}
+
+		@Override
+		public int compareTo(Event e) {
+			return Long.compare(stamp, e.stamp);
+		}
+	}
+
+	protected final Shard[] shards;
+
+	/**
+	 * Shard of each node, once the node is announced.
+	 */
+	protected final ConcurrentHashMap<String, Shard> directory = new ConcurrentHashMap<>();
+
+	/**
+	 * Shard of each node identifier, reserved before the node is added and
+	 * released after it is removed.
+	 */
+	final ConcurrentHashMap<String, Shard> nodeIds = new ConcurrentHashMap<>();
+
+	/**
+	 * Owner of each edge identifier: the shard of the edge, or
+	 * {@link #boundary} for a boundary edge.
+	 */
+	final ConcurrentHashMap<String, Object> edgeIds = new ConcurrentHashMap<>();
+
+	/**
+	 * The boundary edges, also used as the lock of the boundary table.
+	 */
+	protected final LinkedHashMap<String, BoundaryEdge> boundary = new LinkedHashMap<>();
+
+	/**
+	 * Boundary edges of each node, guarded by {@link #boundary}.
+	 */
+	protected final HashMap<String, ArrayList<BoundaryEdge>> incidences = new HashMap<>();
+
+	/**
+	 * Events of the boundary table, stamped under its lock.
+	 */
+	final ConcurrentLinkedQueue<Event> boundaryQueue = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * Stamp of the next event.
+	 */
+	final AtomicLong stamps = new AtomicLong();
+
+	/**
+	 * Events taken from the queues whose predecessors are not queued yet, and
+	 * stamp of the next event to send. Only used by the pumping thread.
+	 */
+	private final PriorityQueue<Event> pending = new PriorityQueue<>();
+	private long next = 0;
+
+	/**
+	 * Creates a graph with a given number of shards.
+	 * 
+	 * @param id
+	 *            Identifier of the graph.
+	 * @param shardCount
+	 *            Number of shards.
+	 */
+	public ShardedGraph(String id, int shardCount) {
+		super(id);
+		if (shardCount < 1)
+			throw new IllegalArgumentException("at least one shard is needed");
+		shards = new Shard[shardCount];
+		for (int i = 0; i < shardCount; i++)
+			shards[i] = new Shard(i);
+	}
+
+	// Access
+
+	public int getShardCount() {
+		return shards.length;
+	}
+
+	public Shard getShard(int index) {
+		return shards[index];
+	}
+
+	/**
+	 * The shard {@link #addNode(String)} puts a node in.
+	 */
+	public int getShardIndex(String nodeId) {
+		return (nodeId.hashCode() & 0x7fffffff) % shards.length;
+	}
+
+	/**
+	 * The shard of a node.
+	 * 
+	 * @return The shard or {@code null} if there is no such node.
+	 */
+	public Shard getShardOf(String nodeId) {
+		return directory.get(nodeId);
+	}
+
+	/**
+	 * A node of any shard. The shard of the node must not be changed by
+	 * another thread while the node is read.
+	 * 
+	 * @return The node or {@code null} if there is no such node.
+	 */
+	public <T extends Node> T getNode(String id) {
+		Shard shard = directory.get(id);
+		return shard == null ? null : shard.<T> getNode(id);
+	}
+
+	/**
+	 * Number of nodes of all the shards.
+	 */
+	public int getNodeCount() {
+		return directory.size();
+	}
+
+	/**
+	 * Number of edges of all the shards and of boundary edges. The shards
+	 * must not be changed during the call.
+	 */
+	public int getEdgeCount() {
+		int count = getBoundaryEdgeCount();
+		for (Shard shard : shards)
+			count += shard.getEdgeCount();
+		return count;
+	}
+
+	public int getBoundaryEdgeCount() {
+		synchronized (boundary) {
+			return boundary.size();
+		}
+	}
+
+	/**
+	 * @return The boundary edge or {@code null} if there is no such edge.
+	 */
+	public BoundaryEdge getBoundaryEdge(String id) {
+		synchronized (boundary) {
+			return boundary.get(id);
+		}
+	}
+
+	/**
+	 * A copy of the boundary edges.
+	 */
+	public Collection<BoundaryEdge> getBoundaryEdges() {
+		synchronized (boundary) {
+			return new ArrayList<>(boundary.values());
+		}
+	}
+
+	/**
+	 * A copy of the boundary edges of a node.
+	 */
+	public Collection<BoundaryEdge> getBoundaryEdges(String nodeId) {
+		synchronized (boundary) {
+			ArrayList<BoundaryEdge> edges = incidences.get(nodeId);
+			return edges == null ? Collections.<BoundaryEdge> emptyList()
+					: new ArrayList<>(edges);
+		}
+	}
+
+	// Command
+
+	/**
+	 * Adds a node to the shard given by the hash of its identifier. Must be
+	 * called by the thread owning this shard.
+	 */
+	public <T extends Node> T addNode(String id) {
+		return shards[getShardIndex(id)].addNode(id);
+	}
+
+	/**
+	 * Adds a node to a given shard. Must be called by the thread owning this
+	 * shard.
+	 */
+	public <T extends Node> T addNode(String id, int shard) {
+		return shards[shard].addNode(id);
+	}
+
+	/**
+	 * Adds an edge between two existing nodes. If the nodes are in the same
+	 * shard, the edge is added to the shard and this must be called by the
+	 * thread owning the shard. Otherwise a boundary edge is added.
+	 * 
+	 * @throws ElementNotFoundException
+	 *             If one of the nodes does not exist.
+	 * @throws IdAlreadyInUseException
+	 *             If a boundary edge with the same identifier exists.
+	 */
+	public void addEdge(String id, String from, String to, boolean directed) {
+		Shard source = directory.get(from);
+		Shard target = directory.get(to);
+		if (source != null && source == target) {
+			source.addEdge(id, from, to, directed);
+			return;
+		}
+
+		synchronized (boundary) {
+			// read again, a node is removed from the directory under the lock
+			source = directory.get(from);
+			target = directory.get(to);
+			if (source == null || target == null)
+				throw new ElementNotFoundException(String.format(
+						"Cannot create edge %s[%s-%s%s]. Node '%s' does not exist.",
+						id, from, directed ? ">" : "-", to,
+						source == null ? from : to));
+			if (source == target) {
+				// the node was removed and added again to another shard
+				source.addEdge(id, from, to, directed);
+				return;
+			}
+			if (edgeIds.putIfAbsent(id, boundary) != null)
+				throw new IdAlreadyInUseException("id \"" + id
+						+ "\" already in use. Cannot create an edge.");
+
+			BoundaryEdge edge = new BoundaryEdge(id, from, source.index, to,
+					target.index, directed);
+			boundary.put(id, edge);
+			incidence(from).add(edge);
+			incidence(to).add(edge);
+			post(boundaryQueue, GraphEvents.ADD_EDGE, sourceId,
+					sourceTime.newEvent(), id, from, to, directed);
+		}
+	}
+
+	/**
+	 * Removes a boundary edge.
+	 * 
+	 * @return {@code false} if there was no such edge.
+	 */
+	public boolean removeBoundaryEdge(String id) {
+		synchronized (boundary) {
+			BoundaryEdge edge = boundary.get(id);
+			if (edge == null)
+				return false;
+			removeBoundaryEdge(edge);
+			return true;
+		}
+	}
+
+	private ArrayList<BoundaryEdge> incidence(String nodeId) {
+		ArrayList<BoundaryEdge> edges = incidences.get(nodeId);
+		if (edges == null) {
+			edges = new ArrayList<>(2);
+			incidences.put(nodeId, edges);
+		}
+		return edges;
+	}
+
+	/**
+	 * Must be called under the lock of the boundary table.
+	 */
+	private void removeBoundaryEdge(BoundaryEdge edge) {
+		post(boundaryQueue, GraphEvents.DEL_EDGE, sourceId,
+				sourceTime.newEvent(), edge.id);
+		boundary.remove(edge.id);
+		edgeIds.remove(edge.id, boundary);
+		for (String nodeId : new String[] { edge.sourceId, edge.targetId }) {
+			ArrayList<BoundaryEdge> edges = incidences.get(nodeId);
+			edges.remove(edge);
+			if (edges.isEmpty())
+				incidences.remove(nodeId);
+		}
+	}
+
+	// Merged stream
+
+	void post(ConcurrentLinkedQueue<Event> queue, GraphEvents event,
+			Object... data) {
+		queue.add(new Event(stamps.getAndIncrement(), event, data));
+	}
+
+	/**
+	 * Sends the queued events to the sinks of this graph. An event is sent
+	 * once all the events stamped before it are queued, so that the events of
+	 * the different shards are sent in the order they happened. Must be called
+	 * by a single thread.
+	 */
+	public void pump() {
+		for (Shard shard : shards)
+			drain(shard.queue);
+		drain(boundaryQueue);
+
+		while (!pending.isEmpty() && pending.peek().stamp == next) {
+			Event e = pending.poll();
+			next++;
+			processMessage(e.event, e.data);
+		}
+	}
+
+	/**
+	 * Tells if some events have not been sent yet.
+	 */
+	public boolean hasPostRemaining() {
+		if (!pending.isEmpty())
+			return true;
+		for (Shard shard : shards)
+			if (!shard.queue.isEmpty())
+				return true;
+		return !boundaryQueue.isEmpty();
+	}
+
+	private void drain(ConcurrentLinkedQueue<Event> queue) {
+		Event e;
+		while ((e = queue.poll()) != null)
+			pending.add(e);
+	}
+
+	private void processMessage(GraphEvents e, Object[] data) {
+		String graphId = (String) data[0];
+		long timeId = (Long) data[1];
+
+		switch (e) {
+		case ADD_NODE:
+			sendNodeAdded(graphId, timeId, (String) data[2]);
+			break;
+		case DEL_NODE:
+			sendNodeRemoved(graphId, timeId, (String) data[2]);
+			break;
+		case ADD_EDGE:
+			sendEdgeAdded(graphId, timeId, (String) data[2], (String) data[3],
+					(String) data[4], (Boolean) data[5]);
+			break;
+		case DEL_EDGE:
+			sendEdgeRemoved(graphId, timeId, (String) data[2]);
+			break;
+		case STEP:
+			sendStepBegins(graphId, timeId, (Double) data[2]);
+			break;
+		case CLEARED:
+			sendGraphCleared(graphId, timeId);
+			break;
+		case ADD_GRAPH_ATTR:
+			sendGraphAttributeAdded(graphId, timeId, (String) data[2], data[3]);
+			break;
+		case CHG_GRAPH_ATTR:
+			sendGraphAttributeChanged(graphId, timeId, (String) data[2],
+					data[3], data[4]);
+			break;
+		case DEL_GRAPH_ATTR:
+			sendGraphAttributeRemoved(graphId, timeId, (String) data[2]);
+			break;
+		case ADD_NODE_ATTR:
+			sendNodeAttributeAdded(graphId, timeId, (String) data[2],
+					(String) data[3], data[4]);
+			break;
+		case CHG_NODE_ATTR:
+			sendNodeAttributeChanged(graphId, timeId, (String) data[2],
+					(String) data[3], data[4], data[5]);
+			break;
+		case DEL_NODE_ATTR:
+			sendNodeAttributeRemoved(graphId, timeId, (String) data[2],
+					(String) data[3]);
+			break;
+		case ADD_EDGE_ATTR:
+			sendEdgeAttributeAdded(graphId, timeId, (String) data[2],
+					(String) data[3], data[4]);
+			break;
+		case CHG_EDGE_ATTR:
+			sendEdgeAttributeChanged(graphId, timeId, (String) data[2],
+					(String) data[3], data[4], data[5]);
+			break;
+		case DEL_EDGE_ATTR:
+			sendEdgeAttributeRemoved(graphId, timeId, (String) data[2],
+					(String) data[3]);
+			break;
+		}
+	}
+
+	/**
+	 * Stamps and queues the events of a shard, and publishes its nodes once
+	 * they are announced.
+	 */
+	private class Recorder implements Sink {
+		final Shard shard;
+		final ConcurrentLinkedQueue<Event> queue;
+
+		Recorder(Shard shard) {
+			this.shard = shard;
+			this.queue = shard.queue;
+		}
+
+		@Override
+		public void graphAttributeAdded(String sourceId, long timeId,
+				String attribute, Object value) {
+			post(queue, GraphEvents.ADD_GRAPH_ATTR, sourceId, timeId,
+					attribute, value);
+		}
+
+		@Override
+		public void graphAttributeChanged(String sourceId, long timeId,
+				String attribute, Object oldValue, Object newValue) {
+			post(queue, GraphEvents.CHG_GRAPH_ATTR, sourceId, timeId,
+					attribute, oldValue, newValue);
+		}
+
+		@Override
+		public void graphAttributeRemoved(String sourceId, long timeId,
+				String attribute) {
+			post(queue, GraphEvents.DEL_GRAPH_ATTR, sourceId, timeId,
+					attribute);
+		}
+
+		@Override
+		public void nodeAttributeAdded(String sourceId, long timeId,
+				String nodeId, String attribute, Object value) {
+			post(queue, GraphEvents.ADD_NODE_ATTR, sourceId, timeId, nodeId,
+					attribute, value);
+		}
+
+		@Override
+		public void nodeAttributeChanged(String sourceId, long timeId,
+				String nodeId, String attribute, Object oldValue,
+				Object newValue) {
+			post(queue, GraphEvents.CHG_NODE_ATTR, sourceId, timeId, nodeId,
+					attribute, oldValue, newValue);
+		}
+
+		@Override
+		public void nodeAttributeRemoved(String sourceId, long timeId,
+				String nodeId, String attribute) {
+			post(queue, GraphEvents.DEL_NODE_ATTR, sourceId, timeId, nodeId,
+					attribute);
+		}
+
+		@Override
+		public void edgeAttributeAdded(String sourceId, long timeId,
+				String edgeId, String attribute, Object value) {
+			post(queue, GraphEvents.ADD_EDGE_ATTR, sourceId, timeId, edgeId,
+					attribute, value);
+		}
+
+		@Override
+		public void edgeAttributeChanged(String sourceId, long timeId,
+				String edgeId, String attribute, Object oldValue,
+				Object newValue) {
+			post(queue, GraphEvents.CHG_EDGE_ATTR, sourceId, timeId, edgeId,
+					attribute, oldValue, newValue);
+		}
+
+		@Override
+		public void edgeAttributeRemoved(String sourceId, long timeId,
+				String edgeId, String attribute) {
+			post(queue, GraphEvents.DEL_EDGE_ATTR, sourceId, timeId, edgeId,
+					attribute);
+		}
+
+		@Override
+		public void nodeAdded(String sourceId, long timeId, String nodeId) {
+			post(queue, GraphEvents.ADD_NODE, sourceId, timeId, nodeId);
+			// published after the event, so that a boundary edge is stamped
+			// after its nodes
+			directory.putIfAbsent(nodeId, shard);
+		}
+
+		@Override
+		public void nodeRemoved(String sourceId, long timeId, String nodeId) {
+			post(queue, GraphEvents.DEL_NODE, sourceId, timeId, nodeId);
+		}
+
+		@Override
+		public void edgeAdded(String sourceId, long timeId, String edgeId,
+				String fromNodeId, String toNodeId, boolean directed) {
+			post(queue, GraphEvents.ADD_EDGE, sourceId, timeId, edgeId,
+					fromNodeId, toNodeId, directed);
+		}
+
+		@Override
+		public void edgeRemoved(String sourceId, long timeId, String edgeId) {
+			post(queue, GraphEvents.DEL_EDGE, sourceId, timeId, edgeId);
+		}
+
+		@Override
+		public void graphCleared(String sourceId, long timeId) {
+			post(queue, GraphEvents.CLEARED, sourceId, timeId);
+		}
+
+		@Override
+		public void stepBegins(String sourceId, long timeId, double step) {
+			post(queue, GraphEvents.STEP, sourceId, timeId, step);
+		}
+	}
+}
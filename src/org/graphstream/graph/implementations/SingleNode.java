@@ -58,8 +58,20 @@ public class SingleNode extends AdjacencyListNode {
 				4 * INITIAL_EDGE_CAPACITY / 3 + 1);
 	}
 
+	protected SingleNode(AbstractGraph graph, long id) {
+		super(graph, id);
+		neighborMap = new HashMap<AbstractNode, TwoEdges>(
+				4 * INITIAL_EDGE_CAPACITY / 3 + 1);
+	}
+
 	// *** Helpers ***
 
+	@Override
+	protected int neighborIndexThreshold() {
+		// the neighbor map already gives constant time access
+		return Integer.MAX_VALUE;
+	}
+
 	@SuppressWarnings("unchecked")
 	@Override
 	protected <T extends Edge> T locateEdge(Node opposite, char type) {
@@ -106,6 +118,14 @@ public class SingleNode extends AdjacencyListNode {
 		return super.addEdgeCallback(edge);
 	}
 
+	@Override
+	protected void removeEdgesCallback(AbstractEdge[] toRemove, int from,
+			int to) {
+		if (to - from > 1)
+			neighborMap.remove(toRemove[from].getOpposite(this));
+		super.removeEdgesCallback(toRemove, from, to);
+	}
+
 	@Override
 	protected void clearCallback() {
 		neighborMap.clear();
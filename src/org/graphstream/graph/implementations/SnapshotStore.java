@@ -0,0 +1,283 @@
+/*
+ * Copyright 2006 - 2013
+ *     Stefan Balev     <stefan.balev@graphstream-project.org>
+ *     Julien Baudry    <julien.baudry@graphstream-project.org>
+ *     Antoine Dutot    <antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné      <yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin   <guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.graph.implementations;
+
+import static org.graphstream.graph.implementations.CompactGraph.CHUNK_SHIFT;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.graphstream.graph.implementations.CompactGraph.Chunk;
+import org.graphstream.graph.implementations.CompactGraph.EdgeChunk;
+import org.graphstream.graph.implementations.CompactGraph.Layout;
+import org.graphstream.graph.implementations.CompactGraph.NodeChunk;
+
+/**
+ * <p>
+ * The chunks of the last snapshot of an {@link AdjacencyListGraph}, see
+ * {@link AbstractGraph#snapshot()} and {@link CompactGraph}.
+ * </p>
+ * 
+ * <p>
+ * The graph marks the chunks of the nodes and edges whose attributes, edges or
+ * indices change. The next snapshot builds these chunks again and shares the
+ * other ones with the last snapshot, as well as the pages of the identifier
+ * indices in which no identifier changed. A snapshot thus costs
+ * O(c&nbsp;*&nbsp;{@value CompactGraph#CHUNK_SIZE}) where c is the number of
+ * chunks changed since the last one, plus the copy of one reference per chunk.
+ * </p>
+ */
+final class SnapshotStore {
+	private static final String[] NO_IDS = new String[0];
+
+	private NodeChunk[] nodeChunks = new NodeChunk[0];
+	private EdgeChunk[] edgeChunks = new EdgeChunk[0];
+
+	private final ChunkIndex nodeIndex;
+	private final ChunkIndex edgeIndex;
+
+	/**
+	 * Bit sets of the chunks changed since the last snapshot.
+	 */
+	private long[] changedNodes, changedEdges;
+
+	/**
+	 * Creates the store of a graph, whose chunks are all built by the first
+	 * snapshot.
+	 */
+	SnapshotStore(int nodeCount, int edgeCount) {
+		nodeIndex = new ChunkIndex(nodeCount);
+		edgeIndex = new ChunkIndex(edgeCount);
+		changedNodes = all(CompactGraph.chunks(nodeCount));
+		changedEdges = all(CompactGraph.chunks(edgeCount));
+	}
+
+	private static long[] all(int chunks) {
+		long[] bits = new long[(chunks >> 6) + 1];
+		for (int c = 0; c < chunks; c++)
+			bits[c >> 6] |= 1L << c;
+		return bits;
+	}
+
+	private static long[] mark(long[] bits, int index) {
+		if (index < 0)
+			return bits;
+		int c = index >> CHUNK_SHIFT;
+		if ((c >> 6) >= bits.length)
+			bits = Arrays.copyOf(bits, Math.max(2 * bits.length, (c >> 6) + 1));
+		bits[c >> 6] |= 1L << c;
+		return bits;
+	}
+
+	// *** Changes of the graph ***
+
+	/**
+	 * The attributes or the edges of the node at an index changed.
+	 */
+	void nodeChanged(int index) {
+		changedNodes = mark(changedNodes, index);
+	}
+
+	/**
+	 * The attributes of the edge at an index changed.
+	 */
+	void edgeChanged(int index) {
+		changedEdges = mark(changedEdges, index);
+	}
+
+	/**
+	 * An edge has been added, its end points have a new edge.
+	 */
+	void edgeAdded(AbstractEdge edge) {
+		edgeChanged(edge.getIndex());
+		nodeChanged(edge.getSourceNode().getIndex());
+		nodeChanged(edge.getTargetNode().getIndex());
+	}
+
+	/**
+	 * An edge is about to be removed and the last edge moved to its index.
+	 */
+	void edgeRemoved(AbstractEdge edge, AbstractEdge last) {
+		edgeAdded(edge);
+		if (last != edge)
+			// the end points of the moved edge see its new index
+			edgeAdded(last);
+	}
+
+	/**
+	 * A node without edges is about to be removed and the last node moved to
+	 * its index.
+	 */
+	void nodeRemoved(AbstractNode node, AbstractNode last) {
+		nodeChanged(node.getIndex());
+		if (last == node)
+			return;
+		nodeChanged(last.getIndex());
+		// the neighbors and the edges of the moved node see its new index
+		for (int i = 0; i < last.getDegree(); i++) {
+			AbstractEdge e = last.getEdge(i);
+			edgeChanged(e.getIndex());
+			nodeChanged(e.getOpposite(last).getIndex());
+		}
+	}
+
+	// *** Snapshots ***
+
+	/**
+	 * Builds the chunks changed since the last snapshot.
+	 * 
+	 * @return The chunks of the graph, or {@code null} if its nodes do not
+	 *         extend {@link AdjacencyListNode}, in which case the store must
+	 *         be dropped.
+	 */
+	Layout update(AdjacencyListGraph g) {
+		int n = g.nodeCount;
+		int m = g.edgeCount;
+
+		NodeChunk[] nodes = Arrays.copyOf(nodeChunks, CompactGraph.chunks(n));
+		EdgeChunk[] edges = Arrays.copyOf(edgeChunks, CompactGraph.chunks(m));
+
+		for (int w = 0; w < changedNodes.length; w++)
+			for (long b = changedNodes[w]; b != 0; b &= b - 1) {
+				int c = (w << 6) + Long.numberOfTrailingZeros(b);
+				if (c < nodes.length) {
+					nodes[c] = nodeChunk(g, c, n);
+					if (nodes[c] == null)
+						return null;
+				}
+			}
+		for (int w = 0; w < changedEdges.length; w++)
+			for (long b = changedEdges[w]; b != 0; b &= b - 1) {
+				int c = (w << 6) + Long.numberOfTrailingZeros(b);
+				if (c < edges.length)
+					edges[c] = edgeChunk(g, c, m);
+			}
+
+		updateIndex(nodeIndex, nodeChunks, nodes, changedNodes);
+		updateIndex(edgeIndex, edgeChunks, edges, changedEdges);
+
+		nodeChunks = nodes;
+		edgeChunks = edges;
+		Arrays.fill(changedNodes, 0);
+		Arrays.fill(changedEdges, 0);
+
+		return new Layout(nodes, n, nodeIndex.freeze(), edges, m,
+				edgeIndex.freeze());
+	}
+
+	/**
+	 * Compares the identifiers of the changed chunks before and after the
+	 * update. Entries are looked for by slot, so the removals and the
+	 * additions can be made in any order.
+	 */
+	private static void updateIndex(ChunkIndex index, Chunk[] before,
+			Chunk[] after, long[] changed) {
+		for (int w = 0; w < changed.length; w++)
+			for (long b = changed[w]; b != 0; b &= b - 1) {
+				int c = (w << 6) + Long.numberOfTrailingZeros(b);
+				String[] old = c < before.length ? before[c].ids : NO_IDS;
+				String[] ids = c < after.length ? after[c].ids : NO_IDS;
+				int base = c << CHUNK_SHIFT;
+				for (int k = 0; k < old.length; k++)
+					if (k >= ids.length || !old[k].equals(ids[k]))
+						index.remove(old[k], base + k);
+				for (int k = 0; k < ids.length; k++)
+					if (k >= old.length || !ids[k].equals(old[k]))
+						index.put(ids[k], base + k);
+			}
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static Map<String, Object>[] maps(int size) {
+		return new Map[size];
+	}
+
+	private static NodeChunk nodeChunk(AdjacencyListGraph g, int c, int n) {
+		int base = c << CHUNK_SHIFT;
+		int size = CompactGraph.chunkSize(n, c);
+		int total = 0;
+
+		for (int k = 0; k < size; k++) {
+			AbstractNode node = g.nodeArray[base + k];
+			if (!(node instanceof AdjacencyListNode))
+				return null;
+			total += ((AdjacencyListNode) node).degree;
+		}
+
+		String[] ids = new String[size];
+		Map<String, Object>[] attributes = maps(size);
+		int[] offsets = new int[size + 1];
+		int[] ioStarts = new int[size], oStarts = new int[size];
+		int[] neighbors = new int[total], edges = new int[total];
+		int p = 0;
+
+		// the incidences are in the order of the edges of the node
+		for (int k = 0; k < size; k++) {
+			AdjacencyListNode node = (AdjacencyListNode) g.nodeArray[base + k];
+			ids[k] = node.getId();
+			attributes[k] = CompactGraph.shareAttributes(node);
+			offsets[k] = p;
+			ioStarts[k] = p + node.ioStart;
+			oStarts[k] = p + node.oStart;
+			for (int i = 0; i < node.degree; i++, p++) {
+				AbstractEdge e = node.edges[i];
+				neighbors[p] = e.getOpposite(node).getIndex();
+				edges[p] = e.getIndex();
+			}
+		}
+		offsets[size] = p;
+
+		return new NodeChunk(ids, attributes, offsets, ioStarts, oStarts,
+				neighbors, edges);
+	}
+
+	private static EdgeChunk edgeChunk(AdjacencyListGraph g, int c, int m) {
+		int base = c << CHUNK_SHIFT;
+		int size = CompactGraph.chunkSize(m, c);
+
+		String[] ids = new String[size];
+		Map<String, Object>[] attributes = maps(size);
+		int[] sources = new int[size], targets = new int[size];
+		boolean[] directed = new boolean[size];
+
+		for (int k = 0; k < size; k++) {
+			AbstractEdge e = g.edgeArray[base + k];
+			ids[k] = e.getId();
+			attributes[k] = CompactGraph.shareAttributes(e);
+			sources[k] = e.getSourceNode().getIndex();
+			targets[k] = e.getTargetNode().getIndex();
+			directed[k] = e.isDirected();
+		}
+
+		return new EdgeChunk(ids, attributes, sources, targets, directed);
+	}
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2006 - 2013
+ *     Stefan Balev     <stefan.balev@graphstream-project.org>
+ *     Julien Baudry    <julien.baudry@graphstream-project.org>
+ *     Antoine Dutot    <antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné      <yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin   <guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.stream;
+
+/**
+ * Sink able to receive several events at once.
+ * 
+ * <p>
+ * A {@link SourceBase} sending an {@link EventBatch} gives the whole batch to
+ * the sinks implementing this interface, with a single call, if they are
+ * registered both as attribute and element sinks. Other sinks receive the
+ * events of the batch one by one, as if they had been sent separately.
+ * </p>
+ * 
+ * <p>
+ * The batch belongs to the caller and may be cleared and reused as soon as
+ * {@link #eventBatch(EventBatch)} returns. A sink that needs the events
+ * later must copy it (see {@link EventBatch#EventBatch(EventBatch)}).
+ * </p>
+ * 
+ * @see EventBatch
+ */
+public interface BatchSink extends Sink {
+	/**
+	 * Receive a batch of events. It is equivalent to receiving the events of
+	 * the batch one by one, in order.
+	 * 
+	 * @param batch
+	 *            The events.
+	 */
+	void eventBatch(EventBatch batch);
+}
@@ -0,0 +1,458 @@
+/*
+ * Copyright 2006 - 2013
+ *     Stefan Balev     <stefan.balev@graphstream-project.org>
+ *     Julien Baudry    <julien.baudry@graphstream-project.org>
+ *     Antoine Dutot    <antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné      <yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin   <guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.stream;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.graphstream.graph.Element.AttributeChangeEvent;
+
+/**
+ * A pipe that buffers events and sends a shorter equivalent sequence of events
+ * at each step.
+ * 
+ * <p>
+ * Events are folded per element and per attribute as they arrive: successive
+ * changes of an attribute become one change with the first old value and the
+ * last new value, an attribute added then removed disappears, and an element
+ * added then removed is never sent. The buffer is flushed when a step begins,
+ * before the step event is sent, when {@link #flush()} is called, and, if a
+ * flush interval is set, on the first event received once the interval has
+ * elapsed. When the graph is cleared the buffer is dropped and only the clear
+ * event is sent.
+ * </p>
+ * 
+ * <p>
+ * A flush sends, in this order, the removals of edges, the removals of nodes,
+ * the additions of nodes and then of edges with their attributes, and finally
+ * the attribute changes of the other nodes, edges and of the graph. A sink
+ * reaches the same state as with the original events, but the relative order
+ * of events about different elements is not kept. The events are sent with the
+ * identifier of this pipe as source and new time stamps.
+ * </p>
+ * 
+ * <p>
+ * The pipe expects the events of a single graph.
+ * </p>
+ */
+public class CoalescingPipe extends SourceBase implements Pipe {
+	/**
+	 * The element existed before the buffered events and still exists.
+	 */
+	private static final byte PRESENT = 0;
+
+	/**
+	 * The element did not exist before the buffered events.
+	 */
+	private static final byte ADDED = 1;
+
+	/**
+	 * The element existed before the buffered events and has been removed.
+	 */
+	private static final byte REMOVED = 2;
+
+	/**
+	 * The element existed before the buffered events and has been removed and
+	 * added again.
+	 */
+	private static final byte REPLACED = 3;
+
+	/**
+	 * Buffered events of an element.
+	 */
+	private static class Record {
+		final String id;
+		byte state;
+		String from, to;
+		boolean directed;
+		final LinkedHashMap<String, Change> attributes = new LinkedHashMap<>();
+
+		Record(String id, byte state) {
+			this.id = id;
+			this.state = state;
+		}
+
+		/**
+		 * Forgets the attributes and marks the element as new or removed.
+		 */
+		void reset(byte state) {
+			this.state = state;
+			attributes.clear();
+		}
+	}
+
+	/**
+	 * Result of the buffered events on an attribute of an element.
+	 */
+	private static class Change {
+		AttributeChangeEvent event;
+		Object oldValue, newValue;
+
+		/**
+		 * The attribute is removed before {@link #event}, which then is an
+		 * addition.
+		 */
+		boolean removedFirst;
+
+		Change(AttributeChangeEvent event, Object oldValue, Object newValue) {
+			this.event = event;
+			this.oldValue = oldValue;
+			this.newValue = newValue;
+		}
+	}
+
+	private final LinkedHashMap<String, Record> nodes = new LinkedHashMap<>();
+	private final LinkedHashMap<String, Record> edges = new LinkedHashMap<>();
+	private final Record graph = new Record(null, PRESENT);
+
+	/**
+	 * Maximum time between two flushes in milliseconds, zero to flush at steps
+	 * only.
+	 */
+	private long flushInterval = 0;
+
+	private long lastFlush = System.currentTimeMillis();
+
+	private long receivedEvents = 0;
+	private long sentEvents = 0;
+
+	public CoalescingPipe() {
+		super();
+	}
+
+	/**
+	 * New pipe also flushing when {@code flushInterval} milliseconds have
+	 * elapsed since the last flush.
+	 * 
+	 * @param flushInterval
+	 *            Time in milliseconds, zero to flush at steps only.
+	 */
+	public CoalescingPipe(long flushInterval) {
+		super();
+		setFlushInterval(flushInterval);
+	}
+
+	public long getFlushInterval() {
+		return flushInterval;
+	}
+
+	/**
+	 * Sets the maximum time between two flushes. The interval is checked when
+	 * events are received, there is no timer.
+	 * 
+	 * @param flushInterval
+	 *            Time in milliseconds, zero to flush at steps only.
+	 */
+	public void setFlushInterval(long flushInterval) {
+		if (flushInterval < 0)
+			throw new IllegalArgumentException("negative flush interval");
+		this.flushInterval = flushInterval;
+	}
+
+	/**
+	 * Number of events received since the creation of this pipe.
+	 */
+	public long getReceivedEvents() {
+		return receivedEvents;
+	}
+
+	/**
+	 * Number of events sent since the creation of this pipe.
+	 */
+	public long getSentEvents() {
+		return sentEvents;
+	}
+
+	/**
+	 * Tests if some events are waiting for the next flush.
+	 */
+	public boolean hasPendingEvents() {
+		return !nodes.isEmpty() || !edges.isEmpty()
+				|| !graph.attributes.isEmpty();
+	}
+
+	/**
+	 * Sends the buffered events.
+	 */
+	public void flush() {
+		lastFlush = System.currentTimeMillis();
+
+		for (Record r : edges.values())
+			if (r.state == REMOVED || r.state == REPLACED) {
+				sendEdgeRemoved(sourceId, r.id);
+				sentEvents++;
+			}
+		for (Record r : nodes.values())
+			if (r.state == REMOVED || r.state == REPLACED) {
+				sendNodeRemoved(sourceId, r.id);
+				sentEvents++;
+			}
+		for (Record r : nodes.values())
+			if (r.state == ADDED || r.state == REPLACED) {
+				sendNodeAdded(sourceId, r.id);
+				sentEvents++;
+				sendAttributes(r, ElementType.NODE);
+			}
+		for (Record r : edges.values())
+			if (r.state == ADDED || r.state == REPLACED) {
+				sendEdgeAdded(sourceId, r.id, r.from, r.to, r.directed);
+				sentEvents++;
+				sendAttributes(r, ElementType.EDGE);
+			}
+		for (Record r : nodes.values())
+			if (r.state == PRESENT)
+				sendAttributes(r, ElementType.NODE);
+		for (Record r : edges.values())
+			if (r.state == PRESENT)
+				sendAttributes(r, ElementType.EDGE);
+		sendAttributes(graph, ElementType.GRAPH);
+
+		nodes.clear();
+		edges.clear();
+		graph.attributes.clear();
+	}
+
+	private void sendAttributes(Record r, ElementType type) {
+		for (Map.Entry<String, Change> entry : r.attributes.entrySet()) {
+			Change c = entry.getValue();
+			if (c.removedFirst) {
+				sendAttributeChangedEvent(sourceId, r.id, type, entry.getKey(),
+						AttributeChangeEvent.REMOVE, null, null);
+				sentEvents++;
+			}
+			sendAttributeChangedEvent(sourceId, r.id, type, entry.getKey(),
+					c.event, c.oldValue, c.newValue);
+			sentEvents++;
+		}
+	}
+
+	/**
+	 * Counts a received event and flushes if the interval has elapsed.
+	 */
+	private void received() {
+		receivedEvents++;
+		if (flushInterval > 0
+				&& System.currentTimeMillis() - lastFlush >= flushInterval)
+			flush();
+	}
+
+	// Folding
+
+	private void elementAdded(Map<String, Record> records, String id,
+			String from, String to, boolean directed) {
+		Record r = records.get(id);
+		if (r == null) {
+			r = new Record(id, ADDED);
+			records.put(id, r);
+		} else if (r.state == REMOVED) {
+			r.reset(REPLACED);
+		} else if (r.state == PRESENT) {
+			r.reset(ADDED);
+		}
+		r.from = from;
+		r.to = to;
+		r.directed = directed;
+	}
+
+	private void elementRemoved(Map<String, Record> records, String id) {
+		Record r = records.get(id);
+		if (r == null)
+			records.put(id, new Record(id, REMOVED));
+		else if (r.state == ADDED)
+			records.remove(id);
+		else
+			r.reset(REMOVED);
+	}
+
+	private void attributeChanged(Map<String, Record> records, String id,
+			String attribute, AttributeChangeEvent event, Object oldValue,
+			Object newValue) {
+		Record r;
+		if (records == null) {
+			r = graph;
+		} else {
+			r = records.get(id);
+			if (r == null) {
+				r = new Record(id, PRESENT);
+				records.put(id, r);
+			}
+		}
+
+		Change c = r.attributes.get(attribute);
+
+		if (r.state == REMOVED) {
+			return;
+		} else if (r.state != PRESENT) {
+			// the element is new, only the last values matter
+			if (event == AttributeChangeEvent.REMOVE)
+				r.attributes.remove(attribute);
+			else if (c == null)
+				r.attributes.put(attribute, new Change(
+						AttributeChangeEvent.ADD, null, newValue));
+			else
+				c.newValue = newValue;
+		} else if (c == null) {
+			r.attributes.put(attribute, new Change(event, oldValue, newValue));
+		} else if (event == AttributeChangeEvent.REMOVE) {
+			if (c.event == AttributeChangeEvent.ADD && !c.removedFirst) {
+				r.attributes.remove(attribute);
+			} else {
+				c.event = AttributeChangeEvent.REMOVE;
+				c.oldValue = c.newValue = null;
+				c.removedFirst = false;
+			}
+		} else if (c.event == AttributeChangeEvent.REMOVE) {
+			c.event = AttributeChangeEvent.ADD;
+			c.newValue = newValue;
+			c.removedFirst = true;
+		} else {
+			c.newValue = newValue;
+		}
+	}
+
+	// Sink
+
+	@Override
+	public void graphAttributeAdded(String graphId, long timeId,
+			String attribute, Object value) {
+		attributeChanged(null, null, attribute, AttributeChangeEvent.ADD,
+				null, value);
+		received();
+	}
+
+	@Override
+	public void graphAttributeChanged(String graphId, long timeId,
+			String attribute, Object oldValue, Object newValue) {
+		attributeChanged(null, null, attribute, AttributeChangeEvent.CHANGE,
+				oldValue, newValue);
+		received();
+	}
+
+	@Override
+	public void graphAttributeRemoved(String graphId, long timeId,
+			String attribute) {
+		attributeChanged(null, null, attribute, AttributeChangeEvent.REMOVE,
+				null, null);
+		received();
+	}
+
+	@Override
+	public void nodeAttributeAdded(String graphId, long timeId, String nodeId,
+			String attribute, Object value) {
+		attributeChanged(nodes, nodeId, attribute, AttributeChangeEvent.ADD,
+				null, value);
+		received();
+	}
+
+	@Override
+	public void nodeAttributeChanged(String graphId, long timeId,
+			String nodeId, String attribute, Object oldValue, Object newValue) {
+		attributeChanged(nodes, nodeId, attribute,
+				AttributeChangeEvent.CHANGE, oldValue, newValue);
+		received();
+	}
+
+	@Override
+	public void nodeAttributeRemoved(String graphId, long timeId,
+			String nodeId, String attribute) {
+		attributeChanged(nodes, nodeId, attribute,
+				AttributeChangeEvent.REMOVE, null, null);
+		received();
+	}
+
+	@Override
+	public void edgeAttributeAdded(String graphId, long timeId, String edgeId,
+			String attribute, Object value) {
+		attributeChanged(edges, edgeId, attribute, AttributeChangeEvent.ADD,
+				null, value);
+		received();
+	}
+
+	@Override
+	public void edgeAttributeChanged(String graphId, long timeId,
+			String edgeId, String attribute, Object oldValue, Object newValue) {
+		attributeChanged(edges, edgeId, attribute,
+				AttributeChangeEvent.CHANGE, oldValue, newValue);
+		received();
+	}
+
+	@Override
+	public void edgeAttributeRemoved(String graphId, long timeId,
+			String edgeId, String attribute) {
+		attributeChanged(edges, edgeId, attribute,
+				AttributeChangeEvent.REMOVE, null, null);
+		received();
+	}
+
+	@Override
+	public void nodeAdded(String graphId, long timeId, String nodeId) {
+		elementAdded(nodes, nodeId, null, null, false);
+		received();
+	}
+
+	@Override
+	public void nodeRemoved(String graphId, long timeId, String nodeId) {
+		elementRemoved(nodes, nodeId);
+		received();
+	}
+
+	@Override
+	public void edgeAdded(String graphId, long timeId, String edgeId,
+			String fromNodeId, String toNodeId, boolean directed) {
+		elementAdded(edges, edgeId, fromNodeId, toNodeId, directed);
+		received();
+	}
+
+	@Override
+	public void edgeRemoved(String graphId, long timeId, String edgeId) {
+		elementRemoved(edges, edgeId);
+		received();
+	}
+
+	@Override
+	public void graphCleared(String graphId, long timeId) {
+		receivedEvents++;
+		nodes.clear();
+		edges.clear();
+		graph.attributes.clear();
+		sendGraphCleared(sourceId);
+		sentEvents++;
+	}
+
+	@Override
+	public void stepBegins(String graphId, long timeId, double step) {
+		receivedEvents++;
+		flush();
+		sendStepBegins(sourceId, step);
+		sentEvents++;
+	}
+}
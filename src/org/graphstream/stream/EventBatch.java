@@ -0,0 +1,620 @@
+/*
+ * Copyright 2006 - 2013
+ *     Stefan Balev     <stefan.balev@graphstream-project.org>
+ *     Julien Baudry    <julien.baudry@graphstream-project.org>
+ *     Antoine Dutot    <antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné      <yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin   <guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.stream;
+
+import java.util.Arrays;
+
+/**
+ * A sequence of graph events stored in columns.
+ * 
+ * <p>
+ * Each event is described by a code ({@link #NODE_ADDED},
+ * {@link #EDGE_ATTRIBUTE_CHANGED}, ...), a source, a time id and the
+ * arguments of its kind. Identifiers (sources, elements and attributes) are
+ * stored once per batch in a string table and events only refer to their
+ * index, values are kept as is. Null identifiers are accepted and replayed
+ * as null.
+ * </p>
+ * 
+ * <p>
+ * A batch is filled by calling its sink methods, for example by registering
+ * it on a source, and is delivered with
+ * {@link SourceBase#sendBatch(EventBatch)} to sinks implementing
+ * {@link BatchSink}. It can be replayed toward any sink, event by event, with
+ * {@link #replay(Sink)}. Once sent, it can be cleared and filled again,
+ * without reallocating its columns.
+ * </p>
+ */
+public class EventBatch implements Sink {
+	public static final int NODE_ADDED = 0;
+	public static final int NODE_REMOVED = 1;
+	public static final int EDGE_ADDED = 2;
+	public static final int EDGE_REMOVED = 3;
+	public static final int GRAPH_CLEARED = 4;
+	public static final int STEP_BEGINS = 5;
+	public static final int GRAPH_ATTRIBUTE_ADDED = 6;
+	public static final int GRAPH_ATTRIBUTE_CHANGED = 7;
+	public static final int GRAPH_ATTRIBUTE_REMOVED = 8;
+	public static final int NODE_ATTRIBUTE_ADDED = 9;
+	public static final int NODE_ATTRIBUTE_CHANGED = 10;
+	public static final int NODE_ATTRIBUTE_REMOVED = 11;
+	public static final int EDGE_ATTRIBUTE_ADDED = 12;
+	public static final int EDGE_ATTRIBUTE_CHANGED = 13;
+	public static final int EDGE_ATTRIBUTE_REMOVED = 14;
+
+	private static final int DEFAULT_CAPACITY = 64;
+
+	/**
+	 * Number of events.
+	 */
+	private int size;
+
+	private byte[] codes;
+
+	private long[] timeIds;
+
+	/**
+	 * Index of the source id of each event.
+	 */
+	private int[] sources;
+
+	/**
+	 * Index of the element id (node or edge), -1 for graph events.
+	 */
+	private int[] elements;
+
+	/**
+	 * Index of the attribute, or of the source node of an added edge.
+	 */
+	private int[] arguments;
+
+	/**
+	 * Index of the target node of an added edge.
+	 */
+	private int[] targets;
+
+	/**
+	 * Step of a "step begins" event.
+	 */
+	private double[] steps;
+
+	/**
+	 * Orientation of an added edge.
+	 */
+	private boolean[] directed;
+
+	private Object[] oldValues;
+
+	private Object[] newValues;
+
+	/**
+	 * Strings of the batch, by index.
+	 */
+	private String[] strings;
+
+	private int stringCount;
+
+	/**
+	 * Open addressing hash table of the strings, holding index + 1, 0 for an
+	 * empty slot. Its length is a power of two.
+	 */
+	private int[] table;
+
+	public EventBatch() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * New empty batch.
+	 * 
+	 * @param capacity
+	 *            Number of events the batch can hold before growing.
+	 */
+	public EventBatch(int capacity) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("capacity must be positive");
+
+		codes = new byte[capacity];
+		timeIds = new long[capacity];
+		sources = new int[capacity];
+		elements = new int[capacity];
+		arguments = new int[capacity];
+		targets = new int[capacity];
+		steps = new double[capacity];
+		directed = new boolean[capacity];
+		oldValues = new Object[capacity];
+		newValues = new Object[capacity];
+		strings = new String[capacity];
+		table = new int[Integer.highestOneBit(capacity) * 4];
+	}
+
+	/**
+	 * Copy of another batch.
+	 * 
+	 * @param other
+	 *            The batch to copy.
+	 */
+	public EventBatch(EventBatch other) {
+		final int n = Math.max(other.size, 1);
+
+		size = other.size;
+		codes = Arrays.copyOf(other.codes, n);
+		timeIds = Arrays.copyOf(other.timeIds, n);
+		sources = Arrays.copyOf(other.sources, n);
+		elements = Arrays.copyOf(other.elements, n);
+		arguments = Arrays.copyOf(other.arguments, n);
+		targets = Arrays.copyOf(other.targets, n);
+		steps = Arrays.copyOf(other.steps, n);
+		directed = Arrays.copyOf(other.directed, n);
+		oldValues = Arrays.copyOf(other.oldValues, n);
+		newValues = Arrays.copyOf(other.newValues, n);
+		stringCount = other.stringCount;
+		strings = Arrays.copyOf(other.strings, Math.max(stringCount, 1));
+		table = other.table.clone();
+	}
+
+	// Access
+
+	/**
+	 * Number of events in the batch.
+	 */
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Code of an event, one of the constants of this class.
+	 */
+	public int getCode(int event) {
+		return codes[check(event)];
+	}
+
+	/**
+	 * True if the event is an attribute event, delivered to attribute sinks,
+	 * false if it is an element event.
+	 */
+	public boolean isAttributeEvent(int event) {
+		return codes[check(event)] >= GRAPH_ATTRIBUTE_ADDED;
+	}
+
+	public String getSourceId(int event) {
+		return string(sources[check(event)]);
+	}
+
+	public long getTimeId(int event) {
+		return timeIds[check(event)];
+	}
+
+	/**
+	 * Identifier of the node or edge of an event, null for graph events.
+	 */
+	public String getElementId(int event) {
+		return string(elements[check(event)]);
+	}
+
+	/**
+	 * Attribute of an attribute event, null otherwise.
+	 */
+	public String getAttribute(int event) {
+		return codes[check(event)] >= GRAPH_ATTRIBUTE_ADDED ? string(
+				arguments[event]) : null;
+	}
+
+	/**
+	 * Source node of an "edge added" event, null otherwise.
+	 */
+	public String getFromNodeId(int event) {
+		return codes[check(event)] == EDGE_ADDED ? string(arguments[event])
+				: null;
+	}
+
+	/**
+	 * Target node of an "edge added" event, null otherwise.
+	 */
+	public String getToNodeId(int event) {
+		return codes[check(event)] == EDGE_ADDED ? string(targets[event])
+				: null;
+	}
+
+	public boolean isDirected(int event) {
+		return directed[check(event)];
+	}
+
+	public double getStep(int event) {
+		return steps[check(event)];
+	}
+
+	public Object getOldValue(int event) {
+		return oldValues[check(event)];
+	}
+
+	/**
+	 * Value of an added or changed attribute.
+	 */
+	public Object getNewValue(int event) {
+		return newValues[check(event)];
+	}
+
+	/**
+	 * Number of distinct strings (sources, identifiers and attributes) in the
+	 * batch.
+	 */
+	public int getStringCount() {
+		return stringCount;
+	}
+
+	/**
+	 * A string of the batch, by index.
+	 */
+	public String getString(int index) {
+		if (index < 0 || index >= stringCount)
+			throw new IndexOutOfBoundsException("string " + index + " of "
+					+ stringCount);
+
+		return strings[index];
+	}
+
+	/**
+	 * Index of the element id of an event in the string table, -1 for graph
+	 * events or a null id. Sinks can use it to do per identifier work once per batch.
+	 */
+	public int getElementIndex(int event) {
+		return elements[check(event)];
+	}
+
+	/**
+	 * Index of the attribute, or of the source node of an added edge, in the
+	 * string table, -1 for other events.
+	 */
+	public int getArgumentIndex(int event) {
+		return arguments[check(event)];
+	}
+
+	/**
+	 * Index of the target node of an added edge in the string table, -1 for
+	 * other events.
+	 */
+	public int getTargetIndex(int event) {
+		return targets[check(event)];
+	}
+
+	// Command
+
+	/**
+	 * Remove all the events. The columns are kept to be filled again.
+	 */
+	public void clear() {
+		Arrays.fill(oldValues, 0, size, null);
+		Arrays.fill(newValues, 0, size, null);
+		Arrays.fill(strings, 0, stringCount, null);
+		Arrays.fill(table, 0);
+		size = 0;
+		stringCount = 0;
+	}
+
+	/**
+	 * Send all the events of the batch, in order, to a sink.
+	 */
+	public void replay(Sink sink) {
+		for (int i = 0; i < size; i++)
+			replay(i, sink, sink);
+	}
+
+	/**
+	 * Send one event to a sink. Attribute events are sent to the attribute
+	 * sink and element events to the element sink, a null sink ignores the
+	 * events of its kind.
+	 * 
+	 * @param event
+	 *            Index of the event.
+	 */
+	public void replay(int event, AttributeSink attributeSink,
+			ElementSink elementSink) {
+		final String sourceId = string(sources[check(event)]);
+		final long timeId = timeIds[event];
+		final String elementId = string(elements[event]);
+
+		if (codes[event] >= GRAPH_ATTRIBUTE_ADDED) {
+			if (attributeSink == null)
+				return;
+
+			final String attribute = string(arguments[event]);
+
+			switch (codes[event]) {
+			case GRAPH_ATTRIBUTE_ADDED:
+				attributeSink.graphAttributeAdded(sourceId, timeId, attribute,
+						newValues[event]);
+				break;
+			case GRAPH_ATTRIBUTE_CHANGED:
+				attributeSink.graphAttributeChanged(sourceId, timeId,
+						attribute, oldValues[event], newValues[event]);
+				break;
+			case GRAPH_ATTRIBUTE_REMOVED:
+				attributeSink.graphAttributeRemoved(sourceId, timeId,
+						attribute);
+				break;
+			case NODE_ATTRIBUTE_ADDED:
+				attributeSink.nodeAttributeAdded(sourceId, timeId, elementId,
+						attribute, newValues[event]);
+				break;
+			case NODE_ATTRIBUTE_CHANGED:
+				attributeSink.nodeAttributeChanged(sourceId, timeId,
+						elementId, attribute, oldValues[event],
+						newValues[event]);
+				break;
+			case NODE_ATTRIBUTE_REMOVED:
+				attributeSink.nodeAttributeRemoved(sourceId, timeId,
+						elementId, attribute);
+				break;
+			case EDGE_ATTRIBUTE_ADDED:
+				attributeSink.edgeAttributeAdded(sourceId, timeId, elementId,
+						attribute, newValues[event]);
+				break;
+			case EDGE_ATTRIBUTE_CHANGED:
+				attributeSink.edgeAttributeChanged(sourceId, timeId,
+						elementId, attribute, oldValues[event],
+						newValues[event]);
+				break;
+			default:
+				attributeSink.edgeAttributeRemoved(sourceId, timeId,
+						elementId, attribute);
+			}
+		} else {
+			if (elementSink == null)
+				return;
+
+			switch (codes[event]) {
+			case NODE_ADDED:
+				elementSink.nodeAdded(sourceId, timeId, elementId);
+				break;
+			case NODE_REMOVED:
+				elementSink.nodeRemoved(sourceId, timeId, elementId);
+				break;
+			case EDGE_ADDED:
+				elementSink.edgeAdded(sourceId, timeId, elementId,
+						string(arguments[event]), string(targets[event]),
+						directed[event]);
+				break;
+			case EDGE_REMOVED:
+				elementSink.edgeRemoved(sourceId, timeId, elementId);
+				break;
+			case GRAPH_CLEARED:
+				elementSink.graphCleared(sourceId, timeId);
+				break;
+			default:
+				elementSink.stepBegins(sourceId, timeId, steps[event]);
+			}
+		}
+	}
+
+	// Sink
+
+	public void nodeAdded(String sourceId, long timeId, String nodeId) {
+		add(NODE_ADDED, sourceId, timeId, nodeId, null);
+	}
+
+	public void nodeRemoved(String sourceId, long timeId, String nodeId) {
+		add(NODE_REMOVED, sourceId, timeId, nodeId, null);
+	}
+
+	public void edgeAdded(String sourceId, long timeId, String edgeId,
+			String fromNodeId, String toNodeId, boolean directed) {
+		final int i = add(EDGE_ADDED, sourceId, timeId, edgeId, fromNodeId);
+		targets[i] = indexOf(toNodeId);
+		this.directed[i] = directed;
+	}
+
+	public void edgeRemoved(String sourceId, long timeId, String edgeId) {
+		add(EDGE_REMOVED, sourceId, timeId, edgeId, null);
+	}
+
+	public void graphCleared(String sourceId, long timeId) {
+		add(GRAPH_CLEARED, sourceId, timeId, null, null);
+	}
+
+	public void stepBegins(String sourceId, long timeId, double step) {
+		final int i = add(STEP_BEGINS, sourceId, timeId, null, null);
+		steps[i] = step;
+	}
+
+	public void graphAttributeAdded(String sourceId, long timeId,
+			String attribute, Object value) {
+		final int i = add(GRAPH_ATTRIBUTE_ADDED, sourceId, timeId,
+				null, attribute);
+		newValues[i] = value;
+	}
+
+	public void graphAttributeChanged(String sourceId, long timeId,
+			String attribute, Object oldValue, Object newValue) {
+		final int i = add(GRAPH_ATTRIBUTE_CHANGED, sourceId, timeId, null,
+				attribute);
+		oldValues[i] = oldValue;
+		newValues[i] = newValue;
+	}
+
+	public void graphAttributeRemoved(String sourceId, long timeId,
+			String attribute) {
+		add(GRAPH_ATTRIBUTE_REMOVED, sourceId, timeId, null, attribute);
+	}
+
+	public void nodeAttributeAdded(String sourceId, long timeId,
+			String nodeId, String attribute, Object value) {
+		final int i = add(NODE_ATTRIBUTE_ADDED, sourceId, timeId,
+				nodeId, attribute);
+		newValues[i] = value;
+	}
+
+	public void nodeAttributeChanged(String sourceId, long timeId,
+			String nodeId, String attribute, Object oldValue, Object newValue) {
+		final int i = add(NODE_ATTRIBUTE_CHANGED, sourceId, timeId, nodeId,
+				attribute);
+		oldValues[i] = oldValue;
+		newValues[i] = newValue;
+	}
+
+	public void nodeAttributeRemoved(String sourceId, long timeId,
+			String nodeId, String attribute) {
+		add(NODE_ATTRIBUTE_REMOVED, sourceId, timeId, nodeId, attribute);
+	}
+
+	public void edgeAttributeAdded(String sourceId, long timeId,
+			String edgeId, String attribute, Object value) {
+		final int i = add(EDGE_ATTRIBUTE_ADDED, sourceId, timeId,
+				edgeId, attribute);
+		newValues[i] = value;
+	}
+
+	public void edgeAttributeChanged(String sourceId, long timeId,
+			String edgeId, String attribute, Object oldValue, Object newValue) {
+		final int i = add(EDGE_ATTRIBUTE_CHANGED, sourceId, timeId, edgeId,
+				attribute);
+		oldValues[i] = oldValue;
+		newValues[i] = newValue;
+	}
+
+	public void edgeAttributeRemoved(String sourceId, long timeId,
+			String edgeId, String attribute) {
+		add(EDGE_ATTRIBUTE_REMOVED, sourceId, timeId, edgeId, attribute);
+	}
+
+	// Utility
+
+	private int check(int event) {
+		if (event < 0 || event >= size)
+			throw new IndexOutOfBoundsException("event " + event + " of "
+					+ size);
+
+		return event;
+	}
+
+	/**
+	 * Append an event and fill the columns common to all events.
+	 * 
+	 * @return The index of the new event.
+	 */
+	private int add(int code, String sourceId, long timeId, String elementId,
+			String argument) {
+		if (size == codes.length)
+			grow();
+
+		final int i = size++;
+
+		codes[i] = (byte) code;
+		timeIds[i] = timeId;
+		sources[i] = indexOf(sourceId);
+		elements[i] = indexOf(elementId);
+		arguments[i] = indexOf(argument);
+		targets[i] = -1;
+		steps[i] = 0;
+		directed[i] = false;
+
+		return i;
+	}
+
+	private void grow() {
+		final int n = codes.length * 2;
+
+		codes = Arrays.copyOf(codes, n);
+		timeIds = Arrays.copyOf(timeIds, n);
+		sources = Arrays.copyOf(sources, n);
+		elements = Arrays.copyOf(elements, n);
+		arguments = Arrays.copyOf(arguments, n);
+		targets = Arrays.copyOf(targets, n);
+		steps = Arrays.copyOf(steps, n);
+		directed = Arrays.copyOf(directed, n);
+		oldValues = Arrays.copyOf(oldValues, n);
+		newValues = Arrays.copyOf(newValues, n);
+	}
+
+	/**
+	 * String of an index of the table, null for -1.
+	 */
+	private String string(int index) {
+		return index < 0 ? null : strings[index];
+	}
+
+	/**
+	 * Index of a string in the table, the string being added if needed. The
+	 * index of null is -1.
+	 */
+	private int indexOf(String s) {
+		if (s == null)
+			return -1;
+
+		final int mask = table.length - 1;
+		int slot = mix(s.hashCode()) & mask;
+
+		for (int e = table[slot]; e != 0; e = table[slot]) {
+			final String t = strings[e - 1];
+
+			if (t == s || t.equals(s))
+				return e - 1;
+
+			slot = (slot + 1) & mask;
+		}
+
+		if (stringCount == strings.length)
+			strings = Arrays.copyOf(strings, stringCount * 2);
+
+		strings[stringCount] = s;
+		table[slot] = ++stringCount;
+
+		if (stringCount * 2 > table.length)
+			rehash();
+
+		return stringCount - 1;
+	}
+
+	private void rehash() {
+		table = new int[table.length * 2];
+
+		final int mask = table.length - 1;
+
+		for (int i = 0; i < stringCount; i++) {
+			int slot = mix(strings[i].hashCode()) & mask;
+
+			while (table[slot] != 0)
+				slot = (slot + 1) & mask;
+
+			table[slot] = i + 1;
+		}
+	}
+
+	private static int mix(int h) {
+		h *= 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
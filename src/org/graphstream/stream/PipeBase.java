@@ -31,6 +31,10 @@
  */
 package org.graphstream.stream;
 
+import java.lang.reflect.Method;
+
+import org.graphstream.graph.implementations.AbstractGraph;
+
 /**
  * A base pipe that merely let all events pass.
  * 
@@ -44,7 +48,24 @@ package org.graphstream.stream;
  * toward several outputs.
  * </p>
  */
-public class PipeBase extends SourceBase implements Pipe {
+public class PipeBase extends SourceBase implements Pipe, BatchSink {
+	/**
+	 * Whether a subclass refines one of the sink methods, its batches must
+	 * then go through these methods.
+	 */
+	private static final ClassValue<Boolean> REFINES_SINK = new ClassValue<Boolean>() {
+		@Override
+		protected Boolean computeValue(Class<?> type) {
+			for (Class<?> sink : new Class<?>[] { ElementSink.class,
+					AttributeSink.class })
+				for (Method m : sink.getMethods())
+					if (AbstractGraph.overrides(type, PipeBase.class,
+							m.getName(), m.getParameterTypes()))
+						return true;
+			return false;
+		}
+	};
+
 	public void edgeAttributeAdded(String graphId, long timeId, String edgeId,
 			String attribute, Object value) {
 		sendEdgeAttributeAdded(graphId, timeId, edgeId, attribute, value);
@@ -117,4 +138,26 @@ public class PipeBase extends SourceBase implements Pipe {
 	public void stepBegins(String graphId, long timeId, double step) {
 		sendStepBegins(graphId, timeId, step);
 	}
+
+	/**
+	 * Forward the batch as is if {@link #acceptsBatches()}, else replay its
+	 * events one by one through the sink methods of this pipe.
+	 */
+	public void eventBatch(EventBatch batch) {
+		if (acceptsBatches())
+			sendBatch(batch);
+		else
+			batch.replay(this);
+	}
+
+	/**
+	 * Tells if batches can be forwarded without going through the sink
+	 * methods of this pipe.
+	 * 
+	 * @return false if the class of this pipe refines one of the sink
+	 *         methods, true otherwise.
+	 */
+	protected boolean acceptsBatches() {
+		return !REFINES_SINK.get(getClass());
+	}
 }
\ No newline at end of file
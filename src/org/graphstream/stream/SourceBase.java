@@ -31,11 +31,8 @@
  */
 package org.graphstream.stream;
 
-import java.util.ArrayDeque;
-import java.util.Collection;
-import java.util.HashSet;
-import java.util.Queue;
-import java.util.Set;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.UUID;
 import org.graphstream.graph.Element.AttributeChangeEvent;
 import org.graphstream.stream.sync.SourceTime;
@@ -61,6 +58,13 @@ import org.graphstream.stream.sync.SourceTime;
  * deferred until the first send*() method is finished. This avoid recursive
  * loops if a sink modifies the input during event handling.
  * </p>
+ * 
+ * <p>
+ * Sinks are kept in copy-on-write arrays, so a send*() method iterates over a
+ * snapshot of the sinks without allocating an iterator. Deferred events are
+ * stored in recycled records, so that neither the direct nor the re-entrant
+ * path allocates an object per event once the source is warmed up.
+ * </p>
  */
 public abstract class SourceBase implements Source {
 	// Attribute
@@ -70,20 +74,41 @@ public abstract class SourceBase implements Source {
 	};
 
 	/**
-	 * Set of graph attributes sinks.
+	 * Maximum number of deferred event records kept for reuse.
 	 */
-	private final Set<AttributeSink> attrSinks = new HashSet<>();
+	private static final int POOL_LIMIT = 64;
+
+	private static final AttributeSink[] NO_ATTRIBUTE_SINKS = new AttributeSink[0];
+
+	private static final ElementSink[] NO_ELEMENT_SINKS = new ElementSink[0];
 
 	/**
-	 * Set of graph elements sinks.
+	 * Graph attributes sinks. The array is never modified in place, it is
+	 * replaced each time a sink is added or removed.
 	 */
-    private final Set<ElementSink> eltsSinks = new HashSet<>();
+	private AttributeSink[] attrSinks = NO_ATTRIBUTE_SINKS;
 
 	/**
-	 * A queue that allow the management of events (nodes/edge
-	 * add/delete/change) in the right order.
+	 * Graph elements sinks. The array is never modified in place, it is
+	 * replaced each time a sink is added or removed.
 	 */
-    private final Queue<GraphEvent> eventQueue = new ArrayDeque<>();
+	private ElementSink[] eltsSinks = NO_ELEMENT_SINKS;
+
+	/**
+	 * Head and tail of the queue that allow the management of events
+	 * (nodes/edge add/delete/change) in the right order.
+	 */
+	private DeferredEvent queueHead, queueTail;
+
+	/**
+	 * Records already triggered, ready to be reused.
+	 */
+	private DeferredEvent pool;
+
+	/**
+	 * Number of records in the pool.
+	 */
+	private int poolSize = 0;
 
 	/**
 	 * A boolean that indicates whether or not an Sink event is being sent
@@ -114,12 +139,34 @@ public abstract class SourceBase implements Source {
 
 	// Access
 
+	/**
+	 * Snapshot of the attribute sinks currently registered.
+	 */
 	public Iterable<AttributeSink> attributeSinks() {
-		return this.attrSinks;
+		return Collections.unmodifiableList(Arrays.asList(this.attrSinks));
 	}
 
+	/**
+	 * Snapshot of the element sinks currently registered.
+	 */
 	public Iterable<ElementSink> elementSinks() {
-		return this.eltsSinks;
+		return Collections.unmodifiableList(Arrays.asList(this.eltsSinks));
+	}
+
+	/**
+	 * True if at least one attribute sink is registered. Unlike
+	 * {@link #attributeSinks()}, this does not allocate anything.
+	 */
+	public boolean hasAttributeSinks() {
+		return this.attrSinks.length > 0;
+	}
+
+	/**
+	 * True if at least one element sink is registered. Unlike
+	 * {@link #elementSinks()}, this does not allocate anything.
+	 */
+	public boolean hasElementSinks() {
+		return this.eltsSinks.length > 0;
 	}
     
     public String getId() { 
@@ -140,12 +187,12 @@ public abstract class SourceBase implements Source {
 			eventProcessing = true;
 			manageEvents();
 
-			attrSinks.add(sink);
+			attrSinks = added(attrSinks, sink);
 
 			manageEvents();
 			eventProcessing = false;
 		} else {
-			eventQueue.add(new AddToListEvent<>(attrSinks, sink));
+			defer(ADD_ATTRIBUTE_SINK, null, -1).sink = sink;
 		}
 	}
 
@@ -155,12 +202,12 @@ public abstract class SourceBase implements Source {
 			eventProcessing = true;
 			manageEvents();
 
-			eltsSinks.add(sink);
+			eltsSinks = added(eltsSinks, sink);
 
 			manageEvents();
 			eventProcessing = false;
 		} else {
-			eventQueue.add(new AddToListEvent<>(eltsSinks, sink));
+			defer(ADD_ELEMENT_SINK, null, -1).sink = sink;
 		}
 	}
 
@@ -176,12 +223,12 @@ public abstract class SourceBase implements Source {
 			eventProcessing = true;
 			manageEvents();
 
-			eltsSinks.clear();
+			eltsSinks = NO_ELEMENT_SINKS;
 
 			manageEvents();
 			eventProcessing = false;
 		} else {
-			eventQueue.add(new ClearListEvent<>(eltsSinks));
+			defer(CLEAR_ELEMENT_SINKS, null, -1);
 		}
 	}
 
@@ -191,12 +238,12 @@ public abstract class SourceBase implements Source {
 			eventProcessing = true;
 			manageEvents();
 
-			attrSinks.clear();
+			attrSinks = NO_ATTRIBUTE_SINKS;
 
 			manageEvents();
 			eventProcessing = false;
 		} else {
-			eventQueue.add(new ClearListEvent<>(attrSinks));
+			defer(CLEAR_ATTRIBUTE_SINKS, null, -1);
 		}
 	}
 
@@ -212,13 +259,12 @@ public abstract class SourceBase implements Source {
 			eventProcessing = true;
 			manageEvents();
 
-			attrSinks.remove(sink);
+			attrSinks = removed(attrSinks, sink);
 
 			manageEvents();
 			eventProcessing = false;
 		} else {
-			eventQueue.add(new RemoveFromListEvent<>(attrSinks,
-					sink));
+			defer(REMOVE_ATTRIBUTE_SINK, null, -1).sink = sink;
 		}
 	}
 
@@ -228,13 +274,12 @@ public abstract class SourceBase implements Source {
 			eventProcessing = true;
 			manageEvents();
 
-			eltsSinks.remove(sink);
+			eltsSinks = removed(eltsSinks, sink);
 
 			manageEvents();
 			eventProcessing = false;
 		} else {
-			eventQueue
-					.add(new RemoveFromListEvent<>(eltsSinks, sink));
+			defer(REMOVE_ELEMENT_SINK, null, -1).sink = sink;
 		}
 	}
 
@@ -266,7 +311,7 @@ public abstract class SourceBase implements Source {
 			manageEvents();
 			eventProcessing = false;
 		} else {
-			eventQueue.add(new BeforeGraphClearEvent(sourceId, timeId));
+			defer(GRAPH_CLEARED, sourceId, timeId);
 		}
 	}
 
@@ -302,7 +347,7 @@ public abstract class SourceBase implements Source {
 			manageEvents();
 			eventProcessing = false;
 		} else {
-			eventQueue.add(new StepBeginsEvent(sourceId, timeId, step));
+			defer(STEP_BEGINS, sourceId, timeId).step = step;
 		}
 	}
 
@@ -338,7 +383,7 @@ public abstract class SourceBase implements Source {
 			manageEvents();
 			eventProcessing = false;
 		} else {
-			eventQueue.add(new AfterNodeAddEvent(sourceId, timeId, nodeId));
+			defer(NODE_ADDED, sourceId, timeId).eltId = nodeId;
 		}
 	}
 
@@ -374,7 +419,7 @@ public abstract class SourceBase implements Source {
 			manageEvents();
 			eventProcessing = false;
 		} else {
-			eventQueue.add(new BeforeNodeRemoveEvent(sourceId, timeId, nodeId));
+			defer(NODE_REMOVED, sourceId, timeId).eltId = nodeId;
 		}
 	}
 
@@ -425,8 +470,11 @@ public abstract class SourceBase implements Source {
 			manageEvents();
 			eventProcessing = false;
 		} else {
-			eventQueue.add(new AfterEdgeAddEvent(sourceId, timeId, edgeId,
-					fromNodeId, toNodeId, directed));
+			final DeferredEvent e = defer(EDGE_ADDED, sourceId, timeId);
+			e.eltId = edgeId;
+			e.fromNodeId = fromNodeId;
+			e.toNodeId = toNodeId;
+			e.directed = directed;
 		}
 	}
 
@@ -462,7 +510,7 @@ public abstract class SourceBase implements Source {
 			manageEvents();
 			eventProcessing = false;
 		} else {
-			eventQueue.add(new BeforeEdgeRemoveEvent(sourceId, timeId, edgeId));
+			defer(EDGE_REMOVED, sourceId, timeId).eltId = edgeId;
 		}
 	}
 
@@ -821,287 +869,328 @@ public abstract class SourceBase implements Source {
 			eventProcessing = true;
 			manageEvents();
 
-			if (event == AttributeChangeEvent.ADD) {
-				if (eltType == ElementType.NODE) {
-                    for (final AttributeSink sink : this.attrSinks)
-                        sink.nodeAttributeAdded(sourceId, timeId, eltId, attribute, newValue);
-				} else if (eltType == ElementType.EDGE) {
-                    for (final AttributeSink sink : this.attrSinks)
-                        sink.edgeAttributeAdded(sourceId, timeId, eltId, attribute, newValue);
-				} else {
-                    for (final AttributeSink sink : this.attrSinks)
-                        sink.graphAttributeAdded(sourceId, timeId, attribute, newValue);
-				}
-			} else if (event == AttributeChangeEvent.REMOVE) {
-				if (eltType == ElementType.NODE) {
-                    for (final AttributeSink sink : this.attrSinks)
-                        sink.nodeAttributeRemoved(sourceId, timeId, eltId, attribute);
-				} else if (eltType == ElementType.EDGE) {
-                    for (final AttributeSink sink : this.attrSinks)
-                        sink.edgeAttributeRemoved(sourceId, timeId, eltId, attribute);
-				} else {
-                    for (final AttributeSink sink : this.attrSinks)
-                        sink.graphAttributeRemoved(sourceId, timeId, attribute);
-				}
-			} else {
-				if (eltType == ElementType.NODE) {
-                    for (final AttributeSink sink : this.attrSinks)
-                        sink.nodeAttributeChanged(sourceId, timeId, eltId, attribute, oldValue, newValue);
-				} else if (eltType == ElementType.EDGE) {
-                    for (final AttributeSink sink : this.attrSinks)
-                        sink.edgeAttributeChanged(sourceId, timeId, eltId, attribute, oldValue, newValue);
-				} else {
-                    for (final AttributeSink sink : this.attrSinks)
-                        sink.graphAttributeChanged(sourceId, timeId, attribute, oldValue, newValue);
-				}
-			}
+			fireAttributeChanged(sourceId, timeId, eltId, eltType, attribute,
+					event, oldValue, newValue);
 
 			manageEvents();
 			eventProcessing = false;
 		} else {
-			eventQueue.add(new AttributeChangedEvent(sourceId, timeId, eltId,
-					eltType, attribute, event, oldValue, newValue));
+			final DeferredEvent e = defer(ATTRIBUTE_CHANGED, sourceId, timeId);
+			e.eltId = eltId;
+			e.eltType = eltType;
+			e.attribute = attribute;
+			e.event = event;
+			e.oldValue = oldValue;
+			e.newValue = newValue;
 		}
 	}
 
-	// Deferred event management
-
-	/**
-	 * If in "event processing mode", ensure all pending events are processed.
-	 */
-	private void manageEvents() {
-		if (eventProcessing) {
-			while (!eventQueue.isEmpty())
-				eventQueue.remove().trigger();
+	private void fireAttributeChanged(String sourceId, long timeId,
+			String eltId, ElementType eltType, String attribute,
+			AttributeChangeEvent event, Object oldValue, Object newValue) {
+		if (event == AttributeChangeEvent.ADD) {
+			if (eltType == ElementType.NODE) {
+				for (final AttributeSink sink : this.attrSinks)
+					sink.nodeAttributeAdded(sourceId, timeId, eltId, attribute, newValue);
+			} else if (eltType == ElementType.EDGE) {
+				for (final AttributeSink sink : this.attrSinks)
+					sink.edgeAttributeAdded(sourceId, timeId, eltId, attribute, newValue);
+			} else {
+				for (final AttributeSink sink : this.attrSinks)
+					sink.graphAttributeAdded(sourceId, timeId, attribute, newValue);
+			}
+		} else if (event == AttributeChangeEvent.REMOVE) {
+			if (eltType == ElementType.NODE) {
+				for (final AttributeSink sink : this.attrSinks)
+					sink.nodeAttributeRemoved(sourceId, timeId, eltId, attribute);
+			} else if (eltType == ElementType.EDGE) {
+				for (final AttributeSink sink : this.attrSinks)
+					sink.edgeAttributeRemoved(sourceId, timeId, eltId, attribute);
+			} else {
+				for (final AttributeSink sink : this.attrSinks)
+					sink.graphAttributeRemoved(sourceId, timeId, attribute);
+			}
+		} else {
+			if (eltType == ElementType.NODE) {
+				for (final AttributeSink sink : this.attrSinks)
+					sink.nodeAttributeChanged(sourceId, timeId, eltId, attribute, oldValue, newValue);
+			} else if (eltType == ElementType.EDGE) {
+				for (final AttributeSink sink : this.attrSinks)
+					sink.edgeAttributeChanged(sourceId, timeId, eltId, attribute, oldValue, newValue);
+			} else {
+				for (final AttributeSink sink : this.attrSinks)
+					sink.graphAttributeChanged(sourceId, timeId, attribute, oldValue, newValue);
+			}
 		}
 	}
 
-	// Events Management
+	// Sink arrays
 
 	/**
-	 * Interface that provide general purpose classification for evens involved
-	 * in graph modifications
+	 * Sinks are compared by identity, a sink whose hash code changes while it
+	 * is registered (a collection of events for example) can still be
+	 * removed.
 	 */
-	private abstract class GraphEvent {
-        protected final String sourceId;
-        protected final long timeId;
-
-		GraphEvent(String sourceId, long timeId) {
-			this.sourceId = sourceId;
-			this.timeId = timeId;
+	private static <T> int indexOf(T[] sinks, T sink) {
+		for (int i = 0; i < sinks.length; i++) {
+			if (sinks[i] == sink)
+				return i;
 		}
 
-		abstract void trigger();
+		return -1;
 	}
 
-	private class AfterEdgeAddEvent extends GraphEvent {
-		private final String edgeId;
-        private final String fromNodeId;
-        private final String toNodeId;
-        private final boolean directed;
-
-		AfterEdgeAddEvent(String sourceId, long timeId, String edgeId,
-				String fromNodeId, String toNodeId, boolean directed) {
-			super(sourceId, timeId);
-			this.edgeId = edgeId;
-			this.fromNodeId = fromNodeId;
-			this.toNodeId = toNodeId;
-			this.directed = directed;
-		}
+	private static <T> T[] added(T[] sinks, T sink) {
+		if (indexOf(sinks, sink) >= 0)
+			return sinks;
 
-        @Override
-		void trigger() {
-            for (final ElementSink sink : eltsSinks)
-                sink.edgeAdded(sourceId, timeId, edgeId, fromNodeId, toNodeId, directed);
-		}
+		final T[] copy = Arrays.copyOf(sinks, sinks.length + 1);
+		copy[sinks.length] = sink;
+		return copy;
 	}
 
-	private class BeforeEdgeRemoveEvent extends GraphEvent {
-		private final String edgeId;
+	private static <T> T[] removed(T[] sinks, T sink) {
+		final int i = indexOf(sinks, sink);
 
-		BeforeEdgeRemoveEvent(String sourceId, long timeId, String edgeId) {
-			super(sourceId, timeId);
-			this.edgeId = edgeId;
-		}
+		if (i < 0)
+			return sinks;
 
-        @Override
-		void trigger() {
-            for (final ElementSink sink : eltsSinks)
-                sink.edgeRemoved(sourceId, timeId, edgeId);
-		}
+		final T[] copy = Arrays.copyOf(sinks, sinks.length - 1);
+		System.arraycopy(sinks, i + 1, copy, i, sinks.length - i - 1);
+		return copy;
 	}
 
-	private class AfterNodeAddEvent extends GraphEvent {
-		private final String nodeId;
-
-		AfterNodeAddEvent(String sourceId, long timeId, String nodeId) {
-			super(sourceId, timeId);
-			this.nodeId = nodeId;
-		}
+	// Batches
 
-        @Override
-		void trigger() {
-            for (final ElementSink sink : eltsSinks)
-                sink.nodeAdded(sourceId, timeId, nodeId);
-		}
-	}
+	/**
+	 * Send a batch of events. Sinks implementing {@link BatchSink} and
+	 * registered both as attribute and element sinks receive the whole batch
+	 * at once. The other sinks receive its events one by one, attribute events
+	 * going to attribute sinks and element events to element sinks, as if
+	 * they were sent with the send*() methods.
+	 * 
+	 * <p>
+	 * The batch is sent as is, the time ids it contains are not generated by
+	 * this source. If this is called during another send*() method, a copy of
+	 * the batch is deferred, so it can be reused by the caller as soon as this
+	 * method returns.
+	 * </p>
+	 * 
+	 * @param batch
+	 *            The events to send.
+	 */
+	public void sendBatch(EventBatch batch) {
+		if (batch.isEmpty())
+			return;
 
-	private class BeforeNodeRemoveEvent extends GraphEvent {
-		private final String nodeId;
+		if (!eventProcessing) {
+			eventProcessing = true;
+			manageEvents();
 
-		BeforeNodeRemoveEvent(String sourceId, long timeId, String nodeId) {
-			super(sourceId, timeId);
-			this.nodeId = nodeId;
-		}
+			fireBatch(batch);
 
-        @Override
-		void trigger() {
-            for (final ElementSink sink : eltsSinks)
-                sink.nodeRemoved(sourceId, timeId, nodeId);
+			manageEvents();
+			eventProcessing = false;
+		} else {
+			defer(BATCH, null, -1).batch = new EventBatch(batch);
 		}
 	}
 
-	private class BeforeGraphClearEvent extends GraphEvent {
-		BeforeGraphClearEvent(String sourceId, long timeId) {
-			super(sourceId, timeId);
+	private void fireBatch(EventBatch batch) {
+		AttributeSink[] attrs = attrSinks;
+		ElementSink[] elts = eltsSinks;
+
+		for (final ElementSink sink : elts) {
+			if (sink instanceof BatchSink && indexOf(attrs, sink) >= 0) {
+				((BatchSink) sink).eventBatch(batch);
+				attrs = removed(attrs, (AttributeSink) sink);
+				elts = removed(elts, sink);
+			}
 		}
 
-        @Override
-		void trigger() {
-            for (final ElementSink sink : eltsSinks)
-                sink.graphCleared(sourceId, timeId);
+		if (attrs.length == 0 && elts.length == 0)
+			return;
+
+		for (int i = 0; i < batch.size(); i++) {
+			if (batch.isAttributeEvent(i)) {
+				for (final AttributeSink sink : attrs)
+					batch.replay(i, sink, null);
+			} else {
+				for (final ElementSink sink : elts)
+					batch.replay(i, null, sink);
+			}
 		}
 	}
 
-	private class StepBeginsEvent extends GraphEvent {
-		private final double step;
+	// Deferred event management
 
-		StepBeginsEvent(String sourceId, long timeId, double step) {
-			super(sourceId, timeId);
-			this.step = step;
-		}
+	/**
+	 * Append a deferred event to the queue, reusing a pooled record when one
+	 * is available. The caller fills the fields specific to the event.
+	 */
+	private DeferredEvent defer(int type, String sourceId, long timeId) {
+		DeferredEvent e = pool;
 
-        @Override
-		void trigger() {
-            for (final ElementSink sink : eltsSinks)
-                sink.stepBegins(sourceId, timeId, step);
+		if (e != null) {
+			pool = e.next;
+			e.next = null;
+			poolSize--;
+		} else {
+			e = new DeferredEvent();
 		}
-	}
 
-	private class AttributeChangedEvent extends GraphEvent {
-        private final ElementType eltType;
-        private final String eltId;
-        private final String attribute;
-        private final AttributeChangeEvent event;
-        private final Object oldValue;
-		private final Object newValue;
-
-		AttributeChangedEvent(String sourceId, long timeId, String eltId,
-				ElementType eltType, String attribute,
-				AttributeChangeEvent event, Object oldValue, Object newValue) {
-			super(sourceId, timeId);
-			this.eltType = eltType;
-			this.eltId = eltId;
-			this.attribute = attribute;
-			this.event = event;
-			this.oldValue = oldValue;
-			this.newValue = newValue;
-		}
+		e.type = type;
+		e.sourceId = sourceId;
+		e.timeId = timeId;
 
-        @Override
-		void trigger() {
-			switch (event) {
-			case ADD:
-				switch (eltType) {
-				case NODE:
-                    for (final AttributeSink sink : attrSinks)
-                        sink.nodeAttributeAdded(sourceId, timeId, eltId, attribute, newValue);
-					break;
-				case EDGE:
-                    for (final AttributeSink sink : attrSinks)
-                        sink.edgeAttributeAdded(sourceId, timeId, eltId, attribute, newValue);
-					break;
-				default:
-                    for (final AttributeSink sink : attrSinks)
-						sink.graphAttributeAdded(sourceId, timeId, attribute, newValue);
-				}
-				break;
-			case REMOVE:
-				switch (eltType) {
-				case NODE:
-                    for (final AttributeSink sink : attrSinks)
-                        sink.nodeAttributeRemoved(sourceId, timeId, eltId, attribute);
-					break;
-				case EDGE:
-                    for (final AttributeSink sink : attrSinks)
-                        sink.edgeAttributeRemoved(sourceId, timeId, eltId, attribute);
-					break;
-				default:
-                    for (final AttributeSink sink : attrSinks)
-                        sink.graphAttributeRemoved(sourceId, timeId, attribute);
-				}
-				break;
-			default:
-				switch (eltType) {
-				case NODE:
-                    for (final AttributeSink sink : attrSinks)
-                        sink.nodeAttributeChanged(sourceId, timeId, eltId, attribute, oldValue, newValue);
-					break;
-				case EDGE:
-                    for (final AttributeSink sink : attrSinks)
-                        sink.edgeAttributeChanged(sourceId, timeId, eltId, attribute, oldValue, newValue);
-					break;
-				default:
-                    for (final AttributeSink sink : attrSinks)
-                        sink.graphAttributeChanged(sourceId, timeId, attribute, oldValue, newValue);
-				}
-			}
-		}
+		if (queueTail == null)
+			queueHead = e;
+		else
+			queueTail.next = e;
+
+		queueTail = e;
+		return e;
 	}
 
-	private class AddToListEvent<T> extends GraphEvent {
-		private final Collection<T> l;
-        private final T obj;
+	/**
+	 * If in "event processing mode", ensure all pending events are processed.
+	 */
+	private void manageEvents() {
+		if (eventProcessing) {
+			while (queueHead != null) {
+				final DeferredEvent e = queueHead;
+
+				queueHead = e.next;
 
-		AddToListEvent(final Collection<T> l, T obj) {
-			super(null, -1);
-			this.l = l;
-			this.obj = obj;
-		}
+				if (queueHead == null)
+					queueTail = null;
 
-        @Override
-		void trigger() {
-			l.add(obj);
+				e.next = null;
+				trigger(e);
+				recycle(e);
+			}
 		}
 	}
 
-    private class RemoveFromListEvent<T> extends GraphEvent {
-        private final Collection<T> l;
-		private final T obj;
-
-		RemoveFromListEvent(Collection<T> l, T obj) {
-			super(null, -1);
-			this.l = l;
-			this.obj = obj;
+	private void trigger(DeferredEvent e) {
+		switch (e.type) {
+		case NODE_ADDED:
+			for (final ElementSink sink : eltsSinks)
+				sink.nodeAdded(e.sourceId, e.timeId, e.eltId);
+			break;
+		case NODE_REMOVED:
+			for (final ElementSink sink : eltsSinks)
+				sink.nodeRemoved(e.sourceId, e.timeId, e.eltId);
+			break;
+		case EDGE_ADDED:
+			for (final ElementSink sink : eltsSinks)
+				sink.edgeAdded(e.sourceId, e.timeId, e.eltId, e.fromNodeId,
+						e.toNodeId, e.directed);
+			break;
+		case EDGE_REMOVED:
+			for (final ElementSink sink : eltsSinks)
+				sink.edgeRemoved(e.sourceId, e.timeId, e.eltId);
+			break;
+		case GRAPH_CLEARED:
+			for (final ElementSink sink : eltsSinks)
+				sink.graphCleared(e.sourceId, e.timeId);
+			break;
+		case STEP_BEGINS:
+			for (final ElementSink sink : eltsSinks)
+				sink.stepBegins(e.sourceId, e.timeId, e.step);
+			break;
+		case ATTRIBUTE_CHANGED:
+			fireAttributeChanged(e.sourceId, e.timeId, e.eltId, e.eltType,
+					e.attribute, e.event, e.oldValue, e.newValue);
+			break;
+		case BATCH:
+			fireBatch(e.batch);
+			break;
+		case ADD_ATTRIBUTE_SINK:
+			attrSinks = added(attrSinks, (AttributeSink) e.sink);
+			break;
+		case ADD_ELEMENT_SINK:
+			eltsSinks = added(eltsSinks, (ElementSink) e.sink);
+			break;
+		case REMOVE_ATTRIBUTE_SINK:
+			attrSinks = removed(attrSinks, (AttributeSink) e.sink);
+			break;
+		case REMOVE_ELEMENT_SINK:
+			eltsSinks = removed(eltsSinks, (ElementSink) e.sink);
+			break;
+		case CLEAR_ATTRIBUTE_SINKS:
+			attrSinks = NO_ATTRIBUTE_SINKS;
+			break;
+		case CLEAR_ELEMENT_SINKS:
+			eltsSinks = NO_ELEMENT_SINKS;
+			break;
+		default:
+			throw new IllegalStateException("unknown deferred event " + e.type);
 		}
+	}
 
-        @Override
-		void trigger() {
-			l.remove(obj);
+	/**
+	 * Release the references held by a triggered record and give it back to
+	 * the pool.
+	 */
+	private void recycle(DeferredEvent e) {
+		e.sourceId = null;
+		e.eltId = null;
+		e.fromNodeId = null;
+		e.toNodeId = null;
+		e.attribute = null;
+		e.eltType = null;
+		e.event = null;
+		e.oldValue = null;
+		e.newValue = null;
+		e.sink = null;
+		e.batch = null;
+
+		if (poolSize < POOL_LIMIT) {
+			e.next = pool;
+			pool = e;
+			poolSize++;
 		}
 	}
 
-	private class ClearListEvent<T> extends GraphEvent {
-        private final Collection<T> l;
+	// Events Management
 
-		ClearListEvent(Collection<T> l) {
-			super(null, -1);
-			this.l = l;
-		}
+	private static final int NODE_ADDED = 0;
+	private static final int NODE_REMOVED = 1;
+	private static final int EDGE_ADDED = 2;
+	private static final int EDGE_REMOVED = 3;
+	private static final int GRAPH_CLEARED = 4;
+	private static final int STEP_BEGINS = 5;
+	private static final int ATTRIBUTE_CHANGED = 6;
+	private static final int ADD_ATTRIBUTE_SINK = 7;
+	private static final int ADD_ELEMENT_SINK = 8;
+	private static final int REMOVE_ATTRIBUTE_SINK = 9;
+	private static final int REMOVE_ELEMENT_SINK = 10;
+	private static final int CLEAR_ATTRIBUTE_SINKS = 11;
+	private static final int CLEAR_ELEMENT_SINKS = 12;
+	private static final int BATCH = 13;
 
-        @Override
-		void trigger() {
-			l.clear();
-		}
+	/**
+	 * Mutable record of an event deferred while another one is being sent.
+	 * A single class covers every kind of event so that records can be
+	 * recycled; only the fields relevant to {@link #type} are set.
+	 */
+	private static final class DeferredEvent {
+		int type;
+		String sourceId;
+		long timeId;
+		String eltId;
+		String fromNodeId;
+		String toNodeId;
+		boolean directed;
+		double step;
+		ElementType eltType;
+		String attribute;
+		AttributeChangeEvent event;
+		Object oldValue;
+		Object newValue;
+		Object sink;
+		EventBatch batch;
+		DeferredEvent next;
 	}
-}
\ No newline at end of file
+}
@@ -32,11 +32,17 @@
 package org.graphstream.stream.file;
 
 import org.graphstream.graph.CompoundAttribute;
+import org.graphstream.graph.implementations.AbstractGraph;
+import org.graphstream.stream.AttributeSink;
+import org.graphstream.stream.BatchSink;
+import org.graphstream.stream.ElementSink;
+import org.graphstream.stream.EventBatch;
 
 import java.awt.Color;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.lang.reflect.Array;
+import java.lang.reflect.Method;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
@@ -44,7 +50,24 @@ import java.util.Map;
 /**
  * File output for the DGS (Dynamic Graph Stream) file format.
  */
-public class FileSinkDGS extends FileSinkBase {
+public class FileSinkDGS extends FileSinkBase implements BatchSink {
+	/**
+	 * Whether a subclass refines one of the sink methods, its batches must
+	 * then go through these methods.
+	 */
+	private static final ClassValue<Boolean> REFINES_SINK = new ClassValue<Boolean>() {
+		@Override
+		protected Boolean computeValue(Class<?> type) {
+			for (Class<?> sink : new Class<?>[] { ElementSink.class,
+					AttributeSink.class })
+				for (Method m : sink.getMethods())
+					if (AbstractGraph.overrides(type, FileSinkDGS.class,
+							m.getName(), m.getParameterTypes()))
+						return true;
+			return false;
+		}
+	};
+
 	// Attribute
 
 	/**
@@ -152,6 +175,104 @@ public class FileSinkDGS extends FileSinkBase {
 		out.printf(Locale.US, "st %f%n", step);
 	}
 
+	/**
+	 * Write the events of a batch. Identifiers are quoted once per batch
+	 * instead of once per event. If the sink does not
+	 * {@link #acceptsBatches()}, the events are given one by one to its sink
+	 * methods.
+	 */
+	public void eventBatch(EventBatch batch) {
+		if (!acceptsBatches()) {
+			batch.replay(this);
+			return;
+		}
+
+		final String[] quoted = new String[batch.getStringCount()];
+
+		for (int i = 0; i < batch.size(); i++) {
+			switch (batch.getCode(i)) {
+			case EventBatch.NODE_ADDED:
+				out.printf("an \"%s\"%n",
+						quoted(batch, quoted, batch.getElementIndex(i)));
+				break;
+			case EventBatch.NODE_REMOVED:
+				out.printf("dn \"%s\"%n",
+						quoted(batch, quoted, batch.getElementIndex(i)));
+				break;
+			case EventBatch.EDGE_ADDED:
+				out.printf("ae \"%s\" \"%s\" %s \"%s\"%n",
+						quoted(batch, quoted, batch.getElementIndex(i)),
+						quoted(batch, quoted, batch.getArgumentIndex(i)),
+						batch.isDirected(i) ? ">" : "",
+						quoted(batch, quoted, batch.getTargetIndex(i)));
+				break;
+			case EventBatch.EDGE_REMOVED:
+				out.printf("de \"%s\"%n",
+						quoted(batch, quoted, batch.getElementIndex(i)));
+				break;
+			case EventBatch.GRAPH_CLEARED:
+				out.printf("cl%n");
+				break;
+			case EventBatch.STEP_BEGINS:
+				out.printf(Locale.US, "st %f%n", batch.getStep(i));
+				break;
+			case EventBatch.GRAPH_ATTRIBUTE_ADDED:
+			case EventBatch.GRAPH_ATTRIBUTE_CHANGED:
+				out.printf("cg %s%n", attributeString(batch.getAttribute(i),
+						batch.getNewValue(i), false));
+				break;
+			case EventBatch.GRAPH_ATTRIBUTE_REMOVED:
+				out.printf("cg %s%n",
+						attributeString(batch.getAttribute(i), null, true));
+				break;
+			case EventBatch.NODE_ATTRIBUTE_ADDED:
+			case EventBatch.NODE_ATTRIBUTE_CHANGED:
+				out.printf("cn \"%s\" %s%n",
+						quoted(batch, quoted, batch.getElementIndex(i)),
+						attributeString(batch.getAttribute(i),
+								batch.getNewValue(i), false));
+				break;
+			case EventBatch.NODE_ATTRIBUTE_REMOVED:
+				out.printf("cn \"%s\" %s%n",
+						quoted(batch, quoted, batch.getElementIndex(i)),
+						attributeString(batch.getAttribute(i), null, true));
+				break;
+			case EventBatch.EDGE_ATTRIBUTE_ADDED:
+			case EventBatch.EDGE_ATTRIBUTE_CHANGED:
+				out.printf("ce \"%s\" %s%n",
+						quoted(batch, quoted, batch.getElementIndex(i)),
+						attributeString(batch.getAttribute(i),
+								batch.getNewValue(i), false));
+				break;
+			default:
+				out.printf("ce \"%s\" %s%n",
+						quoted(batch, quoted, batch.getElementIndex(i)),
+						attributeString(batch.getAttribute(i), null, true));
+			}
+		}
+	}
+
+	/**
+	 * Tells if batches can be written without going through the sink methods
+	 * of this sink.
+	 * 
+	 * @return false if the class of this sink refines one of the sink
+	 *         methods, true otherwise.
+	 */
+	protected boolean acceptsBatches() {
+		return !REFINES_SINK.get(getClass());
+	}
+
+	private String quoted(EventBatch batch, String[] quoted, int index) {
+		if (index < 0)
+			return formatStringForQuoting(null);
+
+		if (quoted[index] == null)
+			quoted[index] = formatStringForQuoting(batch.getString(index));
+
+		return quoted[index];
+	}
+
 	// Utility
 
 	protected String formatStringForQuoting(String str) {
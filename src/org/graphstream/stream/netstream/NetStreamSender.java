@@ -38,7 +38,8 @@ import java.net.UnknownHostException;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 
-import org.graphstream.stream.Sink;
+import org.graphstream.stream.BatchSink;
+import org.graphstream.stream.EventBatch;
 import org.graphstream.stream.netstream.packing.NetStreamPacker;
 
 /**
@@ -64,7 +65,7 @@ import org.graphstream.stream.netstream.packing.NetStreamPacker;
  * @author Yoann Pigné
  * 
  */
-public class NetStreamSender implements Sink {
+public class NetStreamSender implements BatchSink {
 	private static ByteBuffer NULL_BUFFER = ByteBuffer.allocate(0);
 	
 	protected String stream;
@@ -98,6 +99,12 @@ public class NetStreamSender implements Sink {
 
 	protected NetStreamPacker packer = new DefaultPacker();
 
+	/**
+	 * True while the events of a batch are sent, the output is then flushed
+	 * once at the end of the batch.
+	 */
+	private boolean batching = false;
+
 	public NetStreamSender(String host, int port) throws UnknownHostException,
 			IOException {
 		this("default", host, port);
@@ -629,7 +636,9 @@ public class NetStreamSender implements Sink {
 			try {
 				out.write(sizeBuffer.array(), 0, sizeBuffer.capacity());
 				out.write(buffer.array(), 0, buffer.capacity());
-				out.flush();
+
+				if (!batching)
+					out.flush();
 			} catch (IOException e) {
 				try {
 					socket.close();
@@ -1297,6 +1306,37 @@ public class NetStreamSender implements Sink {
 		doSend(buff);
 	}
 
+	/**
+	 * Send the events of a batch. Each event is still a separate message, but
+	 * the connection is flushed once for the whole batch instead of once per
+	 * event.
+	 * 
+	 * @see org.graphstream.stream.BatchSink#eventBatch(EventBatch)
+	 */
+	public void eventBatch(EventBatch batch) {
+		batching = true;
+
+		try {
+			batch.replay(this);
+		} finally {
+			batching = false;
+		}
+
+		if (!socket.isClosed()) {
+			try {
+				out.flush();
+			} catch (IOException e) {
+				try {
+					socket.close();
+				} catch (IOException e1) {
+					e1.printStackTrace();
+				}
+
+				System.err.printf("socket error : %s\n", e.getMessage());
+			}
+		}
+	}
+
 	/**
 	 * Force the connection to close (properly) with the server
 	 * 
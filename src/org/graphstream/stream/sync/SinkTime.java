@@ -32,8 +32,8 @@
 package org.graphstream.stream.sync;
 
 import java.security.AccessControlException;
-import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class SinkTime
 {
@@ -66,9 +66,16 @@ public class SinkTime
     }
 
     /**
-     * Map storing times of sources.
+     * Map storing times of sources. Each source owns a mutable entry, so that
+     * updating a known source does not box its time.
      */
-    private final Map<String, Long> times = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Time> times = new ConcurrentHashMap<>();
+
+    /**
+     * Entry of the last source updated. Most sinks receive a long run of
+     * events from the same source, in which case the map is not looked up.
+     */
+    private volatile Time last;
 
     /**
      * Update timeId for a source.
@@ -79,16 +86,32 @@ public class SinkTime
      */
     protected boolean setTimeFor(String sourceId, long timeId)
     {
-        final Long knownTimeId = times.get(sourceId);
+        Time time = this.last;
 
-        if (knownTimeId == null)
+        if (time == null || !time.matches(sourceId))
         {
-            times.put(sourceId, timeId);
-            return true;
+            time = this.times.get(sourceId);
+
+            if (time == null)
+            {
+                time = new Time(sourceId, timeId);
+                final Time known = this.times.putIfAbsent(sourceId, time);
+
+                if (known == null)
+                {
+                    this.last = time;
+                    return true;
+                }
+
+                time = known;
+            }
+
+            this.last = time;
         }
-        if (timeId > knownTimeId)
+
+        if (timeId > time.timeId)
         {
-            times.put(sourceId, timeId);
+            time.timeId = timeId;
             return true;
         }
 
@@ -107,4 +130,25 @@ public class SinkTime
     {
         return disableSync || setTimeFor(sourceId, timeId);
     }
+
+    /**
+     * Last time id known for a source.
+     */
+    private static final class Time
+    {
+        final String sourceId;
+
+        volatile long timeId;
+
+        Time(String sourceId, long timeId)
+        {
+            this.sourceId = sourceId;
+            this.timeId = timeId;
+        }
+
+        boolean matches(String id)
+        {
+            return this.sourceId == id || this.sourceId.equals(id);
+        }
+    }
 }
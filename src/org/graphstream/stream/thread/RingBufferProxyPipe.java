@@ -0,0 +1,634 @@
+/*
+ * Copyright 2006 - 2013
+ *     Stefan Balev     <stefan.balev@graphstream-project.org>
+ *     Julien Baudry    <julien.baudry@graphstream-project.org>
+ *     Antoine Dutot    <antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné      <yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin   <guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.stream.thread;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.graphstream.graph.Graph;
+import org.graphstream.stream.ProxyPipe;
+import org.graphstream.stream.Replayable;
+import org.graphstream.stream.Replayable.Controller;
+import org.graphstream.stream.Source;
+import org.graphstream.stream.SourceBase;
+
+/**
+ * A {@link ProxyPipe} passing events from one source thread to one sink thread
+ * through a ring buffer, like {@link ThreadProxyPipe} but without allocation
+ * nor lock per event.
+ * 
+ * <p>
+ * The buffer is a fixed number of preallocated slots. Each slot has a field
+ * for each part of an event (type, source and time ids, element ids,
+ * attribute, values, step, direction), stored in parallel arrays. The source
+ * thread fills the next slot and publishes it by advancing a write sequence,
+ * the sink thread dispatches the slots up to this sequence in batches and
+ * advances a read sequence. The sequences are the only data shared by the two
+ * threads.
+ * </p>
+ * 
+ * <p>
+ * This pipe requires that events are posted by a single thread at a time and
+ * pumped by a single thread at a time. When the buffer is full the source
+ * thread waits for the sink thread to pump, and {@link #blockingPump()} waits
+ * for events, according to the {@link WaitStrategy} given at construction.
+ * </p>
+ */
+public class RingBufferProxyPipe extends SourceBase implements ProxyPipe {
+	/**
+	 * Default number of slots of the buffer.
+	 */
+	public static final int DEFAULT_CAPACITY = 1 << 16;
+
+	/**
+	 * Number of events dispatched by {@link #pump(int)} before the slots are
+	 * given back to the source thread.
+	 */
+	private static final int BATCH = 256;
+
+	/**
+	 * How a thread waits for the other one.
+	 */
+	public static enum WaitStrategy {
+		/**
+		 * Busy loop, lowest latency but keeps a core busy. Only suited when
+		 * each thread has its own core.
+		 */
+		SPIN,
+		/**
+		 * Yields the processor between two checks.
+		 */
+		YIELD,
+		/**
+		 * Parks the thread a few microseconds between two checks.
+		 */
+		PARK;
+
+		void idle() {
+			switch (this) {
+			case YIELD:
+				Thread.yield();
+				break;
+			case PARK:
+				LockSupport.parkNanos(PARK_NANOS);
+				break;
+			default:
+				break;
+			}
+		}
+	}
+
+	private static final long PARK_NANOS = 50000;
+
+	private static final byte ADD_NODE = 0, DEL_NODE = 1, ADD_EDGE = 2,
+			DEL_EDGE = 3, STEP = 4, CLEARED = 5, ADD_GRAPH_ATTR = 6,
+			CHG_GRAPH_ATTR = 7, DEL_GRAPH_ATTR = 8, ADD_NODE_ATTR = 9,
+			CHG_NODE_ATTR = 10, DEL_NODE_ATTR = 11, ADD_EDGE_ATTR = 12,
+			CHG_EDGE_ATTR = 13, DEL_EDGE_ATTR = 14;
+
+	/**
+	 * A sequence padded so that the two sequences, written by different
+	 * threads, do not share a cache line.
+	 */
+	@SuppressWarnings("serial")
+	private static final class Sequence extends AtomicLong {
+		long p1, p2, p3, p4, p5, p6, p7;
+	}
+
+	// Slots
+
+	private final int mask;
+	private final byte[] types;
+	private final long[] timeIds;
+	private final double[] steps;
+	private final boolean[] directed;
+	private final String[] sourceIds;
+	private final String[] elementIds;
+	private final String[] fromIds;
+	private final String[] toIds;
+	private final String[] attributes;
+	private final Object[] oldValues;
+	private final Object[] newValues;
+
+	private final WaitStrategy waitStrategy;
+
+	/**
+	 * Number of events published by the source thread.
+	 */
+	private final Sequence written = new Sequence();
+
+	/**
+	 * Number of events dispatched by the sink thread.
+	 */
+	private final Sequence read = new Sequence();
+
+	/**
+	 * Last value of {@link #read} seen by the source thread.
+	 */
+	private long readCache = 0;
+
+	/**
+	 * The event sender name, usually the graph name.
+	 */
+	private String from = "<in>";
+
+	/**
+	 * Used only to remove the listener. We ensure this is done in the source
+	 * thread.
+	 */
+	protected Source input = null;
+
+	/**
+	 * Signals that this proxy must be removed from the source input.
+	 */
+	protected boolean unregisterWhenPossible = false;
+
+	/**
+	 * New pipe with {@value #DEFAULT_CAPACITY} slots, waiting with
+	 * {@link WaitStrategy#YIELD}.
+	 */
+	public RingBufferProxyPipe() {
+		this(DEFAULT_CAPACITY, WaitStrategy.YIELD);
+	}
+
+	/**
+	 * New pipe.
+	 * 
+	 * @param capacity
+	 *            Number of slots, rounded up to a power of two.
+	 * @param waitStrategy
+	 *            How threads wait when the buffer is full or empty.
+	 */
+	public RingBufferProxyPipe(int capacity, WaitStrategy waitStrategy) {
+		super(RingBufferProxyPipe.class.getSimpleName() + "#"
+				+ UUID.randomUUID());
+
+		if (capacity < 1 || capacity > (1 << 30))
+			throw new IllegalArgumentException("invalid capacity " + capacity);
+		if (waitStrategy == null)
+			throw new NullPointerException("wait strategy is null");
+
+		int length = Integer.highestOneBit(capacity);
+		if (length < capacity)
+			length <<= 1;
+
+		this.mask = length - 1;
+		this.waitStrategy = waitStrategy;
+		this.types = new byte[length];
+		this.timeIds = new long[length];
+		this.steps = new double[length];
+		this.directed = new boolean[length];
+		this.sourceIds = new String[length];
+		this.elementIds = new String[length];
+		this.fromIds = new String[length];
+		this.toIds = new String[length];
+		this.attributes = new String[length];
+		this.oldValues = new Object[length];
+		this.newValues = new Object[length];
+	}
+
+	public void init() {
+		init(null, false);
+	}
+
+	/**
+	 * Init the proxy. If there are previous events, they will be cleared.
+	 * 
+	 * @param source
+	 *            source of the events
+	 */
+	public void init(Source source) {
+		init(source, source instanceof Replayable);
+	}
+
+	/**
+	 * Init the proxy. If there are previous events, they will be cleared. This
+	 * must not be called while the sink thread pumps.
+	 * 
+	 * @param source
+	 *            source of the events
+	 * @param replay
+	 *            true if the source should be replayed. You need a
+	 *            {@link org.graphstream.stream.Replayable} source to enable
+	 *            replay, else nothing happens.
+	 */
+	public void init(final Source source, final boolean replay) {
+		if (input != null)
+			input.removeSink(this);
+
+		input = source;
+
+		long w = written.get();
+		for (long r = read.get(); r < w; r++)
+			release((int) r & mask);
+		read.set(w);
+		readCache = w;
+
+		if (source != null) {
+			if (source instanceof Graph)
+				from = ((Graph) source).getId();
+
+			input.addSink(this);
+
+			if (replay && source instanceof Replayable) {
+				Controller rc = ((Replayable) source).getReplayController();
+				rc.addSink(this);
+				rc.replay();
+			}
+		}
+	}
+
+	/**
+	 * Number of slots of the buffer.
+	 */
+	public int getCapacity() {
+		return mask + 1;
+	}
+
+	public WaitStrategy getWaitStrategy() {
+		return waitStrategy;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("ring-proxy(from %s)", from);
+	}
+
+	/**
+	 * Ask the proxy to unregister from the event input source (stop receive
+	 * events) as soon as possible (when the next event will occur in the
+	 * graph).
+	 */
+	public void unregisterFromSource() {
+		unregisterWhenPossible = true;
+	}
+
+	public boolean hasPostRemaining() {
+		return written.get() != read.get();
+	}
+
+	// Sink thread
+
+	@Override
+	public void pump() {
+		pump(-1);
+	}
+
+	/**
+	 * Dispatches the pending events, at most {@code maxEvents} of them if
+	 * {@code maxEvents} is positive. Slots are given back to the source thread
+	 * every {@value #BATCH} events.
+	 */
+	@Override
+	public void pump(final int maxEvents) {
+		long r = read.get();
+		long end = maxEvents > 0 ? r + maxEvents : Long.MAX_VALUE;
+
+		while (r < end) {
+			long w = Math.min(written.get(), end);
+			if (w == r)
+				break;
+			while (r < w) {
+				long batchEnd = Math.min(w, r + BATCH);
+				for (; r < batchEnd; r++)
+					dispatch((int) r & mask);
+				read.lazySet(r);
+			}
+		}
+	}
+
+	@Override
+	public void blockingPump() throws InterruptedException {
+		blockingPump(0);
+	}
+
+	/**
+	 * Waits for events according to the wait strategy, then dispatches them.
+	 * 
+	 * @param timeout
+	 *            Maximum time to wait in milliseconds, zero to wait until
+	 *            events arrive.
+	 */
+	@Override
+	public void blockingPump(final long timeout) throws InterruptedException {
+		long deadline = System.nanoTime()
+				+ TimeUnit.MILLISECONDS.toNanos(timeout);
+		while (written.get() == read.get()) {
+			if (Thread.interrupted())
+				throw new InterruptedException();
+			if (timeout > 0 && System.nanoTime() - deadline >= 0)
+				return;
+			waitStrategy.idle();
+		}
+		pump();
+	}
+
+	private void dispatch(int slot) {
+		String sourceId = sourceIds[slot];
+		long timeId = timeIds[slot];
+		String elementId = elementIds[slot];
+		String attribute = attributes[slot];
+
+		switch (types[slot]) {
+		case ADD_NODE:
+			sendNodeAdded(sourceId, timeId, elementId);
+			break;
+		case DEL_NODE:
+			sendNodeRemoved(sourceId, timeId, elementId);
+			break;
+		case ADD_EDGE:
+			sendEdgeAdded(sourceId, timeId, elementId, fromIds[slot],
+					toIds[slot], directed[slot]);
+			break;
+		case DEL_EDGE:
+			sendEdgeRemoved(sourceId, timeId, elementId);
+			break;
+		case STEP:
+			sendStepBegins(sourceId, timeId, steps[slot]);
+			break;
+		case CLEARED:
+			sendGraphCleared(sourceId, timeId);
+			break;
+		case ADD_GRAPH_ATTR:
+			sendGraphAttributeAdded(sourceId, timeId, attribute,
+					newValues[slot]);
+			break;
+		case CHG_GRAPH_ATTR:
+			sendGraphAttributeChanged(sourceId, timeId, attribute,
+					oldValues[slot], newValues[slot]);
+			break;
+		case DEL_GRAPH_ATTR:
+			sendGraphAttributeRemoved(sourceId, timeId, attribute);
+			break;
+		case ADD_NODE_ATTR:
+			sendNodeAttributeAdded(sourceId, timeId, elementId, attribute,
+					newValues[slot]);
+			break;
+		case CHG_NODE_ATTR:
+			sendNodeAttributeChanged(sourceId, timeId, elementId, attribute,
+					oldValues[slot], newValues[slot]);
+			break;
+		case DEL_NODE_ATTR:
+			sendNodeAttributeRemoved(sourceId, timeId, elementId, attribute);
+			break;
+		case ADD_EDGE_ATTR:
+			sendEdgeAttributeAdded(sourceId, timeId, elementId, attribute,
+					newValues[slot]);
+			break;
+		case CHG_EDGE_ATTR:
+			sendEdgeAttributeChanged(sourceId, timeId, elementId, attribute,
+					oldValues[slot], newValues[slot]);
+			break;
+		case DEL_EDGE_ATTR:
+			sendEdgeAttributeRemoved(sourceId, timeId, elementId, attribute);
+			break;
+		}
+
+		release(slot);
+	}
+
+	/**
+	 * Drops the references held by a slot, so that the values of dispatched
+	 * events can be collected.
+	 */
+	private void release(int slot) {
+		sourceIds[slot] = null;
+		elementIds[slot] = null;
+		fromIds[slot] = null;
+		toIds[slot] = null;
+		attributes[slot] = null;
+		oldValues[slot] = null;
+		newValues[slot] = null;
+	}
+
+	// Source thread
+
+	private boolean maybeUnregister() {
+		if (unregisterWhenPossible) {
+			if (input != null)
+				input.removeSink(this);
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Waits for a free slot and fills its common fields.
+	 * 
+	 * @return The slot, to be published by {@link #publish()}.
+	 */
+	private int claim(byte type, String sourceId, long timeId,
+			String elementId, String attribute) {
+		long w = written.get();
+		while (w - readCache > mask) {
+			readCache = read.get();
+			if (w - readCache > mask)
+				waitStrategy.idle();
+		}
+
+		int slot = (int) w & mask;
+		types[slot] = type;
+		sourceIds[slot] = sourceId;
+		timeIds[slot] = timeId;
+		elementIds[slot] = elementId;
+		attributes[slot] = attribute;
+		return slot;
+	}
+
+	/**
+	 * Makes the last claimed slot visible to the sink thread.
+	 */
+	private void publish() {
+		written.lazySet(written.get() + 1);
+	}
+
+	@Override
+	public void edgeAttributeAdded(String graphId, long timeId, String edgeId,
+			String attribute, Object value) {
+		if (maybeUnregister())
+			return;
+
+		int slot = claim(ADD_EDGE_ATTR, graphId, timeId, edgeId, attribute);
+		newValues[slot] = value;
+		publish();
+	}
+
+	@Override
+	public void edgeAttributeChanged(String graphId, long timeId,
+			String edgeId, String attribute, Object oldValue, Object newValue) {
+		if (maybeUnregister())
+			return;
+
+		int slot = claim(CHG_EDGE_ATTR, graphId, timeId, edgeId, attribute);
+		oldValues[slot] = oldValue;
+		newValues[slot] = newValue;
+		publish();
+	}
+
+	@Override
+	public void edgeAttributeRemoved(String graphId, long timeId,
+			String edgeId, String attribute) {
+		if (maybeUnregister())
+			return;
+
+		claim(DEL_EDGE_ATTR, graphId, timeId, edgeId, attribute);
+		publish();
+	}
+
+	@Override
+	public void graphAttributeAdded(String graphId, long timeId,
+			String attribute, Object value) {
+		if (maybeUnregister())
+			return;
+
+		int slot = claim(ADD_GRAPH_ATTR, graphId, timeId, null, attribute);
+		newValues[slot] = value;
+		publish();
+	}
+
+	@Override
+	public void graphAttributeChanged(String graphId, long timeId,
+			String attribute, Object oldValue, Object newValue) {
+		if (maybeUnregister())
+			return;
+
+		int slot = claim(CHG_GRAPH_ATTR, graphId, timeId, null, attribute);
+		oldValues[slot] = oldValue;
+		newValues[slot] = newValue;
+		publish();
+	}
+
+	@Override
+	public void graphAttributeRemoved(String graphId, long timeId,
+			String attribute) {
+		if (maybeUnregister())
+			return;
+
+		claim(DEL_GRAPH_ATTR, graphId, timeId, null, attribute);
+		publish();
+	}
+
+	@Override
+	public void nodeAttributeAdded(String graphId, long timeId, String nodeId,
+			String attribute, Object value) {
+		if (maybeUnregister())
+			return;
+
+		int slot = claim(ADD_NODE_ATTR, graphId, timeId, nodeId, attribute);
+		newValues[slot] = value;
+		publish();
+	}
+
+	@Override
+	public void nodeAttributeChanged(String graphId, long timeId,
+			String nodeId, String attribute, Object oldValue, Object newValue) {
+		if (maybeUnregister())
+			return;
+
+		int slot = claim(CHG_NODE_ATTR, graphId, timeId, nodeId, attribute);
+		oldValues[slot] = oldValue;
+		newValues[slot] = newValue;
+		publish();
+	}
+
+	@Override
+	public void nodeAttributeRemoved(String graphId, long timeId,
+			String nodeId, String attribute) {
+		if (maybeUnregister())
+			return;
+
+		claim(DEL_NODE_ATTR, graphId, timeId, nodeId, attribute);
+		publish();
+	}
+
+	@Override
+	public void edgeAdded(String graphId, long timeId, String edgeId,
+			String fromNodeId, String toNodeId, boolean directed) {
+		if (maybeUnregister())
+			return;
+
+		int slot = claim(ADD_EDGE, graphId, timeId, edgeId, null);
+		fromIds[slot] = fromNodeId;
+		toIds[slot] = toNodeId;
+		this.directed[slot] = directed;
+		publish();
+	}
+
+	@Override
+	public void edgeRemoved(String graphId, long timeId, String edgeId) {
+		if (maybeUnregister())
+			return;
+
+		claim(DEL_EDGE, graphId, timeId, edgeId, null);
+		publish();
+	}
+
+	@Override
+	public void graphCleared(String graphId, long timeId) {
+		if (maybeUnregister())
+			return;
+
+		claim(CLEARED, graphId, timeId, null, null);
+		publish();
+	}
+
+	@Override
+	public void nodeAdded(String graphId, long timeId, String nodeId) {
+		if (maybeUnregister())
+			return;
+
+		claim(ADD_NODE, graphId, timeId, nodeId, null);
+		publish();
+	}
+
+	@Override
+	public void nodeRemoved(String graphId, long timeId, String nodeId) {
+		if (maybeUnregister())
+			return;
+
+		claim(DEL_NODE, graphId, timeId, nodeId, null);
+		publish();
+	}
+
+	@Override
+	public void stepBegins(String graphId, long timeId, double step) {
+		if (maybeUnregister())
+			return;
+
+		int slot = claim(STEP, graphId, timeId, null, null);
+		steps[slot] = step;
+		publish();
+	}
+}
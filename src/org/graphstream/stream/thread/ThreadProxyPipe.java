@@ -33,9 +33,13 @@ package org.graphstream.stream.thread;
 
 import java.util.UUID;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import org.graphstream.graph.Graph;
+import org.graphstream.stream.BatchSink;
+import org.graphstream.stream.EventBatch;
 import org.graphstream.stream.ProxyPipe;
 import org.graphstream.stream.Replayable;
 import org.graphstream.stream.Replayable.Controller;
@@ -81,14 +85,67 @@ import org.slf4j.LoggerFactory;
  * the graph. This is the default behavior if this filter is constructed with a
  * graph as input.
  * </p>
+ * 
+ * <p>
+ * By default the message box is unbounded. When the sink thread may lag behind
+ * the source thread, a capacity and an {@link OverflowPolicy} can be given at
+ * construction. The number of pending events and the number of events dropped
+ * or coalesced are available through {@link #getQueueDepth()},
+ * {@link #getDroppedEvents()} and {@link #getCoalescedEvents()}.
+ * </p>
  */
-public class ThreadProxyPipe extends SourceBase implements ProxyPipe {
+public class ThreadProxyPipe extends SourceBase implements ProxyPipe, BatchSink {
 
     /**
      * class level logger
      */
     private static final Logger logger = LoggerFactory.getLogger(ThreadProxyPipe.class);
 
+	/**
+	 * What the source thread does when the message box is full.
+	 */
+	public static enum OverflowPolicy {
+		/**
+		 * Wait for the sink thread to pump.
+		 */
+		BLOCK,
+		/**
+		 * Drop the oldest pending event to make room for the new one. The
+		 * sinks may then receive events about elements they do not know, this
+		 * is suited to sinks that tolerate it, like non-strict graphs.
+		 */
+		DROP_OLDEST,
+		/**
+		 * Keep only the latest value of an attribute: an attribute added or
+		 * changed again on the same element before the sink thread pumps
+		 * updates the pending event instead of posting a new one, so the
+		 * pending event carries the latest value. Removing the attribute or
+		 * an element, clearing the graph or beginning a step ends the
+		 * coalescing, so values never cross these events. Blocks like
+		 * {@link #BLOCK} when the message box is full and the event cannot be
+		 * coalesced.
+		 */
+		COALESCE
+	}
+
+	/**
+	 * Maximum number of pending events.
+	 */
+	private final int capacity;
+
+	private final OverflowPolicy policy;
+
+	/**
+	 * Pending attribute events that may be coalesced, only used with
+	 * {@link OverflowPolicy#COALESCE}. The source thread replaces the map
+	 * instead of clearing it.
+	 */
+	private volatile ConcurrentHashMap<AttributeKey, GraphMessage> pendingAttributes;
+
+	private final AtomicLong dropped = new AtomicLong();
+
+	private final AtomicLong coalesced = new AtomicLong();
+
 	/**
 	 * Proxy id.
 	 */
@@ -116,8 +173,28 @@ public class ThreadProxyPipe extends SourceBase implements ProxyPipe {
 	protected boolean unregisterWhenPossible = false;
 
 	public ThreadProxyPipe() {
+		this(Integer.MAX_VALUE, OverflowPolicy.BLOCK);
+	}
+
+	/**
+	 * New proxy with a bounded message box.
+	 * 
+	 * @param capacity
+	 *            Maximum number of pending events.
+	 * @param policy
+	 *            What to do when the message box is full.
+	 */
+	public ThreadProxyPipe(final int capacity, final OverflowPolicy policy) {
         super(ThreadProxyPipe.class.getSimpleName() + "#" + UUID.randomUUID());
-		this.queue = new LinkedBlockingQueue<>(); 
+		if (capacity < 1)
+			throw new IllegalArgumentException("invalid capacity " + capacity);
+		if (policy == null)
+			throw new NullPointerException("overflow policy is null");
+		this.capacity = capacity;
+		this.policy = policy;
+		this.queue = new LinkedBlockingQueue<>(capacity);
+		if (policy == OverflowPolicy.COALESCE)
+			this.pendingAttributes = new ConcurrentHashMap<>();
 		this.from = "<in>";
 		this.input = null;
 	}
@@ -197,6 +274,9 @@ public class ThreadProxyPipe extends SourceBase implements ProxyPipe {
         }
         this.input = source;
         this.queue.clear();
+        if (this.pendingAttributes != null) {
+            this.pendingAttributes = new ConcurrentHashMap<>();
+        }
 		
 		if (source != null) {
 			if (source instanceof Graph)
@@ -219,6 +299,37 @@ public class ThreadProxyPipe extends SourceBase implements ProxyPipe {
 		return String.format("thread-proxy(from %s)", from);
 	}
 
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public OverflowPolicy getOverflowPolicy() {
+		return policy;
+	}
+
+	/**
+	 * Number of events waiting to be pumped.
+	 */
+	public int getQueueDepth() {
+		return queue.size();
+	}
+
+	/**
+	 * Number of events dropped by the {@link OverflowPolicy#DROP_OLDEST}
+	 * policy since the creation of this proxy.
+	 */
+	public long getDroppedEvents() {
+		return dropped.get();
+	}
+
+	/**
+	 * Number of events merged in a pending event by the
+	 * {@link OverflowPolicy#COALESCE} policy since the creation of this proxy.
+	 */
+	public long getCoalescedEvents() {
+		return coalesced.get();
+	}
+
 	/**
 	 * Ask the proxy to unregister from the event input source (stop receive
 	 * events) as soon as possible (when the next event will occur in the
@@ -242,7 +353,7 @@ public class ThreadProxyPipe extends SourceBase implements ProxyPipe {
             if (msg != null)
             {
                 num++;
-                this.processMessage(msg.event, msg.data);
+                this.processMessage(msg);
                 if (maxEvents > 0 && maxEvents <= num) { 
                     break;
                 }
@@ -267,7 +378,7 @@ public class ThreadProxyPipe extends SourceBase implements ProxyPipe {
             }
             if (msg != null)
             {
-                this.processMessage(msg.event, msg.data);
+                this.processMessage(msg);
             }
         }
         catch (final InterruptedException e)
@@ -283,18 +394,57 @@ public class ThreadProxyPipe extends SourceBase implements ProxyPipe {
 
 	
 	private static enum GraphEvents {
-		ADD_NODE, DEL_NODE, ADD_EDGE, DEL_EDGE, STEP, CLEARED, ADD_GRAPH_ATTR, CHG_GRAPH_ATTR, DEL_GRAPH_ATTR, ADD_NODE_ATTR, CHG_NODE_ATTR, DEL_NODE_ATTR, ADD_EDGE_ATTR, CHG_EDGE_ATTR, DEL_EDGE_ATTR
+		ADD_NODE, DEL_NODE, ADD_EDGE, DEL_EDGE, STEP, CLEARED, ADD_GRAPH_ATTR, CHG_GRAPH_ATTR, DEL_GRAPH_ATTR, ADD_NODE_ATTR, CHG_NODE_ATTR, DEL_NODE_ATTR, ADD_EDGE_ATTR, CHG_EDGE_ATTR, DEL_EDGE_ATTR, BATCH
 	};
     
     
     private static class GraphMessage { 
        private final GraphEvents event;
        private final Object[] data;
+       /**
+        * Key of the message in {@link ThreadProxyPipe#pendingAttributes}, if
+        * it may be coalesced.
+        */
+       private AttributeKey key;
+       /**
+        * Set by the sink thread, under the lock of the message, when it
+        * starts processing it. The message cannot be coalesced anymore.
+        */
+       private boolean taken;
        public GraphMessage(final GraphEvents e, final Object[] d) {
            this.event = e;
            this.data = d;
        }
     }
+
+    /**
+     * Element and attribute of a pending attribute event. The element id is
+     * the graph id for graph attributes.
+     */
+    private static class AttributeKey {
+       private final char elementType;
+       private final String elementId;
+       private final String attribute;
+       public AttributeKey(final char elementType, final String elementId, final String attribute) {
+           this.elementType = elementType;
+           this.elementId = elementId;
+           this.attribute = attribute;
+       }
+
+       @Override
+       public int hashCode() {
+           return (31 * elementType + elementId.hashCode()) * 31 + attribute.hashCode();
+       }
+
+       @Override
+       public boolean equals(final Object o) {
+           if (!(o instanceof AttributeKey))
+               return false;
+           final AttributeKey k = (AttributeKey) o;
+           return elementType == k.elementType && elementId.equals(k.elementId)
+                   && attribute.equals(k.attribute);
+       }
+    }
     
 
     private boolean maybeUnregister() {
@@ -314,8 +464,20 @@ public class ThreadProxyPipe extends SourceBase implements ProxyPipe {
         if (null == data || data.length <= 0) {
             return false;
         }
+        final GraphMessage msg = new GraphMessage(event, data);
+        if (this.pendingAttributes != null && !this.coalesce(msg)) {
+            return true;
+        }
         try { 
-            this.queue.put(new GraphMessage(event, data));
+            if (this.policy == OverflowPolicy.DROP_OLDEST) {
+                while (!this.queue.offer(msg)) {
+                    if (this.queue.poll() != null) {
+                        this.dropped.incrementAndGet();
+                    }
+                }
+            } else {
+                this.queue.put(msg);
+            }
             return true;
         } catch (final Exception e) {
             logger.warn("Unable to added graph message to pipe.", e);
@@ -323,6 +485,65 @@ public class ThreadProxyPipe extends SourceBase implements ProxyPipe {
         }
 	}
 
+	/**
+	 * Merges an attribute event in the pending event of the same attribute if
+	 * there is one, or registers it as pending. Other events end coalescing.
+	 * 
+	 * @return false if the event has been merged and must not be posted.
+	 */
+	private boolean coalesce(final GraphMessage msg) {
+		final AttributeKey key;
+		final boolean removed;
+		switch (msg.event) {
+		case ADD_GRAPH_ATTR:
+		case CHG_GRAPH_ATTR:
+		case DEL_GRAPH_ATTR:
+			key = new AttributeKey('g', (String) msg.data[0], (String) msg.data[2]);
+			removed = msg.event == GraphEvents.DEL_GRAPH_ATTR;
+			break;
+		case ADD_NODE_ATTR:
+		case CHG_NODE_ATTR:
+		case DEL_NODE_ATTR:
+			key = new AttributeKey('n', (String) msg.data[2], (String) msg.data[3]);
+			removed = msg.event == GraphEvents.DEL_NODE_ATTR;
+			break;
+		case ADD_EDGE_ATTR:
+		case CHG_EDGE_ATTR:
+		case DEL_EDGE_ATTR:
+			key = new AttributeKey('e', (String) msg.data[2], (String) msg.data[3]);
+			removed = msg.event == GraphEvents.DEL_EDGE_ATTR;
+			break;
+		case ADD_NODE:
+		case ADD_EDGE:
+			return true;
+		default:
+			// removals, step or clear
+			if (!this.pendingAttributes.isEmpty())
+				this.pendingAttributes = new ConcurrentHashMap<>();
+			return true;
+		}
+
+		if (removed) {
+			this.pendingAttributes.remove(key);
+			return true;
+		}
+
+		final GraphMessage pending = this.pendingAttributes.get(key);
+		if (pending != null) {
+			synchronized (pending) {
+				if (!pending.taken) {
+					// the new value is always the last argument
+					pending.data[pending.data.length - 1] = msg.data[msg.data.length - 1];
+					this.coalesced.incrementAndGet();
+					return false;
+				}
+			}
+		}
+		msg.key = key;
+		this.pendingAttributes.put(key, msg);
+		return true;
+	}
+
     @Override
 	public void edgeAttributeAdded(String graphId, long timeId, String edgeId,
 			String attribute, Object value) {
@@ -453,8 +674,38 @@ public class ThreadProxyPipe extends SourceBase implements ProxyPipe {
 		post(GraphEvents.STEP, graphId, timeId, step);
 	}
 
+	/**
+	 * With the {@link OverflowPolicy#BLOCK} policy, a copy of the batch is
+	 * posted as a single message and sent as a batch by the sink thread. With
+	 * the other policies, the events are posted one by one so that they can
+	 * be dropped or coalesced individually.
+	 */
+    @Override
+	public void eventBatch(EventBatch batch) {
+		if (this.policy != OverflowPolicy.BLOCK) {
+			batch.replay(this);
+			return;
+		}
+
+		if (maybeUnregister())
+			return;
+
+		if (!batch.isEmpty())
+			post(GraphEvents.BATCH, new EventBatch(batch));
+	}
+
 	// MBoxListener
 
+	private void processMessage(final GraphMessage msg) {
+		if (msg.key != null) {
+			synchronized (msg) {
+				msg.taken = true;
+			}
+			this.pendingAttributes.remove(msg.key, msg);
+		}
+		this.processMessage(msg.event, msg.data);
+	}
+
 	private void processMessage(final GraphEvents e, final Object[] data) {
 		String graphId, elementId, attribute;
 		Long timeId;
@@ -590,6 +841,9 @@ public class ThreadProxyPipe extends SourceBase implements ProxyPipe {
 
 			sendGraphCleared(graphId, timeId);
 			break;
+		case BATCH:
+			sendBatch((EventBatch) data[0]);
+			break;
 		default:
             logger.warn(String.format("Unknown message %s.", e));
 			break;
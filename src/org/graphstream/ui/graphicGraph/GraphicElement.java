@@ -256,7 +256,8 @@ public abstract class GraphicElement extends AbstractElement {
 				if (attribute.equals("ui.class")) {
 					Object o = attributes.remove("ui.class");
 					mygraph.styleGroups.checkElementStyleGroup(this);
-					attributes.put("ui.class", o);
+					if (o != null)
+						attributes.put("ui.class", o);
 					mygraph.graphChanged = true;
 				} else if (attribute.equals("ui.label")) {
 					label = "";
@@ -1247,17 +1247,17 @@ public class GraphicGraph extends AbstractElement implements Graph, StyleGroupLi
 
 		if (getAttributeKeySet() != null)
 			for (String key : getAttributeKeySet()) {
-				listeners.sendGraphAttributeAdded(id, key, getAttribute(key));
+				listeners.sendGraphAttributeAdded(getId(), key, getAttribute(key));
 			}
 
 		// Replay all nodes and their attributes.
 
 		for (Node node : this) {
-			listeners.sendNodeAdded(id, node.getId());
+			listeners.sendNodeAdded(getId(), node.getId());
 
 			if (node.getAttributeKeySet() != null) {
 				for (String key : node.getAttributeKeySet()) {
-					listeners.sendNodeAttributeAdded(id, node.getId(), key,
+					listeners.sendNodeAttributeAdded(getId(), node.getId(), key,
 							node.getAttribute(key));
 				}
 			}
@@ -1266,12 +1266,12 @@ public class GraphicGraph extends AbstractElement implements Graph, StyleGroupLi
 		// Replay all edges and their attributes.
 
 		for (Edge edge : getEachEdge()) {
-			listeners.sendEdgeAdded(id, edge.getId(), edge.getSourceNode()
+			listeners.sendEdgeAdded(getId(), edge.getId(), edge.getSourceNode()
 					.getId(), edge.getTargetNode().getId(), edge.isDirected());
 
 			if (edge.getAttributeKeySet() != null) {
 				for (String key : edge.getAttributeKeySet()) {
-					listeners.sendEdgeAttributeAdded(id, edge.getId(), key,
+					listeners.sendEdgeAttributeAdded(getId(), edge.getId(), key,
 							edge.getAttribute(key));
 				}
 			}
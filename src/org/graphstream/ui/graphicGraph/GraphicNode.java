@@ -33,6 +33,7 @@ package org.graphstream.ui.graphicGraph;
 
 import org.graphstream.graph.Edge;
 import org.graphstream.graph.Graph;
+import org.graphstream.graph.IndexConsumer;
 import org.graphstream.graph.Node;
 import org.graphstream.stream.SourceBase.ElementType;
 import org.graphstream.ui.geom.Point3;
@@ -449,6 +450,51 @@ public class GraphicNode extends GraphicElement implements Node {
         throw new UnsupportedOperationException();
 	}
 
+
+	// like the iterators, the variants consider all the edges
+
+    @Override
+	public void forEachNeighborIndex(IndexConsumer action) {
+        List<GraphicEdge> edges = mygraph.connectivity.get(this);
+
+		if (edges != null)
+			for (GraphicEdge e : edges)
+				action.accept(e.getOpposite(this).getIndex());
+	}
+
+    @Override
+	public void forEachEnteringNeighborIndex(IndexConsumer action) {
+		forEachNeighborIndex(action);
+	}
+
+    @Override
+	public void forEachLeavingNeighborIndex(IndexConsumer action) {
+		forEachNeighborIndex(action);
+	}
+
+    @Override
+	public int neighborIndices(int[] buf) {
+        List<GraphicEdge> edges = mygraph.connectivity.get(this);
+
+		if (edges == null)
+			return 0;
+
+		for (int i = 0; i < edges.size() && i < buf.length; i++)
+			buf[i] = edges.get(i).getOpposite(this).getIndex();
+
+		return edges.size();
+	}
+
+    @Override
+	public int enteringNeighborIndices(int[] buf) {
+		return neighborIndices(buf);
+	}
+
+    @Override
+	public int leavingNeighborIndices(int[] buf) {
+		return neighborIndices(buf);
+	}
+
     @Override
 	public <T extends Edge> T getEnteringEdge(int i) {
         throw new UnsupportedOperationException();
@@ -0,0 +1,304 @@
+/*
+ * Copyright 2006 - 2013
+ *     Stefan Balev     <stefan.balev@graphstream-project.org>
+ *     Julien Baudry    <julien.baudry@graphstream-project.org>
+ *     Antoine Dutot    <antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné      <yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin   <guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+package org.graphstream.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import org.graphstream.graph.Edge;
+import org.graphstream.graph.Graph;
+import org.graphstream.graph.Node;
+import org.graphstream.stream.SinkAdapter;
+
+/**
+ * <p>
+ * Degree statistics of a graph maintained from its element events. The
+ * number of nodes of each degree is stored in a histogram updated in
+ * constant time at each node or edge event, so that the average degree, the
+ * maximum degree, the density and the number of nodes of a given degree can
+ * be read at any time without iterating on the nodes.
+ * </p>
+ * 
+ * <p>
+ * Degrees are counted like {@link Node#getDegree()}: a loop adds one to the
+ * degree of its node and parallel edges are counted separately. The sink
+ * only needs element events, register it with
+ * {@link Graph#addElementSink(org.graphstream.stream.ElementSink)}. To start
+ * with a graph which is not empty, use {@link #DegreeStatistics(Graph)}.
+ * </p>
+ */
+public class DegreeStatistics extends SinkAdapter {
+	/**
+	 * Degree of a node, -1 once the node is removed.
+	 */
+	private static class Degree {
+		int value;
+	}
+
+	/**
+	 * The two nodes of an edge, the same twice for a loop.
+	 */
+	private static class Ends {
+		final Degree source, target;
+
+		Ends(Degree source, Degree target) {
+			this.source = source;
+			this.target = target;
+		}
+	}
+
+	protected final HashMap<String, Degree> nodes = new HashMap<>();
+
+	protected final HashMap<String, Ends> edges = new HashMap<>();
+
+	/**
+	 * Number of nodes of each degree.
+	 */
+	protected int[] histogram = new int[16];
+
+	/**
+	 * Largest degree, 0 if there is no node.
+	 */
+	protected int maxDegree;
+
+	/**
+	 * Sum of the degrees of all the nodes.
+	 */
+	protected long degreeSum;
+
+	/**
+	 * Statistics of an empty graph.
+	 */
+	public DegreeStatistics() {
+	}
+
+	/**
+	 * Statistics of the current structure of a graph. The statistics are
+	 * registered as an element sink of the graph and follow its changes.
+	 * 
+	 * @param graph
+	 *            The graph.
+	 * @complexity O(n + m) where n is the number of nodes and m the number of
+	 *             edges
+	 */
+	public DegreeStatistics(Graph graph) {
+		for (Node node : graph)
+			addNode(node.getId());
+		for (Edge edge : graph.getEachEdge())
+			addEdge(edge.getId(), edge.getSourceNode().getId(), edge
+					.getTargetNode().getId());
+		graph.addElementSink(this);
+	}
+
+	// Access
+
+	/**
+	 * @complexity O(1)
+	 */
+	public int getNodeCount() {
+		return nodes.size();
+	}
+
+	/**
+	 * @complexity O(1)
+	 */
+	public int getEdgeCount() {
+		return edges.size();
+	}
+
+	/**
+	 * The largest degree of a node.
+	 * 
+	 * @return The maximum degree, or 0 if there is no node.
+	 * @complexity O(1)
+	 */
+	public int getMaxDegree() {
+		return maxDegree;
+	}
+
+	/**
+	 * The average degree of the nodes.
+	 * 
+	 * @return The average degree, or 0 if there is no node.
+	 * @complexity O(1)
+	 */
+	public double getAverageDegree() {
+		return nodes.isEmpty() ? 0 : (double) degreeSum / nodes.size();
+	}
+
+	/**
+	 * The density of the graph, that is the number of edges divided by the
+	 * number of edges of a complete graph, {@code n * (n - 1) / 2}.
+	 * 
+	 * @return The density, or 0 if there are less than two nodes.
+	 * @complexity O(1)
+	 */
+	public double getDensity() {
+		double n = nodes.size();
+		return n < 2 ? 0 : 2 * edges.size() / (n * (n - 1));
+	}
+
+	/**
+	 * Number of nodes having a given degree.
+	 * 
+	 * @param degree
+	 *            A degree.
+	 * @complexity O(1)
+	 */
+	public int getNodeCountOfDegree(int degree) {
+		return degree < 0 || degree > maxDegree ? 0 : histogram[degree];
+	}
+
+	/**
+	 * The degree distribution: the element {@code d} of the array is the
+	 * number of nodes of degree {@code d}.
+	 * 
+	 * @return A new array of size {@link #getMaxDegree()} + 1, or an empty
+	 *         array if there is no node.
+	 * @complexity O(d) where d is the maximum degree
+	 */
+	public int[] getDegreeDistribution() {
+		return nodes.isEmpty() ? new int[0] : Arrays.copyOf(histogram,
+				maxDegree + 1);
+	}
+
+	/**
+	 * The degree of a node.
+	 * 
+	 * @return The degree, or -1 if the node is unknown.
+	 * @complexity O(1)
+	 */
+	public int getDegree(String nodeId) {
+		Degree degree = nodes.get(nodeId);
+		return degree == null ? -1 : degree.value;
+	}
+
+	// Command
+
+	/**
+	 * Forgets all the nodes and edges.
+	 */
+	public void reset() {
+		nodes.clear();
+		edges.clear();
+		Arrays.fill(histogram, 0);
+		maxDegree = 0;
+		degreeSum = 0;
+	}
+
+	private Degree addNode(String nodeId) {
+		Degree degree = nodes.get(nodeId);
+		if (degree == null) {
+			degree = new Degree();
+			nodes.put(nodeId, degree);
+			histogram[0]++;
+		}
+		return degree;
+	}
+
+	private void addEdge(String edgeId, String sourceId, String targetId) {
+		if (edges.containsKey(edgeId))
+			return;
+		Degree source = addNode(sourceId);
+		Degree target = sourceId.equals(targetId) ? source : addNode(targetId);
+		edges.put(edgeId, new Ends(source, target));
+		increment(source);
+		if (target != source)
+			increment(target);
+	}
+
+	private void increment(Degree degree) {
+		int d = degree.value++;
+		histogram[d]--;
+		if (d + 1 == histogram.length)
+			histogram = Arrays.copyOf(histogram, 2 * histogram.length);
+		histogram[d + 1]++;
+		if (d == maxDegree)
+			maxDegree++;
+		degreeSum++;
+	}
+
+	private void decrement(Degree degree) {
+		int d = degree.value--;
+		histogram[d]--;
+		histogram[d - 1]++;
+		// the node still has the degree below
+		if (d == maxDegree && histogram[d] == 0)
+			maxDegree--;
+		degreeSum--;
+	}
+
+	// Sink
+
+	@Override
+	public void nodeAdded(String sourceId, long timeId, String nodeId) {
+		addNode(nodeId);
+	}
+
+	/**
+	 * Nodes are usually removed after their edges, with a degree of 0. If it
+	 * is not the case, finding the new maximum degree costs O(d).
+	 */
+	@Override
+	public void nodeRemoved(String sourceId, long timeId, String nodeId) {
+		Degree degree = nodes.remove(nodeId);
+		if (degree == null)
+			return;
+		histogram[degree.value]--;
+		degreeSum -= degree.value;
+		degree.value = -1;
+		while (maxDegree > 0 && histogram[maxDegree] == 0)
+			maxDegree--;
+	}
+
+	@Override
+	public void edgeAdded(String sourceId, long timeId, String edgeId,
+			String fromNodeId, String toNodeId, boolean directed) {
+		addEdge(edgeId, fromNodeId, toNodeId);
+	}
+
+	@Override
+	public void edgeRemoved(String sourceId, long timeId, String edgeId) {
+		Ends ends = edges.remove(edgeId);
+		if (ends == null)
+			return;
+		if (ends.source.value > 0)
+			decrement(ends.source);
+		if (ends.target != ends.source && ends.target.value > 0)
+			decrement(ends.target);
+	}
+
+	@Override
+	public void graphCleared(String sourceId, long timeId) {
+		reset();
+	}
+}
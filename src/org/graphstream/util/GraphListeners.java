@@ -33,6 +33,7 @@ import org.graphstream.graph.Edge;
 import org.graphstream.graph.Element;
 import org.graphstream.graph.Graph;
 import org.graphstream.graph.Node;
+import org.graphstream.stream.EventBatch;
 import org.graphstream.stream.Pipe;
 import org.graphstream.stream.SourceBase;
 import org.graphstream.stream.sync.SinkTime;
@@ -59,6 +60,14 @@ public class GraphListeners extends SourceBase implements Pipe {
 		return sourceTime.newEvent();
 	}
 
+	/**
+	 * Whether an event received from a source has not been seen yet. It is
+	 * then recorded, so this returns true only once for a given event.
+	 */
+	public boolean isNewEvent(String sourceId, long timeId) {
+		return sinkTime.isNewEvent(sourceId, timeId);
+	}
+
 	public void sendAttributeChangedEvent(String eltId, ElementType eltType,
 			String attribute, Element.AttributeChangeEvent event, Object oldValue,
 			Object newValue) {
@@ -101,6 +110,21 @@ public class GraphListeners extends SourceBase implements Pipe {
 		sendEdgeRemoved(sourceId, newEvent(), edgeId);
 	}
 
+	/**
+	 * Sends the removal of several edges as one batch, in the order of the
+	 * array. Sinks that do not accept batches receive the events one by one
+	 * in the same order.
+	 */
+	public void sendEdgesRemoved(Edge[] edges) {
+		if (passYourWay || edges.length == 0)
+			return;
+
+		EventBatch batch = new EventBatch(edges.length);
+		for (Edge edge : edges)
+			batch.edgeRemoved(sourceId, newEvent(), edge.getId());
+		sendBatch(batch);
+	}
+
 	public void sendGraphCleared() {
 		if (passYourWay)
 			return;